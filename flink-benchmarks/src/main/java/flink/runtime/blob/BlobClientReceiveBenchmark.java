@@ -0,0 +1,171 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.configuration.BlobServerOptions;
+import flink.configuration.Configuration;
+import flink.util.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU time the {@link BlobClient} spends per GB received into a file, with and without {@link
+ * BlobServerOptions#ZERO_COPY_RECEIVE_ENABLED zero-copy receive}, against a {@link BlobServer} on
+ * the loopback interface (without SSL).
+ *
+ * <p>The CPU time of the benchmark thread, i.e. of the client only, is recorded as the secondary
+ * result {@code clientCpuNanos} along with {@code receivedBytes}. {@link #main(String[])} runs the
+ * benchmark and prints the CPU milliseconds per GB for each configuration; further JMH options may
+ * be passed on the command line, e.g. {@code -p blobSize=67108864}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BlobClientReceiveBenchmark {
+
+    /** Size of the random block the uploaded content is repeated from. */
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    /** Bytes per GB to normalize the CPU time with. */
+    private static final double BYTES_PER_GB = 1 << 30;
+
+    /** The server and the permanent BLOB to download. */
+    @State(Scope.Benchmark)
+    public static class ReceiveState {
+
+        @Param({"67108864", "1073741824"})
+        public int blobSize;
+
+        @Param({"false", "true"})
+        public boolean zeroCopyReceive;
+
+        Configuration config;
+
+        BlobServer server;
+
+        BlobClient client;
+
+        JobID jobId;
+
+        PermanentBlobKey blobKey;
+
+        /** The file to download to, deleted after each download. */
+        File localFile;
+
+        private File tempDir;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            tempDir = Files.createTempDirectory("blob-receive-benchmark").toFile();
+            config = new Configuration();
+            config.setString(
+                    BlobServerOptions.STORAGE_DIRECTORY,
+                    new File(tempDir, "storage").getAbsolutePath());
+            config.setBoolean(BlobServerOptions.ZERO_COPY_RECEIVE_ENABLED, zeroCopyReceive);
+
+            server = new BlobServer(config, new VoidBlobStore());
+            server.start();
+            client =
+                    new BlobClient(new InetSocketAddress("localhost", server.getPort()), config);
+
+            final byte[] block = new byte[Math.min(blobSize, BLOCK_SIZE)];
+            new Random(42L).nextBytes(block);
+            jobId = new JobID();
+            try (InputStream content =
+                    new BlobServerBenchmark.RepeatingInputStream(block, blobSize)) {
+                blobKey = server.putPermanent(jobId, content);
+            }
+            localFile = new File(tempDir, "local");
+        }
+
+        @TearDown(Level.Invocation)
+        public void deleteLocalFile() throws IOException {
+            Files.deleteIfExists(localFile.toPath());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            try {
+                client.close();
+                server.close();
+            } finally {
+                FileUtils.deleteDirectory(tempDir);
+            }
+        }
+    }
+
+    /** The client's CPU time and the received bytes, summed over each iteration. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CpuCounters {
+
+        public long clientCpuNanos;
+
+        public long receivedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            clientCpuNanos = 0L;
+            receivedBytes = 0L;
+        }
+    }
+
+    @Benchmark
+    public boolean receive(ReceiveState state, CpuCounters counters) throws IOException {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final long cpuStart = threads.getCurrentThreadCpuTime();
+        final boolean transferred =
+                state.client.getIfModified(state.jobId, state.blobKey, state.localFile);
+        counters.clientCpuNanos += threads.getCurrentThreadCpuTime() - cpuStart;
+        counters.receivedBytes += state.blobSize;
+        return transferred;
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        final OptionsBuilder options = new OptionsBuilder();
+        options.parent(new CommandLineOptions(args))
+                .include(BlobClientReceiveBenchmark.class.getCanonicalName());
+        final Collection<RunResult> results = new Runner(options.build()).run();
+
+        for (RunResult result : results) {
+            final Result<?> cpuNanos = result.getSecondaryResults().get("clientCpuNanos");
+            final Result<?> bytes = result.getSecondaryResults().get("receivedBytes");
+            System.out.printf(
+                    "blobSize=%s zeroCopyReceive=%s: %.1f ms CPU per GB received%n",
+                    result.getParams().getParam("blobSize"),
+                    result.getParams().getParam("zeroCopyReceive"),
+                    cpuNanos.getScore() / 1e6 / (bytes.getScore() / BYTES_PER_GB));
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.configuration.BlobServerOptions;
+import flink.configuration.Configuration;
+import flink.configuration.SecurityOptions;
+import flink.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static flink.runtime.blob.BlobKey.BlobType.PERMANENT_BLOB;
+import static flink.runtime.blob.BlobKey.BlobType.TRANSIENT_BLOB;
+
+/**
+ * Throughput and latency of PUT and GET requests against a {@link BlobServer} on the loopback
+ * interface, across BLOB sizes, SSL on/off and transient vs. permanent BLOBs.
+ *
+ * <p>Each benchmark thread uses its own {@link BlobClient} connection, i.e. the concurrency level
+ * is the number of JMH threads. {@link #main(String[])} runs all benchmarks for 1, 4 and 16
+ * threads with the GC profiler attached, which reports the allocation rate; further JMH options
+ * may be passed on the command line, e.g. {@code -p blobSize=1024}. When running via {@code java
+ * -jar benchmarks.jar}, use {@code -t <threads> -prof gc} instead.
+ *
+ * <p>The benchmarks live in the blob package to use the client's low-level PUT and GET requests
+ * which are not part of the public API.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BlobServerBenchmark {
+
+    /** Concurrency levels {@link #main(String[])} runs the benchmarks with. */
+    private static final int[] THREADS = {1, 4, 16};
+
+    /** Size of the random block the uploaded content is repeated from. */
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    /** The server and the BLOB served by GET requests, shared by all benchmark threads. */
+    @State(Scope.Benchmark)
+    public static class ServerState {
+
+        @Param({"1024", "1048576", "67108864", "1073741824"})
+        public long blobSize;
+
+        @Param({"false", "true"})
+        public boolean ssl;
+
+        @Param({"TRANSIENT_BLOB", "PERMANENT_BLOB"})
+        public BlobKey.BlobType blobType;
+
+        Configuration config;
+
+        BlobServer server;
+
+        InetSocketAddress serverAddress;
+
+        /** Job owning all BLOBs so that they can be removed at once. */
+        JobID jobId;
+
+        /** Random content the uploaded BLOBs are made of. */
+        byte[] block;
+
+        private File tempDir;
+
+        @Setup(Level.Trial)
+        public void startServer() throws Exception {
+            tempDir = Files.createTempDirectory("blob-benchmark").toFile();
+            config = new Configuration();
+            config.setString(
+                    BlobServerOptions.STORAGE_DIRECTORY,
+                    new File(tempDir, "storage").getAbsolutePath());
+            config.setInteger(BlobServerOptions.FETCH_CONCURRENT, 64);
+            if (ssl) {
+                configureSsl(config, tempDir);
+            }
+
+            server = new BlobServer(config, new VoidBlobStore());
+            server.start();
+            serverAddress = new InetSocketAddress("localhost", server.getPort());
+
+            jobId = new JobID();
+            block = new byte[(int) Math.min(blobSize, BLOCK_SIZE)];
+            new Random(42L).nextBytes(block);
+        }
+
+        /** Removes the permanent BLOBs uploaded for GET requests. */
+        @TearDown(Level.Iteration)
+        public void cleanupUploads() {
+            server.cleanupJob(jobId, false);
+        }
+
+        @TearDown(Level.Trial)
+        public void stopServer() throws IOException {
+            try {
+                server.close();
+            } finally {
+                FileUtils.deleteDirectory(tempDir);
+            }
+        }
+
+        /** Deletes the given BLOB (of any type) from the server's storage. */
+        void deleteLocally(BlobKey blobKey) throws IOException {
+            final File file = server.getStorageLocation(jobId, blobKey);
+            server.getReadWriteLock().writeLock().lock();
+            try {
+                Files.deleteIfExists(file.toPath());
+            } finally {
+                server.getReadWriteLock().writeLock().unlock();
+            }
+        }
+
+        BlobKey putLocally() throws IOException {
+            try (InputStream content = new RepeatingInputStream(block, blobSize)) {
+                return blobType == PERMANENT_BLOB
+                        ? server.putPermanent(jobId, content)
+                        : server.putTransient(jobId, content);
+            }
+        }
+    }
+
+    /** Per-thread connection to the server. */
+    @State(Scope.Thread)
+    public static class ClientState {
+
+        BlobClient client;
+
+        @Setup(Level.Trial)
+        public void connect(ServerState serverState) throws IOException {
+            client = new BlobClient(serverState.serverAddress, serverState.config);
+        }
+
+        @TearDown(Level.Trial)
+        public void disconnect() throws IOException {
+            client.close();
+        }
+    }
+
+    /** Per-thread BLOB uploaded by PUT requests. */
+    @State(Scope.Thread)
+    public static class PutState {
+
+        /** BLOB uploaded by the last PUT request (if any). */
+        BlobKey uploadedKey;
+
+        /** Every PUT creates a new BLOB; delete it right away so that 1 GB BLOBs fit on disk. */
+        @TearDown(Level.Invocation)
+        public void deleteUploadedBlob(ServerState serverState) throws IOException {
+            if (uploadedKey != null) {
+                serverState.deleteLocally(uploadedKey);
+                uploadedKey = null;
+            }
+        }
+    }
+
+    /** Per-thread BLOB served by GET requests. */
+    @State(Scope.Thread)
+    public static class GetState {
+
+        /** BLOB to download, re-uploaded before each GET of a transient BLOB. */
+        BlobKey blobKey;
+
+        @Setup(Level.Iteration)
+        public void uploadPermanentBlob(ServerState serverState) throws IOException {
+            // permanent BLOBs survive GET requests until the iteration's cleanup
+            if (serverState.blobType == PERMANENT_BLOB) {
+                blobKey = serverState.putLocally();
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void uploadTransientBlob(ServerState serverState) throws IOException {
+            // transient BLOBs are deleted by the server after each successful GET
+            if (serverState.blobType == TRANSIENT_BLOB) {
+                blobKey = serverState.putLocally();
+            }
+        }
+    }
+
+    @Benchmark
+    public BlobKey put(ServerState serverState, ClientState clientState, PutState putState)
+            throws IOException {
+        try (InputStream content =
+                new RepeatingInputStream(serverState.block, serverState.blobSize)) {
+            putState.uploadedKey =
+                    clientState.client.putInputStream(
+                            serverState.jobId, content, serverState.blobType);
+            return putState.uploadedKey;
+        }
+    }
+
+    @Benchmark
+    public void get(
+            ServerState serverState,
+            ClientState clientState,
+            GetState getState,
+            Blackhole blackhole)
+            throws IOException {
+        final byte[] buf = new byte[BlobServerProtocol.BUFFER_SIZE];
+        final InputStream is = clientState.client.getInternal(serverState.jobId, getState.blobKey);
+        int read;
+        while ((read = is.read(buf)) >= 0) {
+            blackhole.consume(read);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        for (int threads : THREADS) {
+            final ChainedOptionsBuilder options =
+                    new OptionsBuilder()
+                            .parent(new CommandLineOptions(args))
+                            .include(BlobServerBenchmark.class.getCanonicalName())
+                            .threads(threads)
+                            .addProfiler(GCProfiler.class);
+            new Runner(options.build()).run();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a self-signed key store with the JDK's {@code keytool} and enables internal SSL with
+     * it (also serving as trust store).
+     */
+    private static void configureSsl(Configuration config, File tempDir) throws Exception {
+        final File keyStore = new File(tempDir, "blob-benchmark.keystore");
+        final String password = "password";
+
+        final Process keytool =
+                new ProcessBuilder(
+                                new File(System.getProperty("java.home"), "bin/keytool")
+                                        .getAbsolutePath(),
+                                "-genkeypair",
+                                "-alias",
+                                "flink.internal",
+                                "-keyalg",
+                                "RSA",
+                                "-keysize",
+                                "2048",
+                                "-validity",
+                                "1",
+                                "-dname",
+                                "CN=localhost",
+                                "-storetype",
+                                "JKS",
+                                "-keystore",
+                                keyStore.getAbsolutePath(),
+                                "-storepass",
+                                password,
+                                "-keypass",
+                                password)
+                        .inheritIO()
+                        .start();
+        if (keytool.waitFor() != 0) {
+            throw new IOException("Failed to create the key store " + keyStore + '.');
+        }
+
+        config.setBoolean(SecurityOptions.SSL_INTERNAL_ENABLED, true);
+        config.setBoolean(BlobServerOptions.SSL_ENABLED, true);
+        config.setString(SecurityOptions.SSL_INTERNAL_KEYSTORE, keyStore.getAbsolutePath());
+        config.setString(SecurityOptions.SSL_INTERNAL_KEYSTORE_PASSWORD, password);
+        config.setString(SecurityOptions.SSL_INTERNAL_KEY_PASSWORD, password);
+        config.setString(SecurityOptions.SSL_INTERNAL_TRUSTSTORE, keyStore.getAbsolutePath());
+        config.setString(SecurityOptions.SSL_INTERNAL_TRUSTSTORE_PASSWORD, password);
+    }
+
+    /** Stream of the given size repeating the given block, i.e. without allocating the BLOB. */
+    static final class RepeatingInputStream extends InputStream {
+
+        private final byte[] block;
+
+        private long remaining;
+
+        private int position;
+
+        RepeatingInputStream(byte[] block, long size) {
+            this.block = block;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) {
+                return -1;
+            }
+
+            final int b = block[position] & 0xFF;
+            position = (position + 1) % block.length;
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            } else if (remaining == 0) {
+                return -1;
+            }
+
+            final int read = (int) Math.min(Math.min(len, remaining), block.length - position);
+            System.arraycopy(block, position, b, off, read);
+            position = (position + read) % block.length;
+            remaining -= read;
+            return read;
+        }
+    }
+}
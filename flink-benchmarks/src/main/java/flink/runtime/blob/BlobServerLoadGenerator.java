@@ -0,0 +1,398 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.configuration.BlobServerOptions;
+import flink.configuration.Configuration;
+import flink.metrics.Histogram;
+import flink.metrics.HistogramStatistics;
+import flink.runtime.metrics.SlidingWindowHistogram;
+import flink.util.FileUtils;
+import flink.util.concurrent.ExecutorThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static flink.runtime.blob.BlobKey.BlobType.TRANSIENT_BLOB;
+
+/**
+ * Standalone load generator simulating a deployment storm against a real {@link BlobServer} on
+ * the loopback interface, e.g. for soak tests and to find scaling limits.
+ *
+ * <p>Each simulated client opens a new connection per request, as task managers do, and runs the
+ * following mix:
+ *
+ * <ul>
+ *   <li>every {@code --storm-interval} seconds, all clients download the same (permanent) job jar
+ *       at once,
+ *   <li>in between, a steady trickle of transient PUTs with a subsequent GET (like log and metric
+ *       uploads served to the REST endpoint),
+ *   <li>with probability {@code --disconnect-probability}, a download is aborted by closing the
+ *       connection halfway through.
+ * </ul>
+ *
+ * <p>Every {@code --report-interval} seconds and at the end, the throughput and p50/p99/p999
+ * latency per operation, the JVM's thread count and its open file descriptors are printed.
+ *
+ * <p>Usage: {@code java -cp benchmarks.jar flink.runtime.blob.BlobServerLoadGenerator [--clients
+ * 2000] [--duration 300] [--jar-size 104857600] [--transient-size 65536] [--think-time 1000]
+ * [--storm-interval 60] [--disconnect-probability 0.01] [--report-interval 10] [--fetch-concurrent
+ * 50] [--fetch-backlog 1000]}
+ */
+public class BlobServerLoadGenerator {
+
+    /** Number of latest latencies the percentiles are computed over. */
+    private static final int LATENCY_WINDOW_SIZE = 1 << 20;
+
+    private final Map<String, Long> settings;
+
+    private final Operation jarGet = new Operation("jar-get");
+
+    private final Operation transientPut = new Operation("transient-put");
+
+    private final Operation transientGet = new Operation("transient-get");
+
+    private final Operation abortedGet = new Operation("aborted-get");
+
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    /** Incremented to start a storm; clients wait on it between requests. */
+    private final AtomicLong stormGeneration = new AtomicLong();
+
+    private final JobID jobId = new JobID();
+
+    private Configuration config;
+
+    private InetSocketAddress serverAddress;
+
+    private PermanentBlobKey jarKey;
+
+    private byte[] transientData;
+
+    private BlobServerLoadGenerator(Map<String, Long> settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, Long> settings = new HashMap<>();
+        settings.put("clients", 2000L);
+        settings.put("duration", 300L);
+        settings.put("jar-size", 100L << 20);
+        settings.put("transient-size", 64L << 10);
+        settings.put("think-time", 1000L);
+        settings.put("storm-interval", 60L);
+        settings.put("report-interval", 10L);
+        settings.put("fetch-concurrent", (long) BlobServerOptions.FETCH_CONCURRENT.defaultValue());
+        settings.put("fetch-backlog", (long) BlobServerOptions.FETCH_BACKLOG.defaultValue());
+        double disconnectProbability = 0.01;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i] + '.');
+            }
+            final String key = args[i].substring(2);
+            if (key.equals("disconnect-probability")) {
+                disconnectProbability = Double.parseDouble(args[i + 1]);
+            } else if (settings.containsKey(key)) {
+                settings.put(key, Long.parseLong(args[i + 1]));
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i] + '.');
+            }
+        }
+
+        new BlobServerLoadGenerator(settings).run(disconnectProbability);
+    }
+
+    private void run(double disconnectProbability) throws Exception {
+        final File storageDir = Files.createTempDirectory("blob-load-generator").toFile();
+        config = new Configuration();
+        config.setString(BlobServerOptions.STORAGE_DIRECTORY, storageDir.getAbsolutePath());
+        config.setInteger(
+                BlobServerOptions.FETCH_CONCURRENT, settings.get("fetch-concurrent").intValue());
+        config.setInteger(BlobServerOptions.FETCH_BACKLOG, settings.get("fetch-backlog").intValue());
+
+        final int numClients = settings.get("clients").intValue();
+        final ExecutorService clients =
+                Executors.newFixedThreadPool(
+                        numClients, new ExecutorThreadFactory("blob-load-client"));
+
+        try (BlobServer server = new BlobServer(config, new VoidBlobStore())) {
+            server.start();
+            serverAddress = new InetSocketAddress("localhost", server.getPort());
+
+            final byte[] block = new byte[1 << 20];
+            new Random(42L).nextBytes(block);
+            try (InputStream jar = new RepeatingInputStream(block, settings.get("jar-size"))) {
+                jarKey = server.putPermanent(jobId, jar);
+            }
+            transientData = new byte[settings.get("transient-size").intValue()];
+            new Random(43L).nextBytes(transientData);
+
+            printHeader(numClients, disconnectProbability);
+            for (int i = 0; i < numClients; i++) {
+                clients.execute(() -> runClient(disconnectProbability));
+            }
+
+            final long start = System.nanoTime();
+            final long end = start + TimeUnit.SECONDS.toNanos(settings.get("duration"));
+            final long stormInterval = TimeUnit.SECONDS.toNanos(settings.get("storm-interval"));
+            final long reportInterval = TimeUnit.SECONDS.toNanos(settings.get("report-interval"));
+            long nextStorm = start;
+            long nextReport = start + reportInterval;
+            long lastReport = start;
+
+            while (System.nanoTime() < end) {
+                final long now = System.nanoTime();
+                if (now >= nextStorm) {
+                    stormGeneration.incrementAndGet();
+                    synchronized (stormGeneration) {
+                        stormGeneration.notifyAll();
+                    }
+                    nextStorm += stormInterval;
+                }
+                if (now >= nextReport) {
+                    report(now - lastReport, false);
+                    lastReport = now;
+                    nextReport += reportInterval;
+                }
+                Thread.sleep(100L);
+            }
+
+            running.set(false);
+            synchronized (stormGeneration) {
+                stormGeneration.notifyAll();
+            }
+            report(System.nanoTime() - lastReport, false);
+            report(System.nanoTime() - start, true);
+        } finally {
+            running.set(false);
+            clients.shutdownNow();
+            clients.awaitTermination(1L, TimeUnit.MINUTES);
+            FileUtils.deleteDirectory(storageDir);
+        }
+    }
+
+    private void runClient(double disconnectProbability) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long meanThinkTime = settings.get("think-time");
+        long seenStorm = 0L;
+
+        while (running.get()) {
+            final long storm = stormGeneration.get();
+            try {
+                if (storm != seenStorm) {
+                    seenStorm = storm;
+                    if (random.nextDouble() < disconnectProbability) {
+                        abortedGet.run(() -> abortDownload(jarKey));
+                    } else {
+                        jarGet.run(() -> download(jarKey));
+                    }
+                } else {
+                    final BlobKey[] key = new BlobKey[1];
+                    if (transientPut.run(() -> key[0] = upload()) && key[0] != null) {
+                        transientGet.run(() -> download(key[0]));
+                    }
+                }
+
+                // exponentially distributed think time; a storm wakes everyone up
+                final long thinkTime = (long) (-meanThinkTime * Math.log(1.0 - random.nextDouble()));
+                synchronized (stormGeneration) {
+                    if (running.get() && stormGeneration.get() == seenStorm && thinkTime > 0) {
+                        stormGeneration.wait(thinkTime);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private BlobKey upload() throws IOException {
+        try (BlobClient client = new BlobClient(serverAddress, config)) {
+            return client.putBuffer(jobId, transientData, 0, transientData.length, TRANSIENT_BLOB);
+        }
+    }
+
+    private void download(BlobKey blobKey) throws IOException {
+        final byte[] buf = new byte[BlobServerProtocol.BUFFER_SIZE];
+        try (BlobClient client = new BlobClient(serverAddress, config)) {
+            final InputStream is = client.getInternal(jobId, blobKey);
+            while (is.read(buf) >= 0) {
+                // discard
+            }
+        }
+    }
+
+    private void abortDownload(BlobKey blobKey) throws IOException {
+        final byte[] buf = new byte[BlobServerProtocol.BUFFER_SIZE];
+        try (BlobClient client = new BlobClient(serverAddress, config)) {
+            final InputStream is = client.getInternal(jobId, blobKey);
+            final int toRead = is.available() / 2;
+            int read = 0;
+            while (read < toRead) {
+                final int r = is.read(buf, 0, Math.min(buf.length, toRead - read));
+                if (r < 0) {
+                    break;
+                }
+                read += r;
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+    //  Reporting
+    // --------------------------------------------------------------------------------------------
+
+    private void printHeader(int numClients, double disconnectProbability) {
+        System.out.printf(
+                "Load generator against %s: %d clients, jar of %d bytes, %s, disconnect probability %.3f%n",
+                serverAddress,
+                numClients,
+                settings.get("jar-size"),
+                settings,
+                disconnectProbability);
+    }
+
+    private void report(long intervalNanos, boolean total) {
+        System.out.printf(
+                "%s (%.1f s): threads=%d, open fds=%s%n",
+                total ? "TOTAL" : "interval",
+                intervalNanos / 1e9,
+                ManagementFactory.getThreadMXBean().getThreadCount(),
+                getOpenFileDescriptors());
+        for (Operation operation : new Operation[] {jarGet, transientPut, transientGet, abortedGet}) {
+            operation.report(intervalNanos, total);
+        }
+    }
+
+    private static String getOpenFileDescriptors() {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            final com.sun.management.UnixOperatingSystemMXBean unixOs =
+                    (com.sun.management.UnixOperatingSystemMXBean) os;
+            return unixOs.getOpenFileDescriptorCount() + "/" + unixOs.getMaxFileDescriptorCount();
+        }
+        return "n/a";
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /** A request that may fail with an {@link IOException}. */
+    private interface Request {
+        void run() throws IOException;
+    }
+
+    /** Latencies and outcomes of one type of request. */
+    private static final class Operation {
+
+        private final String name;
+
+        private final Histogram latency = new SlidingWindowHistogram(LATENCY_WINDOW_SIZE);
+
+        private final AtomicLong succeeded = new AtomicLong();
+
+        private final AtomicLong failed = new AtomicLong();
+
+        /** Values of the counters at the last interval report. */
+        private long lastSucceeded;
+
+        private long lastFailed;
+
+        private Operation(String name) {
+            this.name = name;
+        }
+
+        /** Runs and records the given request; returns whether it succeeded. */
+        boolean run(Request request) {
+            final long start = System.nanoTime();
+            try {
+                request.run();
+                latency.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                succeeded.incrementAndGet();
+                return true;
+            } catch (IOException | RuntimeException e) {
+                failed.incrementAndGet();
+                return false;
+            }
+        }
+
+        void report(long intervalNanos, boolean total) {
+            final long numSucceeded = succeeded.get();
+            final long numFailed = failed.get();
+            final long intervalSucceeded = total ? numSucceeded : numSucceeded - lastSucceeded;
+            final long intervalFailed = total ? numFailed : numFailed - lastFailed;
+            if (!total) {
+                lastSucceeded = numSucceeded;
+                lastFailed = numFailed;
+            }
+
+            final HistogramStatistics statistics = latency.getStatistics();
+            System.out.printf(
+                    "  %-14s %10.1f ops/s, %8d ok, %6d failed, latency (ms) p50=%.1f p99=%.1f p999=%.1f max=%.1f%n",
+                    name,
+                    intervalSucceeded / (intervalNanos / 1e9),
+                    intervalSucceeded,
+                    intervalFailed,
+                    statistics.getQuantile(0.5) / 1000,
+                    statistics.getQuantile(0.99) / 1000,
+                    statistics.getQuantile(0.999) / 1000,
+                    statistics.getMax() / 1000.0);
+        }
+    }
+
+    /** Stream of the given size repeating the given block, i.e. without allocating the BLOB. */
+    private static final class RepeatingInputStream extends InputStream {
+
+        private final byte[] block;
+
+        private long remaining;
+
+        private int position;
+
+        private RepeatingInputStream(byte[] block, long size) {
+            this.block = block;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) {
+                return -1;
+            }
+
+            final int b = block[position] & 0xFF;
+            position = (position + 1) % block.length;
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            } else if (remaining == 0) {
+                return -1;
+            }
+
+            final int read = (int) Math.min(Math.min(len, remaining), block.length - position);
+            System.arraycopy(block, position, b, off, read);
+            position = (position + read) % block.length;
+            remaining -= read;
+            return read;
+        }
+    }
+}
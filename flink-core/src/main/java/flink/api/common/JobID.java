@@ -24,6 +24,11 @@ import flink.util.AbstractID;
  */
 public class JobID  extends AbstractID {
 
+    /** Creates a new (statistically) random JobID. */
+    public JobID() {
+        super();
+    }
+
     /**
      * Creates a new JobID, using the given lower and upper parts.
      *
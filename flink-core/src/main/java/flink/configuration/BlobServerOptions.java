@@ -37,6 +37,127 @@ public class BlobServerOptions {
 
 
 
+    /**
+     * The config parameter defining the number of threads the blob server uses to prefetch
+     * permanent BLOBs from the HA blob store.
+     */
+    public static final ConfigOption<Integer> IO_POOL_SIZE =
+            key("blob.server.io-pool.size")
+                    .defaultValue(4)
+                    .withDescription(
+                            "The number of threads the blob server uses to prefetch permanent BLOBs of a job from the HA blob store into its local storage.");
+
+
+    /**
+     * The number of threads the blob server uses to hash the chunks of BLOBs for verified
+     * downloads.
+     */
+    public static final ConfigOption<Integer> TREE_HASH_POOL_SIZE =
+            key("blob.server.tree-hash.pool-size")
+                    .defaultValue(4)
+                    .withDescription(
+                            "The number of threads the blob server uses to hash the fixed-size chunks of BLOBs in parallel for verified downloads.");
+
+    /**
+     * The config parameter defining the number of threads the blob server uses for asynchronous
+     * permanent BLOB uploads.
+     */
+    public static final ConfigOption<Integer> ASYNC_WRITE_POOL_SIZE =
+            key("blob.server.async-write.pool-size")
+                    .defaultValue(2)
+                    .withDescription(
+                            "The number of threads the blob server uses to persist BLOBs uploaded via the asynchronous BlobWriter API.");
+
+
+    /**
+     * The config parameter defining the maximum number of bytes of asynchronous BLOB uploads that
+     * may be in flight at the same time. Further uploads are queued without blocking the caller,
+     * keeping their buffers on the heap, so callers bound their memory by waiting for the uploads.
+     */
+    public static final ConfigOption<Long> ASYNC_WRITE_MAX_IN_FLIGHT_BYTES =
+            key("blob.server.async-write.max-in-flight-bytes")
+                    .defaultValue(256L * 1024 * 1024)
+                    .withDescription(
+                            "The maximum number of bytes of asynchronous BLOB uploads the blob server accepts at the same time."
+                                    + " Further asynchronous uploads are queued until enough of the pending uploads have been persisted.");
+
+
+    /** When a permanent BLOB upload is acknowledged with respect to the HA blob store. */
+    public enum HaReplicationMode {
+        /** Acknowledge as soon as the BLOB has been moved to the local storage. */
+        LOCAL,
+        /** Acknowledge only after the BLOB has been uploaded to the HA blob store. */
+        HA
+    }
+
+    /**
+     * The config parameter defining when permanent BLOB uploads are acknowledged: after the BLOB
+     * was stored locally ("LOCAL") or only after it was also uploaded to the HA blob store ("HA").
+     */
+    public static final ConfigOption<HaReplicationMode> HA_REPLICATION_MODE =
+            key("blob.server.ha-replication.mode")
+                    .defaultValue(HaReplicationMode.HA)
+                    .withDescription(
+                            "When permanent BLOB uploads are acknowledged: \"LOCAL\" acknowledges once the BLOB is in the blob server's local storage and uploads it to the HA blob store in the background,"
+                                    + " \"HA\" acknowledges only after the upload to the HA blob store has completed.");
+
+
+    /** The config parameter defining the maximum number of concurrent uploads to the HA store. */
+    public static final ConfigOption<Integer> HA_REPLICATION_POOL_SIZE =
+            key("blob.server.ha-replication.pool-size")
+                    .defaultValue(4)
+                    .withDescription(
+                            "The maximum number of concurrent uploads of permanent BLOBs to the HA blob store.");
+
+
+    /** The config parameter defining how often a failed upload to the HA store is retried. */
+    public static final ConfigOption<Integer> HA_REPLICATION_MAX_RETRIES =
+            key("blob.server.ha-replication.max-retries")
+                    .defaultValue(5)
+                    .withDescription(
+                            "The number of times a failed upload of a permanent BLOB to the HA blob store is retried.");
+
+
+    /**
+     * The config parameter defining the delay (in milliseconds) before retrying a failed upload to
+     * the HA store. The delay is doubled for every further retry.
+     */
+    public static final ConfigOption<Long> HA_REPLICATION_RETRY_DELAY =
+            key("blob.server.ha-replication.retry-delay")
+                    .defaultValue(100L)
+                    .withDescription(
+                            "The delay in milliseconds before retrying a failed upload to the HA blob store. The delay is doubled for every further retry.");
+
+
+    /**
+     * The config parameter defining the maximum delay (in milliseconds) between two retries of a
+     * failed upload to the HA store.
+     */
+    public static final ConfigOption<Long> HA_REPLICATION_MAX_RETRY_DELAY =
+            key("blob.server.ha-replication.max-retry-delay")
+                    .defaultValue(10_000L)
+                    .withDescription(
+                            "The maximum delay in milliseconds between two retries of a failed upload to the HA blob store.");
+
+    /**
+     * The size of the parts a BLOB is split into in the HA blob store. Parts are uploaded and
+     * downloaded in parallel.
+     */
+    public static final ConfigOption<Long> HA_STORE_PART_SIZE =
+            key("blob.server.ha-store.part-size")
+                    .defaultValue(64L * 1024 * 1024)
+                    .withDescription(
+                            "The size in bytes of the parts a BLOB is split into in the HA blob store. Parts are"
+                                    + " uploaded and downloaded in parallel on the cluster's I/O executor.");
+
+
+    /** The config parameter defining number of retires for failed BLOB fetches. */
+    public static final ConfigOption<Integer> FETCH_RETRIES =
+            key("blob.fetch.retries")
+                    .defaultValue(5)
+                    .withDescription(
+                            "The config parameter defining number of retires for failed BLOB fetches.");
+
     /** The config parameter defining the backlog of BLOB fetches on the JobManager. */
     public static final ConfigOption<Integer> FETCH_BACKLOG =
             key("blob.fetch.backlog")
@@ -50,6 +171,175 @@ public class BlobServerOptions {
                                     .build());
 
 
+    /**
+     * The config parameter defining the time (in milliseconds) after which a waiting connection is
+     * served before connections of a higher priority, i.e. protecting it from starvation.
+     */
+    public static final ConfigOption<Long> PRIORITY_MAX_WAIT =
+            key("blob.fetch.priority.max-wait")
+                    .defaultValue(5_000L)
+                    .withDescription(
+                            "Waiting connections are served by the priority of their request (critical deployment fetches first,"
+                                    + " bulk transfers of transient BLOBs last). A connection which waited longer than this many milliseconds"
+                                    + " is served next regardless of its priority.");
+
+
+    /**
+     * The config parameter defining how many accepted connections may wait for a free connection
+     * slot. Waiting connections are served by priority and, within a priority, by a weighted fair
+     * share among jobs (see {@link #JOB_DEFAULT_WEIGHT}), but none waits longer than {@link
+     * #PRIORITY_MAX_WAIT}. Further connections are rejected as overloaded.
+     */
+    public static final ConfigOption<Integer> FETCH_QUEUE_CAPACITY =
+            key("blob.fetch.queue-capacity")
+                    .defaultValue(1000)
+                    .withDescription(
+                            "The maximum number of accepted connections waiting for one of the "
+                                    + FETCH_CONCURRENT.key()
+                                    + " slots. They are served by the priority of their request and, within a priority, by a weighted"
+                                    + " fair share among jobs, but a connection which waited longer than "
+                                    + PRIORITY_MAX_WAIT.key()
+                                    + " is served next. Connections beyond this limit are rejected with a hint when to retry.");
+
+
+    /**
+     * The config parameter defining the delay (in milliseconds) an overloaded blob server asks
+     * rejected clients to wait before retrying.
+     */
+    public static final ConfigOption<Integer> OVERLOAD_RETRY_AFTER =
+            key("blob.fetch.overload.retry-after")
+                    .defaultValue(1000)
+                    .withDescription(
+                            "The delay in milliseconds an overloaded blob server asks rejected clients to wait before retrying."
+                                    + " Clients add a random jitter of up to half of this delay.");
+
+
+    /**
+     * The config parameter defining the maximum bandwidth (in bytes per second) of a single
+     * connection to the blob server, 0 meaning unlimited.
+     */
+    public static final ConfigOption<Long> BANDWIDTH_PER_CONNECTION =
+            key("blob.server.bandwidth.per-connection")
+                    .defaultValue(0L)
+                    .withDescription(
+                            "The maximum number of bytes per second the blob server sends or receives on a single connection; 0 disables the limit.");
+
+
+    /**
+     * The config parameter defining the maximum bandwidth (in bytes per second) of all
+     * connections to the blob server together, 0 meaning unlimited.
+     */
+    public static final ConfigOption<Long> BANDWIDTH_TOTAL =
+            key("blob.server.bandwidth.total")
+                    .defaultValue(0L)
+                    .withDescription(
+                            "The maximum number of bytes per second the blob server sends or receives on all connections together;"
+                                    + " 0 disables the limit. This keeps bulk transfers from saturating the JobManager's network.");
+
+
+    /**
+     * The config parameter defining how many bytes of a BLOB concurrent GET requests share in
+     * memory, 0 meaning that every request reads the BLOB on its own.
+     */
+    public static final ConfigOption<Long> SHARED_READ_WINDOW =
+            key("blob.server.shared-read.window")
+                    .defaultValue(1024L * 1024)
+                    .withDescription(
+                            "The number of bytes of a BLOB which concurrent GET requests for the same BLOB share in memory: the"
+                                    + " blob server reads each part from disk once for all of them. Requests falling further behind"
+                                    + " read on their own. 0 disables the sharing.");
+
+
+    /**
+     * The config parameter defining the weight of a job when sharing connection slots and
+     * bandwidth among jobs, unless set otherwise for the job.
+     */
+    public static final ConfigOption<Integer> JOB_DEFAULT_WEIGHT =
+            key("blob.server.fair-share.default-weight")
+                    .defaultValue(1)
+                    .withDescription(
+                            "The weight of a job when the blob server shares waiting connection slots and the bandwidth limit of "
+                                    + BANDWIDTH_TOTAL.key()
+                                    + " among jobs; jobs receive shares proportional to their weights, independent of their number"
+                                    + " of connections.");
+
+
+    /**
+     * The config parameter defining the weight of job-unrelated BLOBs when sharing connection slots
+     * and bandwidth among jobs.
+     */
+    public static final ConfigOption<Integer> NO_JOB_WEIGHT =
+            key("blob.server.fair-share.no-job-weight")
+                    .defaultValue(1)
+                    .withDescription(
+                            "The weight of requests for job-unrelated BLOBs, which are treated as a job of their own when the blob"
+                                    + " server shares waiting connection slots and bandwidth among jobs.");
+
+
+    /**
+     * The config parameter defining the maximum bandwidth (in bytes per second) of all bulk
+     * requests to the blob server together, 0 meaning unlimited.
+     */
+    public static final ConfigOption<Long> BANDWIDTH_BULK =
+            key("blob.server.bandwidth.bulk")
+                    .defaultValue(0L)
+                    .withDescription(
+                            "The maximum number of bytes per second the blob server sends or receives for bulk requests"
+                                    + " (transfers of transient BLOBs like log files) on all connections together; 0 disables the limit.");
+
+
+    /**
+     * Flag enabling the distribution of permanent BLOBs among the blob caches: caches serve the
+     * BLOBs they hold to other caches, using the blob server as a tracker.
+     */
+    public static final ConfigOption<Boolean> PEER_DISTRIBUTION_ENABLED =
+            key("blob.peer-distribution.enabled")
+                    .defaultValue(false)
+                    .withDescription(
+                            "Whether the blob caches at the task managers download permanent BLOBs from each other. The blob"
+                                    + " server keeps track of which caches hold (or are downloading) a BLOB, and each cache serves the"
+                                    + " BLOBs it holds to others. Data is verified against the BLOB key, and caches fall back to the"
+                                    + " blob server if no peer can serve a BLOB.");
+
+
+    /**
+     * The config parameter defining the port of a blob cache serving BLOBs to other caches. The
+     * port can either be a port, such as "9123", a range of ports: "50100-50200" or a list of
+     * ranges and or points: "50100-50200,50300-50400,51234"
+     *
+     * <p>Setting the port to 0 will let the OS choose an available port.
+     */
+    public static final ConfigOption<String> PEER_DISTRIBUTION_PORT =
+            key("blob.peer-distribution.port")
+                    .defaultValue("0")
+                    .withDescription(
+                            "The port (range) a blob cache serves BLOBs to other caches on if "
+                                    + PEER_DISTRIBUTION_ENABLED.key()
+                                    + " is set.");
+
+
+    /** The config parameter defining how many peers the blob server suggests per download. */
+    public static final ConfigOption<Integer> PEER_DISTRIBUTION_MAX_PEERS =
+            key("blob.peer-distribution.max-peers")
+                    .defaultValue(3)
+                    .withDescription(
+                            "The maximum number of peers the blob server suggests to a blob cache downloading a BLOB. Peers"
+                                    + " holding the BLOB are suggested least-used first, so downloads spread over the caches"
+                                    + " like a distribution tree.");
+
+
+    /**
+     * The config parameter defining the maximum number of concurrent downloads a blob cache
+     * serves to other caches.
+     */
+    public static final ConfigOption<Integer> PEER_DISTRIBUTION_CONCURRENT =
+            key("blob.peer-distribution.num-concurrent")
+                    .defaultValue(4)
+                    .withDescription(
+                            "The maximum number of concurrent downloads a blob cache serves to other caches. Further"
+                                    + " requests are rejected and the requesting cache tries its next peer.");
+
+
     /**
      * Cleanup interval of the blob caches at the task managers (in seconds).
      *
@@ -98,6 +388,120 @@ public class BlobServerOptions {
 
 
 
+    /**
+     * Whether the blob client uploads files in content-defined chunks, sending only the chunks the
+     * blob server does not hold yet.
+     */
+    public static final ConfigOption<Boolean> CHUNKED_UPLOAD_ENABLED =
+            key("blob.client.chunked-upload.enabled")
+                    .defaultValue(false)
+                    .withDescription(
+                            "Whether the blob client uploads files (e.g. job jars) in content-defined chunks. The client"
+                                    + " sends the hashes of the chunks and only uploads the chunks the blob server does not hold"
+                                    + " yet, e.g. from a previous version of the same jar; the blob server assembles and stores"
+                                    + " the complete file.");
+
+    /**
+     * Whether the blob client verifies downloads of permanent BLOBs chunk by chunk, re-fetching
+     * only corrupted chunks.
+     */
+    public static final ConfigOption<Boolean> VERIFIED_DOWNLOAD_ENABLED =
+            key("blob.client.verified-download.enabled")
+                    .defaultValue(false)
+                    .withDescription(
+                            "Whether the blob client downloads permanent BLOBs with the hashes of their fixed-size chunks"
+                                    + " and verifies each chunk as it arrives. Corrupted chunks are detected early and only they are"
+                                    + " fetched again. The blob server hashes the chunks in parallel and caches the hashes.");
+
+    /**
+     * The config parameter defining the maximum number of connections the blob client downloads a
+     * single permanent BLOB over.
+     */
+    public static final ConfigOption<Integer> DOWNLOAD_NUM_STRIPES =
+            key("blob.client.download.num-stripes")
+                    .defaultValue(1)
+                    .withDescription(
+                            "The maximum number of connections the blob client downloads a single large permanent BLOB over."
+                                    + " The BLOB is split into stripes of consecutive chunks which are fetched concurrently and"
+                                    + " written to their positions in the file. Values larger than 1 imply verified downloads.");
+
+    /** The config parameter defining the minimum size of a stripe of a BLOB download. */
+    public static final ConfigOption<Long> DOWNLOAD_MIN_STRIPE_SIZE =
+            key("blob.client.download.min-stripe-size")
+                    .defaultValue(64L * 1024 * 1024)
+                    .withDescription(
+                            "The minimum number of bytes per stripe of a striped BLOB download. Smaller BLOBs are downloaded over fewer connections.");
+
+    /**
+     * The config parameter defining whether the blob client transfers received BLOBs from the
+     * connection's channel to files directly.
+     */
+    public static final ConfigOption<Boolean> ZERO_COPY_RECEIVE_ENABLED =
+            key("blob.client.zero-copy-receive.enabled")
+                    .defaultValue(false)
+                    .withDescription(
+                            "Whether the blob client receives BLOBs into files via FileChannel#transferFrom from the connection's"
+                                    + " socket channel instead of copying them through heap buffers, which reduces the CPU spent per byte."
+                                    + " Only applies to connections without SSL.");
+
+    /** The config parameter defining the number of event loop threads of an asynchronous client. */
+    public static final ConfigOption<Integer> ASYNC_CLIENT_NUM_THREADS =
+            key("blob.client.async.num-threads")
+                    .defaultValue(1)
+                    .withDescription(
+                            "The number of event loop threads an asynchronous blob client shares among all of its concurrent transfers.");
+
+    /**
+     * The config parameter defining the delay (in milliseconds) before the first retry of a failed
+     * BLOB fetch. The delay is doubled for every further retry.
+     */
+    public static final ConfigOption<Long> RETRY_INITIAL_BACKOFF =
+            key("blob.client.retry.initial-backoff")
+                    .defaultValue(100L)
+                    .withDescription(
+                            "The delay in milliseconds before the first retry of a failed BLOB fetch. The delay is doubled for every further retry"
+                                    + " and a random delay of up to this amount is actually waited for, which spreads out the retries of many clients.");
+
+    /** The config parameter defining the maximum delay (in milliseconds) between retries. */
+    public static final ConfigOption<Long> RETRY_MAX_BACKOFF =
+            key("blob.client.retry.max-backoff")
+                    .defaultValue(10_000L)
+                    .withDescription(
+                            "The maximum delay in milliseconds between two retries of a failed BLOB fetch.");
+
+    /**
+     * The config parameter defining the number of consecutive failures after which the blob client
+     * stops trying a server address for a while.
+     */
+    public static final ConfigOption<Integer> CIRCUIT_BREAKER_FAILURE_THRESHOLD =
+            key("blob.client.circuit-breaker.failure-threshold")
+                    .defaultValue(3)
+                    .withDescription(
+                            "The number of consecutive failed requests to a blob server address after which the blob client"
+                                    + " prefers the other candidate addresses until the open duration has passed.");
+
+    /**
+     * The config parameter defining how long (in milliseconds) the blob client avoids a server
+     * address after too many consecutive failures.
+     */
+    public static final ConfigOption<Long> CIRCUIT_BREAKER_OPEN_DURATION =
+            key("blob.client.circuit-breaker.open-duration")
+                    .defaultValue(10_000L)
+                    .withDescription(
+                            "The time in milliseconds the blob client avoids a blob server address after too many consecutive failures."
+                                    + " Afterwards, a single request probes the address again.");
+
+    /**
+     * The config parameter defining further blob server addresses the blob client fails over to
+     * when fetching BLOBs.
+     */
+    public static final ConfigOption<String> FAILOVER_ADDRESSES =
+            key("blob.client.failover-addresses")
+                    .defaultValue("")
+                    .withDescription(
+                            "A comma-separated list of host:port addresses of further blob servers which the blob client fetches permanent"
+                                    + " BLOBs from when the current blob server fails, e.g. of standby JobManagers sharing the HA blob store.");
+
     /** The connection timeout in milliseconds for the blob client. */
     public static final ConfigOption<Integer> CONNECT_TIMEOUT =
             key("blob.client.connect.timeout")
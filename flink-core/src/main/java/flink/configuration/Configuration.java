@@ -226,6 +226,30 @@ public class Configuration {
     }
 
 
+    /**
+     * Adds the given value to the configuration object. The main key of the config option will be
+     * used to map the value.
+     *
+     * @param key the option specifying the key to be added
+     * @param value the value of the key/value pair to be added
+     */
+    public void setLong(ConfigOption<Long> key, long value) {
+        setValueInternal(key.key(), value);
+    }
+
+
+    /**
+     * Adds the given value to the configuration object. The main key of the config option will be
+     * used to map the value.
+     *
+     * @param key the option specifying the key to be added
+     * @param value the value of the key/value pair to be added
+     */
+    public void setBoolean(ConfigOption<Boolean> key, boolean value) {
+        setValueInternal(key.key(), value);
+    }
+
+
     /**
      * Returns the value associated with the given config option as a long integer.
      *
@@ -22,4 +22,27 @@ public class HighAvailabilityOptions {
                     .withDescription(
                             "Defines high-availability mode used for the cluster execution."
                                     + " To enable high-availability, set this mode to \"ZOOKEEPER\" or specify FQN of factory class.");
+
+    /**
+     * The ID of the Flink cluster, used to separate multiple Flink clusters Needs to be set for
+     * standalone clusters, is automatically inferred in YARN and Mesos.
+     */
+    public static final ConfigOption<String> HA_CLUSTER_ID =
+            key("high-availability.cluster-id")
+                    .defaultValue("/default")
+                    .withDeprecatedKeys(
+                            "high-availability.zookeeper.path.namespace",
+                            "recovery.zookeeper.path.namespace")
+                    .withDescription(
+                            "The ID of the Flink cluster, used to separate multiple Flink clusters from each other."
+                                    + " Needs to be set for standalone clusters but is automatically inferred in YARN.");
+
+    /** File system path (URI) where Flink persists metadata in high-availability setups. */
+    public static final ConfigOption<String> HA_STORAGE_PATH =
+            key("high-availability.storageDir")
+                    .noDefaultValue()
+                    .withDeprecatedKeys(
+                            "high-availability.zookeeper.storageDir", "recovery.zookeeper.storageDir")
+                    .withDescription(
+                            "File system path (URI) where Flink persists metadata in high-availability setups.");
 }
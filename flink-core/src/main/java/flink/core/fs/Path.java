@@ -220,6 +220,104 @@ public class Path implements IOReadableWritable, Serializable {
 
 
 
+    /**
+     * Checks if the directory of this path is absolute.
+     *
+     * @return <code>true</code> if the directory of this path is absolute, <code>false</code>
+     *     otherwise
+     */
+    public boolean isAbsolute() {
+        final int start = hasWindowsDrive(uri.getPath(), true) ? 3 : 0;
+        return uri.getPath().startsWith(SEPARATOR, start);
+    }
+
+    /**
+     * Returns the final component of this path, i.e., everything that follows the last separator.
+     *
+     * @return the final component of the path
+     */
+    public String getName() {
+        final String path = uri.getPath();
+        final int slash = path.lastIndexOf(SEPARATOR);
+        return path.substring(slash + 1);
+    }
+
+    /**
+     * Return full path.
+     *
+     * @return full path
+     */
+    public String getPath() {
+        return uri.getPath();
+    }
+
+    /**
+     * Returns the parent of a path, i.e., everything that precedes the last separator or <code>
+     * null</code> if at root.
+     *
+     * @return the parent of a path or <code>null</code> if at root.
+     */
+    public Path getParent() {
+        final String path = uri.getPath();
+        final int lastSlash = path.lastIndexOf('/');
+        final int start = hasWindowsDrive(path, true) ? 3 : 0;
+        if ((path.length() == start)
+                || // empty path
+                (lastSlash == start && path.length() == start + 1)) { // at root
+            return null;
+        }
+        String parent;
+        if (lastSlash == -1) {
+            parent = ".";
+        } else {
+            final int end = hasWindowsDrive(path, true) ? 3 : 0;
+            parent = path.substring(0, lastSlash == end ? end + 1 : lastSlash);
+        }
+        return new Path(uri.getScheme(), uri.getAuthority(), parent);
+    }
+
+    @Override
+    public String toString() {
+        // we can't use uri.toString(), which escapes everything, because we
+        // want illegal characters unescaped in the string, for glob processing, etc.
+        final StringBuilder buffer = new StringBuilder();
+        if (uri.getScheme() != null) {
+            buffer.append(uri.getScheme());
+            buffer.append(":");
+        }
+        if (uri.getAuthority() != null) {
+            buffer.append("//");
+            buffer.append(uri.getAuthority());
+        }
+        if (uri.getPath() != null) {
+            String path = uri.getPath();
+            if (path.indexOf('/') == 0
+                    && hasWindowsDrive(path, true)
+                    && // has windows drive
+                    uri.getScheme() == null
+                    && // but no scheme
+                    uri.getAuthority() == null) { // or authority
+                path = path.substring(1); // remove slash before drive
+            }
+            buffer.append(path);
+        }
+        return buffer.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Path)) {
+            return false;
+        }
+        Path that = (Path) o;
+        return this.uri.equals(that.uri);
+    }
+
+    @Override
+    public int hashCode() {
+        return uri.hashCode();
+    }
+
     @Override
     public void write(DataOutputView out) throws IOException {
 
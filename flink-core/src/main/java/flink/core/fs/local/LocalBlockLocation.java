@@ -0,0 +1,37 @@
+package flink.core.fs.local;
+
+import flink.core.fs.BlockLocation;
+
+/** Implementation of the {@link BlockLocation} interface for a local file system. */
+//@Internal
+public class LocalBlockLocation implements BlockLocation {
+
+    private final long length;
+
+    private final String[] hosts;
+
+    public LocalBlockLocation(final String host, final long length) {
+        this.hosts = new String[] {host};
+        this.length = length;
+    }
+
+    @Override
+    public String[] getHosts() {
+        return hosts;
+    }
+
+    @Override
+    public long getLength() {
+        return this.length;
+    }
+
+    @Override
+    public long getOffset() {
+        return 0;
+    }
+
+    @Override
+    public int compareTo(final BlockLocation o) {
+        return 0;
+    }
+}
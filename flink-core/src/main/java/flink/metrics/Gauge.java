@@ -0,0 +1,12 @@
+package flink.metrics;
+
+/** A Gauge is a {@link Metric} that calculates a specific value at a point in time. */
+public interface Gauge<T> extends Metric {
+
+    /**
+     * Calculates and returns the measured value.
+     *
+     * @return calculated value
+     */
+    T getValue();
+}
@@ -0,0 +1,31 @@
+package flink.metrics;
+
+/**
+ * Histogram interface to be used with Flink's metrics system.
+ *
+ * <p>The histogram allows to record values, get the current count of recorded values and create
+ * histogram statistics for the currently seen elements.
+ */
+public interface Histogram extends Metric {
+
+    /**
+     * Update the histogram with the given value.
+     *
+     * @param value Value to update the histogram with
+     */
+    void update(long value);
+
+    /**
+     * Get the count of seen elements.
+     *
+     * @return Count of seen elements
+     */
+    long getCount();
+
+    /**
+     * Create statistics for the currently recorded elements.
+     *
+     * @return Statistics about the currently recorded elements
+     */
+    HistogramStatistics getStatistics();
+}
@@ -0,0 +1,4 @@
+package flink.metrics;
+
+/** Common super interface for all metrics. */
+public interface Metric {}
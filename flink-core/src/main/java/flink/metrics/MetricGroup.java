@@ -0,0 +1,68 @@
+package flink.metrics;
+
+/**
+ * A MetricGroup is a named container for {@link Metric Metrics} and further metric subgroups.
+ *
+ * <p>Instances of this class can be used to register new metrics with Flink and to create a nested
+ * hierarchy based on the group names.
+ *
+ * <p>A MetricGroup is uniquely identified by its place in the hierarchy and name.
+ */
+public interface MetricGroup {
+
+    // ------------------------------------------------------------------------
+    //  Metrics
+    // ------------------------------------------------------------------------
+
+    /**
+     * Creates and registers a new {@link Counter} with Flink.
+     *
+     * @param name name of the counter
+     * @return the created counter
+     */
+    default Counter counter(String name) {
+        return counter(name, new SimpleCounter());
+    }
+
+    /**
+     * Registers a {@link Counter} with Flink.
+     *
+     * @param name name of the counter
+     * @param counter counter to register
+     * @param <C> counter type
+     * @return the given counter
+     */
+    <C extends Counter> C counter(String name, C counter);
+
+    /**
+     * Registers a new {@link Gauge} with Flink.
+     *
+     * @param name name of the gauge
+     * @param gauge gauge to register
+     * @param <T> return type of the gauge
+     * @return the given gauge
+     */
+    <T, G extends Gauge<T>> G gauge(String name, G gauge);
+
+    /**
+     * Registers a new {@link Histogram} with Flink.
+     *
+     * @param name name of the histogram
+     * @param histogram histogram to register
+     * @param <H> histogram type
+     * @return the registered histogram
+     */
+    <H extends Histogram> H histogram(String name, H histogram);
+
+    // ------------------------------------------------------------------------
+    // Groups
+    // ------------------------------------------------------------------------
+
+    /**
+     * Creates a new MetricGroup and adds it to this groups sub-groups.
+     *
+     * @param name name of the group
+     * @return the created group
+     */
+    MetricGroup addGroup(String name);
+}
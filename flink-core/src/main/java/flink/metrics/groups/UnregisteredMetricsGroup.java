@@ -0,0 +1,33 @@
+package flink.metrics.groups;
+
+import flink.metrics.Counter;
+import flink.metrics.Gauge;
+import flink.metrics.Histogram;
+import flink.metrics.MetricGroup;
+
+/**
+ * A special {@link MetricGroup} that does not register any metrics at the metrics registry and any
+ * reporters.
+ */
+public class UnregisteredMetricsGroup implements MetricGroup {
+
+    @Override
+    public <C extends Counter> C counter(String name, C counter) {
+        return counter;
+    }
+
+    @Override
+    public <T, G extends Gauge<T>> G gauge(String name, G gauge) {
+        return gauge;
+    }
+
+    @Override
+    public <H extends Histogram> H histogram(String name, H histogram) {
+        return histogram;
+    }
+
+    @Override
+    public MetricGroup addGroup(String name) {
+        return new UnregisteredMetricsGroup();
+    }
+}
@@ -59,6 +59,35 @@ public class AbstractID implements Comparable<AbstractID>, java.io.Serializable{
         this.upperPart = upperPart;
     }
 
+    // --------------------------------------------------------------------------------------------
+    //  Standard Utilities
+    // --------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj != null && obj.getClass() == getClass()) {
+            AbstractID that = (AbstractID) obj;
+            return that.lowerPart == this.lowerPart && that.upperPart == this.upperPart;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return ((int) this.lowerPart)
+                ^ ((int) (this.lowerPart >>> 32))
+                ^ ((int) this.upperPart)
+                ^ ((int) (this.upperPart >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return StringUtils.byteToHexString(getBytes());
+    }
+
     @Override
     public int compareTo(AbstractID o) {
         int diff1 = Long.compare(this.upperPart, o.upperPart);
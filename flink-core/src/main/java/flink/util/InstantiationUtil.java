@@ -1,8 +1,12 @@
 package flink.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 
 /**
  * @Description
@@ -22,4 +26,50 @@ public final class InstantiationUtil {
         }
     }
 
+    public static <T> T deserializeObject(byte[] bytes, ClassLoader cl)
+            throws IOException, ClassNotFoundException {
+        return deserializeObject(new ByteArrayInputStream(bytes), cl);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T deserializeObject(InputStream in, ClassLoader cl)
+            throws IOException, ClassNotFoundException {
+
+        final ClassLoader old = Thread.currentThread().getContextClassLoader();
+        // not using resource try to avoid AutoClosable's close() on the given stream
+        try {
+            ObjectInputStream oois = new ClassLoaderObjectInputStream(in, cl);
+            Thread.currentThread().setContextClassLoader(cl);
+            return (T) oois.readObject();
+        } finally {
+            Thread.currentThread().setContextClassLoader(old);
+        }
+    }
+
+    /** A custom ObjectInputStream that can load classes using a specific ClassLoader. */
+    public static class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        protected final ClassLoader classLoader;
+
+        public ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader)
+                throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            if (classLoader != null) {
+                String name = desc.getName();
+                try {
+                    return Class.forName(name, false, classLoader);
+                } catch (ClassNotFoundException ex) {
+                    // fall through to the default resolution below
+                }
+            }
+
+            return super.resolveClass(desc);
+        }
+    }
 }
@@ -9,6 +9,9 @@ package flink.util;
  */
 public class StringUtils {
 
+    private static final char[] HEX_CHARS = {
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
 
     /**
      * Checks if the string is null, empty, or contains only whitespace characters. A whitespace
@@ -31,4 +34,40 @@ public class StringUtils {
         return true;
     }
 
+    /**
+     * Given an array of bytes it will convert the bytes to a hex string representation of the
+     * bytes.
+     *
+     * @param bytes the bytes to convert in a hex string
+     * @param start start index, inclusively
+     * @param end end index, exclusively
+     * @return hex string representation of the byte array
+     */
+    public static String byteToHexString(final byte[] bytes, final int start, final int end) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes == null");
+        }
+
+        int length = end - start;
+        char[] out = new char[length * 2];
+
+        for (int i = start, j = 0; i < end; i++) {
+            out[j++] = HEX_CHARS[(0xF0 & bytes[i]) >>> 4];
+            out[j++] = HEX_CHARS[0x0F & bytes[i]];
+        }
+
+        return new String(out);
+    }
+
+    /**
+     * Given an array of bytes it will convert the bytes to a hex string representation of the
+     * bytes.
+     *
+     * @param bytes the bytes to convert in a hex string
+     * @return hex string representation of the byte array
+     */
+    public static String byteToHexString(final byte[] bytes) {
+        return byteToHexString(bytes, 0, bytes.length);
+    }
+
 }
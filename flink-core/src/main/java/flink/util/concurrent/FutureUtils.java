@@ -0,0 +1,23 @@
+package flink.util.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+
+/** A collection of utilities that expand the usage of {@link CompletableFuture}. */
+public class FutureUtils {
+
+    private FutureUtils() {}
+
+    /**
+     * Returns an exceptionally completed {@link CompletableFuture}.
+     *
+     * @param cause to complete the future with
+     * @param <T> type of the future
+     * @return An exceptionally completed CompletableFuture
+     */
+    public static <T> CompletableFuture<T> completedExceptionally(Throwable cause) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(cause);
+
+        return result;
+    }
+}
@@ -0,0 +1,660 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.configuration.BlobServerOptions;
+import flink.configuration.Configuration;
+import flink.configuration.SecurityOptions;
+import flink.runtime.net.SSLUtils;
+import flink.util.AbstractID;
+import flink.util.InstantiationUtil;
+import flink.util.concurrent.ExecutorThreadFactory;
+import flink.util.concurrent.FutureUtils;
+import org.apache.flink.shaded.netty4.io.netty.bootstrap.Bootstrap;
+import org.apache.flink.shaded.netty4.io.netty.buffer.ByteBuf;
+import org.apache.flink.shaded.netty4.io.netty.buffer.ByteBufInputStream;
+import org.apache.flink.shaded.netty4.io.netty.buffer.ByteBufOutputStream;
+import org.apache.flink.shaded.netty4.io.netty.channel.ChannelFuture;
+import org.apache.flink.shaded.netty4.io.netty.channel.ChannelFutureListener;
+import org.apache.flink.shaded.netty4.io.netty.channel.ChannelHandlerContext;
+import org.apache.flink.shaded.netty4.io.netty.channel.ChannelInitializer;
+import org.apache.flink.shaded.netty4.io.netty.channel.ChannelOption;
+import org.apache.flink.shaded.netty4.io.netty.channel.EventLoopGroup;
+import org.apache.flink.shaded.netty4.io.netty.channel.nio.NioEventLoopGroup;
+import org.apache.flink.shaded.netty4.io.netty.channel.socket.SocketChannel;
+import org.apache.flink.shaded.netty4.io.netty.channel.socket.nio.NioSocketChannel;
+import org.apache.flink.shaded.netty4.io.netty.handler.codec.ByteToMessageDecoder;
+import org.apache.flink.shaded.netty4.io.netty.handler.codec.DecoderException;
+import org.apache.flink.shaded.netty4.io.netty.handler.ssl.SslContext;
+import org.apache.flink.shaded.netty4.io.netty.handler.timeout.IdleStateEvent;
+import org.apache.flink.shaded.netty4.io.netty.handler.timeout.IdleStateHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static flink.runtime.blob.BlobServerProtocol.BUFFER_SIZE;
+import static flink.runtime.blob.BlobServerProtocol.GET_OPERATION;
+import static flink.runtime.blob.BlobServerProtocol.JOB_RELATED_CONTENT;
+import static flink.runtime.blob.BlobServerProtocol.JOB_UNRELATED_CONTENT;
+import static flink.runtime.blob.BlobServerProtocol.PUT_OPERATION;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_ERROR;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_OKAY;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_OVERLOADED;
+import static flink.util.Preconditions.checkArgument;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Non-blocking client for GET and PUT requests to the {@link BlobServer}.
+ *
+ * <p>Unlike {@link BlobClient}, requests do not block the calling thread: all transfers of this
+ * client share its event loop threads (see {@link BlobServerOptions#ASYNC_CLIENT_NUM_THREADS}), so
+ * many BLOBs can be fetched concurrently without a thread per transfer. Since the protocol serves
+ * one request at a time per connection, each request opens a connection of its own, i.e. the
+ * server's connection limits and request priorities apply as for blocking clients.
+ *
+ * <p>A request fails if the connection is idle for longer than {@link BlobServerOptions#SO_TIMEOUT}
+ * and, if given, once its own timeout expires. Files are read and written on the event loop.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class AsyncBlobClient implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncBlobClient.class);
+
+    /** Length of a serialized {@link BlobKey}: its hash, type and random component. */
+    private static final int BLOB_KEY_LENGTH = BlobKey.SIZE + 1 + AbstractID.SIZE;
+
+    /** The network address of the BLOB server. */
+    private final InetSocketAddress serverAddress;
+
+    /** The event loop threads shared by all transfers. */
+    private final EventLoopGroup eventLoopGroup;
+
+    /** Template for the connections of all requests. */
+    private final Bootstrap bootstrap;
+
+    /** SSL context of the connections or <tt>null</tt> if SSL is disabled. */
+    @Nullable private final SslContext sslContext;
+
+    /** Milliseconds a connection may be idle before its request fails (0 to disable). */
+    private final int idleTimeoutMillis;
+
+    /**
+     * Instantiates a new asynchronous BLOB client.
+     *
+     * @param serverAddress the network address of the BLOB server
+     * @param clientConfig additional configuration like SSL parameters required to connect to the
+     *     blob server
+     * @throws IOException thrown if setting up SSL failed
+     */
+    public AsyncBlobClient(InetSocketAddress serverAddress, Configuration clientConfig)
+            throws IOException {
+        this.serverAddress = checkNotNull(serverAddress);
+        this.idleTimeoutMillis = clientConfig.getInteger(BlobServerOptions.SO_TIMEOUT);
+
+        if (SecurityOptions.isInternalSSLEnabled(clientConfig)
+                && clientConfig.getBoolean(BlobServerOptions.SSL_ENABLED)) {
+            LOG.info("Using ssl connection to the blob server");
+            try {
+                this.sslContext = SSLUtils.createInternalNettyClientSSLContext(clientConfig);
+            } catch (Exception e) {
+                throw new IOException("Failed to initialize SSL for the blob client", e);
+            }
+        } else {
+            this.sslContext = null;
+        }
+
+        final int numThreads = clientConfig.getInteger(BlobServerOptions.ASYNC_CLIENT_NUM_THREADS);
+        checkArgument(numThreads > 0, "The number of event loop threads must be positive.");
+        this.eventLoopGroup =
+                new NioEventLoopGroup(numThreads, new ExecutorThreadFactory("blob-client-async"));
+        this.bootstrap =
+                new Bootstrap()
+                        .group(eventLoopGroup)
+                        .channel(NioSocketChannel.class)
+                        .option(
+                                ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                                clientConfig.getInteger(BlobServerOptions.CONNECT_TIMEOUT));
+    }
+
+    /**
+     * Downloads the given BLOB into the given file.
+     *
+     * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
+     * @param blobKey blob key associated with the requested file
+     * @param target the file to write to; deleted again if the download fails
+     * @return future of the downloaded file
+     */
+    public CompletableFuture<File> getAsync(@Nullable JobID jobId, BlobKey blobKey, Path target) {
+        return getAsync(jobId, blobKey, target, null);
+    }
+
+    /**
+     * Downloads the given BLOB into the given file within the given time.
+     *
+     * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
+     * @param blobKey blob key associated with the requested file
+     * @param target the file to write to; deleted again if the download fails
+     * @param timeout time the download may take (or <tt>null</tt> for no limit)
+     * @return future of the downloaded file, failing with a {@link TimeoutException} on timeout
+     */
+    public CompletableFuture<File> getAsync(
+            @Nullable JobID jobId, BlobKey blobKey, Path target, @Nullable Duration timeout) {
+        checkNotNull(blobKey);
+        checkNotNull(target);
+        checkArgument(
+                jobId != null || blobKey instanceof TransientBlobKey,
+                "permanent BLOBs must be job-related");
+
+        return start(new GetRequest(jobId, blobKey, target), timeout);
+    }
+
+    /**
+     * Uploads the given file to the BLOB server.
+     *
+     * @param jobId the ID of the job the BLOB belongs to (or <tt>null</tt> if job-unrelated)
+     * @param file the file to upload
+     * @param blobType whether the BLOB should become permanent or transient
+     * @return future of the computed BLOB key of the uploaded BLOB
+     */
+    public CompletableFuture<BlobKey> putAsync(
+            @Nullable JobID jobId, Path file, BlobKey.BlobType blobType) {
+        return putAsync(jobId, file, blobType, null);
+    }
+
+    /**
+     * Uploads the given file to the BLOB server within the given time.
+     *
+     * @param jobId the ID of the job the BLOB belongs to (or <tt>null</tt> if job-unrelated)
+     * @param file the file to upload
+     * @param blobType whether the BLOB should become permanent or transient
+     * @param timeout time the upload may take (or <tt>null</tt> for no limit)
+     * @return future of the computed BLOB key of the uploaded BLOB
+     */
+    public CompletableFuture<BlobKey> putAsync(
+            @Nullable JobID jobId,
+            Path file,
+            BlobKey.BlobType blobType,
+            @Nullable Duration timeout) {
+        checkNotNull(file);
+        checkNotNull(blobType);
+        checkArgument(
+                jobId != null || blobType == BlobKey.BlobType.TRANSIENT_BLOB,
+                "permanent BLOBs must be job-related");
+
+        return start(new PutRequest(jobId, file, blobType), timeout);
+    }
+
+    /**
+     * Connects a new channel for the given request.
+     *
+     * @return future of the request's outcome, failed right away if the client has been closed
+     */
+    private <T> CompletableFuture<T> start(Request<T> request, @Nullable Duration timeout) {
+        request.timeout = timeout;
+
+        if (eventLoopGroup.isShuttingDown()) {
+            return FutureUtils.completedExceptionally(
+                    new IOException("The BLOB client has been closed."));
+        }
+
+        final ChannelFuture connectFuture = connect(request);
+        if (connectFuture.isDone()) {
+            // e.g. rejected by event loops shutting down concurrently, which do not notify
+            // listeners anymore
+            failIfNotConnected(connectFuture, request);
+        } else {
+            connectFuture.addListener(
+                    (ChannelFutureListener) future -> failIfNotConnected(future, request));
+        }
+        // e.g. cancelled by the caller
+        request.result.whenComplete((value, failure) -> connectFuture.channel().close());
+
+        return request.result;
+    }
+
+    /** Fails the given request if its connection could not be established. */
+    private void failIfNotConnected(ChannelFuture connectFuture, Request<?> request) {
+        if (!connectFuture.isSuccess()) {
+            request.result.completeExceptionally(
+                    new IOException(
+                            "Could not connect to BlobServer at address " + serverAddress,
+                            connectFuture.cause()));
+        }
+    }
+
+    /** Connects a new channel whose pipeline ends with the given request. */
+    private ChannelFuture connect(Request<?> request) {
+        return bootstrap
+                .clone()
+                .handler(
+                        new ChannelInitializer<SocketChannel>() {
+                            @Override
+                            protected void initChannel(SocketChannel channel) {
+                                if (sslContext != null) {
+                                    channel.pipeline()
+                                            .addLast(
+                                                    sslContext.newHandler(
+                                                            channel.alloc(),
+                                                            serverAddress.getHostString(),
+                                                            serverAddress.getPort()));
+                                }
+                                channel.pipeline()
+                                        .addLast(
+                                                new IdleStateHandler(
+                                                        0,
+                                                        0,
+                                                        idleTimeoutMillis,
+                                                        TimeUnit.MILLISECONDS))
+                                        .addLast(request);
+                            }
+                        })
+                // resolve the host name for each connection: a failed resolution must not
+                // be cached forever
+                .connect(serverAddress.getHostString(), serverAddress.getPort());
+    }
+
+    /** Closes the client, failing all of its pending requests. */
+    @Override
+    public void close() {
+        eventLoopGroup.shutdownGracefully(0L, 0L, TimeUnit.MILLISECONDS).awaitUninterruptibly();
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * A request over its own connection: sends the request once connected and decodes the
+     * response, failing on errors, idleness and timeouts. All methods run on the channel's event
+     * loop.
+     */
+    private abstract static class Request<T> extends ByteToMessageDecoder {
+
+        /** The outcome of the request. */
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        /** Time the request may take or <tt>null</tt> for no limit. */
+        @Nullable Duration timeout;
+
+        /** Whether the response code has been received successfully. */
+        private boolean responseOkay;
+
+        @Nullable private ScheduledFuture<?> timeoutFuture;
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            if (timeout != null) {
+                timeoutFuture =
+                        ctx.executor()
+                                .schedule(
+                                        () ->
+                                                fail(
+                                                        ctx,
+                                                        new TimeoutException(
+                                                                "Request timed out after "
+                                                                        + timeout.toMillis()
+                                                                        + " ms.")),
+                                        timeout.toMillis(),
+                                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            super.channelActive(ctx);
+            try {
+                sendRequest(ctx);
+            } catch (Throwable t) {
+                fail(ctx, t);
+            }
+        }
+
+        @Override
+        protected final void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out)
+                throws Exception {
+            if (result.isDone()) {
+                in.skipBytes(in.readableBytes());
+            } else if (responseOkay) {
+                decodeResponse(ctx, in);
+            } else if (in.isReadable()) {
+                final int response = in.getUnsignedByte(in.readerIndex());
+                if (response == RETURN_OKAY) {
+                    in.skipBytes(1);
+                    responseOkay = true;
+                } else if (response == RETURN_ERROR) {
+                    // the error code, the serialized exception's length and the exception
+                    if (in.readableBytes() >= 5
+                            && in.readableBytes() >= 5 + in.getIntLE(in.readerIndex() + 1)) {
+                        in.skipBytes(1);
+                        final byte[] bytes = new byte[in.readIntLE()];
+                        in.readBytes(bytes);
+                        final Throwable cause =
+                                InstantiationUtil.deserializeObject(
+                                        bytes, ClassLoader.getSystemClassLoader());
+                        throw new IOException("Server side error: " + cause.getMessage(), cause);
+                    }
+                } else if (response == RETURN_OVERLOADED) {
+                    if (in.readableBytes() >= 5) {
+                        in.skipBytes(1);
+                        throw new BlobServerOverloadedException(in.readIntLE());
+                    }
+                } else {
+                    throw new IOException("Unrecognized response: " + response + '.');
+                }
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            // failures of decoding the response are wrapped by the decoder
+            fail(
+                    ctx,
+                    cause instanceof DecoderException && cause.getCause() != null
+                            ? cause.getCause()
+                            : cause);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object event) throws Exception {
+            if (event instanceof IdleStateEvent) {
+                fail(ctx, new SocketTimeoutException("Connection to the BLOB server is idle."));
+            } else {
+                super.userEventTriggered(ctx, event);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            fail(ctx, new EOFException("Premature end of response"));
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        protected void handlerRemoved0(ChannelHandlerContext ctx) {
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+            cleanup(!result.isDone() || result.isCompletedExceptionally());
+        }
+
+        /** Completes the request successfully and closes the connection. */
+        final void complete(ChannelHandlerContext ctx, T value) {
+            cleanup(false);
+            result.complete(value);
+            ctx.close();
+        }
+
+        /** Fails the request (if not completed yet) and closes the connection. */
+        final void fail(ChannelHandlerContext ctx, Throwable cause) {
+            if (!result.isDone()) {
+                cleanup(true);
+                result.completeExceptionally(cause);
+            }
+            ctx.close();
+        }
+
+        /**
+         * Writes the request's header to the given buffer.
+         *
+         * @param buf buffer to write to
+         * @param operation the request's operation
+         * @param priority the request's priority
+         * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
+         */
+        static void writeHeader(
+                ByteBuf buf,
+                byte operation,
+                BlobRequestPriority priority,
+                @Nullable JobID jobId) {
+            buf.writeByte(operation);
+            buf.writeByte(priority.ordinal());
+            if (jobId == null) {
+                buf.writeByte(JOB_UNRELATED_CONTENT);
+            } else {
+                buf.writeByte(JOB_RELATED_CONTENT);
+                buf.writeBytes(jobId.getBytes());
+            }
+        }
+
+        /** Sends the request once connected. */
+        abstract void sendRequest(ChannelHandlerContext ctx) throws Exception;
+
+        /** Decodes the response after a successful response code. */
+        abstract void decodeResponse(ChannelHandlerContext ctx, ByteBuf in) throws Exception;
+
+        /**
+         * Releases the request's resources; called at least once.
+         *
+         * @param failed whether the request failed
+         */
+        abstract void cleanup(boolean failed);
+    }
+
+    /** Downloads a BLOB into a file. */
+    private static final class GetRequest extends Request<File> {
+
+        @Nullable private final JobID jobId;
+
+        private final BlobKey blobKey;
+
+        private final Path target;
+
+        private final MessageDigest md = BlobUtils.createMessageDigest();
+
+        @Nullable private FileChannel fileChannel;
+
+        /** Number of bytes of the BLOB or -1 if not received yet. */
+        private int bytesToReceive = -1;
+
+        private int bytesReceived;
+
+        /** Whether the BLOB has been received and verified. */
+        private boolean received;
+
+        private GetRequest(@Nullable JobID jobId, BlobKey blobKey, Path target) {
+            this.jobId = jobId;
+            this.blobKey = blobKey;
+            this.target = target;
+        }
+
+        @Override
+        void sendRequest(ChannelHandlerContext ctx) throws IOException {
+            final ByteBuf header = ctx.alloc().buffer();
+            writeHeader(
+                    header,
+                    GET_OPERATION,
+                    BlobRequestPriority.getDefault(GET_OPERATION, blobKey.getType()),
+                    jobId);
+            try (ByteBufOutputStream os = new ByteBufOutputStream(header)) {
+                blobKey.writeToOutputStream(os);
+            }
+            ctx.writeAndFlush(header).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+        }
+
+        @Override
+        void decodeResponse(ChannelHandlerContext ctx, ByteBuf in) throws IOException {
+            if (received) {
+                return;
+            } else if (bytesToReceive < 0) {
+                if (in.readableBytes() < 4) {
+                    return;
+                }
+                bytesToReceive = in.readIntLE();
+                if (bytesToReceive < 0) {
+                    throw new FileNotFoundException();
+                }
+                fileChannel =
+                        FileChannel.open(
+                                target,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING,
+                                StandardOpenOption.WRITE);
+            }
+
+            final int len = Math.min(in.readableBytes(), bytesToReceive - bytesReceived);
+            for (ByteBuffer buffer : in.nioBuffers(in.readerIndex(), len)) {
+                md.update(buffer);
+            }
+            int written = 0;
+            while (written < len) {
+                written += in.readBytes(fileChannel, bytesReceived + written, len - written);
+            }
+            bytesReceived += len;
+
+            if (bytesReceived == bytesToReceive) {
+                received = true;
+                fileChannel.close();
+                // report the outcome to the server, which deletes transient BLOBs on success
+                if (!Arrays.equals(md.digest(), blobKey.getHash())) {
+                    ctx.writeAndFlush(ctx.alloc().buffer(1).writeByte(RETURN_ERROR));
+                    throw new IOException("Detected data corruption during transfer");
+                }
+                ctx.writeAndFlush(ctx.alloc().buffer(1).writeByte(RETURN_OKAY))
+                        .addListener(future -> complete(ctx, target.toFile()));
+            }
+        }
+
+        @Override
+        void cleanup(boolean failed) {
+            try {
+                if (fileChannel != null) {
+                    fileChannel.close();
+                }
+                if (failed) {
+                    Files.deleteIfExists(target);
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to clean up the download of BLOB {}/{}.", jobId, blobKey, e);
+            }
+        }
+    }
+
+    /** Uploads a file, sending it in length-prefixed chunks as long as the channel is writable. */
+    private static final class PutRequest extends Request<BlobKey> {
+
+        @Nullable private final JobID jobId;
+
+        private final Path file;
+
+        private final BlobKey.BlobType blobType;
+
+        private final MessageDigest md = BlobUtils.createMessageDigest();
+
+        @Nullable private FileChannel fileChannel;
+
+        /** Number of bytes of the file sent so far. */
+        private long position;
+
+        /** Whether the whole file has been sent. */
+        private boolean sent;
+
+        private PutRequest(@Nullable JobID jobId, Path file, BlobKey.BlobType blobType) {
+            this.jobId = jobId;
+            this.file = file;
+            this.blobType = blobType;
+        }
+
+        @Override
+        void sendRequest(ChannelHandlerContext ctx) throws IOException {
+            fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+
+            final ByteBuf header = ctx.alloc().buffer();
+            writeHeader(
+                    header,
+                    PUT_OPERATION,
+                    BlobRequestPriority.getDefault(PUT_OPERATION, blobType),
+                    jobId);
+            header.writeByte(blobType.ordinal());
+            ctx.write(header).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+            sendChunks(ctx);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            if (ctx.channel().isWritable() && !sent && !result.isDone()) {
+                try {
+                    sendChunks(ctx);
+                } catch (IOException e) {
+                    fail(ctx, e);
+                }
+            }
+            super.channelWritabilityChanged(ctx);
+        }
+
+        /** Sends chunks of the file until it is complete or the channel is not writable anymore. */
+        private void sendChunks(ChannelHandlerContext ctx) throws IOException {
+            while (!sent && ctx.channel().isWritable()) {
+                final ByteBuf chunk = ctx.alloc().heapBuffer(4 + BUFFER_SIZE);
+                final int read;
+                try {
+                    chunk.writerIndex(4);
+                    read = chunk.writeBytes(fileChannel, position, BUFFER_SIZE);
+                } catch (IOException e) {
+                    chunk.release();
+                    throw e;
+                }
+
+                if (read < 0) {
+                    // we are done: send a -1 as the last chunk's length
+                    chunk.setIntLE(0, -1).writerIndex(4);
+                    sent = true;
+                } else {
+                    chunk.setIntLE(0, read);
+                    md.update(chunk.array(), chunk.arrayOffset() + 4, read);
+                    position += read;
+                }
+                ctx.write(chunk).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+            }
+            ctx.flush();
+        }
+
+        @Override
+        void decodeResponse(ChannelHandlerContext ctx, ByteBuf in) throws IOException {
+            if (in.readableBytes() < BLOB_KEY_LENGTH) {
+                return;
+            }
+            final BlobKey remoteKey;
+            try (ByteBufInputStream is = new ByteBufInputStream(in.readSlice(BLOB_KEY_LENGTH))) {
+                remoteKey = BlobKey.readFromInputStream(is);
+            }
+
+            if (blobType != remoteKey.getType()) {
+                throw new IOException("Detected data corruption during transfer");
+            }
+            if (!Arrays.equals(md.digest(), remoteKey.getHash())) {
+                throw new IOException("Detected data corruption during transfer");
+            }
+            complete(ctx, remoteKey);
+        }
+
+        @Override
+        void cleanup(boolean failed) {
+            if (fileChannel != null) {
+                try {
+                    fileChannel.close();
+                } catch (IOException e) {
+                    LOG.debug("Failed to close the uploaded file {}.", file, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package flink.runtime.blob;
+
+import java.util.concurrent.TimeUnit;
+
+import static flink.util.Preconditions.checkArgument;
+
+/**
+ * Token bucket limiting the bandwidth of BLOB transfers to a given number of bytes per second.
+ *
+ * <p>The bucket holds up to one second worth of tokens (but at least one network buffer), i.e.
+ * short bursts may exceed the rate. Callers reserve tokens in order of arrival and then wait
+ * outside of any lock until the reservation is covered, so a large transfer cannot starve a
+ * later one beyond its fair share of the rate.
+ */
+final class BandwidthLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1L);
+
+    /** Tokens (bytes) added per second. */
+    private final long bytesPerSecond;
+
+    /** Maximum number of tokens the bucket can hold. */
+    private final long capacity;
+
+    /** Currently available tokens; negative if reserved ahead of time (guarded by this). */
+    private long tokens;
+
+    /** {@link System#nanoTime()} the tokens were last refilled at (guarded by this). */
+    private long lastRefillNanos;
+
+    BandwidthLimiter(long bytesPerSecond) {
+        checkArgument(bytesPerSecond > 0, "The bandwidth must be positive.");
+        this.bytesPerSecond = bytesPerSecond;
+        this.capacity = Math.max(bytesPerSecond, BlobServerProtocol.BUFFER_SIZE);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Creates a limiter for the given bandwidth, or returns <tt>null</tt> if it is unlimited.
+     *
+     * @param bytesPerSecond the bandwidth in bytes per second, a non-positive value for unlimited
+     * @return the limiter or <tt>null</tt>
+     */
+    static BandwidthLimiter create(long bytesPerSecond) {
+        return bytesPerSecond > 0 ? new BandwidthLimiter(bytesPerSecond) : null;
+    }
+
+    /**
+     * Takes the given number of tokens, waiting until they are available.
+     *
+     * @param bytes number of bytes about to be transferred
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void acquire(int bytes) throws InterruptedException {
+        final long waitNanos = reserve(bytes, System.nanoTime());
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Reserves the given number of tokens.
+     *
+     * @param bytes number of tokens to take
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return nanoseconds until the reservation is covered
+     */
+    synchronized long reserve(int bytes, long nowNanos) {
+        final long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            // split the elapsed time to avoid overflows after long idle periods
+            final long refill =
+                    elapsed / NANOS_PER_SECOND * bytesPerSecond
+                            + elapsed % NANOS_PER_SECOND * bytesPerSecond / NANOS_PER_SECOND;
+            if (refill > 0) {
+                tokens = Math.min(capacity, tokens + refill);
+                lastRefillNanos = nowNanos;
+            }
+        }
+
+        tokens -= bytes;
+        return tokens >= 0 ? 0L : -tokens * NANOS_PER_SECOND / bytesPerSecond;
+    }
+}
@@ -0,0 +1,71 @@
+package flink.runtime.blob;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Per-BLOB outcome of a bulk operation on a {@link BlobView} or {@link BlobStore}, e.g. {@link
+ * BlobView#getAll}.
+ *
+ * <p>A failure of the operation for one BLOB does not affect the others: every BLOB is either
+ * contained in {@link #getSucceeded()}, in {@link #getFailures()} or in neither of them if the
+ * operation returned <tt>false</tt> for it (e.g. because the BLOB does not exist).
+ *
+ * @param <K> type of the BLOB keys
+ */
+public final class BlobBulkResult<K extends BlobKey> {
+
+    private final Set<K> succeeded;
+
+    private final Map<K, Throwable> failures;
+
+    BlobBulkResult(Set<K> succeeded, Map<K, Throwable> failures) {
+        this.succeeded = Collections.unmodifiableSet(checkNotNull(succeeded));
+        this.failures = Collections.unmodifiableMap(checkNotNull(failures));
+    }
+
+    /** Returns the keys of all BLOBs the operation returned <tt>true</tt> for. */
+    public Set<K> getSucceeded() {
+        return succeeded;
+    }
+
+    /** Returns the failure of the operation per BLOB it failed for. */
+    public Map<K, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Rethrows the failures of the operation, if any.
+     *
+     * @param description description of the operation for the error message
+     * @throws IOException with the first failure as cause and all others suppressed
+     */
+    public void throwIfFailed(String description) throws IOException {
+        if (failures.isEmpty()) {
+            return;
+        }
+
+        IOException exception = null;
+        for (Map.Entry<K, Throwable> failure : failures.entrySet()) {
+            if (exception == null) {
+                exception =
+                        new IOException(
+                                "Failed to "
+                                        + description
+                                        + " for "
+                                        + failures.size()
+                                        + " BLOBs, e.g. "
+                                        + failure.getKey()
+                                        + '.',
+                                failure.getValue());
+            } else {
+                exception.addSuppressed(failure.getValue());
+            }
+        }
+        throw exception;
+    }
+}
@@ -0,0 +1,145 @@
+package flink.runtime.blob;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static flink.util.Preconditions.checkArgument;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Index of the content-defined chunks of the permanent BLOBs stored at the {@link BlobServer},
+ * used to assemble chunked uploads from the chunks the server already holds.
+ *
+ * <p>Chunks are identified by their content hash and located within the BLOB file they have last
+ * been uploaded with. Since BLOB files may be deleted at any time, the index may be stale: chunks
+ * are verified against their hash when being {@link #read}.
+ *
+ * <p>This class is thread-safe.
+ */
+final class BlobChunkIndex {
+
+    /** Location of each known chunk by its hash. */
+    private final ConcurrentHashMap<ChunkHash, Location> chunks = new ConcurrentHashMap<>();
+
+    /**
+     * Looks up the location of a chunk.
+     *
+     * @param hash the chunk's content hash
+     * @return the chunk's location or <tt>null</tt> if unknown
+     */
+    @Nullable
+    Location lookup(byte[] hash) {
+        return chunks.get(new ChunkHash(hash));
+    }
+
+    /**
+     * Adds the chunks of a stored BLOB file.
+     *
+     * @param file the BLOB file
+     * @param hashes the content hash of each chunk, in order
+     * @param lengths the length of each chunk, in order
+     */
+    void add(File file, byte[][] hashes, int[] lengths) {
+        checkNotNull(file);
+        checkArgument(
+                hashes.length == lengths.length,
+                "The number of chunk hashes and chunk lengths must match.");
+
+        long offset = 0L;
+        for (int i = 0; i < hashes.length; i++) {
+            chunks.put(new ChunkHash(hashes[i]), new Location(file, offset, lengths[i]));
+            offset += lengths[i];
+        }
+    }
+
+    /**
+     * Reads a chunk from its location, verifying it against its hash.
+     *
+     * <p>Since the chunk is verified, this does not need to hold the server's read lock.
+     *
+     * @param hash the chunk's content hash
+     * @param location the chunk's location
+     * @param buf buffer to read the chunk into
+     * @return whether the chunk could be read; a stale location is removed from the index
+     */
+    boolean read(byte[] hash, Location location, byte[] buf) {
+        boolean valid = false;
+        try (RandomAccessFile raf = new RandomAccessFile(location.file, "r")) {
+            raf.seek(location.offset);
+            raf.readFully(buf, 0, location.length);
+
+            final MessageDigest md = BlobUtils.createMessageDigest();
+            md.update(buf, 0, location.length);
+            valid = Arrays.equals(hash, md.digest());
+        } catch (IOException ignored) {
+            // the BLOB file has been deleted (or shortened) in the meantime
+        }
+
+        if (!valid) {
+            chunks.remove(new ChunkHash(hash), location);
+        }
+        return valid;
+    }
+
+    /**
+     * Removes the chunks located in the given directory, e.g. of a job's BLOBs being deleted.
+     *
+     * @param dir the directory
+     */
+    void removeDirectory(File dir) {
+        final String prefix = dir.getAbsolutePath() + File.separator;
+        chunks.values().removeIf(location -> location.file.getAbsolutePath().startsWith(prefix));
+    }
+
+    /** Returns the number of known chunks. */
+    int getNumChunks() {
+        return chunks.size();
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /** Location of a chunk within a BLOB file. */
+    static final class Location {
+
+        private final File file;
+
+        private final long offset;
+
+        private final int length;
+
+        private Location(File file, long offset, int length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        int getLength() {
+            return length;
+        }
+    }
+
+    /** Content hash of a chunk, usable as a map key. */
+    private static final class ChunkHash {
+
+        private final byte[] hash;
+
+        private ChunkHash(byte[] hash) {
+            this.hash = checkNotNull(hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ChunkHash && Arrays.equals(hash, ((ChunkHash) o).hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(hash);
+        }
+    }
+}
@@ -7,19 +7,66 @@ import flink.configuration.SecurityOptions;
 import flink.core.fs.FileSystem;
 import flink.core.fs.Path;
 import flink.runtime.net.SSLUtils;
+import flink.util.InstantiationUtil;
+import flink.util.concurrent.ExecutorThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static flink.runtime.blob.BlobKey.BlobType.PERMANENT_BLOB;
+import static flink.runtime.blob.BlobServerProtocol.BUFFER_SIZE;
+import static flink.runtime.blob.BlobServerProtocol.GET_IF_MODIFIED_OPERATION;
+import static flink.runtime.blob.BlobServerProtocol.GET_OPERATION;
+import static flink.runtime.blob.BlobServerProtocol.GET_VERIFIED_OPERATION;
+import static flink.runtime.blob.BlobServerProtocol.JOB_RELATED_CONTENT;
+import static flink.runtime.blob.BlobServerProtocol.JOB_UNRELATED_CONTENT;
+import static flink.runtime.blob.BlobServerProtocol.MAX_CHUNKS;
+import static flink.runtime.blob.BlobServerProtocol.PEERS_OPERATION;
+import static flink.runtime.blob.BlobServerProtocol.PEER_COMPLETE;
+import static flink.runtime.blob.BlobServerProtocol.PEER_DOWNLOADING;
+import static flink.runtime.blob.BlobServerProtocol.PUT_CHUNKED_OPERATION;
+import static flink.runtime.blob.BlobServerProtocol.PUT_OPERATION;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_CHUNKS_MISSING;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_ERROR;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_NOT_MODIFIED;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_OKAY;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_OVERLOADED;
+import static flink.runtime.blob.BlobServerProtocol.TREE_HASH_CHUNK_SIZE;
+import static flink.runtime.blob.BlobUtils.readFully;
+import static flink.runtime.blob.BlobUtils.readLength;
+import static flink.runtime.blob.BlobUtils.writeLength;
+import static flink.util.Preconditions.checkArgument;
 import static flink.util.Preconditions.checkNotNull;
 
 /**
@@ -33,9 +80,39 @@ public class BlobClient implements Closeable {
 
     private static final Logger LOG = LoggerFactory.getLogger(BlobClient.class);
 
+    /** Maximum number of times corrupted chunks of a verified GET are fetched again. */
+    static final int MAX_CHUNK_REFETCHES = 3;
+
+    /** Maximum number of threads downloading stripes (see {@link #getStripes}) in this JVM. */
+    private static final int MAX_STRIPE_DOWNLOAD_THREADS = 16;
+
+    /** Downloads the further stripes of striped downloads; shared by all clients. */
+    private static final ExecutorService STRIPE_DOWNLOAD_EXECUTOR = createStripeDownloadExecutor();
+
     /** The socket connection to the BLOB server. */
     private final Socket socket;
 
+    /**
+     * Priority of all requests, or <tt>null</tt> for the {@link BlobRequestPriority#getDefault
+     * default} of each request.
+     */
+    @Nullable private final BlobRequestPriority priority;
+
+    /** The network address of the BLOB server. */
+    private final InetSocketAddress serverAddress;
+
+    /** Configuration to open further connections with, e.g. for striped downloads. */
+    private final Configuration clientConfig;
+
+    /** Whether files are uploaded in content-defined chunks (see {@link #putChunked}). */
+    private final boolean chunkedUpload;
+
+    /** Maximum number of connections to download a BLOB over (see {@link #getVerified}). */
+    private final int downloadStripes;
+
+    /** Minimum number of bytes of a BLOB per stripe. */
+    private final long minStripeSize;
+
     /**
      * Instantiates a new BLOB client.
      *
@@ -46,6 +123,31 @@ public class BlobClient implements Closeable {
      */
     public BlobClient(InetSocketAddress serverAddress, Configuration clientConfig)
             throws IOException {
+        this(serverAddress, clientConfig, null);
+    }
+
+    /**
+     * Instantiates a new BLOB client sending all requests with the given priority.
+     *
+     * @param serverAddress the network address of the BLOB server
+     * @param clientConfig additional configuration like SSL parameters required to connect to the
+     *     blob server
+     * @param priority priority of all requests, or <tt>null</tt> to derive it from the request's
+     *     type
+     * @throws IOException thrown if the connection to the BLOB server could not be established
+     */
+    public BlobClient(
+            InetSocketAddress serverAddress,
+            Configuration clientConfig,
+            @Nullable BlobRequestPriority priority)
+            throws IOException {
+        this.priority = priority;
+        this.serverAddress = checkNotNull(serverAddress);
+        this.clientConfig = checkNotNull(clientConfig);
+        this.chunkedUpload = clientConfig.getBoolean(BlobServerOptions.CHUNKED_UPLOAD_ENABLED);
+        this.downloadStripes = clientConfig.getInteger(BlobServerOptions.DOWNLOAD_NUM_STRIPES);
+        this.minStripeSize =
+                Math.max(1L, clientConfig.getLong(BlobServerOptions.DOWNLOAD_MIN_STRIPE_SIZE));
         Socket socket = null;
 
         try {
@@ -55,6 +157,9 @@ public class BlobClient implements Closeable {
                 LOG.info("Using ssl connection to the blob server");
 
                 socket = SSLUtils.createSSLClientSocketFactory(clientConfig).createSocket();
+            } else if (clientConfig.getBoolean(BlobServerOptions.ZERO_COPY_RECEIVE_ENABLED)) {
+                // a socket with a channel to transfer received BLOBs to files from
+                socket = SocketChannel.open().socket();
             } else {
                 socket = new Socket();
             }
@@ -77,6 +182,1305 @@ public class BlobClient implements Closeable {
 
 
 
+    /**
+     * Downloads the given BLOB from the given server and stores its contents to a (local) file.
+     *
+     * <p>Transient BLOB files are deleted after a successful copy of the server's data into the
+     * given <tt>localJarFile</tt>.
+     *
+     * <p>If <tt>localJarFile</tt> already exists, e.g. a copy surviving a restart, it is only
+     * revalidated with the server and not transferred again if it matches the BLOB (see {@link
+     * #getIfModified}).
+     *
+     * <p>If {@link BlobServerOptions#VERIFIED_DOWNLOAD_ENABLED} is set or downloads are striped,
+     * permanent BLOBs are downloaded chunk by chunk (see {@link #getVerified}).
+     *
+     * <p>Failed downloads are retried as the given policy decides, possibly from another server.
+     *
+     * @param jobId job ID the BLOB belongs to or <tt>null</tt> if job-unrelated
+     * @param blobKey BLOB key
+     * @param localJarFile the local file to write to
+     * @param serverAddress address of the server to download from
+     * @param blobClientConfig client configuration for the connection
+     * @param retryPolicy decides where and when to retry
+     * @param numFetchRetries number of retries before failing
+     * @throws IOException if an I/O error occurs during the download
+     */
+    static void downloadFromBlobServer(
+            @Nullable JobID jobId,
+            BlobKey blobKey,
+            File localJarFile,
+            InetSocketAddress serverAddress,
+            Configuration blobClientConfig,
+            BlobClientRetryPolicy retryPolicy,
+            int numFetchRetries)
+            throws IOException {
+
+        LOG.info("Downloading {}/{} from {}", jobId, blobKey, serverAddress);
+        final boolean verifiedDownload =
+                blobClientConfig.getBoolean(BlobServerOptions.VERIFIED_DOWNLOAD_ENABLED)
+                        || blobClientConfig.getInteger(BlobServerOptions.DOWNLOAD_NUM_STRIPES) > 1;
+
+        // loop over retries
+        int attempt = 0;
+        while (true) {
+            final InetSocketAddress address = retryPolicy.selectAddress(serverAddress, attempt);
+            try (final BlobClient bc = new BlobClient(address, blobClientConfig)) {
+                if (verifiedDownload
+                        && blobKey instanceof PermanentBlobKey
+                        && !localJarFile.exists()) {
+                    bc.getVerified(jobId, (PermanentBlobKey) blobKey, localJarFile, retryPolicy);
+                } else if (!bc.getIfModified(jobId, blobKey, localJarFile)) {
+                    LOG.info(
+                            "Local copy {} of {}/{} is up to date.",
+                            localJarFile,
+                            jobId,
+                            blobKey);
+                }
+
+                retryPolicy.recordSuccess(address);
+                return;
+            } catch (Throwable t) {
+                retryPolicy.recordFailure(address, t);
+                String message =
+                        "Failed to fetch BLOB "
+                                + jobId
+                                + "/"
+                                + blobKey
+                                + " from "
+                                + address
+                                + " and store it under "
+                                + localJarFile.getAbsolutePath();
+                if (attempt < numFetchRetries) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.error(message + " Retrying...", t);
+                    } else {
+                        LOG.error(message + " Retrying...");
+                    }
+                } else {
+                    LOG.error(message + " No retries left.", t);
+                    throw new IOException(message, t);
+                }
+                retryPolicy.awaitRetry(attempt, t);
+
+                // retry
+                ++attempt;
+                LOG.info("Downloading {}/{} (retry {})", jobId, blobKey, attempt);
+            }
+        } // end loop over retries
+    }
+
+    /**
+     * Opens a stream on the given BLOB from the {@link BlobServer} without storing it locally.
+     *
+     * <p>Retries are only possible until the server accepted the request, i.e. a failure while
+     * reading from the returned stream is not retried. The digest of the data is verified once
+     * the stream has been fully read.
+     *
+     * @param jobId job ID the BLOB belongs to or <tt>null</tt> if job-unrelated
+     * @param blobKey BLOB key
+     * @param serverAddress address of the {@link BlobServer} to use for fetching the BLOB
+     * @param blobClientConfig configuration for creating the {@link BlobClient}
+     * @param retryPolicy decides where and when to retry
+     * @param numFetchRetries number of retries before failing
+     * @return stream on the BLOB's content which closes the connection when being closed
+     * @throws IOException if the request failed even after retrying
+     */
+    static InputStream openStreamFromBlobServer(
+            @Nullable JobID jobId,
+            BlobKey blobKey,
+            InetSocketAddress serverAddress,
+            Configuration blobClientConfig,
+            BlobClientRetryPolicy retryPolicy,
+            int numFetchRetries)
+            throws IOException {
+
+        LOG.debug("Streaming {}/{} from {}", jobId, blobKey, serverAddress);
+
+        // loop over retries
+        int attempt = 0;
+        while (true) {
+            final InetSocketAddress address = retryPolicy.selectAddress(serverAddress, attempt);
+            BlobClient bc = null;
+            try {
+                bc = new BlobClient(address, blobClientConfig);
+                final InputStream is = new ClosingInputStream(bc.getInternal(jobId, blobKey), bc);
+                retryPolicy.recordSuccess(address);
+                return is;
+            } catch (Throwable t) {
+                if (bc != null) {
+                    BlobUtils.closeSilently(bc.socket, LOG);
+                }
+                retryPolicy.recordFailure(address, t);
+
+                String message =
+                        "Failed to open a stream on BLOB "
+                                + jobId
+                                + "/"
+                                + blobKey
+                                + " from "
+                                + address
+                                + '.';
+                if (attempt < numFetchRetries) {
+                    LOG.debug(message + " Retrying...", t);
+                } else {
+                    LOG.error(message + " No retries left.", t);
+                    throw new IOException(message, t);
+                }
+                retryPolicy.awaitRetry(attempt, t);
+
+                ++attempt;
+            }
+        } // end loop over retries
+    }
+
+    private static ExecutorService createStripeDownloadExecutor() {
+        final ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(
+                        MAX_STRIPE_DOWNLOAD_THREADS,
+                        MAX_STRIPE_DOWNLOAD_THREADS,
+                        60L,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(),
+                        new ExecutorThreadFactory("blob-stripe-download"));
+        // do not keep idle threads around
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+
+    public boolean isClosed() {
+        return this.socket.isClosed();
+    }
+
+    public boolean isConnected() {
+        return socket.isConnected();
+    }
+
+    // --------------------------------------------------------------------------------------------
+    //  GET
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Downloads the BLOB identified by the given BLOB key from the BLOB server.
+     *
+     * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
+     * @param blobKey blob key associated with the requested file
+     * @return an input stream to read the retrieved data from
+     * @throws java.io.FileNotFoundException if there is no such file;
+     * @throws IOException if an I/O error occurs during the download
+     */
+    BlobInputStream getInternal(@Nullable JobID jobId, BlobKey blobKey) throws IOException {
+
+        if (this.socket.isClosed()) {
+            throw new IllegalStateException(
+                    "BLOB Client is not connected. "
+                            + "Client has been shut down or encountered an error before.");
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(
+                    "GET BLOB {}/{} from {}.", jobId, blobKey, socket.getLocalSocketAddress());
+        }
+
+        try {
+            OutputStream os = this.socket.getOutputStream();
+            InputStream is = this.socket.getInputStream();
+
+            // Send GET header
+            sendGetHeader(
+                    os,
+                    GET_OPERATION,
+                    jobId,
+                    blobKey,
+                    getPriority(GET_OPERATION, blobKey.getType()));
+            receiveAndCheckGetResponse(is);
+
+            return new BlobInputStream(is, blobKey, os);
+        } catch (BlobServerOverloadedException e) {
+            BlobUtils.closeSilently(socket, LOG);
+            throw e;
+        } catch (Throwable t) {
+            BlobUtils.closeSilently(socket, LOG);
+            throw new IOException("GET operation failed: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Downloads the BLOB identified by the given BLOB key into the given file, unless the file
+     * already holds the BLOB.
+     *
+     * <p>An existing file is revalidated with a conditional GET: the server compares the size and
+     * hash of the file with its own copy and only sends the BLOB if they differ, in which case
+     * the file is overwritten. This also checks that the BLOB still exists at the server.
+     *
+     * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
+     * @param blobKey blob key associated with the requested file
+     * @param localFile the local file to revalidate or write to
+     * @return <tt>true</tt> if the BLOB was transferred, <tt>false</tt> if the file matched
+     * @throws java.io.FileNotFoundException if there is no such BLOB at the server;
+     * @throws IOException if an I/O error occurs during the download
+     */
+    boolean getIfModified(@Nullable JobID jobId, BlobKey blobKey, File localFile)
+            throws IOException {
+        if (!localFile.exists()) {
+            receiveToFile(getInternal(jobId, blobKey), localFile);
+            return true;
+        }
+
+        if (this.socket.isClosed()) {
+            throw new IllegalStateException(
+                    "BLOB Client is not connected. "
+                            + "Client has been shut down or encountered an error before.");
+        }
+
+        final long fileSize = localFile.length();
+        final int heldSize;
+        final byte[] heldHash;
+        if (fileSize <= Integer.MAX_VALUE) {
+            heldSize = (int) fileSize;
+            heldHash = hash(localFile);
+        } else {
+            // a copy exceeding the protocol's limits cannot match
+            heldSize = -1;
+            heldHash = new byte[BlobKey.SIZE];
+        }
+
+        try {
+            OutputStream os = this.socket.getOutputStream();
+            InputStream is = this.socket.getInputStream();
+
+            // Send the conditional GET header
+            sendGetHeader(
+                    os,
+                    GET_IF_MODIFIED_OPERATION,
+                    jobId,
+                    blobKey,
+                    getPriority(GET_IF_MODIFIED_OPERATION, blobKey.getType()));
+            writeLength(heldSize, os);
+            os.write(heldHash);
+
+            final int response = is.read();
+            if (response == RETURN_NOT_MODIFIED) {
+                return false;
+            }
+            checkGetResponse(response, is);
+
+            receiveToFile(new BlobInputStream(is, blobKey, os), localFile);
+            return true;
+        } catch (BlobServerOverloadedException e) {
+            BlobUtils.closeSilently(socket, LOG);
+            throw e;
+        } catch (Throwable t) {
+            BlobUtils.closeSilently(socket, LOG);
+            throw new IOException("GET operation failed: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Downloads the given permanent BLOB into the given file, verifying it chunk by chunk.
+     *
+     * <p>The server sends the hashes of the BLOB's chunks of {@link
+     * BlobServerProtocol#TREE_HASH_CHUNK_SIZE} bytes along with the BLOB, so corrupted chunks are
+     * detected as they arrive and only they are fetched again, up to {@link
+     * #MAX_CHUNK_REFETCHES} times. Finally, the whole content is verified against the key.
+     *
+     * <p>If configured via {@link BlobServerOptions#DOWNLOAD_NUM_STRIPES}, a large BLOB is split
+     * into stripes of consecutive chunks which are fetched concurrently over separate connections
+     * and written to their positions in the file.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey blob key associated with the requested file
+     * @param localFile the local file to write to
+     * @throws java.io.FileNotFoundException if there is no such BLOB at the server;
+     * @throws IOException if an I/O error occurs during the download or corrupted chunks remain
+     */
+    void getVerified(JobID jobId, PermanentBlobKey blobKey, File localFile) throws IOException {
+        getVerified(jobId, blobKey, localFile, null);
+    }
+
+    /**
+     * Downloads the given permanent BLOB into the given file, verifying it chunk by chunk (see
+     * {@link #getVerified(JobID, PermanentBlobKey, File)}).
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey blob key associated with the requested file
+     * @param localFile the local file to write to
+     * @param retryPolicy policy to record the outcome of further connections of striped downloads
+     *     with (or <tt>null</tt>)
+     * @throws java.io.FileNotFoundException if there is no such BLOB at the server;
+     * @throws IOException if an I/O error occurs during the download or corrupted chunks remain
+     */
+    void getVerified(
+            JobID jobId,
+            PermanentBlobKey blobKey,
+            File localFile,
+            @Nullable BlobClientRetryPolicy retryPolicy)
+            throws IOException {
+        if (this.socket.isClosed()) {
+            throw new IllegalStateException(
+                    "BLOB Client is not connected. "
+                            + "Client has been shut down or encountered an error before.");
+        }
+        checkNotNull(jobId);
+        checkNotNull(blobKey);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(
+                    "Verified GET BLOB {}/{} from {}.",
+                    jobId,
+                    blobKey,
+                    socket.getLocalSocketAddress());
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(localFile, "rw")) {
+            final FileChannel channel = raf.getChannel();
+
+            // with striping, learn the BLOB's size first
+            final VerifiedChunks blob;
+            final int numStripes;
+            if (downloadStripes > 1) {
+                blob = requestVerifiedChunks(jobId, blobKey, 0, 0);
+                numStripes =
+                        (int) Math.max(1, Math.min(downloadStripes, blob.length / minStripeSize));
+            } else {
+                blob = null;
+                numStripes = 1;
+            }
+
+            // the content's hash if received in order
+            MessageDigest md = null;
+            List<Integer> corrupted;
+            if (numStripes > 1) {
+                raf.setLength(blob.length);
+                corrupted = getStripes(jobId, blobKey, blob, numStripes, channel, retryPolicy);
+            } else {
+                md = BlobUtils.createMessageDigest();
+                final VerifiedChunks all =
+                        requestVerifiedChunks(jobId, blobKey, 0, Integer.MAX_VALUE);
+                raf.setLength(all.length);
+                corrupted = receiveVerifiedChunks(all, 0, all.getNumChunks(), channel, md);
+            }
+
+            int attempt = 0;
+            while (!corrupted.isEmpty()) {
+                if (++attempt > MAX_CHUNK_REFETCHES) {
+                    throw new IOException(
+                            "Chunks " + corrupted + " are corrupted after all re-fetches.");
+                }
+                LOG.warn(
+                        "Re-fetching corrupted chunks {} of BLOB {}/{}.", corrupted, jobId, blobKey);
+
+                // request each range of consecutive corrupted chunks
+                final List<Integer> stillCorrupted = new ArrayList<>();
+                int i = 0;
+                while (i < corrupted.size()) {
+                    int j = i + 1;
+                    while (j < corrupted.size() && corrupted.get(j) == corrupted.get(j - 1) + 1) {
+                        j++;
+                    }
+                    final int first = corrupted.get(i);
+                    final VerifiedChunks range =
+                            requestVerifiedChunks(jobId, blobKey, first, j - i);
+                    stillCorrupted.addAll(
+                            receiveVerifiedChunks(range, first, first + j - i, channel, null));
+                    i = j;
+                }
+                corrupted = stillCorrupted;
+            }
+
+            final byte[] contentHash = md != null && attempt == 0 ? md.digest() : hash(localFile);
+            if (!Arrays.equals(contentHash, blobKey.getHash())) {
+                throw new IOException("Detected data corruption during transfer");
+            }
+        } catch (BlobServerOverloadedException e) {
+            BlobUtils.closeSilently(socket, LOG);
+            throw e;
+        } catch (Throwable t) {
+            BlobUtils.closeSilently(socket, LOG);
+            throw new IOException("GET operation failed: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Downloads the chunks of the given permanent BLOB in stripes of consecutive chunks: the first
+     * stripe over this client's connection, the others concurrently over connections of their own
+     * on the {@link #STRIPE_DOWNLOAD_EXECUTOR}.
+     *
+     * <p>A stripe whose connection failed, e.g. because the server is overloaded, is fetched again
+     * over this client's connection, and so is a stripe which has not started yet once this
+     * client's own stripe is complete.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey blob key associated with the requested file
+     * @param blob the BLOB's length and chunk hashes
+     * @param numStripes number of stripes
+     * @param channel the (preallocated) local file to write to
+     * @param retryPolicy policy to record the outcome of the stripes' connections with (or
+     *     <tt>null</tt>)
+     * @return the indices of the corrupted chunks, in order
+     * @throws IOException if an I/O error occurs during the download
+     */
+    private List<Integer> getStripes(
+            JobID jobId,
+            PermanentBlobKey blobKey,
+            VerifiedChunks blob,
+            int numStripes,
+            FileChannel channel,
+            @Nullable BlobClientRetryPolicy retryPolicy)
+            throws IOException {
+        final int numChunks = blob.getNumChunks();
+        final int chunksPerStripe = (numChunks + numStripes - 1) / numStripes;
+        LOG.debug(
+                "Downloading BLOB {}/{} in {} stripes of {} chunks.",
+                jobId,
+                blobKey,
+                numStripes,
+                chunksPerStripe);
+
+        final List<Stripe> stripes = new ArrayList<>();
+        try {
+            for (int first = chunksPerStripe; first < numChunks; first += chunksPerStripe) {
+                final Stripe stripe =
+                        new Stripe(first, Math.min(first + chunksPerStripe, numChunks));
+                stripes.add(stripe);
+                STRIPE_DOWNLOAD_EXECUTOR.execute(
+                        () -> {
+                            if (stripe.claimed.compareAndSet(false, true)) {
+                                getStripe(jobId, blobKey, blob, stripe, channel, retryPolicy);
+                            }
+                        });
+            }
+
+            final List<Integer> corrupted = new ArrayList<>();
+            final int firstLast = Math.min(chunksPerStripe, numChunks);
+            corrupted.addAll(
+                    receiveStripe(this, jobId, blobKey, blob, new Stripe(0, firstLast), channel));
+            for (Stripe stripe : stripes) {
+                if (stripe.claimed.compareAndSet(false, true)) {
+                    // not started yet, e.g. because all shared threads are busy
+                    corrupted.addAll(
+                            receiveStripe(this, jobId, blobKey, blob, stripe, channel));
+                    continue;
+                }
+
+                try {
+                    corrupted.addAll(stripe.result.get());
+                } catch (ExecutionException e) {
+                    LOG.warn(
+                            "Failed to download chunks {} to {} of BLOB {}/{} over a connection of their own. Fetching them again.",
+                            stripe.first,
+                            stripe.last - 1,
+                            jobId,
+                            blobKey,
+                            e.getCause());
+                    corrupted.addAll(
+                            receiveStripe(this, jobId, blobKey, blob, stripe, channel));
+                }
+            }
+            return corrupted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading stripes.");
+        } finally {
+            // stripes which have not started yet are not needed anymore
+            for (Stripe stripe : stripes) {
+                stripe.claimed.set(true);
+            }
+        }
+    }
+
+    /**
+     * Downloads the given stripe over a connection of its own and completes the stripe's result.
+     */
+    private void getStripe(
+            JobID jobId,
+            PermanentBlobKey blobKey,
+            VerifiedChunks blob,
+            Stripe stripe,
+            FileChannel channel,
+            @Nullable BlobClientRetryPolicy retryPolicy) {
+        try (BlobClient client = new BlobClient(serverAddress, clientConfig, priority)) {
+            stripe.result.complete(receiveStripe(client, jobId, blobKey, blob, stripe, channel));
+            if (retryPolicy != null) {
+                retryPolicy.recordSuccess(serverAddress);
+            }
+        } catch (Throwable t) {
+            if (retryPolicy != null) {
+                retryPolicy.recordFailure(serverAddress, t);
+            }
+            stripe.result.completeExceptionally(t);
+        }
+    }
+
+    /**
+     * Requests the chunks of the given stripe over the given client's connection and writes them
+     * to their positions in the file.
+     *
+     * @return the indices of the corrupted chunks, in order
+     */
+    private static List<Integer> receiveStripe(
+            BlobClient client,
+            JobID jobId,
+            PermanentBlobKey blobKey,
+            VerifiedChunks blob,
+            Stripe stripe,
+            FileChannel channel)
+            throws IOException {
+        final VerifiedChunks chunks =
+                client.requestVerifiedChunks(
+                        jobId, blobKey, stripe.first, stripe.last - stripe.first);
+        if (chunks.length != blob.length) {
+            throw new IOException("The BLOB's size changed.");
+        }
+        return client.receiveVerifiedChunks(chunks, stripe.first, stripe.last, channel, null);
+    }
+
+    /**
+     * Requests a range of chunks of the given permanent BLOB and receives the response header.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey blob key associated with the requested file
+     * @param firstChunk index of the first chunk to request
+     * @param maxChunks maximum number of chunks to request
+     * @return the BLOB's length and chunk hashes, followed by the chunks in the stream
+     * @throws IOException if an I/O error occurs or the server responded with an error
+     */
+    private VerifiedChunks requestVerifiedChunks(
+            JobID jobId, PermanentBlobKey blobKey, int firstChunk, int maxChunks)
+            throws IOException {
+        final OutputStream os = this.socket.getOutputStream();
+        final InputStream is = this.socket.getInputStream();
+
+        // Send the verified GET header and the range of chunks
+        sendGetHeader(
+                os,
+                GET_VERIFIED_OPERATION,
+                jobId,
+                blobKey,
+                getPriority(GET_VERIFIED_OPERATION, blobKey.getType()));
+        writeLength(firstChunk, os);
+        writeLength(maxChunks, os);
+        receiveAndCheckGetResponse(is);
+
+        // Receive the hashes of all chunks
+        final int blobLen = readLength(is);
+        final int numChunks = readLength(is);
+        if (blobLen < 0 || numChunks != BlobTreeHashes.getNumChunks(blobLen)) {
+            throw new IOException("Invalid chunks of a BLOB of " + blobLen + " bytes.");
+        }
+        final byte[][] chunkHashes = new byte[numChunks][BlobKey.SIZE];
+        for (byte[] chunkHash : chunkHashes) {
+            readFully(is, chunkHash, 0, BlobKey.SIZE, "chunk hash");
+        }
+        return new VerifiedChunks(blobLen, chunkHashes);
+    }
+
+    /**
+     * Receives the requested chunks and writes them to their position in the given file,
+     * verifying each of them.
+     *
+     * @param blob the BLOB's length and chunk hashes
+     * @param firstChunk index of the first chunk requested
+     * @param lastChunk index after the last chunk requested
+     * @param channel the local file to write to
+     * @param md digest to update with the content in order (or <tt>null</tt>)
+     * @return the indices of the corrupted chunks
+     * @throws IOException if an I/O error occurs during the download
+     */
+    private List<Integer> receiveVerifiedChunks(
+            VerifiedChunks blob,
+            int firstChunk,
+            int lastChunk,
+            FileChannel channel,
+            @Nullable MessageDigest md)
+            throws IOException {
+        final InputStream is = this.socket.getInputStream();
+        final List<Integer> corrupted = new ArrayList<>();
+        final MessageDigest chunkMd = BlobUtils.createMessageDigest();
+        final byte[] buf = new byte[BUFFER_SIZE];
+
+        for (int chunk = firstChunk; chunk < Math.min(lastChunk, blob.getNumChunks()); chunk++) {
+            long position = (long) chunk * TREE_HASH_CHUNK_SIZE;
+            int remaining = BlobTreeHashes.getChunkLength(blob.length, chunk);
+            while (remaining > 0) {
+                final int len = Math.min(BUFFER_SIZE, remaining);
+                readFully(is, buf, 0, len, "BLOB");
+                chunkMd.update(buf, 0, len);
+                if (md != null) {
+                    md.update(buf, 0, len);
+                }
+
+                final ByteBuffer toWrite = ByteBuffer.wrap(buf, 0, len);
+                while (toWrite.hasRemaining()) {
+                    position += channel.write(toWrite, position);
+                }
+                remaining -= len;
+            }
+
+            if (!Arrays.equals(blob.chunkHashes[chunk], chunkMd.digest())) {
+                LOG.debug("Chunk {} of a BLOB is corrupted.", chunk);
+                corrupted.add(chunk);
+            }
+        }
+        return corrupted;
+    }
+
+    /** Computes the hash of the given file's content like a {@link BlobKey}. */
+    private static byte[] hash(File file) throws IOException {
+        final MessageDigest md = BlobUtils.createMessageDigest();
+        final byte[] buf = new byte[BUFFER_SIZE];
+        try (InputStream is = new FileInputStream(file)) {
+            int read;
+            while ((read = is.read(buf)) >= 0) {
+                md.update(buf, 0, read);
+            }
+        }
+        return md.digest();
+    }
+
+    /**
+     * Writes the received BLOB to the given file. If the connection has a channel (see {@link
+     * BlobServerOptions#ZERO_COPY_RECEIVE_ENABLED}), the data is transferred from the channel to
+     * the file without copying it through heap buffers.
+     *
+     * @param is stream of the BLOB being received
+     * @param file the file to write to
+     * @throws IOException if an I/O error occurs or the data does not match the BLOB key
+     */
+    private void receiveToFile(BlobInputStream is, File file) throws IOException {
+        final SocketChannel channel = socket.getChannel();
+        if (channel == null) {
+            copyToFile(is, file);
+            return;
+        }
+
+        try (FileChannel fileChannel =
+                FileChannel.open(
+                        file.toPath(),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+            is.transferTo(channel, fileChannel, socket.getSoTimeout());
+        }
+    }
+
+    /** Writes the given stream's content to the given file. */
+    private static void copyToFile(InputStream is, File file) throws IOException {
+        final byte[] buf = new byte[BUFFER_SIZE];
+        try (OutputStream os = new FileOutputStream(file)) {
+            while (true) {
+                final int read = is.read(buf);
+                if (read < 0) {
+                    break;
+                }
+                os.write(buf, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Constructs and writes the header data for a GET operation to the given output stream.
+     *
+     * @param outputStream the output stream to write the header data to
+     * @param operation {@link BlobServerProtocol#GET_OPERATION} or {@link
+     *     BlobServerProtocol#GET_IF_MODIFIED_OPERATION}
+     * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
+     * @param blobKey blob key associated with the requested file
+     * @param priority priority of the request
+     * @throws IOException thrown if an I/O error occurs while writing the header data to the
+     *     output stream
+     */
+    private static void sendGetHeader(
+            OutputStream outputStream,
+            byte operation,
+            @Nullable JobID jobId,
+            BlobKey blobKey,
+            BlobRequestPriority priority)
+            throws IOException {
+        checkNotNull(blobKey);
+        checkArgument(
+                jobId != null || blobKey instanceof TransientBlobKey,
+                "permanent BLOBs must be job-related");
+
+        // Signal type of operation and its priority
+        outputStream.write(operation);
+        outputStream.write(priority.ordinal());
+
+        // Send job ID and key
+        if (jobId == null) {
+            outputStream.write(JOB_UNRELATED_CONTENT);
+        } else {
+            outputStream.write(JOB_RELATED_CONTENT);
+            outputStream.write(jobId.getBytes());
+        }
+        blobKey.writeToOutputStream(outputStream);
+    }
+
+    /**
+     * Reads the response from the input stream and throws in case of errors.
+     *
+     * @param is stream to read from
+     * @throws IOException if the response is an error or reading the response failed
+     */
+    private static void receiveAndCheckGetResponse(InputStream is) throws IOException {
+        checkGetResponse(is.read(), is);
+    }
+
+    /**
+     * Throws in case the given response is an error.
+     *
+     * @param response the response code
+     * @param is stream to read the details of an error from
+     * @throws IOException if the response is an error or reading the response failed
+     */
+    private static void checkGetResponse(int response, InputStream is) throws IOException {
+        if (response < 0) {
+            throw new EOFException("Premature end of response");
+        }
+        if (response == RETURN_ERROR) {
+            Throwable cause = readExceptionFromStream(is);
+            throw new IOException("Server side error: " + cause.getMessage(), cause);
+        } else if (response == RETURN_OVERLOADED) {
+            throw new BlobServerOverloadedException(readLength(is));
+        } else if (response != RETURN_OKAY) {
+            throw new IOException("Unrecognized response");
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+    //  PUT
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Uploads data from the given byte buffer to the BLOB server.
+     *
+     * @param jobId the ID of the job the BLOB belongs to (or <tt>null</tt> if job-unrelated)
+     * @param value the buffer to read the data from
+     * @param offset the read offset within the buffer
+     * @param len the number of bytes to read from the buffer
+     * @param blobType whether the BLOB should become permanent or transient
+     * @return the computed BLOB key of the uploaded BLOB
+     * @throws IOException thrown if an I/O error occurs while uploading the data to the BLOB server
+     */
+    BlobKey putBuffer(
+            @Nullable JobID jobId,
+            byte[] value,
+            int offset,
+            int len,
+            BlobKey.BlobType blobType)
+            throws IOException {
+
+        if (this.socket.isClosed()) {
+            throw new IllegalStateException(
+                    "BLOB Client is not connected. "
+                            + "Client has been shut down or encountered an error before.");
+        }
+        checkNotNull(value);
+        checkArgument(
+                offset >= 0 && len >= 0 && offset + len <= value.length,
+                "Invalid range of the buffer: offset "
+                        + offset
+                        + ", length "
+                        + len
+                        + ", buffer size "
+                        + value.length);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(
+                    "PUT BLOB buffer ("
+                            + len
+                            + " bytes) to "
+                            + socket.getLocalSocketAddress()
+                            + ".");
+        }
+
+        boolean requestSent = false;
+        try {
+            final OutputStream os = this.socket.getOutputStream();
+            final MessageDigest md = BlobUtils.createMessageDigest();
+
+            // Send the PUT header
+            sendPutHeader(
+                    os, PUT_OPERATION, jobId, blobType, getPriority(PUT_OPERATION, blobType));
+
+            // Send the value in iterations of BUFFER_SIZE
+            int remainingBytes = len;
+
+            while (remainingBytes > 0) {
+                // want a common code path for byte[] and InputStream at the BlobServer
+                // -> since for InputStream we don't know a total size beforehand, send lengths
+                // iteratively
+                final int bytesToSend = Math.min(BUFFER_SIZE, remainingBytes);
+                writeLength(bytesToSend, os);
+
+                os.write(value, offset, bytesToSend);
+
+                // Update the message digest
+                md.update(value, offset, bytesToSend);
+
+                remainingBytes -= bytesToSend;
+                offset += bytesToSend;
+            }
+            // send -1 as the stream end
+            writeLength(-1, os);
+
+            // Receive blob key and compare
+            requestSent = true;
+            final InputStream is = this.socket.getInputStream();
+            return receiveAndCheckPutResponse(is, md, blobType);
+        } catch (Throwable t) {
+            final BlobServerOverloadedException rejection =
+                    requestSent ? null : readEarlyOverloadResponse();
+            BlobUtils.closeSilently(socket, LOG);
+            if (rejection != null) {
+                throw rejection;
+            }
+            throw new IOException("PUT operation failed: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Uploads data from the given input stream to the BLOB server.
+     *
+     * @param jobId the ID of the job the BLOB belongs to (or <tt>null</tt> if job-unrelated)
+     * @param inputStream the input stream to read the data from
+     * @param blobType whether the BLOB should become permanent or transient
+     * @return the computed BLOB key of the uploaded BLOB
+     * @throws IOException thrown if an I/O error occurs while uploading the data to the BLOB server
+     */
+    BlobKey putInputStream(
+            @Nullable JobID jobId, InputStream inputStream, BlobKey.BlobType blobType)
+            throws IOException {
+
+        if (this.socket.isClosed()) {
+            throw new IllegalStateException(
+                    "BLOB Client is not connected. "
+                            + "Client has been shut down or encountered an error before.");
+        }
+        checkNotNull(inputStream);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("PUT BLOB stream to {}.", socket.getLocalSocketAddress());
+        }
+
+        boolean requestSent = false;
+        try {
+            final OutputStream os = this.socket.getOutputStream();
+            final MessageDigest md = BlobUtils.createMessageDigest();
+            final byte[] xferBuf = new byte[BUFFER_SIZE];
+
+            // Send the PUT header
+            sendPutHeader(
+                    os, PUT_OPERATION, jobId, blobType, getPriority(PUT_OPERATION, blobType));
+
+            while (true) {
+                // since we don't know a total size here, send lengths iteratively
+                final int read = inputStream.read(xferBuf);
+                if (read < 0) {
+                    // we are done. send a -1 and be done
+                    writeLength(-1, os);
+                    break;
+                }
+                if (read > 0) {
+                    writeLength(read, os);
+                    os.write(xferBuf, 0, read);
+                    md.update(xferBuf, 0, read);
+                }
+            }
+
+            // Receive blob key and compare
+            requestSent = true;
+            final InputStream is = this.socket.getInputStream();
+            return receiveAndCheckPutResponse(is, md, blobType);
+        } catch (Throwable t) {
+            final BlobServerOverloadedException rejection =
+                    requestSent ? null : readEarlyOverloadResponse();
+            BlobUtils.closeSilently(socket, LOG);
+            if (rejection != null) {
+                throw rejection;
+            }
+            throw new IOException("PUT operation failed: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Uploads the given file to the BLOB server in content-defined chunks, sending only the chunks
+     * the server does not hold yet, e.g. of a previous version of the same jar.
+     *
+     * <p>The file is read once to split it into chunks and once more for each round of chunks the
+     * server asks for, so it must not change during the upload. Files with too many chunks are
+     * uploaded as a whole.
+     *
+     * @param jobId the ID of the job the BLOB belongs to (or <tt>null</tt> if job-unrelated)
+     * @param file the file to upload
+     * @param blobType whether the BLOB should become permanent or transient
+     * @return the computed BLOB key of the uploaded BLOB
+     * @throws IOException thrown if an I/O error occurs while uploading the data to the BLOB server
+     */
+    BlobKey putChunked(@Nullable JobID jobId, Path file, BlobKey.BlobType blobType)
+            throws IOException {
+
+        if (this.socket.isClosed()) {
+            throw new IllegalStateException(
+                    "BLOB Client is not connected. "
+                            + "Client has been shut down or encountered an error before.");
+        }
+        checkNotNull(file);
+
+        // split the file into chunks, hashing each of them and the whole content
+        final FileSystem fs = file.getFileSystem();
+        final MessageDigest md = BlobUtils.createMessageDigest();
+        final List<Integer> lengths = new ArrayList<>();
+        final List<byte[]> hashes = new ArrayList<>();
+        try (InputStream is = fs.open(file)) {
+            final MessageDigest chunkMd = BlobUtils.createMessageDigest();
+            ContentDefinedChunker.split(
+                    is,
+                    (buf, len) -> {
+                        md.update(buf, 0, len);
+                        chunkMd.update(buf, 0, len);
+                        lengths.add(len);
+                        hashes.add(chunkMd.digest());
+                    });
+        }
+
+        if (lengths.size() > MAX_CHUNKS) {
+            LOG.debug("{} has too many chunks, uploading it as a whole.", file);
+            try (InputStream is = fs.open(file)) {
+                return putInputStream(jobId, is, blobType);
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(
+                    "PUT BLOB {} ({} chunks) to {}.",
+                    file,
+                    lengths.size(),
+                    socket.getLocalSocketAddress());
+        }
+
+        boolean requestSent = false;
+        try {
+            final OutputStream os = this.socket.getOutputStream();
+            final InputStream is = this.socket.getInputStream();
+
+            // Send the PUT header and the chunks' lengths and hashes
+            sendPutHeader(
+                    os,
+                    PUT_CHUNKED_OPERATION,
+                    jobId,
+                    blobType,
+                    getPriority(PUT_CHUNKED_OPERATION, blobType));
+            writeLength(lengths.size(), os);
+            for (int i = 0; i < lengths.size(); i++) {
+                writeLength(lengths.get(i), os);
+                os.write(hashes.get(i));
+            }
+            requestSent = true;
+
+            // Send the chunks the server asks for until it returns the blob key
+            while (true) {
+                final int response = is.read();
+                if (response != RETURN_CHUNKS_MISSING) {
+                    return checkPutResponse(response, is, md, blobType);
+                }
+
+                final int numMissing = readLength(is);
+                if (numMissing < 0 || numMissing > lengths.size()) {
+                    throw new IOException("Invalid number of missing chunks: " + numMissing);
+                }
+                final int[] missing = new int[numMissing];
+                for (int i = 0; i < numMissing; i++) {
+                    missing[i] = readLength(is);
+                    if (missing[i] >= lengths.size() || (i > 0 && missing[i] <= missing[i - 1])) {
+                        throw new IOException("Invalid index of missing chunk: " + missing[i]);
+                    }
+                }
+
+                sendChunks(fs, file, lengths, missing, os);
+            }
+        } catch (Throwable t) {
+            final BlobServerOverloadedException rejection =
+                    requestSent ? null : readEarlyOverloadResponse();
+            BlobUtils.closeSilently(socket, LOG);
+            if (rejection != null) {
+                throw rejection;
+            }
+            throw new IOException("PUT operation failed: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Sends the given chunks of a file.
+     *
+     * @param fs the file's file system
+     * @param file the file
+     * @param lengths the length of each of the file's chunks
+     * @param indices the (ascending) indices of the chunks to send
+     * @param os the output stream to write the chunks to
+     * @throws IOException thrown if an I/O error occurs while reading the file or sending the
+     *     chunks
+     */
+    private static void sendChunks(
+            FileSystem fs, Path file, List<Integer> lengths, int[] indices, OutputStream os)
+            throws IOException {
+        if (indices.length == 0) {
+            return;
+        }
+
+        final byte[] buf = new byte[BUFFER_SIZE];
+        try (InputStream is = fs.open(file)) {
+            int next = 0;
+            for (int i = 0; next < indices.length; i++) {
+                final int len = lengths.get(i);
+                readFully(is, buf, 0, len, "chunk");
+                if (indices[next] == i) {
+                    os.write(buf, 0, len);
+                    next++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructs and writes the header data for a PUT request to the given output stream.
+     *
+     * @param outputStream the output stream to write the PUT header data to
+     * @param operation {@link BlobServerProtocol#PUT_OPERATION} or {@link
+     *     BlobServerProtocol#PUT_CHUNKED_OPERATION}
+     * @param jobId the ID of job the BLOB belongs to (or <tt>null</tt> if job-unrelated)
+     * @param blobType whether the BLOB should become permanent or transient
+     * @param priority priority of the request
+     * @throws IOException thrown if an I/O error occurs while writing the header data to the
+     *     output stream
+     */
+    private static void sendPutHeader(
+            OutputStream outputStream,
+            byte operation,
+            @Nullable JobID jobId,
+            BlobKey.BlobType blobType,
+            BlobRequestPriority priority)
+            throws IOException {
+        // Signal type of operation and its priority
+        outputStream.write(operation);
+        outputStream.write(priority.ordinal());
+        if (jobId == null) {
+            outputStream.write(JOB_UNRELATED_CONTENT);
+        } else {
+            outputStream.write(JOB_RELATED_CONTENT);
+            byte[] idBytes = jobId.getBytes();
+            outputStream.write(idBytes, 0, JobID.SIZE);
+        }
+        outputStream.write(blobType.ordinal());
+    }
+
+    /**
+     * Reads the response from the input stream and throws in case of errors.
+     *
+     * @param is stream to read from
+     * @param md message digest to check the response against
+     * @param blobType whether the BLOB should be permanent or transient
+     * @throws IOException if the response is an error, the message digest does not match or
+     *     reading the response failed
+     */
+    private static BlobKey receiveAndCheckPutResponse(
+            InputStream is, MessageDigest md, BlobKey.BlobType blobType) throws IOException {
+        return checkPutResponse(is.read(), is, md, blobType);
+    }
+
+    /**
+     * Checks the given response to a PUT request and throws in case of errors.
+     *
+     * @param response the response code already read
+     * @param is stream to read the rest of the response from
+     * @param md message digest to check the response against
+     * @param blobType whether the BLOB should be permanent or transient
+     * @throws IOException if the response is an error, the message digest does not match or
+     *     reading the response failed
+     */
+    private static BlobKey checkPutResponse(
+            int response, InputStream is, MessageDigest md, BlobKey.BlobType blobType)
+            throws IOException {
+        if (response < 0) {
+            throw new EOFException("Premature end of response");
+        } else if (response == RETURN_OKAY) {
+
+            BlobKey remoteKey = BlobKey.readFromInputStream(is);
+            byte[] localHash = md.digest();
+
+            if (blobType != remoteKey.getType()) {
+                throw new IOException("Detected data corruption during transfer");
+            }
+            if (!Arrays.equals(localHash, remoteKey.getHash())) {
+                throw new IOException("Detected data corruption during transfer");
+            }
+
+            return remoteKey;
+        } else if (response == RETURN_ERROR) {
+            Throwable cause = readExceptionFromStream(is);
+            throw new IOException("Server side error: " + cause.getMessage(), cause);
+        } else if (response == RETURN_OVERLOADED) {
+            throw new BlobServerOverloadedException(readLength(is));
+        } else {
+            throw new IOException("Unrecognized response: " + response + '.');
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+    //  PEERS
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Looks up the peers to download the given permanent BLOB from and registers the calling cache
+     * as downloading it.
+     *
+     * @param jobId ID of the job the BLOB belongs to
+     * @param blobKey key of the BLOB
+     * @param port port the calling cache serves BLOBs to its peers on
+     * @return peers to try in the given order
+     * @throws IOException if the request failed
+     */
+    List<InetSocketAddress> lookupPeers(JobID jobId, PermanentBlobKey blobKey, int port)
+            throws IOException {
+        return sendPeersRequest(jobId, blobKey, PEER_DOWNLOADING, port);
+    }
+
+    /**
+     * Announces that the calling cache holds the given permanent BLOB.
+     *
+     * @param jobId ID of the job the BLOB belongs to
+     * @param blobKey key of the BLOB
+     * @param port port the calling cache serves BLOBs to its peers on
+     * @throws IOException if the request failed
+     */
+    void announcePeer(JobID jobId, PermanentBlobKey blobKey, int port) throws IOException {
+        sendPeersRequest(jobId, blobKey, PEER_COMPLETE, port);
+    }
+
+    private List<InetSocketAddress> sendPeersRequest(
+            JobID jobId, PermanentBlobKey blobKey, byte state, int port) throws IOException {
+        if (this.socket.isClosed()) {
+            throw new IllegalStateException(
+                    "BLOB Client is not connected. "
+                            + "Client has been shut down or encountered an error before.");
+        }
+        checkNotNull(jobId);
+        checkNotNull(blobKey);
+
+        try {
+            final OutputStream os = this.socket.getOutputStream();
+            final InputStream is = this.socket.getInputStream();
+
+            // Send the PEERS header
+            os.write(PEERS_OPERATION);
+            os.write(getPriority(PEERS_OPERATION, blobKey.getType()).ordinal());
+            os.write(JOB_RELATED_CONTENT);
+            os.write(jobId.getBytes());
+            blobKey.writeToOutputStream(os);
+            os.write(state);
+            writeLength(port, os);
+
+            receiveAndCheckGetResponse(is);
+
+            final int numPeers = readLength(is);
+            final List<InetSocketAddress> peers = new ArrayList<>(numPeers);
+            for (int i = 0; i < numPeers; i++) {
+                final byte[] address = new byte[readLength(is)];
+                readFully(is, address, 0, address.length, "peer address");
+                peers.add(new InetSocketAddress(InetAddress.getByAddress(address), readLength(is)));
+            }
+            return peers;
+        } catch (BlobServerOverloadedException e) {
+            BlobUtils.closeSilently(socket, LOG);
+            throw e;
+        } catch (Throwable t) {
+            BlobUtils.closeSilently(socket, LOG);
+            throw new IOException("PEERS operation failed: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Downloads the given permanent BLOB from a peer cache and stores its contents to a (local)
+     * file. Unlike {@link #downloadFromBlobServer}, there are no retries: callers rather try their
+     * next peer.
+     *
+     * <p>The data is verified against the BLOB key, i.e. a peer cannot pass off different content.
+     *
+     * @param jobId ID of the job the BLOB belongs to
+     * @param blobKey key of the BLOB
+     * @param localJarFile the local file to write to
+     * @param peerAddress address the peer serves BLOBs on
+     * @param blobClientConfig client configuration for the connection
+     * @throws IOException if an I/O error occurs during the download
+     */
+    static void downloadFromPeer(
+            JobID jobId,
+            PermanentBlobKey blobKey,
+            File localJarFile,
+            InetSocketAddress peerAddress,
+            Configuration blobClientConfig)
+            throws IOException {
+
+        LOG.debug("Downloading {}/{} from peer {}", jobId, blobKey, peerAddress);
+
+        try (final BlobClient bc = new BlobClient(peerAddress, blobClientConfig)) {
+            bc.receiveToFile(bc.getInternal(jobId, blobKey), localJarFile);
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+    //  Utilities
+    // --------------------------------------------------------------------------------------------
+
+    /** Returns the priority to send the given request with. */
+    private BlobRequestPriority getPriority(byte operation, BlobKey.BlobType blobType) {
+        return priority != null ? priority : BlobRequestPriority.getDefault(operation, blobType);
+    }
+
+    /**
+     * Reads the overload rejection the server may have sent while the request was still being
+     * sent: a rejected upload's connection is closed before the client finished sending.
+     *
+     * @return the rejection or <tt>null</tt> if there was none
+     */
+    @Nullable
+    private BlobServerOverloadedException readEarlyOverloadResponse() {
+        try {
+            final InputStream is = socket.getInputStream();
+            if (is.available() > 0 && is.read() == RETURN_OVERLOADED) {
+                return new BlobServerOverloadedException(readLength(is));
+            }
+        } catch (IOException e) {
+            LOG.debug("No response received from the BLOB server.", e);
+        }
+        return null;
+    }
+
+    /**
+     * Reads exception from given {@link InputStream}.
+     *
+     * @param in the input stream to read from
+     * @return exception that was read
+     * @throws IOException thrown if an I/O error occurs while reading from the input stream
+     */
+    private static Throwable readExceptionFromStream(InputStream in) throws IOException {
+        int len = readLength(in);
+        byte[] bytes = new byte[len];
+        readFully(in, bytes, 0, len, "Error message");
+
+        try {
+            return InstantiationUtil.deserializeObject(bytes, ClassLoader.getSystemClassLoader());
+        } catch (ClassNotFoundException e) {
+            // should never occur
+            throw new IOException("Could not transfer error message", e);
+        }
+    }
+
     /**
      * Uploads the JAR files to the {@link PermanentBlobService} of the {@link BlobServer} at the
      * given address with HA as configured.
@@ -116,20 +1520,81 @@ public class BlobClient implements Closeable {
     /**
      * Uploads a single file to the {@link PermanentBlobService} of the given {@link BlobServer}.
      *
+     * <p>If {@link BlobServerOptions#CHUNKED_UPLOAD_ENABLED} is set, only the chunks of the file
+     * the server does not hold yet are uploaded (see {@link #putChunked}).
+     *
      * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
      * @param file file to upload
      * @throws IOException if the upload fails
      */
     public PermanentBlobKey uploadFile(JobID jobId, Path file) throws IOException {
+        if (chunkedUpload) {
+            return (PermanentBlobKey) putChunked(jobId, file, PERMANENT_BLOB);
+        }
+
         final FileSystem fs = file.getFileSystem();
         try (InputStream is = fs.open(file)) {
             return (PermanentBlobKey) putInputStream(jobId, is, PERMANENT_BLOB);
         }
     }
 
+    // --------------------------------------------------------------------------------------------
 
-    @Override
-    public void close() throws IOException {
+    /** The response header of a verified GET: the BLOB's length and the hashes of its chunks. */
+    private static final class VerifiedChunks {
+
+        private final int length;
+
+        private final byte[][] chunkHashes;
+
+        private VerifiedChunks(int length, byte[][] chunkHashes) {
+            this.length = length;
+            this.chunkHashes = chunkHashes;
+        }
+
+        int getNumChunks() {
+            return chunkHashes.length;
+        }
+    }
+
+    /** A range of chunks of a striped download fetched over a connection of its own. */
+    private static final class Stripe {
 
+        /** Index of the first chunk. */
+        private final int first;
+
+        /** Index after the last chunk. */
+        private final int last;
+
+        /** Whether a thread has taken over the download of the stripe. */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        /** The indices of the corrupted chunks, if downloaded over a connection of its own. */
+        private final CompletableFuture<List<Integer>> result = new CompletableFuture<>();
+
+        private Stripe(int first, int last) {
+            this.first = first;
+            this.last = last;
+        }
+    }
+
+    /** Stream on a BLOB which closes the client's connection when being closed. */
+    private static final class ClosingInputStream extends FilterInputStream {
+
+        private final BlobClient blobClient;
+
+        private ClosingInputStream(InputStream in, BlobClient blobClient) {
+            super(in);
+            this.blobClient = blobClient;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                blobClient.close();
+            }
+        }
     }
 }
@@ -0,0 +1,316 @@
+package flink.runtime.blob;
+
+import flink.configuration.BlobServerOptions;
+import flink.configuration.ConfigOption;
+import flink.configuration.Configuration;
+import flink.configuration.IllegalConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Decides where and when the {@link BlobClient} retries failed fetches.
+ *
+ * <ul>
+ *   <li>Retries wait for a random delay of up to an exponentially growing backoff ("full
+ *       jitter"), so that the clients of a failed server do not reconnect to the new one all at
+ *       the same moment. An overloaded server's retry-after hint is respected as well.
+ *   <li>Besides the current server, further candidate addresses may be configured via {@link
+ *       BlobServerOptions#FAILOVER_ADDRESSES}. Retries rotate through the candidates.
+ *   <li>A circuit breaker per address skips addresses with too many consecutive failures for a
+ *       while. Afterwards, a single request probes the address again while further requests keep
+ *       skipping it until the probe succeeded, or until the probe did not report back for the same
+ *       while. Addresses are told apart by host string and port, i.e. a resolved address and an
+ *       unresolved one of the same host name are the same address.
+ * </ul>
+ *
+ * <p>The circuit breakers are shared by all fetches using this policy, e.g. of a blob cache.
+ *
+ * <p>This class is thread-safe.
+ */
+final class BlobClientRetryPolicy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlobClientRetryPolicy.class);
+
+    /** Delay (ms) before the first retry; doubled for every further retry. */
+    private final long initialBackoff;
+
+    /** Maximum delay (ms) between retries. */
+    private final long maxBackoff;
+
+    /** Number of consecutive failures after which an address is skipped. */
+    private final int failureThreshold;
+
+    /** Time (ms) an address is skipped for after too many consecutive failures. */
+    private final long openDuration;
+
+    /** Further candidate addresses after the current server's. */
+    private final List<InetSocketAddress> failoverAddresses;
+
+    /** Circuit breaker per (unresolved) address with failures. */
+    private final ConcurrentHashMap<InetSocketAddress, CircuitBreaker> circuitBreakers =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Creates the retry policy from the given configuration.
+     *
+     * @param config configuration of the blob client
+     */
+    BlobClientRetryPolicy(Configuration config) {
+        this.initialBackoff = getNonNegative(config, BlobServerOptions.RETRY_INITIAL_BACKOFF);
+        this.maxBackoff = getNonNegative(config, BlobServerOptions.RETRY_MAX_BACKOFF);
+        this.openDuration = getNonNegative(config, BlobServerOptions.CIRCUIT_BREAKER_OPEN_DURATION);
+
+        final int failureThreshold =
+                config.getInteger(BlobServerOptions.CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+        if (failureThreshold >= 1) {
+            this.failureThreshold = failureThreshold;
+        } else {
+            LOG.warn(
+                    "Invalid value for the BLOB client's circuit breaker failure threshold: {}. Using default value of {}",
+                    failureThreshold,
+                    BlobServerOptions.CIRCUIT_BREAKER_FAILURE_THRESHOLD.defaultValue());
+            this.failureThreshold =
+                    BlobServerOptions.CIRCUIT_BREAKER_FAILURE_THRESHOLD.defaultValue();
+        }
+
+        this.failoverAddresses =
+                parseAddresses(config.getString(BlobServerOptions.FAILOVER_ADDRESSES));
+    }
+
+    /**
+     * Selects the address to send the given attempt of a request to: the first candidate, starting
+     * with the one at the attempt's position, whose circuit breaker admits the request, i.e. is
+     * closed or admits it as the single probe of a half-open breaker. If no circuit breaker admits
+     * the request, the candidate whose breaker closes first is tried nonetheless.
+     *
+     * @param serverAddress address of the current server, the first candidate
+     * @param attempt number of the attempt, starting with 0
+     * @return the address to connect to
+     */
+    InetSocketAddress selectAddress(InetSocketAddress serverAddress, int attempt) {
+        checkNotNull(serverAddress);
+
+        final List<InetSocketAddress> candidates = new ArrayList<>(1 + failoverAddresses.size());
+        candidates.add(serverAddress);
+        final InetSocketAddress serverKey = getKey(serverAddress);
+        for (InetSocketAddress address : failoverAddresses) {
+            if (!address.equals(serverKey)) {
+                candidates.add(address);
+            }
+        }
+
+        final long now = System.currentTimeMillis();
+        InetSocketAddress earliestClosing = null;
+        long earliestClosingTime = Long.MAX_VALUE;
+        for (int i = 0; i < candidates.size(); i++) {
+            final InetSocketAddress candidate = candidates.get((attempt + i) % candidates.size());
+            final CircuitBreaker circuitBreaker = circuitBreakers.get(getKey(candidate));
+            if (circuitBreaker == null
+                    || circuitBreaker.tryAdmit(now, failureThreshold, openDuration)) {
+                return candidate;
+            }
+
+            final long closingTime = circuitBreaker.getClosingTime();
+            if (closingTime < earliestClosingTime) {
+                earliestClosing = candidate;
+                earliestClosingTime = closingTime;
+            }
+        }
+
+        LOG.debug("All BLOB server addresses failed recently, probing {}.", earliestClosing);
+        return earliestClosing;
+    }
+
+    /**
+     * Records a successful request to the given address, closing its circuit breaker.
+     *
+     * @param address the address
+     */
+    void recordSuccess(InetSocketAddress address) {
+        circuitBreakers.remove(getKey(address));
+    }
+
+    /**
+     * Records a failed request to the given address. Overloads do not count as failures since the
+     * server is healthy and asks for a specific delay anyway.
+     *
+     * @param address the address
+     * @param failure the request's failure
+     */
+    void recordFailure(InetSocketAddress address, Throwable failure) {
+        if (getOverload(failure) != null) {
+            return;
+        }
+
+        final CircuitBreaker circuitBreaker =
+                circuitBreakers.computeIfAbsent(getKey(address), ignored -> new CircuitBreaker());
+        if (circuitBreaker.recordFailure(failureThreshold, openDuration)) {
+            LOG.warn(
+                    "BLOB server address {} failed {} times in a row, avoiding it for {} ms.",
+                    address,
+                    failureThreshold,
+                    openDuration);
+        }
+    }
+
+    /**
+     * Returns the delay before the retry after the given failed attempt: a random delay of up to
+     * the attempt's exponential backoff, but at least what an overloaded server asked for (plus a
+     * random jitter of up to half of that).
+     *
+     * @param attempt number of the failed attempt, starting with 0
+     * @param failure failure of the attempt
+     * @return the delay in milliseconds
+     */
+    long getRetryDelay(int attempt, Throwable failure) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long backoff = Math.min(maxBackoff, initialBackoff << Math.min(attempt, 30));
+        long delay = random.nextLong(backoff + 1);
+
+        final BlobServerOverloadedException overload = getOverload(failure);
+        if (overload != null) {
+            final long retryAfter = overload.getRetryAfterMillis();
+            delay = Math.max(delay, retryAfter + random.nextLong(retryAfter / 2 + 1));
+        }
+        return delay;
+    }
+
+    /**
+     * Waits before the retry after the given failed attempt (see {@link #getRetryDelay}).
+     *
+     * @param attempt number of the failed attempt, starting with 0
+     * @param failure failure of the attempt
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    void awaitRetry(int attempt, Throwable failure) throws InterruptedIOException {
+        final long delay = getRetryDelay(attempt, failure);
+        LOG.debug("Retrying the BLOB request in {} ms.", delay);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry.");
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the address identifying the given one by host string and port, regardless of whether
+     * it has been resolved.
+     */
+    private static InetSocketAddress getKey(InetSocketAddress address) {
+        return address.isUnresolved()
+                ? address
+                : InetSocketAddress.createUnresolved(address.getHostString(), address.getPort());
+    }
+
+    /** Returns the overload rejection in the failure's cause chain (or <tt>null</tt>). */
+    @Nullable
+    private static BlobServerOverloadedException getOverload(Throwable failure) {
+        Throwable cause = failure;
+        while (cause != null && !(cause instanceof BlobServerOverloadedException)) {
+            cause = cause.getCause();
+        }
+        return (BlobServerOverloadedException) cause;
+    }
+
+    private static long getNonNegative(Configuration config, ConfigOption<Long> option) {
+        final long value = config.getLong(option);
+        if (value >= 0) {
+            return value;
+        }
+        LOG.warn(
+                "Invalid value for {}: {}. Using default value of {}",
+                option.key(),
+                value,
+                option.defaultValue());
+        return option.defaultValue();
+    }
+
+    /**
+     * Parses a comma-separated list of <tt>host:port</tt> addresses. The host names are resolved
+     * when connecting.
+     */
+    static List<InetSocketAddress> parseAddresses(String addresses) {
+        final List<InetSocketAddress> result = new ArrayList<>();
+        for (String address : addresses.split(",")) {
+            final String trimmed = address.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+
+            final int colon = trimmed.lastIndexOf(':');
+            try {
+                result.add(
+                        InetSocketAddress.createUnresolved(
+                                trimmed.substring(0, colon),
+                                Integer.parseInt(trimmed.substring(colon + 1))));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IllegalConfigurationException(
+                        "Invalid blob server address '"
+                                + trimmed
+                                + "' in "
+                                + BlobServerOptions.FAILOVER_ADDRESSES.key()
+                                + ": "
+                                + e.getMessage());
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /** Consecutive failures of an address and until when it is skipped. */
+    private static final class CircuitBreaker {
+
+        private int consecutiveFailures;
+
+        /** Time (ms since the epoch) the address may be probed (again) at. */
+        private long closingTime;
+
+        synchronized long getClosingTime() {
+            return closingTime;
+        }
+
+        /**
+         * Decides whether a request may be sent to the address. While half-open, only a single
+         * probe is admitted: admitting it skips the address for another open duration, which ends
+         * early if the probe succeeds and starts over if it fails.
+         *
+         * @return whether the request is admitted
+         */
+        synchronized boolean tryAdmit(long now, int failureThreshold, long openDuration) {
+            if (consecutiveFailures < failureThreshold) {
+                return true;
+            } else if (now < closingTime) {
+                return false;
+            }
+            closingTime = now + openDuration;
+            return true;
+        }
+
+        /**
+         * Records a failure.
+         *
+         * @return whether the circuit breaker opened
+         */
+        synchronized boolean recordFailure(int failureThreshold, long openDuration) {
+            // a failed probe re-opens the circuit breaker right away
+            if (++consecutiveFailures >= failureThreshold) {
+                closingTime = System.currentTimeMillis() + openDuration;
+                return consecutiveFailures == failureThreshold;
+            }
+            return false;
+        }
+    }
+}
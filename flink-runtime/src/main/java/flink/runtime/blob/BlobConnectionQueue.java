@@ -0,0 +1,133 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Accepted connections waiting for a free connection slot of the {@link BlobServer}.
+ *
+ * <p>Connections are served by the {@link BlobRequestPriority priority} of their first request.
+ * Within the same priority, the slots are shared among the requests' jobs according to their
+ * weights (start-time fair queuing with one slot as the unit, like {@link
+ * FairBandwidthScheduler}), i.e. a job with many waiting connections cannot crowd out others, and
+ * in order of arrival within the same job. Job-unrelated requests form a class of their own.
+ *
+ * <p>The header of a request is only known once it has been received; until then (and for SSL
+ * connections which have not completed their handshake), a connection counts as a {@link
+ * BlobRequestPriority#NORMAL} job-unrelated request. To protect lower priorities from starvation,
+ * the longest waiting connection is served next once it waited for the configured maximum time.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class BlobConnectionQueue {
+
+    /** Waiting connections in order of arrival. */
+    private final ArrayDeque<BlobServerConnection> connections = new ArrayDeque<>();
+
+    /** Time (ns) after which a connection is served regardless of its priority. */
+    private final long maxWaitNanos;
+
+    /** Returns the weight of a job (<tt>null</tt> for job-unrelated requests). */
+    private final ToIntFunction<JobID> weights;
+
+    /** Virtual finish time of the last slot per job; the <tt>null</tt> key is job-unrelated. */
+    private final Map<JobID, Double> finishTags = new HashMap<>();
+
+    /** Start time of the last served connection. */
+    private double virtualTime;
+
+    BlobConnectionQueue(long maxWaitNanos, ToIntFunction<JobID> weights) {
+        this.maxWaitNanos = maxWaitNanos;
+        this.weights = checkNotNull(weights);
+    }
+
+    void add(BlobServerConnection connection) {
+        connections.add(connection);
+    }
+
+    /**
+     * Removes the connection to serve next.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return the connection to serve next or <tt>null</tt> if there is none
+     */
+    BlobServerConnection poll(long nowNanos) {
+        final BlobServerConnection oldest = connections.peek();
+        if (oldest == null) {
+            return null;
+        }
+
+        BlobServerConnection next = oldest;
+        if (nowNanos - oldest.getAcceptedNanos() < maxWaitNanos) {
+            BlobRequestPriority nextPriority = null;
+            double nextStartTag = 0.0;
+            for (BlobServerConnection connection : connections) {
+                final BlobRequestPriority priority = getPriority(connection);
+                final double startTag = getStartTag(connection.peekJobId());
+                if (nextPriority == null
+                        || priority.compareTo(nextPriority) < 0
+                        || (priority == nextPriority && startTag < nextStartTag)) {
+                    next = connection;
+                    nextPriority = priority;
+                    nextStartTag = startTag;
+                }
+            }
+        }
+
+        connections.remove(next);
+        serve(next.peekJobId());
+        return next;
+    }
+
+    /** Returns the number of waiting connections. */
+    int size() {
+        return connections.size();
+    }
+
+    /** Returns the number of waiting connections of the given priority. */
+    int size(BlobRequestPriority priority) {
+        int size = 0;
+        for (BlobServerConnection connection : connections) {
+            if (getPriority(connection) == priority) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /** Removes and returns all waiting connections. */
+    List<BlobServerConnection> clear() {
+        final List<BlobServerConnection> removed = new ArrayList<>(connections);
+        connections.clear();
+        return removed;
+    }
+
+    /** Returns the priority a connection is scheduled with. */
+    static BlobRequestPriority getPriority(BlobServerConnection connection) {
+        final BlobRequestPriority priority = connection.peekPriority();
+        return priority != null ? priority : BlobRequestPriority.NORMAL;
+    }
+
+    private double getStartTag(JobID jobId) {
+        final Double finishTag = finishTags.get(jobId);
+        return finishTag != null ? Math.max(virtualTime, finishTag) : virtualTime;
+    }
+
+    /** Advances the virtual time of the given job by one slot. */
+    private void serve(JobID jobId) {
+        final double startTag = getStartTag(jobId);
+        virtualTime = startTag;
+        finishTags.put(jobId, startTag + 1.0 / Math.max(1, weights.applyAsInt(jobId)));
+
+        // forget jobs whose next slot would start at the current virtual time anyway
+        finishTags.values().removeIf(finishTag -> finishTag <= virtualTime);
+    }
+}
@@ -0,0 +1,250 @@
+package flink.runtime.blob;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static flink.runtime.blob.BlobServerProtocol.RETURN_ERROR;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_OKAY;
+import static flink.runtime.blob.BlobUtils.readLength;
+
+/**
+ * The BLOB input stream is a special implementation of an {@link InputStream} to read the results
+ * of a GET operation from the BLOB server.
+ */
+final class BlobInputStream extends InputStream {
+
+    /** The wrapped input stream from the underlying TCP connection. */
+    private final InputStream wrappedInputStream;
+
+    /** The wrapped output stream from the underlying TCP connection. */
+    private final OutputStream wrappedOutputStream;
+
+    /** The BLOB key if the GET operation has been performed on a content-addressable BLOB. */
+    private final BlobKey blobKey;
+
+    /** The number of bytes to read from the stream until the BLOB has been fully received. */
+    private final int bytesToReceive;
+
+    /**
+     * The message digest to verify the integrity of the retrieved data (or <code>null</code> if no
+     * BLOB key is given).
+     */
+    private final MessageDigest md;
+
+    /** The number of bytes already read from the wrapped input stream. */
+    private int bytesReceived;
+
+    /**
+     * Constructs a new BLOB input stream.
+     *
+     * @param wrappedInputStream the underlying input stream to read from
+     * @param blobKey the expected BLOB key for content-addressable BLOBs, <code>null</code> for
+     *     non-content-addressable BLOBs.
+     * @param wrappedOutputStream the underlying output stream to write to
+     * @throws IOException throws if an I/O error occurs while reading the BLOB data from the BLOB
+     *     server
+     */
+    BlobInputStream(
+            final InputStream wrappedInputStream,
+            final BlobKey blobKey,
+            OutputStream wrappedOutputStream)
+            throws IOException {
+        this.wrappedInputStream = wrappedInputStream;
+        this.blobKey = blobKey;
+        this.wrappedOutputStream = wrappedOutputStream;
+        this.bytesToReceive = readLength(wrappedInputStream);
+        if (this.bytesToReceive < 0) {
+            throw new FileNotFoundException();
+        }
+
+        this.md = (blobKey != null) ? BlobUtils.createMessageDigest() : null;
+    }
+
+    /**
+     * Convenience method to throw an {@link EOFException}.
+     *
+     * @throws EOFException thrown to indicate the underlying input stream did not provide as much
+     *     data as expected
+     */
+    private void throwEOFException() throws EOFException {
+        throw new EOFException(
+                String.format(
+                        "Expected to read %d more bytes from stream",
+                        this.bytesToReceive - this.bytesReceived));
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.bytesReceived == this.bytesToReceive) {
+            return -1;
+        }
+
+        final int read = this.wrappedInputStream.read();
+        if (read < 0) {
+            throwEOFException();
+        }
+
+        ++this.bytesReceived;
+
+        if (this.md != null) {
+            this.md.update((byte) read);
+            if (this.bytesReceived == this.bytesToReceive) {
+                verifyDigest();
+            }
+        }
+
+        return read;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        final int bytesMissing = this.bytesToReceive - this.bytesReceived;
+
+        if (bytesMissing == 0) {
+            return -1;
+        }
+
+        final int maxRecv = Math.min(len, bytesMissing);
+        final int read = this.wrappedInputStream.read(b, off, maxRecv);
+        if (read < 0) {
+            throwEOFException();
+        }
+
+        this.bytesReceived += read;
+
+        if (this.md != null) {
+            this.md.update(b, off, read);
+            if (this.bytesReceived == this.bytesToReceive) {
+                verifyDigest();
+            }
+        }
+
+        return read;
+    }
+
+    /**
+     * Transfers the remaining data from the given channel of the underlying connection to the end
+     * of the given file without copying it through heap buffers of this stream.
+     *
+     * <p>The socket timeout does not apply to reads from the channel, so the channel is switched to
+     * non-blocking mode for the transfer and waits for data with a selector instead, failing if no
+     * data arrived within the given timeout.
+     *
+     * <p>Since the data bypasses this stream, it is verified by reading it back from the file
+     * through a memory mapping, which is usually served from the page cache.
+     *
+     * @param source the channel of the underlying connection
+     * @param target the file to write to, opened for reading and writing
+     * @param timeoutMillis maximum time (ms) to wait for further data, <tt>0</tt> to wait forever
+     * @throws SocketTimeoutException if no data arrived within the timeout
+     * @throws IOException if an I/O error occurs or the data does not match the BLOB key
+     */
+    void transferTo(SocketChannel source, FileChannel target, int timeoutMillis)
+            throws IOException {
+        final long start = target.size();
+        final long initiallyReceived = this.bytesReceived;
+
+        source.configureBlocking(false);
+        try (Selector selector = Selector.open()) {
+            source.register(selector, SelectionKey.OP_READ);
+
+            boolean readable = false;
+            while (this.bytesReceived < this.bytesToReceive) {
+                final long transferred =
+                        target.transferFrom(
+                                source,
+                                start + this.bytesReceived - initiallyReceived,
+                                this.bytesToReceive - this.bytesReceived);
+                if (transferred > 0) {
+                    this.bytesReceived += (int) transferred;
+                    readable = false;
+                } else if (readable) {
+                    // a readable channel only transfers nothing at its end
+                    throwEOFException();
+                } else if (selector.select(timeoutMillis) > 0) {
+                    selector.selectedKeys().clear();
+                    readable = true;
+                } else {
+                    throw new SocketTimeoutException(
+                            "Received no data for "
+                                    + timeoutMillis
+                                    + " ms with "
+                                    + (this.bytesToReceive - this.bytesReceived)
+                                    + " bytes remaining.");
+                }
+            }
+        } finally {
+            // closing the selector deregistered the channel, so it may block again
+            source.configureBlocking(true);
+        }
+
+        if (this.md != null && this.bytesReceived > initiallyReceived) {
+            this.md.update(
+                    target.map(
+                            FileChannel.MapMode.READ_ONLY,
+                            start,
+                            this.bytesReceived - initiallyReceived));
+            verifyDigest();
+        }
+    }
+
+    /**
+     * Checks the received data against the BLOB key and reports the outcome to the server (which
+     * deletes transient BLOBs after a successful transfer).
+     *
+     * @throws IOException if the data does not match the BLOB key
+     */
+    private void verifyDigest() throws IOException {
+        final byte[] computedKey = this.md.digest();
+        if (!Arrays.equals(computedKey, this.blobKey.getHash())) {
+            this.wrappedOutputStream.write(RETURN_ERROR);
+            throw new IOException("Detected data corruption during transfer");
+        }
+        this.wrappedOutputStream.write(RETURN_OKAY);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return 0L;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return this.bytesToReceive - this.bytesReceived;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // This method does not do anything as the wrapped input stream may be used for multiple
+        // get operations.
+    }
+
+    public void mark(final int readlimit) {
+        // Do not do anything here
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
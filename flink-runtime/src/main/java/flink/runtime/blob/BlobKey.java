@@ -3,8 +3,10 @@ package flink.runtime.blob;
 
 
 import flink.util.AbstractID;
+import flink.util.StringUtils;
 
 import java.io.*;
+import java.util.Arrays;
 
 
 
@@ -99,6 +101,45 @@ public abstract class BlobKey implements Serializable, Comparable<BlobKey>{
 
 
 
+    @Override
+    public boolean equals(final Object obj) {
+
+        if (!(obj instanceof BlobKey)) {
+            return false;
+        }
+
+        final BlobKey bk = (BlobKey) obj;
+
+        return Arrays.equals(this.key, bk.key)
+                && this.type == bk.type
+                && this.random.equals(bk.random);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(this.key);
+        result = 37 * result + this.type.hashCode();
+        result = 37 * result + this.random.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final String typeString;
+        switch (this.type) {
+            case TRANSIENT_BLOB:
+                typeString = "t-";
+                break;
+            case PERMANENT_BLOB:
+                typeString = "p-";
+                break;
+            default:
+                // this actually never happens!
+                throw new IllegalStateException("Invalid BLOB type");
+        }
+        return typeString + StringUtils.byteToHexString(this.key) + "-" + random.toString();
+    }
+
     @Override
     public int compareTo(BlobKey o) {
         // compare the hashes first
@@ -238,5 +279,14 @@ public abstract class BlobKey implements Serializable, Comparable<BlobKey>{
         return key;
     }
 
+    /**
+     * Returns the (internal) BLOB type which is reflected by the inheriting sub-class.
+     *
+     * @return BLOB type, i.e. permanent or transient
+     */
+    BlobType getType() {
+        return type;
+    }
+
 
 }
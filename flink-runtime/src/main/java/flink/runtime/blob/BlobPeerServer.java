@@ -0,0 +1,318 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.configuration.BlobServerOptions;
+import flink.configuration.Configuration;
+import flink.configuration.SecurityOptions;
+import flink.runtime.net.SSLUtils;
+import flink.util.NetUtils;
+import flink.util.concurrent.ExecutorThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ServerSocketFactory;
+import javax.net.ssl.SSLSocket;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static flink.runtime.blob.BlobServerProtocol.BUFFER_SIZE;
+import static flink.runtime.blob.BlobServerProtocol.GET_OPERATION;
+import static flink.runtime.blob.BlobServerProtocol.JOB_RELATED_CONTENT;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_OKAY;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_OVERLOADED;
+import static flink.runtime.blob.BlobUtils.readFully;
+import static flink.runtime.blob.BlobUtils.writeLength;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Serves the permanent BLOBs of a {@link PermanentBlobCache} to other caches.
+ *
+ * <p>The peer server speaks the GET part of the {@link BlobServer}'s protocol, so caches download
+ * from their peers with a regular {@link BlobClient} which verifies the data against the BLOB key.
+ * Each connection serves a single request. Connections beyond the configured maximum are rejected
+ * as overloaded right away, and the requesting cache tries its next peer. As in the {@link
+ * BlobServer}, rejections are sent off the listener thread, so a slow (SSL) peer cannot stall the
+ * accepting of further connections.
+ */
+final class BlobPeerServer extends Thread implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlobPeerServer.class);
+
+    /** The server socket listening for incoming connections. */
+    private final ServerSocket serverSocket;
+
+    /** The cache whose BLOBs are served. */
+    private final PermanentBlobCache blobCache;
+
+    /** The maximum number of concurrently served connections. */
+    private final int maxConnections;
+
+    /** Socket timeout (ms) of served connections, so that stalled peers release their slot. */
+    private final int socketTimeout;
+
+    /** Sends the overload responses to rejected connections, off the listener thread. */
+    private final ExecutorService rejectionExecutor;
+
+    /** Sockets of the currently served connections (guarded by itself). */
+    private final Set<Socket> activeConnections = new HashSet<>();
+
+    /** Indicates whether a shutdown has been requested. */
+    private final AtomicBoolean shutdownRequested = new AtomicBoolean();
+
+    /**
+     * Instantiates a new peer server and binds it to a port of the configured range.
+     *
+     * @param config configuration of the port range, connection limit and SSL
+     * @param blobCache the cache whose BLOBs to serve
+     * @throws IOException thrown if the server cannot bind to a port of the configured range
+     */
+    BlobPeerServer(Configuration config, PermanentBlobCache blobCache) throws IOException {
+        this.blobCache = checkNotNull(blobCache);
+
+        final int maxConnections = config.getInteger(BlobServerOptions.PEER_DISTRIBUTION_CONCURRENT);
+        if (maxConnections >= 1) {
+            this.maxConnections = maxConnections;
+        } else {
+            LOG.warn(
+                    "Invalid value for maximum connections of the BLOB peer server: {}. Using default value of {}",
+                    maxConnections,
+                    BlobServerOptions.PEER_DISTRIBUTION_CONCURRENT.defaultValue());
+            this.maxConnections = BlobServerOptions.PEER_DISTRIBUTION_CONCURRENT.defaultValue();
+        }
+
+        this.socketTimeout = config.getInteger(BlobServerOptions.SO_TIMEOUT);
+
+        final String serverPortRange = config.getString(BlobServerOptions.PEER_DISTRIBUTION_PORT);
+        final Iterator<Integer> ports = NetUtils.getPortRangeFromString(serverPortRange);
+
+        final ServerSocketFactory socketFactory;
+        if (SecurityOptions.isInternalSSLEnabled(config)
+                && config.getBoolean(BlobServerOptions.SSL_ENABLED)) {
+            try {
+                socketFactory = SSLUtils.createSSLServerSocketFactory(config);
+            } catch (Exception e) {
+                throw new IOException("Failed to initialize SSL for the BLOB peer server", e);
+            }
+        } else {
+            socketFactory = ServerSocketFactory.getDefault();
+        }
+
+        final int backlog = this.maxConnections;
+        this.serverSocket =
+                NetUtils.createSocketFromPorts(
+                        ports,
+                        (port) ->
+                                socketFactory.createServerSocket(
+                                        port,
+                                        backlog,
+                                        InetAddress.getByName(NetUtils.getWildcardIPAddress())));
+
+        if (serverSocket == null) {
+            throw new IOException(
+                    "Unable to open BLOB peer server in specified port range: " + serverPortRange);
+        }
+
+        this.rejectionExecutor =
+                Executors.newSingleThreadExecutor(
+                        new ExecutorThreadFactory("blob-peer-server-rejection"));
+
+        setName("BLOB peer server listener at " + getPort());
+        setDaemon(true);
+
+        LOG.info(
+                "Started BLOB peer server at {}:{} - max concurrent requests: {}",
+                serverSocket.getInetAddress().getHostAddress(),
+                getPort(),
+                this.maxConnections);
+    }
+
+    /** Returns the port the peer server listens on. */
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!shutdownRequested.get()) {
+                final Socket socket = NetUtils.acceptWithoutTimeout(serverSocket);
+
+                final boolean admitted;
+                synchronized (activeConnections) {
+                    admitted = activeConnections.size() < maxConnections;
+                    if (admitted) {
+                        activeConnections.add(socket);
+                    }
+                }
+
+                if (admitted) {
+                    final Thread thread =
+                            new Thread(
+                                    () -> serve(socket),
+                                    "BLOB peer connection for "
+                                            + socket.getRemoteSocketAddress());
+                    thread.setDaemon(true);
+                    thread.start();
+                } else {
+                    try {
+                        rejectionExecutor.execute(() -> reject(socket));
+                    } catch (RejectedExecutionException e) {
+                        // shutting down
+                        BlobUtils.closeSilently(socket, LOG);
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            if (!shutdownRequested.get()) {
+                LOG.error("BLOB peer server stopped working. Shutting down", t);
+
+                try {
+                    close();
+                } catch (Throwable closeThrowable) {
+                    LOG.error("Could not properly close the BLOB peer server.", closeThrowable);
+                }
+            }
+        }
+    }
+
+    /** Tells the requesting cache to try its next peer (without any delay). */
+    private static void reject(Socket socket) {
+        try {
+            // bound the time an (SSL) handshake may take on the rejecting thread
+            socket.setSoTimeout(BlobServerConnection.REJECTION_TIMEOUT);
+
+            final OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(RETURN_OVERLOADED);
+            writeLength(0, outputStream);
+            outputStream.flush();
+
+            // send the response before closing: closing with unread request data resets the
+            // connection which may discard the response at the peer, and so does request data
+            // arriving after closing, so wait for the peer to close its side first
+            if (!(socket instanceof SSLSocket)) {
+                socket.shutdownOutput();
+                BlobServerConnection.drainRequest(socket.getInputStream());
+            }
+        } catch (IOException e) {
+            LOG.debug("Failed to reject BLOB peer connection.", e);
+        } finally {
+            BlobUtils.closeSilently(socket, LOG);
+        }
+    }
+
+    /**
+     * Serves a single GET request for a permanent BLOB.
+     *
+     * @param socket the connection to the requesting cache
+     */
+    private void serve(Socket socket) {
+        try {
+            socket.setSoTimeout(socketTimeout);
+
+            final InputStream inputStream = socket.getInputStream();
+            final OutputStream outputStream = socket.getOutputStream();
+
+            final JobID jobId;
+            final PermanentBlobKey blobKey;
+            final FileInputStream blobStream;
+            try {
+                // read HEADER contents: operation, priority (ignored), job ID and key
+                final int operation = inputStream.read();
+                if (operation < 0) {
+                    return;
+                } else if (operation != GET_OPERATION) {
+                    throw new IOException("Peers only serve GET requests.");
+                }
+                if (inputStream.read() < 0 || inputStream.read() != JOB_RELATED_CONTENT) {
+                    throw new IOException("Peers only serve job-related BLOBs.");
+                }
+                final byte[] jidBytes = new byte[JobID.SIZE];
+                readFully(inputStream, jidBytes, 0, JobID.SIZE, "JobID");
+                jobId = JobID.fromByteArray(jidBytes);
+
+                final BlobKey key = BlobKey.readFromInputStream(inputStream);
+                if (!(key instanceof PermanentBlobKey)) {
+                    throw new IOException("Peers only serve permanent BLOBs.");
+                }
+                blobKey = (PermanentBlobKey) key;
+
+                blobStream = blobCache.openStreamForPeer(jobId, blobKey);
+            } catch (Throwable t) {
+                LOG.debug("GET operation from peer {} failed.", socket.getInetAddress(), t);
+                BlobServerConnection.writeErrorToStream(outputStream, t);
+                return;
+            }
+
+            try (FileInputStream fis = blobStream) {
+                final long blobLen = fis.getChannel().size();
+                if (blobLen > Integer.MAX_VALUE) {
+                    throw new IOException("BLOB size exceeds the maximum size (2 GB).");
+                }
+
+                LOG.debug(
+                        "Serving BLOB {}/{} to peer {}.", jobId, blobKey, socket.getInetAddress());
+
+                outputStream.write(RETURN_OKAY);
+                writeLength((int) blobLen, outputStream);
+
+                final byte[] buf = new byte[BUFFER_SIZE];
+                long bytesRemaining = blobLen;
+                while (bytesRemaining > 0) {
+                    final int read = fis.read(buf);
+                    if (read < 0) {
+                        throw new EOFException("Premature end of BLOB file stream");
+                    }
+                    outputStream.write(buf, 0, read);
+                    bytesRemaining -= read;
+                }
+            }
+
+            // wait for the peer's verification of the data
+            if (inputStream.read() < 0) {
+                throw new EOFException("Premature end of GET request");
+            }
+        } catch (SocketException e) {
+            // happens when the other side disconnects
+            LOG.debug("Socket connection closed", e);
+        } catch (Throwable t) {
+            LOG.warn("Failed to serve BLOB to peer {}.", socket.getInetAddress(), t);
+        } finally {
+            BlobUtils.closeSilently(socket, LOG);
+            synchronized (activeConnections) {
+                activeConnections.remove(socket);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (shutdownRequested.compareAndSet(false, true)) {
+            rejectionExecutor.shutdownNow();
+            try {
+                serverSocket.close();
+            } finally {
+                synchronized (activeConnections) {
+                    for (Socket socket : activeConnections) {
+                        BlobUtils.closeSilently(socket, LOG);
+                    }
+                    activeConnections.clear();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static flink.util.Preconditions.checkArgument;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Keeps track of the blob caches holding (or downloading) permanent BLOBs, so that caches can
+ * download BLOBs from each other instead of all from the {@link BlobServer}.
+ *
+ * <p>A cache announces that it is about to download a BLOB when looking up peers for it, and that
+ * it holds the BLOB once the download has completed. Lookups suggest the peers holding the BLOB
+ * first, least-used first, followed by the peers still downloading it in order of their
+ * announcements. Since a peer is only suggested to caches announcing after it, downloads spread
+ * over the caches like a distribution tree.
+ *
+ * <p>Entries are only removed with their job: a suggested peer may thus not hold the BLOB (any
+ * more), in which case the cache simply tries its next peer or the {@link BlobServer}.
+ */
+final class BlobPeerTracker {
+
+    /** Peers per BLOB in order of their announcements (guarded by this). */
+    private final Map<JobID, Map<PermanentBlobKey, LinkedHashMap<InetSocketAddress, PeerState>>>
+            peers = new HashMap<>();
+
+    /**
+     * Returns up to the given number of peers to download a BLOB from and registers the requesting
+     * peer as downloading it.
+     *
+     * @param jobId ID of the job the BLOB belongs to
+     * @param blobKey key of the BLOB
+     * @param requester address the requesting peer serves BLOBs on
+     * @param maxPeers maximum number of peers to return
+     * @return peers to try in the given order
+     */
+    synchronized List<InetSocketAddress> lookup(
+            JobID jobId, PermanentBlobKey blobKey, InetSocketAddress requester, int maxPeers) {
+        checkArgument(maxPeers >= 0, "The number of peers must not be negative.");
+        final LinkedHashMap<InetSocketAddress, PeerState> blobPeers =
+                getBlobPeers(jobId, blobKey);
+
+        // a peer downloading again (e.g. after its cleanup) only gets peers announced before it
+        blobPeers.remove(requester);
+
+        final List<Map.Entry<InetSocketAddress, PeerState>> candidates = new ArrayList<>();
+        for (Map.Entry<InetSocketAddress, PeerState> entry : blobPeers.entrySet()) {
+            if (entry.getValue().complete) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(Comparator.comparingInt(entry -> entry.getValue().numSuggested));
+        for (Map.Entry<InetSocketAddress, PeerState> entry : blobPeers.entrySet()) {
+            if (!entry.getValue().complete) {
+                candidates.add(entry);
+            }
+        }
+
+        final List<InetSocketAddress> result = new ArrayList<>();
+        for (Map.Entry<InetSocketAddress, PeerState> candidate : candidates) {
+            if (result.size() >= maxPeers) {
+                break;
+            }
+            candidate.getValue().numSuggested++;
+            result.add(candidate.getKey());
+        }
+
+        blobPeers.put(requester, new PeerState());
+        return result;
+    }
+
+    /**
+     * Registers a peer as holding a BLOB.
+     *
+     * @param jobId ID of the job the BLOB belongs to
+     * @param blobKey key of the BLOB
+     * @param peer address the peer serves BLOBs on
+     */
+    synchronized void complete(JobID jobId, PermanentBlobKey blobKey, InetSocketAddress peer) {
+        getBlobPeers(jobId, blobKey).computeIfAbsent(peer, ignored -> new PeerState()).complete =
+                true;
+    }
+
+    /**
+     * Forgets all peers of the given job's BLOBs.
+     *
+     * @param jobId ID of the job
+     */
+    synchronized void removeJob(JobID jobId) {
+        peers.remove(checkNotNull(jobId));
+    }
+
+    /** Returns the number of peers known for a BLOB. */
+    synchronized int getNumPeers(JobID jobId, PermanentBlobKey blobKey) {
+        final Map<PermanentBlobKey, LinkedHashMap<InetSocketAddress, PeerState>> jobPeers =
+                peers.get(jobId);
+        if (jobPeers == null) {
+            return 0;
+        }
+        final Map<InetSocketAddress, PeerState> blobPeers = jobPeers.get(blobKey);
+        return blobPeers == null ? 0 : blobPeers.size();
+    }
+
+    private LinkedHashMap<InetSocketAddress, PeerState> getBlobPeers(
+            JobID jobId, PermanentBlobKey blobKey) {
+        return peers.computeIfAbsent(checkNotNull(jobId), ignored -> new HashMap<>())
+                .computeIfAbsent(checkNotNull(blobKey), ignored -> new LinkedHashMap<>());
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /** What is known about a peer of a BLOB. */
+    private static final class PeerState {
+
+        /** Whether the peer completed its download. */
+        private boolean complete;
+
+        /** How often the peer has been suggested to others. */
+        private int numSuggested;
+    }
+}
@@ -0,0 +1,60 @@
+package flink.runtime.blob;
+
+import java.io.IOException;
+
+/**
+ * Priority classes of requests to the {@link BlobServer}, in descending order of priority.
+ *
+ * <p>Waiting connections are served by priority, but no connection waits longer than {@link
+ * flink.configuration.BlobServerOptions#PRIORITY_MAX_WAIT} while others overtake it. Unless
+ * specified otherwise by the client, downloads of permanent BLOBs (job artifacts on the
+ * deployment path) and lookups of peers holding them are {@link #CRITICAL}, uploads of permanent
+ * BLOBs are {@link #NORMAL} and all transfers of transient BLOBs (logs, thread dumps, etc.) are
+ * {@link #BULK}.
+ */
+public enum BlobRequestPriority {
+
+    /** Requests blocking a job's deployment, e.g. fetching its jars. */
+    CRITICAL,
+
+    /** Requests without special requirements. */
+    NORMAL,
+
+    /** Large transfers which may take a while, e.g. of log files. */
+    BULK;
+
+    private static final BlobRequestPriority[] VALUES = values();
+
+    /**
+     * Returns the default priority of a request.
+     *
+     * @param operation {@link BlobServerProtocol#GET_OPERATION}, {@link
+     *     BlobServerProtocol#PUT_OPERATION}, {@link BlobServerProtocol#PUT_CHUNKED_OPERATION} or
+     *     {@link BlobServerProtocol#PEERS_OPERATION}
+     * @param blobType type of the requested or uploaded BLOB
+     * @return the request's priority
+     */
+    static BlobRequestPriority getDefault(byte operation, BlobKey.BlobType blobType) {
+        if (blobType == BlobKey.BlobType.TRANSIENT_BLOB) {
+            return BULK;
+        }
+        return operation == BlobServerProtocol.PUT_OPERATION
+                        || operation == BlobServerProtocol.PUT_CHUNKED_OPERATION
+                ? NORMAL
+                : CRITICAL;
+    }
+
+    /**
+     * Returns the priority with the given wire representation.
+     *
+     * @param value the priority's ordinal as received from the client
+     * @return the priority
+     * @throws IOException if the value is not a valid priority
+     */
+    static BlobRequestPriority fromByte(int value) throws IOException {
+        if (value < 0 || value >= VALUES.length) {
+            throw new IOException("Invalid request priority: " + value + '.');
+        }
+        return VALUES[value];
+    }
+}
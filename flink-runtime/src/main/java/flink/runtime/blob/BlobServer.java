@@ -3,10 +3,14 @@ package flink.runtime.blob;
 
 import flink.api.common.JobID;
 import flink.configuration.BlobServerOptions;
+import flink.configuration.ConfigOption;
 import flink.configuration.Configuration;
 import flink.configuration.JobManagerOptions;
 import flink.configuration.SecurityOptions;
 import flink.flink_core.api.java.tuple.Tuple2;
+import flink.metrics.Gauge;
+import flink.metrics.MetricGroup;
+import flink.metrics.groups.UnregisteredMetricsGroup;
 
 
 import flink.runtime.net.SSLUtils;
@@ -14,27 +18,53 @@ import flink.util.ExceptionUtils;
 import flink.util.FileUtils;
 import flink.util.NetUtils;
 import flink.util.ShutdownHookUtil;
+import flink.util.concurrent.ExecutorThreadFactory;
+import flink.util.concurrent.FutureUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.net.ServerSocketFactory;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import static flink.runtime.blob.BlobKey.BlobType.PERMANENT_BLOB;
+import static flink.runtime.blob.BlobKey.BlobType.TRANSIENT_BLOB;
+import static flink.runtime.blob.BlobServerProtocol.BUFFER_SIZE;
+import static flink.util.Preconditions.checkArgument;
 import static flink.util.Preconditions.checkNotNull;
 
 
@@ -45,12 +75,16 @@ import static flink.util.Preconditions.checkNotNull;
  * @Since 1.0
  * @Date 12/22/2022
  */
-public class BlobServer extends Thread implements BlobService ,BlobWriter{
+public class BlobServer extends Thread
+        implements BlobService, BlobWriter, PermanentBlobService, TransientBlobService {
 
 
     /** The log object used for debugging. */
     private static final Logger LOG = LoggerFactory.getLogger(BlobServer.class);
 
+    /** Maximum number of BLOB files to cache the chunk hashes of. */
+    private static final int MAX_TREE_HASH_CACHED_FILES = 1024;
+
     /** Blob Server configuration. */
     private final Configuration blobServiceConfiguration;
 
@@ -58,6 +92,12 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
     /** Blob store for distributed file storage, e.g. in HA. */
     private final BlobStore blobStore;
 
+    /** Uploads permanent BLOBs to the {@link #blobStore} outside of the locks. */
+    private final BlobStoreReplicator blobStoreReplicator;
+
+    /** Whether permanent BLOB uploads wait for the upload to the {@link #blobStore}. */
+    private final BlobServerOptions.HaReplicationMode haReplicationMode;
+
 
     /** Lock guarding concurrent file accesses. */
     private final ReadWriteLock readWriteLock;
@@ -69,6 +109,51 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
     /** The maximum number of concurrent connections. */
     private final int maxConnections;
 
+    /** The maximum number of accepted connections waiting for a free slot. */
+    private final int maxQueuedConnections;
+
+    /** Delay (ms) rejected clients are asked to wait before retrying. */
+    private final int overloadRetryAfter;
+
+    /**
+     * Shares the bandwidth limit of all connections together among jobs (or <tt>null</tt> if
+     * unlimited).
+     */
+    @Nullable private final FairBandwidthScheduler bandwidthScheduler;
+
+    /** Weights of jobs set via {@link #setJobWeight(JobID, int)}. */
+    private final ConcurrentHashMap<JobID, Integer> jobWeights = new ConcurrentHashMap<>();
+
+    /** Weight of jobs without an explicitly set weight. */
+    private final int defaultJobWeight;
+
+    /** Weight of job-unrelated BLOBs. */
+    private final int noJobWeight;
+
+    /** Limits the bandwidth of all bulk requests (or <tt>null</tt> if unlimited). */
+    @Nullable private final BandwidthLimiter bulkBandwidthLimiter;
+
+    /** Reads of BLOB files shared by concurrent GET requests. */
+    private final SharedBlobReads sharedReads;
+
+    /** Caches holding (or downloading) permanent BLOBs, for peer-to-peer distribution. */
+    private final BlobPeerTracker peerTracker = new BlobPeerTracker();
+
+    /** Index of the chunks of permanent BLOBs uploaded in chunks. */
+    private final BlobChunkIndex chunkIndex = new BlobChunkIndex();
+
+    /** Threads hashing the chunks of BLOBs for verified GET requests. */
+    private final ExecutorService treeHashExecutor;
+
+    /** Hashes of the chunks of BLOBs for verified GET requests. */
+    private final BlobTreeHashes treeHashes;
+
+    /** The maximum number of peers suggested per lookup. */
+    private final int maxPeers;
+
+    /** The bandwidth (bytes/s) of a single connection, non-positive if unlimited. */
+    private final long connectionBandwidth;
+
 
     /** Time interval (ms) to run the cleanup task; also used as the default TTL. */
     private final long cleanupInterval;
@@ -76,6 +161,30 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
     /** Timer task to execute the cleanup at regular intervals. */
     private final Timer cleanupTimer;
 
+    /** Executor for prefetching permanent BLOBs from the HA blob store. */
+    private final ExecutorService ioExecutor;
+
+    /** Executor persisting BLOBs uploaded via {@link #putPermanentAsync(JobID, byte[])}. */
+    private final ExecutorService asyncWriteExecutor;
+
+    /** The maximum number of bytes of asynchronous uploads in flight. */
+    private final int maxAsyncWriteBytes;
+
+    /** Lock guarding the state of the asynchronous uploads. */
+    private final Object asyncWriteLock = new Object();
+
+    /** Bytes of the asynchronous uploads which have been handed to the writer pool. */
+    @GuardedBy("asyncWriteLock")
+    private long asyncWriteBytesInFlight;
+
+    /** Asynchronous uploads waiting for in-flight bytes to become available, in order. */
+    @GuardedBy("asyncWriteLock")
+    private final ArrayDeque<AsyncWrite> queuedAsyncWrites = new ArrayDeque<>();
+
+    /** Whether the server has been closed, i.e. asynchronous uploads are no longer accepted. */
+    @GuardedBy("asyncWriteLock")
+    private boolean asyncWritesClosed;
+
 
     /** The server socket listening for incoming connections. */
     private final ServerSocket serverSocket;
@@ -84,16 +193,38 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
     private final ConcurrentHashMap<Tuple2<JobID, TransientBlobKey>, Long> blobExpiryTimes =
             new ConcurrentHashMap<>();
 
+    /** Downloads from the HA blob store which are currently in progress, one per blob. */
+    private final ConcurrentHashMap<Tuple2<JobID, PermanentBlobKey>, CompletableFuture<Void>>
+            pendingBlobStoreDownloads = new ConcurrentHashMap<>();
+
+    /**
+     * Number of open {@link MappedBlobBuffer}s per job; the job's local files are not deleted while
+     * referenced (guarded by itself).
+     */
+    private final Map<JobID, Integer> pinnedJobs = new HashMap<>();
+
+    /** Jobs whose local cleanup was deferred until their last buffer is closed. */
+    private final Set<JobID> pendingJobCleanups = new HashSet<>();
+
 
     /** Set of currently running threads. */
     private final Set<BlobServerConnection> activeConnections = new HashSet<>();
 
+    /** Accepted connections waiting for a free slot (guarded by {@link #activeConnections}). */
+    private final BlobConnectionQueue queuedConnections;
+
+    /** Sends the overload responses to rejected connections, off the listener thread. */
+    private final ExecutorService rejectionExecutor;
+
     /** Shutdown hook thread to ensure deletion of the local storage directory. */
     private final Thread shutdownHook;
 
     /** Counter to generate unique names for temporary files. */
     private final AtomicLong tempFileCounter = new AtomicLong(0);
 
+    /** Metrics of the hot paths of this server. */
+    private final BlobServerMetrics metrics;
+
     /** Indicates whether a shutdown of server component has been requested. */
     private final AtomicBoolean shutdownRequested = new AtomicBoolean();
 
@@ -106,9 +237,28 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
      *     (local or distributed) file storage cannot be created or is not usable
      */
     public BlobServer(Configuration config, BlobStore blobStore) throws IOException {
+        this(config, blobStore, new UnregisteredMetricsGroup());
+    }
+
+    /**
+     * Instantiates a new BLOB server, binds it to a free network port and registers its metrics.
+     *
+     * @param config Configuration to be used to instantiate the BlobServer
+     * @param blobStore BlobStore to store blobs persistently
+     * @param metricGroup group to register the server's metrics with
+     * @throws IOException thrown if the BLOB server cannot bind to a free network port or if the
+     *     (local or distributed) file storage cannot be created or is not usable
+     */
+    public BlobServer(Configuration config, BlobStore blobStore, MetricGroup metricGroup)
+            throws IOException {
         this.blobServiceConfiguration = checkNotNull(config);
         this.blobStore = checkNotNull(blobStore);
-        this.readWriteLock = new ReentrantReadWriteLock();
+        this.metrics = new BlobServerMetrics(metricGroup);
+        this.readWriteLock =
+                new TimedReadWriteLock(
+                        new ReentrantReadWriteLock(),
+                        metrics.readLockWaitTime,
+                        metrics.writeLockWaitTime);
 
         // configure and create the storage directory
         this.storageDir = BlobUtils.initLocalStorageDirectory(config);
@@ -142,18 +292,175 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
             backlog = BlobServerOptions.FETCH_BACKLOG.defaultValue();
         }
 
+        // configure the admission control of connections beyond the concurrent ones
+        final int maxQueuedConnections = config.getInteger(BlobServerOptions.FETCH_QUEUE_CAPACITY);
+        if (maxQueuedConnections >= 0) {
+            this.maxQueuedConnections = maxQueuedConnections;
+        } else {
+            LOG.warn(
+                    "Invalid value for the BLOB connection queue capacity: {}. Using default value of {}",
+                    maxQueuedConnections,
+                    BlobServerOptions.FETCH_QUEUE_CAPACITY.defaultValue());
+            this.maxQueuedConnections = BlobServerOptions.FETCH_QUEUE_CAPACITY.defaultValue();
+        }
+        this.overloadRetryAfter =
+                Math.max(0, config.getInteger(BlobServerOptions.OVERLOAD_RETRY_AFTER));
+        long priorityMaxWait = config.getLong(BlobServerOptions.PRIORITY_MAX_WAIT);
+        if (priorityMaxWait < 0) {
+            LOG.warn(
+                    "Invalid value for the maximum wait time of BLOB connections: {}. Using default value of {}",
+                    priorityMaxWait,
+                    BlobServerOptions.PRIORITY_MAX_WAIT.defaultValue());
+            priorityMaxWait = BlobServerOptions.PRIORITY_MAX_WAIT.defaultValue();
+        }
+        this.defaultJobWeight =
+                getPositiveWeight(config, BlobServerOptions.JOB_DEFAULT_WEIGHT);
+        this.noJobWeight = getPositiveWeight(config, BlobServerOptions.NO_JOB_WEIGHT);
+        this.queuedConnections =
+                new BlobConnectionQueue(
+                        TimeUnit.MILLISECONDS.toNanos(priorityMaxWait), this::getJobWeight);
+        this.rejectionExecutor =
+                Executors.newSingleThreadExecutor(
+                        new ExecutorThreadFactory("blob-server-rejection"));
+
+        // configure the bandwidth limits
+        this.connectionBandwidth = config.getLong(BlobServerOptions.BANDWIDTH_PER_CONNECTION);
+        this.bandwidthScheduler =
+                FairBandwidthScheduler.create(
+                        config.getLong(BlobServerOptions.BANDWIDTH_TOTAL), this::getJobWeight);
+        this.bulkBandwidthLimiter =
+                BandwidthLimiter.create(config.getLong(BlobServerOptions.BANDWIDTH_BULK));
+
+        // configure the sharing of reads among concurrent GET requests
+        long sharedReadWindow = config.getLong(BlobServerOptions.SHARED_READ_WINDOW);
+        if (sharedReadWindow < 0) {
+            LOG.warn(
+                    "Invalid value for the shared read window of the BLOB server: {}. Using default value of {}",
+                    sharedReadWindow,
+                    BlobServerOptions.SHARED_READ_WINDOW.defaultValue());
+            sharedReadWindow = BlobServerOptions.SHARED_READ_WINDOW.defaultValue();
+        }
+        this.sharedReads = new SharedBlobReads(sharedReadWindow, metrics.numBytesReadGet);
+
+        // configure the peer-to-peer distribution among the caches
+        final int maxPeers = config.getInteger(BlobServerOptions.PEER_DISTRIBUTION_MAX_PEERS);
+        if (maxPeers >= 0) {
+            this.maxPeers = maxPeers;
+        } else {
+            LOG.warn(
+                    "Invalid value for the maximum number of BLOB peers: {}. Using default value of {}",
+                    maxPeers,
+                    BlobServerOptions.PEER_DISTRIBUTION_MAX_PEERS.defaultValue());
+            this.maxPeers = BlobServerOptions.PEER_DISTRIBUTION_MAX_PEERS.defaultValue();
+        }
+
+        // configure the hashing of chunks for verified GET requests
+        int treeHashPoolSize = config.getInteger(BlobServerOptions.TREE_HASH_POOL_SIZE);
+        if (treeHashPoolSize < 1) {
+            LOG.warn(
+                    "Invalid value for the BLOB server tree hash pool size: {}. Using default value of {}",
+                    treeHashPoolSize,
+                    BlobServerOptions.TREE_HASH_POOL_SIZE.defaultValue());
+            treeHashPoolSize = BlobServerOptions.TREE_HASH_POOL_SIZE.defaultValue();
+        }
+        this.treeHashExecutor =
+                Executors.newFixedThreadPool(
+                        treeHashPoolSize, new ExecutorThreadFactory("blob-server-tree-hash"));
+        this.treeHashes = new BlobTreeHashes(treeHashExecutor, MAX_TREE_HASH_CACHED_FILES);
+
+        // configure the number of threads fetching BLOBs from the HA blob store in the background
+        int ioPoolSize = config.getInteger(BlobServerOptions.IO_POOL_SIZE);
+        if (ioPoolSize < 1) {
+            LOG.warn(
+                    "Invalid value for the BLOB server I/O pool size: {}. Using default value of {}",
+                    ioPoolSize,
+                    BlobServerOptions.IO_POOL_SIZE.defaultValue());
+            ioPoolSize = BlobServerOptions.IO_POOL_SIZE.defaultValue();
+        }
+        this.ioExecutor =
+                Executors.newFixedThreadPool(ioPoolSize, new ExecutorThreadFactory("blob-server-io"));
+
+        // configure the asynchronous uploads and their backpressure
+        int asyncWritePoolSize = config.getInteger(BlobServerOptions.ASYNC_WRITE_POOL_SIZE);
+        if (asyncWritePoolSize < 1) {
+            LOG.warn(
+                    "Invalid value for the BLOB server async write pool size: {}. Using default value of {}",
+                    asyncWritePoolSize,
+                    BlobServerOptions.ASYNC_WRITE_POOL_SIZE.defaultValue());
+            asyncWritePoolSize = BlobServerOptions.ASYNC_WRITE_POOL_SIZE.defaultValue();
+        }
+        this.asyncWriteExecutor =
+                Executors.newFixedThreadPool(
+                        asyncWritePoolSize, new ExecutorThreadFactory("blob-server-writer"));
+
+        long maxAsyncWriteBytes = config.getLong(BlobServerOptions.ASYNC_WRITE_MAX_IN_FLIGHT_BYTES);
+        if (maxAsyncWriteBytes < 1) {
+            LOG.warn(
+                    "Invalid value for the maximum in-flight bytes of asynchronous BLOB uploads: {}. Using default value of {}",
+                    maxAsyncWriteBytes,
+                    BlobServerOptions.ASYNC_WRITE_MAX_IN_FLIGHT_BYTES.defaultValue());
+            maxAsyncWriteBytes = BlobServerOptions.ASYNC_WRITE_MAX_IN_FLIGHT_BYTES.defaultValue();
+        }
+        this.maxAsyncWriteBytes = (int) Math.min(maxAsyncWriteBytes, Integer.MAX_VALUE);
+
+        // configure the uploads to the HA blob store
+        this.haReplicationMode =
+                config.getOptional(BlobServerOptions.HA_REPLICATION_MODE)
+                        .orElseGet(BlobServerOptions.HA_REPLICATION_MODE::defaultValue);
+        int replicationPoolSize = config.getInteger(BlobServerOptions.HA_REPLICATION_POOL_SIZE);
+        if (replicationPoolSize < 1) {
+            LOG.warn(
+                    "Invalid value for the BLOB server HA replication pool size: {}. Using default value of {}",
+                    replicationPoolSize,
+                    BlobServerOptions.HA_REPLICATION_POOL_SIZE.defaultValue());
+            replicationPoolSize = BlobServerOptions.HA_REPLICATION_POOL_SIZE.defaultValue();
+        }
+        final long retryDelay =
+                Math.max(0L, config.getLong(BlobServerOptions.HA_REPLICATION_RETRY_DELAY));
+        this.blobStoreReplicator =
+                new BlobStoreReplicator(
+                        blobStore,
+                        replicationPoolSize,
+                        Math.max(0, config.getInteger(BlobServerOptions.HA_REPLICATION_MAX_RETRIES)),
+                        retryDelay,
+                        Math.max(
+                                retryDelay,
+                                config.getLong(BlobServerOptions.HA_REPLICATION_MAX_RETRY_DELAY)),
+                        metrics.numFailedBlobStoreReplications,
+                        LOG);
+
         // Initializing the clean up task
         this.cleanupTimer = new Timer(true);
 
         this.cleanupInterval = config.getLong(BlobServerOptions.CLEANUP_INTERVAL) * 1000;
         this.cleanupTimer.schedule(
                 new TransientBlobCleanupTask(
-                        blobExpiryTimes, readWriteLock.writeLock(), storageDir, LOG),
+                        blobExpiryTimes,
+                        readWriteLock.writeLock(),
+                        storageDir,
+                        metrics.numTransientExpiryDeletions,
+                        LOG),
                 cleanupInterval,
                 cleanupInterval);
 
         this.shutdownHook = ShutdownHookUtil.addShutdownHook(this, getClass().getSimpleName(), LOG);
 
+        metricGroup.gauge("numActiveConnections", (Gauge<Integer>) this::getNumActiveConnections);
+        metricGroup.gauge("numQueuedConnections", (Gauge<Integer>) this::getNumQueuedConnections);
+        for (BlobRequestPriority priority : BlobRequestPriority.values()) {
+            BlobServerMetrics.getPriorityGroup(metricGroup, priority)
+                    .gauge(
+                            "numQueuedConnections",
+                            (Gauge<Integer>) () -> getNumQueuedConnections(priority));
+        }
+        metricGroup.gauge(
+                "numPendingBlobStoreReplications",
+                (Gauge<Integer>) this::getNumPendingBlobStoreReplications);
+        metricGroup.gauge(
+                "blobStoreReplicationLag", (Gauge<Long>) this::getBlobStoreReplicationLag);
+        metricGroup.gauge(
+                "storageBytesPerJob", BlobServerMetrics.createStorageBytesPerJobGauge(storageDir));
+
         //  ----------------------- start the server -------------------
 
         final String serverPortRange = config.getString(BlobServerOptions.PORT);
@@ -194,32 +501,526 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
 
         if (LOG.isInfoEnabled()) {
             LOG.info(
-                    "Started BLOB server at {}:{} - max concurrent requests: {} - max backlog: {}",
+                    "Started BLOB server at {}:{} - max concurrent requests: {} - max queued requests: {} - max backlog: {}",
                     serverSocket.getInetAddress().getHostAddress(),
                     getPort(),
                     maxConnections,
+                    maxQueuedConnections,
                     backlog);
         }
     }
 
+    // --------------------------------------------------------------------------------------------
+    //  GET
+    // --------------------------------------------------------------------------------------------
+
+    @Override
+    public File getFile(TransientBlobKey key) throws IOException {
+        return getFileInternal(null, key);
+    }
+
+    @Override
+    public File getFile(JobID jobId, TransientBlobKey key) throws IOException {
+        checkNotNull(jobId);
+        return getFileInternal(jobId, key);
+    }
+
+    @Override
+    public InputStream openStream(TransientBlobKey key) throws IOException {
+        return openStreamInternal(null, key);
+    }
+
+    @Override
+    public InputStream openStream(JobID jobId, TransientBlobKey key) throws IOException {
+        checkNotNull(jobId);
+        return openStreamInternal(jobId, key);
+    }
+
+    @Override
+    public InputStream openStream(JobID jobId, PermanentBlobKey key) throws IOException {
+        checkNotNull(jobId);
+        return openStreamInternal(jobId, key);
+    }
+
+    /**
+     * Returns the path to a local copy of the file associated with the provided job ID and blob
+     * key.
+     *
+     * <p>We will first attempt to serve the BLOB from the local storage. If the BLOB is not in
+     * there, we will try to download it from the HA store.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param key blob key associated with the requested file
+     * @return The path to the file.
+     * @throws java.io.FileNotFoundException if the BLOB does not exist;
+     * @throws IOException if any other error occurs when retrieving the file
+     */
+    @Override
+    public File getFile(JobID jobId, PermanentBlobKey key) throws IOException {
+        checkNotNull(jobId);
+        return getFileInternal(jobId, key);
+    }
+
+    /**
+     * Returns the content of the file for the BLOB with the provided job ID the blob key.
+     *
+     * <p>The file is retrieved and read while holding the read lock, so it cannot be deleted
+     * concurrently in between.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param key BLOB key associated with the requested file
+     * @return The content of the BLOB.
+     * @throws java.io.FileNotFoundException if the BLOB does not exist;
+     * @throws IOException if any other error occurs when retrieving the file.
+     */
+    @Override
+    public byte[] readFile(JobID jobId, PermanentBlobKey key) throws IOException {
+        checkNotNull(jobId);
+        checkNotNull(key);
+
+        final File localFile = BlobUtils.getStorageLocation(storageDir, jobId, key);
+        readWriteLock.readLock().lock();
+
+        try {
+            getFileInternal(jobId, key, localFile);
+            return FileUtils.readAllBytes(localFile.toPath());
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a read-only, memory-mapped view on the content of the BLOB with the provided job ID
+     * and blob key.
+     *
+     * <p>The job's local files are not deleted by {@link #cleanupJob(JobID, boolean)} until the
+     * returned buffer has been closed.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param key BLOB key associated with the requested file
+     * @return The content of the BLOB which must be closed after use.
+     * @throws FileNotFoundException if the BLOB does not exist;
+     * @throws IOException if any other error occurs when retrieving or mapping the file.
+     */
+    @Override
+    public MappedBlobBuffer readBuffer(JobID jobId, PermanentBlobKey key) throws IOException {
+        checkNotNull(jobId);
+        checkNotNull(key);
+
+        final File localFile = BlobUtils.getStorageLocation(storageDir, jobId, key);
+        readWriteLock.readLock().lock();
+
+        try {
+            getFileInternal(jobId, key, localFile);
+            final MappedBlobBuffer buffer = MappedBlobBuffer.map(localFile, () -> unpinJob(jobId));
+
+            // cleanupJob() needs the write lock, i.e. it cannot run before the job is pinned
+            synchronized (pinnedJobs) {
+                pinnedJobs.merge(jobId, 1, Integer::sum);
+            }
+            return buffer;
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gives up one reference to the local files of the given job and runs a deferred cleanup once
+     * the last reference is gone.
+     *
+     * @param jobId ID of the job whose buffer was closed
+     */
+    private void unpinJob(JobID jobId) {
+        synchronized (pinnedJobs) {
+            final Integer references = pinnedJobs.get(jobId);
+            if (references == null) {
+                return;
+            } else if (references > 1) {
+                pinnedJobs.put(jobId, references - 1);
+                return;
+            }
+        }
+
+        // the last reference is gone: re-check under the write lock since readBuffer() may have
+        // pinned the job again in the meantime
+        readWriteLock.writeLock().lock();
+        try {
+            synchronized (pinnedJobs) {
+                final Integer references = pinnedJobs.get(jobId);
+                if (references == null) {
+                    return;
+                } else if (references > 1) {
+                    pinnedJobs.put(jobId, references - 1);
+                    return;
+                }
+
+                pinnedJobs.remove(jobId);
+                if (!pendingJobCleanups.remove(jobId)) {
+                    return;
+                }
+            }
+
+            final File jobDir =
+                    new File(
+                            BlobUtils.getStorageLocationPath(storageDir.getAbsolutePath(), jobId));
+            try {
+                FileUtils.deleteDirectory(jobDir);
+            } catch (IOException e) {
+                LOG.warn(
+                        "Failed to locally delete BLOB storage directory at "
+                                + jobDir.getAbsolutePath(),
+                        e);
+            }
+        } finally {
+            readWriteLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the local path of a (job-unrelated) file associated with a job and a blob key.
+     *
+     * <p>The blob server looks the blob key up in its local storage. If the file exists, it is
+     * returned. If the file does not exist, it is retrieved from the HA blob store (if available)
+     * or a {@link FileNotFoundException} is thrown.
+     *
+     * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
+     * @param blobKey blob key associated with the requested file
+     * @return file referring to the local storage location of the BLOB
+     * @throws IOException Thrown if the file retrieval failed.
+     */
+    private File getFileInternal(@Nullable JobID jobId, BlobKey blobKey) throws IOException {
+        checkNotNull(blobKey);
+
+        final File localFile = BlobUtils.getStorageLocation(storageDir, jobId, blobKey);
+        readWriteLock.readLock().lock();
+
+        try {
+            getFileInternal(jobId, blobKey, localFile);
+            return localFile;
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Opens a stream on the local copy of the file associated with a job and a blob key.
+     *
+     * <p>The file is opened while holding the read lock; an open file stays readable even if it
+     * is deleted concurrently afterwards.
+     *
+     * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
+     * @param blobKey blob key associated with the requested file
+     * @return stream on the local storage location of the BLOB
+     * @throws IOException Thrown if the file retrieval failed.
+     */
+    private InputStream openStreamInternal(@Nullable JobID jobId, BlobKey blobKey)
+            throws IOException {
+        checkNotNull(blobKey);
+
+        final File localFile = BlobUtils.getStorageLocation(storageDir, jobId, blobKey);
+        readWriteLock.readLock().lock();
+
+        try {
+            getFileInternal(jobId, blobKey, localFile);
+            return new FileInputStream(localFile);
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+    //  PUT
+    // --------------------------------------------------------------------------------------------
+
+    @Override
+    public TransientBlobKey putTransient(byte[] value) throws IOException {
+        return (TransientBlobKey) putBuffer(null, value, TRANSIENT_BLOB);
+    }
+
+    @Override
+    public TransientBlobKey putTransient(JobID jobId, byte[] value) throws IOException {
+        checkNotNull(jobId);
+        return (TransientBlobKey) putBuffer(jobId, value, TRANSIENT_BLOB);
+    }
+
+    @Override
+    public TransientBlobKey putTransient(InputStream inputStream) throws IOException {
+        return (TransientBlobKey) putInputStream(null, inputStream, TRANSIENT_BLOB);
+    }
+
+    @Override
+    public TransientBlobKey putTransient(JobID jobId, InputStream inputStream)
+            throws IOException {
+        checkNotNull(jobId);
+        return (TransientBlobKey) putInputStream(jobId, inputStream, TRANSIENT_BLOB);
+    }
+
+    @Override
+    public PermanentBlobKey putPermanent(JobID jobId, byte[] value) throws IOException {
+        checkNotNull(jobId);
+        return (PermanentBlobKey) putBuffer(jobId, value, PERMANENT_BLOB);
+    }
+
+    @Override
+    public PermanentBlobKey putPermanent(JobID jobId, InputStream inputStream) throws IOException {
+        checkNotNull(jobId);
+        return (PermanentBlobKey) putInputStream(jobId, inputStream, PERMANENT_BLOB);
+    }
+
+    /**
+     * Asynchronously uploads the data of the given byte array for the given job to the BLOB server
+     * and makes it a permanent BLOB.
+     *
+     * <p>Hashing, writing the local file and the upload to the HA store run on the blob server's
+     * writer pool. This method never blocks: if the configured maximum of in-flight bytes ({@link
+     * BlobServerOptions#ASYNC_WRITE_MAX_IN_FLIGHT_BYTES}) is reached, the upload is queued until
+     * enough previous uploads have completed. Callers bound their memory by waiting for the
+     * returned futures.
+     *
+     * @param jobId the ID of the job the BLOB belongs to
+     * @param value the buffer to upload (must not be modified until the future completes)
+     * @return future of the computed BLOB key identifying the BLOB on the server, completed
+     *     exceptionally if the upload failed or the server has been closed before
+     */
+    @Override
+    public CompletableFuture<PermanentBlobKey> putPermanentAsync(JobID jobId, byte[] value) {
+        checkNotNull(jobId);
+        checkNotNull(value);
+
+        // buffers larger than the limit may only proceed if nothing else is in flight
+        final AsyncWrite write =
+                new AsyncWrite(jobId, value, Math.min(value.length, maxAsyncWriteBytes));
+
+        synchronized (asyncWriteLock) {
+            if (asyncWritesClosed) {
+                return FutureUtils.completedExceptionally(
+                        new IOException(
+                                "Cannot upload a BLOB of job "
+                                        + jobId
+                                        + ": the BLOB server has been closed."));
+            }
+
+            if (!queuedAsyncWrites.isEmpty()
+                    || asyncWriteBytesInFlight + write.permits > maxAsyncWriteBytes) {
+                queuedAsyncWrites.add(write);
+                return write.result;
+            }
+            asyncWriteBytesInFlight += write.permits;
+        }
+
+        submitAsyncWrite(write);
+        return write.result;
+    }
+
+    /** Hands the given upload, whose bytes are already accounted as in flight, to the pool. */
+    private void submitAsyncWrite(AsyncWrite write) {
+        try {
+            asyncWriteExecutor.execute(write);
+        } catch (Throwable t) {
+            // e.g. rejected because the server is being closed
+            write.result.completeExceptionally(
+                    new IOException(
+                            "Could not start the upload of a BLOB of job " + write.jobId + '.', t));
+            releaseAsyncWriteBytes(write.permits);
+        }
+    }
+
+    /** Releases the bytes of a finished upload and starts the queued uploads which fit now. */
+    private void releaseAsyncWriteBytes(long permits) {
+        final List<AsyncWrite> startable = new ArrayList<>();
+        synchronized (asyncWriteLock) {
+            asyncWriteBytesInFlight -= permits;
+            while (!asyncWritesClosed
+                    && !queuedAsyncWrites.isEmpty()
+                    && asyncWriteBytesInFlight + queuedAsyncWrites.peek().permits
+                            <= maxAsyncWriteBytes) {
+                final AsyncWrite write = queuedAsyncWrites.poll();
+                asyncWriteBytesInFlight += write.permits;
+                startable.add(write);
+            }
+        }
+
+        for (AsyncWrite write : startable) {
+            submitAsyncWrite(write);
+        }
+    }
+
+    /**
+     * Stops accepting asynchronous uploads and fails those which have not started yet, i.e. the
+     * queued ones and those the writer pool did not run anymore.
+     *
+     * @param drainedTasks tasks which the writer pool removed from its queue on shutdown
+     */
+    private void failPendingAsyncWrites(List<Runnable> drainedTasks) {
+        final List<AsyncWrite> pendingWrites = new ArrayList<>();
+        synchronized (asyncWriteLock) {
+            asyncWritesClosed = true;
+            pendingWrites.addAll(queuedAsyncWrites);
+            queuedAsyncWrites.clear();
+        }
+        for (Runnable task : drainedTasks) {
+            if (task instanceof AsyncWrite) {
+                pendingWrites.add((AsyncWrite) task);
+            }
+        }
+
+        for (AsyncWrite write : pendingWrites) {
+            write.result.completeExceptionally(
+                    new IOException(
+                            "The BLOB server has been closed before uploading a BLOB of job "
+                                    + write.jobId
+                                    + '.'));
+        }
+    }
+
+    /**
+     * Uploads the data of the given byte array for the given job to the BLOB server.
+     *
+     * <p>As the whole content is available in memory, its hash (and thus the BLOB key) is computed
+     * up front. The data is still staged in a temporary file in the incoming directory and moved
+     * to its final storage location under the write lock, so that concurrent readers and the
+     * recovery after a crash never see a partially written BLOB.
+     *
+     * @param jobId the ID of the job the BLOB belongs to
+     * @param value the buffer to upload
+     * @param blobType whether to make the data permanent or transient
+     * @return the computed BLOB key identifying the BLOB on the server
+     * @throws IOException thrown if an I/O error occurs while writing it to a local file, or
+     *     uploading it to the HA store
+     */
+    private BlobKey putBuffer(@Nullable JobID jobId, byte[] value, BlobKey.BlobType blobType)
+            throws IOException {
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received PUT call for BLOB of job {}.", jobId);
+        }
+
+        final long start = System.nanoTime();
+        final MessageDigest md = BlobUtils.createMessageDigest();
+        md.update(value);
+
+        final File incomingFile = createTemporaryFilename();
+        try {
+            Files.write(incomingFile.toPath(), value);
+            final BlobKey blobKey = moveTempFileToStore(incomingFile, jobId, md.digest(), blobType);
+            recordPut(jobId, value.length, start);
+            return blobKey;
+        } finally {
+            // delete incomingFile from a failed upload
+            if (!incomingFile.delete() && incomingFile.exists()) {
+                LOG.warn(
+                        "Could not delete the staging file {} for job {}.",
+                        incomingFile,
+                        jobId);
+            }
+        }
+    }
+
+    /**
+     * Uploads data from the given input stream for the given job to the BLOB server.
+     *
+     * @param jobId the ID of the job the BLOB belongs to
+     * @param inputStream the input stream to read the data from
+     * @param blobType whether to make the data permanent or transient
+     * @return the computed BLOB key identifying the BLOB on the server
+     * @throws IOException thrown if an I/O error occurs while reading the data from the input
+     *     stream, writing it to a local file, or uploading it to the HA store
+     */
+    private BlobKey putInputStream(
+            @Nullable JobID jobId, InputStream inputStream, BlobKey.BlobType blobType)
+            throws IOException {
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received PUT call for BLOB of job {}.", jobId);
+        }
+
+        final long start = System.nanoTime();
+        File incomingFile = createTemporaryFilename();
+        try {
+            MessageDigest md = writeStreamToFileAndCreateDigest(inputStream, incomingFile);
+            final long size = incomingFile.length();
+            final BlobKey blobKey = moveTempFileToStore(incomingFile, jobId, md.digest(), blobType);
+            recordPut(jobId, size, start);
+            return blobKey;
+        } finally {
+            // delete incomingFile from a failed download
+            if (!incomingFile.delete() && incomingFile.exists()) {
+                LOG.warn(
+                        "Could not delete the staging file {} for job {}.",
+                        incomingFile,
+                        jobId);
+            }
+        }
+    }
+
+    /**
+     * Writes the given input stream to the given file and returns the content's digest.
+     *
+     * @param inputStream stream to read from
+     * @param file file to write to
+     * @return the message digest of the written content
+     * @throws IOException thrown if an I/O error occurs while reading/writing data from/to the
+     *     respective streams
+     */
+    private static MessageDigest writeStreamToFileAndCreateDigest(
+            InputStream inputStream, File file) throws IOException {
+
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            MessageDigest md = BlobUtils.createMessageDigest();
+
+            // read stream
+            byte[] buf = new byte[BUFFER_SIZE];
+            while (true) {
+                final int bytesRead = inputStream.read(buf);
+                if (bytesRead == -1) {
+                    // done
+                    break;
+                }
+                fos.write(buf, 0, bytesRead);
+                md.update(buf, 0, bytesRead);
+            }
+            return md;
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+    //  DELETE
+    // --------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean deleteFromCache(TransientBlobKey key) {
+        return deleteInternal(null, key);
+    }
+
+    @Override
+    public boolean deleteFromCache(JobID jobId, TransientBlobKey key) {
+        checkNotNull(jobId);
+        return deleteInternal(jobId, key);
+    }
+
     @Override
     public PermanentBlobService getPermanentBlobService() {
-        return null;
+        return this;
     }
 
     @Override
     public TransientBlobService getTransientBlobService() {
-        return null;
+        return this;
     }
 
     @Override
     public int getPort() {
-        return 0;
+        return this.serverSocket.getLocalPort();
     }
 
     @Override
     public void close() throws IOException {
         cleanupTimer.cancel();
+        ioExecutor.shutdownNow();
+        treeHashExecutor.shutdownNow();
+        failPendingAsyncWrites(asyncWriteExecutor.shutdownNow());
+        rejectionExecutor.shutdownNow();
+        blobStoreReplicator.close();
 
         if (shutdownRequested.compareAndSet(false, true)) {
             Exception exception = null;
@@ -249,6 +1050,9 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
                     }
                     activeConnections.clear();
                 }
+                for (BlobServerConnection conn : queuedConnections.clear()) {
+                    conn.close();
+                }
             }
 
             // Clean up the storage directory
@@ -286,14 +1090,30 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
                 BlobServerConnection conn =
                         new BlobServerConnection(NetUtils.acceptWithoutTimeout(serverSocket), this);
                 try {
+                    final boolean admitted;
                     synchronized (activeConnections) {
-                        while (activeConnections.size() >= maxConnections) {
-                            activeConnections.wait(2000);
+                        if (activeConnections.size() < maxConnections) {
+                            startConnection(conn);
+                            admitted = true;
+                        } else if (queuedConnections.size() < maxQueuedConnections) {
+                            queuedConnections.add(conn);
+                            admitted = true;
+                        } else {
+                            admitted = false;
                         }
-                        activeConnections.add(conn);
                     }
 
-                    conn.start();
+                    if (!admitted) {
+                        metrics.numRejectedConnections.inc();
+                        final BlobServerConnection rejected = conn;
+                        try {
+                            rejectionExecutor.execute(
+                                    () -> rejected.rejectOverloaded(overloadRetryAfter));
+                        } catch (RejectedExecutionException e) {
+                            // shutting down
+                            rejected.close();
+                        }
+                    }
                     conn = null;
                 } finally {
                     if (conn != null) {
@@ -358,16 +1178,14 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
             File storageFile = BlobUtils.getStorageLocation(storageDir, jobId, blobKey);
 
             // try again until the key is unique (put the existence check into the lock!)
+            final boolean stored;
             readWriteLock.writeLock().lock();
             try {
-                if (!storageFile.exists()) {
+                stored = !storageFile.exists();
+                if (stored) {
+                    // the upload to the HA store happens outside the lock, see below
                     BlobUtils.moveTempFileToStore(
-                            incomingFile,
-                            jobId,
-                            blobKey,
-                            storageFile,
-                            LOG,
-                            blobKey instanceof PermanentBlobKey ? blobStore : null);
+                            incomingFile, jobId, blobKey, storageFile, LOG, null);
                     // add TTL for transient BLOBs:
                     if (blobKey instanceof TransientBlobKey) {
                         // must be inside read or write lock to add a TTL
@@ -375,12 +1193,18 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
                                 Tuple2.of(jobId, (TransientBlobKey) blobKey),
                                 System.currentTimeMillis() + cleanupInterval);
                     }
-                    return blobKey;
                 }
             } finally {
                 readWriteLock.writeLock().unlock();
             }
 
+            if (stored) {
+                if (blobKey instanceof PermanentBlobKey) {
+                    replicateToBlobStore(storageFile, jobId, blobKey);
+                }
+                return blobKey;
+            }
+
             ++attempt;
             if (attempt >= retries) {
                 String message =
@@ -403,7 +1227,81 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
         }
     }
 
+    /**
+     * Uploads a permanent BLOB which has just been added to the local storage to the HA blob
+     * store.
+     *
+     * <p>The upload runs in the background without holding any lock. In {@link
+     * BlobServerOptions.HaReplicationMode#HA} mode, this method waits for its outcome and removes
+     * the local file again if the upload failed, so that the BLOB is only used once it is highly
+     * available. In {@link BlobServerOptions.HaReplicationMode#LOCAL} mode, it returns right away.
+     *
+     * <p><strong>Assumes neither the read nor the write lock are held.</strong>
+     *
+     * @param storageFile local file of the BLOB
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey BLOB key identifying the file
+     * @throws IOException thrown if the upload to the HA store failed (only in HA mode)
+     */
+    private void replicateToBlobStore(File storageFile, @Nullable JobID jobId, BlobKey blobKey)
+            throws IOException {
+        final CompletableFuture<Void> replication =
+                blobStoreReplicator.replicate(storageFile, jobId, blobKey);
+
+        if (haReplicationMode == BlobServerOptions.HaReplicationMode.LOCAL) {
+            return;
+        }
+
+        try {
+            replication.get();
+        } catch (InterruptedException | ExecutionException | CancellationException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+
+            // without a copy in the HA store, the BLOB must not be handed out
+            readWriteLock.writeLock().lock();
+            try {
+                if (!storageFile.delete() && storageFile.exists()) {
+                    LOG.warn("Could not delete the storage file {}.", storageFile);
+                }
+            } finally {
+                readWriteLock.writeLock().unlock();
+            }
+
+            throw new IOException(
+                    "Failed to upload BLOB " + jobId + '/' + blobKey + " to the blob store.",
+                    e instanceof ExecutionException ? e.getCause() : e);
+        }
+    }
+
+    /** Returns the number of uploads to the HA blob store which have not finished yet. */
+    public int getNumPendingBlobStoreReplications() {
+        return blobStoreReplicator.getNumPendingReplications();
+    }
+
+    /**
+     * Returns a future which is completed once the uploads of the given job to the HA blob store
+     * which are pending right now have finished.
+     *
+     * <p>In {@link BlobServerOptions.HaReplicationMode#LOCAL} mode, this is how failed uploads
+     * are surfaced: the future is completed exceptionally if any upload of the job finally failed
+     * since the job has last been cleaned up.
+     *
+     * @param jobId ID of the job
+     * @return future of the job's uploads to the HA blob store
+     */
+    public CompletableFuture<Void> awaitBlobStoreReplications(JobID jobId) {
+        return blobStoreReplicator.awaitJob(jobId);
+    }
 
+    /**
+     * Returns the HA replication lag, i.e. the time (ms) the oldest unfinished upload to the HA
+     * blob store has been waiting for, or <tt>0</tt> if there is none.
+     */
+    public long getBlobStoreReplicationLag() {
+        return blobStoreReplicator.getReplicationLag();
+    }
 
     /**
      * Helper to retrieve the local path of a file associated with a job and a blob key.
@@ -439,11 +1337,76 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
             // first we have to release the read lock in order to acquire the write lock
             readWriteLock.readLock().unlock();
 
-            // use a temporary file (thread-safe without locking)
-            File incomingFile = null;
             try {
+                getFileFromBlobStore(jobId, (PermanentBlobKey) blobKey, localFile);
+                return;
+            } finally {
+                // re-acquire lock so that it can be unlocked again outside
+                readWriteLock.readLock().lock();
+            }
+        }
+
+        throw new FileNotFoundException(
+                "Local file "
+                        + localFile
+                        + " does not exist "
+                        + "and failed to copy from blob store.");
+    }
+
+    /**
+     * Retrieves a permanent blob from the HA blob store and moves it to its local storage location.
+     *
+     * <p>Concurrent requests for the same blob are coalesced: only the first caller downloads the
+     * blob from the blob store while all others wait for the outcome of this single download.
+     *
+     * <p><strong>Assumes neither the read nor the write lock are held.</strong>
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey blob key associated with the requested file
+     * @param localFile (local) file where the blob should be stored
+     * @throws IOException Thrown if the file retrieval failed.
+     */
+    private void getFileFromBlobStore(JobID jobId, PermanentBlobKey blobKey, File localFile)
+            throws IOException {
+        final Tuple2<JobID, PermanentBlobKey> downloadKey = Tuple2.of(jobId, blobKey);
+        final CompletableFuture<Void> download = new CompletableFuture<>();
+        final CompletableFuture<Void> pendingDownload =
+                pendingBlobStoreDownloads.putIfAbsent(downloadKey, download);
+
+        if (pendingDownload != null) {
+            LOG.debug(
+                    "Waiting for the concurrent download of BLOB {}/{} from the blob store.",
+                    jobId,
+                    blobKey);
+            try {
+                pendingDownload.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(
+                        "Interrupted while waiting for the download of BLOB "
+                                + jobId
+                                + '/'
+                                + blobKey
+                                + " from the blob store.",
+                        e);
+            } catch (ExecutionException e) {
+                throw new IOException(
+                        "Failed to copy BLOB " + jobId + '/' + blobKey + " from the blob store.",
+                        e.getCause());
+            }
+            return;
+        }
+
+        // use a temporary file (thread-safe without locking)
+        File incomingFile = null;
+        try {
+            // the previous download may have finished in between our check and our registration
+            if (!localFile.exists()) {
                 incomingFile = createTemporaryFilename();
+                final long start = System.nanoTime();
                 blobStore.get(jobId, blobKey, incomingFile);
+                metrics.blobStoreFetchLatency.update(BlobServerMetrics.microsSince(start));
+                metrics.numBytesInBlobStore.inc(incomingFile.length());
 
                 readWriteLock.writeLock().lock();
                 try {
@@ -452,9 +1415,176 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
                 } finally {
                     readWriteLock.writeLock().unlock();
                 }
+            }
 
-                return;
+            download.complete(null);
+        } catch (Throwable t) {
+            download.completeExceptionally(t);
+            throw t;
+        } finally {
+            pendingBlobStoreDownloads.remove(downloadKey, download);
+
+            // delete incomingFile from a failed download
+            if (incomingFile != null && !incomingFile.delete() && incomingFile.exists()) {
+                LOG.warn(
+                        "Could not delete the staging file {} for blob key {} and job {}.",
+                        incomingFile,
+                        blobKey,
+                        jobId);
+            }
+        }
+    }
+
+
+    /**
+     * Asynchronously copies the given permanent BLOBs of a job from the HA blob store into the
+     * local storage so that subsequent GET requests, e.g. from the task managers deploying the
+     * job, are served from the local disk.
+     *
+     * <p>This should be called when a job is submitted or recovered. All missing BLOBs are fetched
+     * with a single bulk {@link BlobStore#getAll} request which runs the transfers in parallel on
+     * the blob server's I/O pool; BLOBs which are already available locally are skipped and
+     * concurrent GET requests for a BLOB which is currently being prefetched wait for that
+     * download instead of starting their own. Each BLOB is settled on its own, i.e. a BLOB which
+     * is missing or corrupt in the HA blob store only fails the requests waiting for that BLOB.
+     *
+     * <p>If uploads to the HA blob store do not block the PUT requests ({@link
+     * BlobServerOptions.HaReplicationMode#LOCAL}), BLOBs which are missing in the HA blob store
+     * afterwards, e.g. because their upload failed, are re-uploaded in bulk as well.
+     *
+     * @param jobId ID of the job the BLOBs belong to
+     * @param blobKeys keys of the permanent BLOBs to prefetch
+     * @return future which is completed once all BLOBs are available locally, or completed
+     *     exceptionally once all downloads finished if any of them could not be retrieved
+     */
+    public CompletableFuture<Void> prefetchJob(
+            JobID jobId, Collection<PermanentBlobKey> blobKeys) {
+        checkNotNull(jobId);
+        checkNotNull(blobKeys);
+
+        final List<CompletableFuture<Void>> prefetchFutures = new ArrayList<>(blobKeys.size());
+        // downloads this call is responsible for, with the temporary file to download to
+        final Map<PermanentBlobKey, CompletableFuture<Void>> downloads = new HashMap<>();
+        final Map<PermanentBlobKey, File> incomingFiles = new HashMap<>();
+
+        try {
+            for (PermanentBlobKey blobKey : blobKeys) {
+                if (BlobUtils.getStorageLocation(storageDir, jobId, blobKey).exists()) {
+                    continue;
+                }
+
+                final CompletableFuture<Void> download = new CompletableFuture<>();
+                final CompletableFuture<Void> pendingDownload =
+                        pendingBlobStoreDownloads.putIfAbsent(Tuple2.of(jobId, blobKey), download);
+                if (pendingDownload != null) {
+                    prefetchFutures.add(pendingDownload);
+                } else {
+                    downloads.put(blobKey, download);
+                    prefetchFutures.add(download);
+                    incomingFiles.put(blobKey, createTemporaryFilename());
+                }
+            }
+
+            if (!downloads.isEmpty()) {
+                LOG.debug(
+                        "Prefetching {} BLOBs of job {} from the blob store.",
+                        downloads.size(),
+                        jobId);
+
+                final long start = System.nanoTime();
+                blobStore
+                        .getAll(jobId, incomingFiles, ioExecutor)
+                        .whenComplete(
+                                (copied, throwable) -> {
+                                    metrics.blobStoreFetchLatency.update(
+                                            BlobServerMetrics.microsSince(start));
+                                    completeDownloads(
+                                            jobId, downloads, incomingFiles, copied, throwable);
+                                });
+            }
+        } catch (Throwable t) {
+            // also fails the downloads GET requests may already be waiting for, e.g. if the bulk
+            // download could not even be started
+            completeDownloads(jobId, downloads, incomingFiles, null, t);
+
+            final CompletableFuture<Void> result = new CompletableFuture<>();
+            result.completeExceptionally(t);
+            return result;
+        }
+
+        final CompletableFuture<Void> prefetchFuture =
+                CompletableFuture.allOf(prefetchFutures.toArray(new CompletableFuture<?>[0]));
+
+        prefetchFuture.whenComplete(
+                (ignored, throwable) -> {
+                    if (throwable != null) {
+                        LOG.warn(
+                                "Failed to prefetch the BLOBs of job {} from the blob store.",
+                                jobId,
+                                throwable);
+                    }
+                });
+
+        if (haReplicationMode == BlobServerOptions.HaReplicationMode.LOCAL) {
+            return prefetchFuture.thenCompose(ignored -> repairBlobStore(jobId, blobKeys));
+        } else {
+            return prefetchFuture;
+        }
+    }
+
+    /**
+     * Moves the BLOBs downloaded by {@link #prefetchJob(JobID, Collection)} to their local storage
+     * location and completes the corresponding downloads.
+     *
+     * @param jobId ID of the job the BLOBs belong to
+     * @param downloads downloads to complete, per BLOB
+     * @param incomingFiles temporary files the BLOBs have been downloaded to
+     * @param copied outcome of the bulk download per BLOB (<tt>null</tt> if it failed as a whole)
+     * @param failure failure of the whole bulk download (<tt>null</tt> otherwise)
+     */
+    private void completeDownloads(
+            JobID jobId,
+            Map<PermanentBlobKey, CompletableFuture<Void>> downloads,
+            Map<PermanentBlobKey, File> incomingFiles,
+            @Nullable BlobBulkResult<PermanentBlobKey> copied,
+            @Nullable Throwable failure) {
+
+        for (Map.Entry<PermanentBlobKey, CompletableFuture<Void>> entry : downloads.entrySet()) {
+            final PermanentBlobKey blobKey = entry.getKey();
+            final CompletableFuture<Void> download = entry.getValue();
+            final File incomingFile = incomingFiles.get(blobKey);
+
+            try {
+                if (failure != null || copied == null) {
+                    throw new IOException(
+                            "Failed to copy the BLOBs of job " + jobId + " from the blob store.",
+                            failure);
+                } else if (copied.getFailures().containsKey(blobKey)) {
+                    throw new IOException(
+                            "Failed to copy BLOB " + jobId + '/' + blobKey + " from the blob store.",
+                            copied.getFailures().get(blobKey));
+                } else if (!copied.getSucceeded().contains(blobKey)) {
+                    throw new FileNotFoundException(
+                            "BLOB " + jobId + '/' + blobKey + " does not exist in the blob store.");
+                }
+
+                metrics.numBytesInBlobStore.inc(incomingFile.length());
+
+                final File localFile = BlobUtils.getStorageLocation(storageDir, jobId, blobKey);
+                readWriteLock.writeLock().lock();
+                try {
+                    BlobUtils.moveTempFileToStore(
+                            incomingFile, jobId, blobKey, localFile, LOG, null);
+                } finally {
+                    readWriteLock.writeLock().unlock();
+                }
+
+                download.complete(null);
+            } catch (Throwable t) {
+                download.completeExceptionally(t);
             } finally {
+                pendingBlobStoreDownloads.remove(Tuple2.of(jobId, blobKey), download);
+
                 // delete incomingFile from a failed download
                 if (incomingFile != null && !incomingFile.delete() && incomingFile.exists()) {
                     LOG.warn(
@@ -463,19 +1593,189 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
                             blobKey,
                             jobId);
                 }
+            }
+        }
+    }
 
-                // re-acquire lock so that it can be unlocked again outside
-                readWriteLock.readLock().lock();
+    /**
+     * Re-uploads those of the given (locally available) BLOBs which are missing in the HA blob
+     * store, using one bulk existence check and one bulk upload.
+     *
+     * @param jobId ID of the job the BLOBs belong to
+     * @param blobKeys keys of the permanent BLOBs of the job
+     * @return future which is completed once all BLOBs are stored in the blob store
+     */
+    private CompletableFuture<Void> repairBlobStore(
+            JobID jobId, Collection<PermanentBlobKey> blobKeys) {
+        final Map<PermanentBlobKey, File> localFiles = new HashMap<>();
+        try {
+            for (PermanentBlobKey blobKey : blobKeys) {
+                localFiles.put(blobKey, BlobUtils.getStorageLocation(storageDir, jobId, blobKey));
             }
+        } catch (Throwable t) {
+            final CompletableFuture<Void> result = new CompletableFuture<>();
+            result.completeExceptionally(t);
+            return result;
         }
 
-        throw new FileNotFoundException(
-                "Local file "
-                        + localFile
-                        + " does not exist "
-                        + "and failed to copy from blob store.");
+        return blobStore
+                .exists(jobId, blobKeys, ioExecutor)
+                .thenCompose(
+                        existing -> {
+                            // BLOBs which could not be checked are re-uploaded as well
+                            final Map<PermanentBlobKey, File> missingFiles =
+                                    new HashMap<>(localFiles);
+                            missingFiles.keySet().removeAll(existing.getSucceeded());
+
+                            if (missingFiles.isEmpty()) {
+                                return CompletableFuture.completedFuture(null);
+                            }
+
+                            LOG.info(
+                                    "Re-uploading {} BLOBs of job {} which are missing in the blob store.",
+                                    missingFiles.size(),
+                                    jobId);
+                            return blobStore
+                                    .putAll(jobId, missingFiles, ioExecutor)
+                                    .thenApply(
+                                            uploaded -> {
+                                                try {
+                                                    uploaded.throwIfFailed(
+                                                            "re-upload the BLOBs of job " + jobId);
+                                                } catch (IOException e) {
+                                                    throw new CompletionException(e);
+                                                }
+                                                return null;
+                                            });
+                        });
+    }
+
+    /**
+     * Removes all BLOBs from local and HA store belonging to the given job ID.
+     *
+     * <p>The local files are deleted under the write lock while the HA blob store is cleaned up
+     * afterwards with a single {@link BlobStore#deleteAll(JobID)} call, so a slow remote store
+     * does not block other requests. Pending uploads of the job to the HA blob store are
+     * cancelled first, and uploads which are already running are awaited before the HA files are
+     * deleted, so that they cannot re-create them afterwards.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param cleanupBlobStoreFiles True if the corresponding blob store files shall be cleaned up
+     *     as well. Otherwise false.
+     * @return <tt>true</tt> if the job directory is successfully deleted or non-existing;
+     *     <tt>false</tt> otherwise
+     */
+    public boolean cleanupJob(JobID jobId, boolean cleanupBlobStoreFiles) {
+        checkNotNull(jobId);
+
+        final CompletableFuture<Void> cancelledReplications = blobStoreReplicator.cancel(jobId);
+
+        final File jobDir =
+                new File(BlobUtils.getStorageLocationPath(storageDir.getAbsolutePath(), jobId));
+
+        boolean deletedLocally = false;
+        readWriteLock.writeLock().lock();
+        try {
+            final boolean pinned;
+            synchronized (pinnedJobs) {
+                pinned = pinnedJobs.containsKey(jobId);
+                if (pinned) {
+                    // files are still being read via mapped buffers: delete them once the last
+                    // buffer has been closed
+                    pendingJobCleanups.add(jobId);
+                }
+            }
+
+            if (!pinned) {
+                FileUtils.deleteDirectory(jobDir);
+            }
+
+            // NOTE: Instead of going through blobExpiryTimes, keep lingering entries - they
+            //       will be cleaned up by the timer task which tolerates non-existing files
+            //       If inserted again with the same IDs (via put()), the TTL will be updated
+            //       again.
+
+            deletedLocally = true;
+        } catch (IOException e) {
+            LOG.warn(
+                    "Failed to locally delete BLOB storage directory at "
+                            + jobDir.getAbsolutePath(),
+                    e);
+        } finally {
+            readWriteLock.writeLock().unlock();
+        }
+
+        jobWeights.remove(jobId);
+        metrics.removeJob(jobId);
+        peerTracker.removeJob(jobId);
+        chunkIndex.removeDirectory(jobDir);
+        treeHashes.removeDirectory(jobDir);
+
+        // delete in HA blob store files
+        boolean deletedHA = true;
+        if (cleanupBlobStoreFiles) {
+            try {
+                cancelledReplications.get();
+                deletedHA = blobStore.deleteAll(jobId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn(
+                        "Interrupted while waiting for the uploads of job {} to the blob store to stop.",
+                        jobId);
+                deletedHA = false;
+            } catch (ExecutionException e) {
+                // the termination futures are never completed exceptionally
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return deletedLocally && deletedHA;
+    }
+
+    // --------------------------------------------------------------------------------------------
+    //  Fair sharing among jobs
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Sets the weight of a job when sharing waiting connection slots and the bandwidth limit
+     * among jobs: while several jobs compete, each one receives a share proportional to its
+     * weight. The weight is reset when the job is cleaned up.
+     *
+     * @param jobId the job
+     * @param weight the job's positive weight
+     */
+    public void setJobWeight(JobID jobId, int weight) {
+        checkNotNull(jobId);
+        checkArgument(weight > 0, "The weight must be positive.");
+        jobWeights.put(jobId, weight);
+    }
+
+    /**
+     * Returns the weight of a job.
+     *
+     * @param jobId the job (or <tt>null</tt> for job-unrelated BLOBs)
+     * @return the job's weight
+     */
+    int getJobWeight(@Nullable JobID jobId) {
+        if (jobId == null) {
+            return noJobWeight;
+        }
+        final Integer weight = jobWeights.get(jobId);
+        return weight != null ? weight : defaultJobWeight;
     }
 
+    private static int getPositiveWeight(Configuration config, ConfigOption<Integer> option) {
+        final int weight = config.getInteger(option);
+        if (weight >= 1) {
+            return weight;
+        }
+        LOG.warn(
+                "Invalid value for {}: {}. Using default value of {}",
+                option.key(),
+                weight,
+                option.defaultValue());
+        return option.defaultValue();
+    }
 
     // --------------------------------------------------------------------------------------------
     //  Path Accessors
@@ -502,13 +1802,127 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
 
 
 
+    /**
+     * Starts serving the given connection in one of the connection slots.
+     *
+     * <p><strong>This must be called while holding the lock on {@link
+     * #activeConnections}.</strong>
+     */
+    private void startConnection(BlobServerConnection conn) {
+        activeConnections.add(conn);
+        metrics.connectionWaitTime.update(BlobServerMetrics.microsSince(conn.getAcceptedNanos()));
+        conn.start();
+    }
+
     void unregisterConnection(BlobServerConnection conn) {
         synchronized (activeConnections) {
             activeConnections.remove(conn);
-            activeConnections.notifyAll();
+
+            // hand the free slots to the waiting connections by priority
+            while (!shutdownRequested.get() && activeConnections.size() < maxConnections) {
+                final BlobServerConnection next = queuedConnections.poll(System.nanoTime());
+                if (next == null) {
+                    break;
+                }
+                final long waitTime = BlobServerMetrics.microsSince(next.getAcceptedNanos());
+                metrics.connectionWaitTimePerPriority
+                        .get(BlobConnectionQueue.getPriority(next))
+                        .update(waitTime);
+                metrics.getJobMetrics(next.peekJobId()).connectionWaitTime.update(waitTime);
+                startConnection(next);
+            }
+        }
+    }
+
+    /** Returns the number of currently served client connections. */
+    int getNumActiveConnections() {
+        synchronized (activeConnections) {
+            return activeConnections.size();
+        }
+    }
+
+    /** Returns the number of accepted connections waiting for a free slot. */
+    int getNumQueuedConnections() {
+        synchronized (activeConnections) {
+            return queuedConnections.size();
+        }
+    }
+
+    /** Returns the number of accepted connections of the given priority waiting for a slot. */
+    int getNumQueuedConnections(BlobRequestPriority priority) {
+        synchronized (activeConnections) {
+            return queuedConnections.size(priority);
         }
     }
 
+    /**
+     * Returns the scheduler of the bandwidth of all connections (or <tt>null</tt> if unlimited).
+     */
+    @Nullable
+    FairBandwidthScheduler getBandwidthScheduler() {
+        return bandwidthScheduler;
+    }
+
+    /** Returns the limiter of the bandwidth of all bulk requests (or <tt>null</tt> if unlimited). */
+    @Nullable
+    BandwidthLimiter getBulkBandwidthLimiter() {
+        return bulkBandwidthLimiter;
+    }
+
+    /** Returns the reads of BLOB files shared by concurrent GET requests. */
+    SharedBlobReads getSharedReads() {
+        return sharedReads;
+    }
+
+    /** Returns the tracker of the caches holding permanent BLOBs. */
+    BlobPeerTracker getPeerTracker() {
+        return peerTracker;
+    }
+
+    /** Returns the index of the chunks of permanent BLOBs uploaded in chunks. */
+    BlobChunkIndex getChunkIndex() {
+        return chunkIndex;
+    }
+
+    /** Returns the hashes of the chunks of BLOBs for verified GET requests. */
+    BlobTreeHashes getTreeHashes() {
+        return treeHashes;
+    }
+
+    /** Returns the maximum number of peers suggested per lookup. */
+    int getMaxPeers() {
+        return maxPeers;
+    }
+
+    /** Creates the limiter of a single connection's bandwidth (or <tt>null</tt> if unlimited). */
+    @Nullable
+    BandwidthLimiter createConnectionBandwidthLimiter() {
+        return BandwidthLimiter.create(connectionBandwidth);
+    }
+
+    /** Returns the TTLs of the transient BLOBs. */
+    ConcurrentMap<Tuple2<JobID, TransientBlobKey>, Long> getBlobExpiryTimes() {
+        return blobExpiryTimes;
+    }
+
+    /** Returns the metrics of this server. */
+    BlobServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records a successful PUT request.
+     *
+     * @param jobId ID of the job the BLOB belongs to (or <tt>null</tt> if job-unrelated)
+     * @param size number of bytes received
+     * @param startNanos {@link System#nanoTime()} when the request started
+     */
+    void recordPut(@Nullable JobID jobId, long size, long startNanos) {
+        metrics.numBytesInPut.inc(size);
+        metrics.getJobMetrics(jobId).numBytesIn.inc(size);
+        metrics.putLatency.update(BlobServerMetrics.microsSince(startNanos));
+    }
+
 
 
     /**
@@ -543,14 +1957,36 @@ public class BlobServer extends Thread implements BlobService ,BlobWriter{
         }
     }
 
+    // --------------------------------------------------------------------------------------------
 
-    @Override
-    public PermanentBlobKey putPermanent(JobID jobId, byte[] value) throws IOException {
-        return null;
-    }
+    /** An upload via {@link #putPermanentAsync(JobID, byte[])}. */
+    private final class AsyncWrite implements Runnable {
 
-    @Override
-    public PermanentBlobKey putPermanent(JobID jobId, InputStream inputStream) throws IOException {
-        return null;
+        private final JobID jobId;
+
+        private final byte[] value;
+
+        /** Bytes accounted as in flight while the upload runs. */
+        private final long permits;
+
+        /** Future completed with the key of the uploaded BLOB. */
+        private final CompletableFuture<PermanentBlobKey> result = new CompletableFuture<>();
+
+        private AsyncWrite(JobID jobId, byte[] value, long permits) {
+            this.jobId = jobId;
+            this.value = value;
+            this.permits = permits;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result.complete(putPermanent(jobId, value));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                releaseAsyncWriteBytes(permits);
+            }
+        }
     }
 }
@@ -7,10 +7,20 @@ import flink.util.InstantiationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLSocket;
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.net.Socket;
 import java.net.SocketException;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 
@@ -35,6 +45,15 @@ public class BlobServerConnection extends Thread{
     /** The log object used for debugging. */
     private static final Logger LOG = LoggerFactory.getLogger(BlobServerConnection.class);
 
+    /** Socket timeout (ms) while rejecting an overloaded connection. */
+    static final int REJECTION_TIMEOUT = 1000;
+
+    /** Maximum number of request bytes discarded while waiting for a rejected client to close. */
+    private static final long MAX_DRAINED_REJECTION_BYTES = 64 * 1024;
+
+    /** Length of the request header up to the job ID: operation, priority, mode and job ID. */
+    private static final int MAX_PEEKED_HEADER_LENGTH = 3 + JobID.SIZE;
+
 
     /** The socket to communicate with the client. */
     private final Socket clientSocket;
@@ -45,6 +64,35 @@ public class BlobServerConnection extends Thread{
     /** Read lock to synchronize file accesses. */
     private final Lock readLock;
 
+    /** Limits the bandwidth of this connection (or <tt>null</tt> if unlimited). */
+    @Nullable private final BandwidthLimiter bandwidthLimiter;
+
+    /** Shares the bandwidth of all connections among jobs (or <tt>null</tt> if unlimited). */
+    @Nullable private final FairBandwidthScheduler serverBandwidthScheduler;
+
+    /** Limits the bandwidth of all bulk requests (or <tt>null</tt> if unlimited). */
+    @Nullable private final BandwidthLimiter bulkBandwidthLimiter;
+
+    /** {@link System#nanoTime()} the connection was accepted at. */
+    private final long acceptedNanos;
+
+    /** Stream to read requests from, allowing to peek at the first one's header. */
+    @Nullable private PushbackInputStream inputStream;
+
+    /** Priority of the first request if already peeked at. */
+    @Nullable private BlobRequestPriority firstRequestPriority;
+
+    /** Job of the first request if already peeked at and job-related. */
+    @Nullable private JobID firstRequestJobId;
+
+    /** Whether the first request's header has been peeked at completely. */
+    private boolean firstRequestHeaderPeeked;
+
+    /** Priority of the request currently being served. */
+    private BlobRequestPriority requestPriority = BlobRequestPriority.NORMAL;
+
+    /** Job of the request currently being served (or <tt>null</tt> if job-unrelated). */
+    @Nullable private JobID requestJobId;
 
 
     /**
@@ -57,18 +105,23 @@ public class BlobServerConnection extends Thread{
         super("BLOB connection for " + clientSocket.getRemoteSocketAddress());
         setDaemon(true);
 
+        this.acceptedNanos = System.nanoTime();
+
         this.clientSocket = clientSocket;
         this.blobServer = checkNotNull(blobServer);
 
         ReadWriteLock readWriteLock = blobServer.getReadWriteLock();
 
         this.readLock = readWriteLock.readLock();
+        this.bandwidthLimiter = blobServer.createConnectionBandwidthLimiter();
+        this.serverBandwidthScheduler = blobServer.getBandwidthScheduler();
+        this.bulkBandwidthLimiter = blobServer.getBulkBandwidthLimiter();
     }
 
     @Override
     public void run() {
         try {
-            final InputStream inputStream = this.clientSocket.getInputStream();
+            final InputStream inputStream = getInputStream();
             final OutputStream outputStream = this.clientSocket.getOutputStream();
 
             while (true) {
@@ -78,13 +131,30 @@ public class BlobServerConnection extends Thread{
                     // done, no one is asking anything from us
                     return;
                 }
+                final int priority = inputStream.read();
+                if (priority < 0) {
+                    throw new EOFException("Premature end of request header");
+                }
+                requestPriority = BlobRequestPriority.fromByte(priority);
 
                 switch (operation) {
                     case PUT_OPERATION:
                         put(inputStream, outputStream, new byte[BUFFER_SIZE]);
                         break;
+                    case PUT_CHUNKED_OPERATION:
+                        putChunked(inputStream, outputStream, new byte[BUFFER_SIZE]);
+                        break;
                     case GET_OPERATION:
-                        get(inputStream, outputStream, new byte[BUFFER_SIZE]);
+                        get(inputStream, outputStream, false);
+                        break;
+                    case GET_IF_MODIFIED_OPERATION:
+                        get(inputStream, outputStream, true);
+                        break;
+                    case GET_VERIFIED_OPERATION:
+                        getVerified(inputStream, outputStream);
+                        break;
+                    case PEERS_OPERATION:
+                        peers(inputStream, outputStream);
                         break;
                     default:
                         throw new IOException("Unknown operation " + operation);
@@ -113,40 +183,14 @@ public class BlobServerConnection extends Thread{
      */
     private void put(InputStream inputStream, OutputStream outputStream, byte[] buf)
             throws IOException {
+        final long start = System.nanoTime();
         File incomingFile = null;
 
         try {
             // read HEADER contents: job ID, HA mode/permanent or transient BLOB
-            final int mode = inputStream.read();
-            if (mode < 0) {
-                throw new EOFException("Premature end of PUT request");
-            }
-
-            final JobID jobId;
-            if (mode == JOB_UNRELATED_CONTENT) {
-                jobId = null;
-            } else if (mode == JOB_RELATED_CONTENT) {
-                byte[] jidBytes = new byte[JobID.SIZE];
-                readFully(inputStream, jidBytes, 0, JobID.SIZE, "JobID");
-                jobId = JobID.fromByteArray(jidBytes);
-            } else {
-                throw new IOException("Unknown type of BLOB addressing.");
-            }
-
-            final BlobKey.BlobType blobType;
-            {
-                final int read = inputStream.read();
-                if (read < 0) {
-                    throw new EOFException("Read an incomplete BLOB type");
-                } else if (read == TRANSIENT_BLOB.ordinal()) {
-                    blobType = TRANSIENT_BLOB;
-                } else if (read == PERMANENT_BLOB.ordinal()) {
-                    blobType = PERMANENT_BLOB;
-                    checkArgument(jobId != null, "Invalid BLOB addressing for permanent BLOBs");
-                } else {
-                    throw new IOException("Invalid data received for the BLOB type: " + read);
-                }
-            }
+            final JobID jobId = readJobId(inputStream, "PUT");
+            requestJobId = jobId;
+            final BlobKey.BlobType blobType = readPutBlobType(inputStream, jobId);
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug(
@@ -157,8 +201,10 @@ public class BlobServerConnection extends Thread{
 
             incomingFile = blobServer.createTemporaryFilename();
             byte[] digest = readFileFully(inputStream, incomingFile, buf);
+            final long size = incomingFile.length();
 
             BlobKey blobKey = blobServer.moveTempFileToStore(incomingFile, jobId, digest, blobType);
+            blobServer.recordPut(jobId, size, start);
 
             // Return computed key to client for validation
             outputStream.write(RETURN_OKAY);
@@ -177,17 +223,194 @@ public class BlobServerConnection extends Thread{
             }
             clientSocket.close();
         } finally {
-            if (incomingFile != null) {
-                if (!incomingFile.delete() && incomingFile.exists()) {
-                    LOG.warn(
-                            "Cannot delete BLOB server staging file "
-                                    + incomingFile.getAbsolutePath());
+            deleteTemporaryFile(incomingFile);
+        }
+    }
+
+
+
+    /**
+     * Handles an incoming chunked PUT request from a BLOB client.
+     *
+     * <p>The client sends the length and hash of each of the BLOB's content-defined chunks. The
+     * server answers with the chunks it does not find in its {@link BlobChunkIndex}, receives them
+     * and assembles the BLOB from the received chunks and the ones already stored. Should any of
+     * the latter have vanished in the meantime, the server asks for all chunks it did not receive
+     * yet in a second round. The BLOB is then stored like any other uploaded BLOB.
+     *
+     * @param inputStream The input stream to read incoming data from
+     * @param outputStream The output stream to send data back to the client
+     * @param buf An auxiliary buffer for data serialization/deserialization
+     * @throws IOException thrown if an I/O error occurs while reading/writing data from/to the
+     *     respective streams
+     */
+    private void putChunked(InputStream inputStream, OutputStream outputStream, byte[] buf)
+            throws IOException {
+        final long start = System.nanoTime();
+        File stagingFile = null;
+        File incomingFile = null;
+
+        try {
+            // read HEADER contents: job ID, HA mode/permanent or transient BLOB
+            final JobID jobId = readJobId(inputStream, "PUT");
+            requestJobId = jobId;
+            final BlobKey.BlobType blobType = readPutBlobType(inputStream, jobId);
+
+            // read the length and hash of each chunk
+            final int numChunks = readLength(inputStream);
+            if (numChunks < 0 || numChunks > MAX_CHUNKS) {
+                throw new IOException("Invalid number of chunks: " + numChunks + '.');
+            }
+            final int[] lengths = new int[numChunks];
+            final byte[][] hashes = new byte[numChunks][];
+            long size = 0L;
+            for (int i = 0; i < numChunks; i++) {
+                lengths[i] = readLength(inputStream);
+                if (lengths[i] <= 0 || lengths[i] > BUFFER_SIZE) {
+                    throw new IOException("Invalid chunk length: " + lengths[i] + '.');
                 }
+                hashes[i] = new byte[BlobKey.SIZE];
+                readFully(inputStream, hashes[i], 0, BlobKey.SIZE, "chunk hash");
+                size += lengths[i];
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(
+                        "Received chunked PUT request for BLOB of job {} ({} chunks) from {}.",
+                        jobId,
+                        numChunks,
+                        clientSocket.getInetAddress());
+            }
+
+            final BlobChunkIndex chunkIndex = blobServer.getChunkIndex();
+            stagingFile = blobServer.createTemporaryFilename();
+            incomingFile = blobServer.createTemporaryFilename();
+
+            // position of each received chunk in the staging file, -1 if not received
+            final long[] staged = new long[numChunks];
+            Arrays.fill(staged, -1L);
+            long received = 0L;
+            boolean useIndex = true;
+            byte[] digest;
+
+            try (RandomAccessFile staging = new RandomAccessFile(stagingFile, "rw")) {
+                while (true) {
+                    final List<Integer> missing = new ArrayList<>();
+                    for (int i = 0; i < numChunks; i++) {
+                        if (staged[i] < 0
+                                && (!useIndex || chunkIndex.lookup(hashes[i]) == null)) {
+                            missing.add(i);
+                        }
+                    }
+
+                    if (!missing.isEmpty()) {
+                        outputStream.write(RETURN_CHUNKS_MISSING);
+                        writeLength(missing.size(), outputStream);
+                        for (int index : missing) {
+                            writeLength(index, outputStream);
+                        }
+
+                        final MessageDigest md = BlobUtils.createMessageDigest();
+                        for (int index : missing) {
+                            final int length = lengths[index];
+                            throttle(length);
+                            readFully(inputStream, buf, 0, length, "chunk");
+                            md.update(buf, 0, length);
+                            if (!Arrays.equals(hashes[index], md.digest())) {
+                                throw new IOException("Detected data corruption during transfer");
+                            }
+
+                            staged[index] = staging.length();
+                            staging.seek(staged[index]);
+                            staging.write(buf, 0, length);
+                            received += length;
+                        }
+                    }
+
+                    digest = assembleChunks(lengths, hashes, staged, staging, incomingFile, buf);
+                    if (digest != null) {
+                        break;
+                    }
+
+                    // some stored chunks vanished: have the client send all others, too
+                    LOG.debug("Stored chunks vanished, requesting them from the client.");
+                    useIndex = false;
+                }
+            }
+
+            final BlobKey blobKey =
+                    blobServer.moveTempFileToStore(incomingFile, jobId, digest, blobType);
+            if (blobType == PERMANENT_BLOB) {
+                chunkIndex.add(blobServer.getStorageLocation(jobId, blobKey), hashes, lengths);
+            }
+            blobServer.recordPut(jobId, received, start);
+            blobServer.getMetrics().numBytesReusedPut.inc(size - received);
+
+            // Return computed key to client for validation
+            outputStream.write(RETURN_OKAY);
+            blobKey.writeToOutputStream(outputStream);
+        } catch (SocketException e) {
+            // happens when the other side disconnects
+            LOG.debug("Socket connection closed", e);
+        } catch (Throwable t) {
+            LOG.error("Chunked PUT operation failed", t);
+            try {
+                writeErrorToStream(outputStream, t);
+            } catch (IOException e) {
+                // since we are in an exception case, it means that we could not send the error
+                // ignore this
             }
+            clientSocket.close();
+        } finally {
+            deleteTemporaryFile(stagingFile);
+            deleteTemporaryFile(incomingFile);
         }
     }
 
+    /**
+     * Assembles a BLOB from received and stored chunks.
+     *
+     * @param lengths the length of each chunk
+     * @param hashes the content hash of each chunk
+     * @param staged position of each received chunk in the staging file, -1 if not received
+     * @param staging the received chunks
+     * @param incomingFile file to write the BLOB to
+     * @param buf An auxiliary buffer for data serialization/deserialization
+     * @return the BLOB's content hash or <tt>null</tt> if a stored chunk vanished
+     * @throws IOException thrown if an I/O error occurs while reading/writing the files
+     */
+    @Nullable
+    private byte[] assembleChunks(
+            int[] lengths,
+            byte[][] hashes,
+            long[] staged,
+            RandomAccessFile staging,
+            File incomingFile,
+            byte[] buf)
+            throws IOException {
+        final BlobChunkIndex chunkIndex = blobServer.getChunkIndex();
+        final MessageDigest md = BlobUtils.createMessageDigest();
 
+        try (FileOutputStream fos = new FileOutputStream(incomingFile)) {
+            for (int i = 0; i < lengths.length; i++) {
+                if (staged[i] >= 0) {
+                    staging.seek(staged[i]);
+                    staging.readFully(buf, 0, lengths[i]);
+                } else {
+                    final BlobChunkIndex.Location location = chunkIndex.lookup(hashes[i]);
+                    if (location == null
+                            || location.getLength() != lengths[i]
+                            || !chunkIndex.read(hashes[i], location, buf)) {
+                        return null;
+                    }
+                }
+
+                fos.write(buf, 0, lengths[i]);
+                md.update(buf, 0, lengths[i]);
+            }
+        }
+        return md.digest();
+    }
 
     /**
      * Handles an incoming GET request from a BLOB client.
@@ -196,13 +419,17 @@ public class BlobServerConnection extends Thread{
      * that we do not enforce atomicity here, i.e. multiple clients reading from the same BLOB may
      * still succeed.
      *
+     * <p>A conditional request carries the size and hash of the client's copy of the BLOB. If they
+     * match, only {@link BlobServerProtocol#RETURN_NOT_MODIFIED} is sent, which also counts as a
+     * successful read of a transient BLOB.
+     *
      * @param inputStream the input stream to read incoming data from
      * @param outputStream the output stream to send data back to the client
-     * @param buf an auxiliary buffer for data serialization/deserialization
+     * @param conditional whether the request is a conditional GET
      * @throws IOException thrown if an I/O error occurs while reading/writing data from/to the
      *     respective streams
      */
-    private void get(InputStream inputStream, OutputStream outputStream, byte[] buf)
+    private void get(InputStream inputStream, OutputStream outputStream, boolean conditional)
             throws IOException {
         /*
          * Retrieve the file from the (distributed?) BLOB store and store it
@@ -213,9 +440,12 @@ public class BlobServerConnection extends Thread{
          * so a local cache makes more sense.
          */
 
+        final long start = System.nanoTime();
         final File blobFile;
         final JobID jobId;
         final BlobKey blobKey;
+        final int heldSize;
+        final byte[] heldHash;
 
         try {
             // read HEADER contents: job ID, key, HA mode/permanent or transient BLOB
@@ -235,6 +465,17 @@ public class BlobServerConnection extends Thread{
                 throw new IOException("Unknown type of BLOB addressing: " + mode + '.');
             }
             blobKey = BlobKey.readFromInputStream(inputStream);
+            requestJobId = jobId;
+
+            // Receive the size and hash of the client's copy
+            if (conditional) {
+                heldSize = readLength(inputStream);
+                heldHash = new byte[BlobKey.SIZE];
+                readFully(inputStream, heldHash, 0, BlobKey.SIZE, "hash");
+            } else {
+                heldSize = -1;
+                heldHash = null;
+            }
 
             checkArgument(
                     blobKey instanceof TransientBlobKey || jobId != null,
@@ -266,9 +507,13 @@ public class BlobServerConnection extends Thread{
 
         try {
 
-            readLock.lock();
+            final int blobLen;
+            final boolean notModified;
+            final SharedBlobReads.Reader blobReader;
             try {
-                // copy the file to local store if it does not exist yet
+                // copy the file to local store if it does not exist yet and open it under the
+                // lock; the (throttled) transfer runs without holding it
+                readLock.lock();
                 try {
                     blobServer.getFileInternal(jobId, blobKey, blobFile);
 
@@ -278,49 +523,73 @@ public class BlobServerConnection extends Thread{
                         throw new IOException("BLOB size exceeds the maximum size (2 GB).");
                     }
 
-                    outputStream.write(RETURN_OKAY);
-                } catch (Throwable t) {
-                    LOG.error(
-                            "GET operation failed for BLOB {}/{} from {}.",
-                            jobId,
-                            blobKey,
-                            clientSocket.getInetAddress(),
-                            t);
-                    try {
-                        writeErrorToStream(outputStream, t);
-                    } catch (IOException e) {
-                        // since we are in an exception case, it means that we could not send the
-                        // error
-                        // ignore this
-                    }
-                    clientSocket.close();
-                    return;
+                    // the server's copy has been verified against the key when it was stored
+                    blobLen = (int) blobFile.length();
+                    notModified =
+                            conditional
+                                    && heldSize == blobLen
+                                    && Arrays.equals(heldHash, blobKey.getHash());
+
+                    // concurrent requests for the same BLOB share their reads
+                    blobReader =
+                            notModified
+                                    ? null
+                                    : blobServer.getSharedReads().open(blobFile, blobLen);
+                } finally {
+                    readLock.unlock();
+                }
+            } catch (Throwable t) {
+                LOG.error(
+                        "GET operation failed for BLOB {}/{} from {}.",
+                        jobId,
+                        blobKey,
+                        clientSocket.getInetAddress(),
+                        t);
+                try {
+                    writeErrorToStream(outputStream, t);
+                } catch (IOException e) {
+                    // since we are in an exception case, it means that we could not send the
+                    // error
+                    // ignore this
                 }
+                clientSocket.close();
+                return;
+            }
 
-                // from here on, we started sending data, so all we can do is close the connection
-                // when something happens
-                int blobLen = (int) blobFile.length();
-                writeLength(blobLen, outputStream);
+            try (SharedBlobReads.Reader reader = blobReader) {
+                if (notModified) {
+                    outputStream.write(RETURN_NOT_MODIFIED);
+                } else {
+                    // from here on, we started sending data, so all we can do is close the
+                    // connection when something happens
+                    outputStream.write(RETURN_OKAY);
+                    writeLength(blobLen, outputStream);
 
-                try (FileInputStream fis = new FileInputStream(blobFile)) {
-                    int bytesRemaining = blobLen;
-                    while (bytesRemaining > 0) {
-                        int read = fis.read(buf);
-                        if (read < 0) {
-                            throw new IOException(
-                                    "Premature end of BLOB file stream for "
-                                            + blobFile.getAbsolutePath());
-                        }
-                        outputStream.write(buf, 0, read);
-                        bytesRemaining -= read;
+                    ByteBuffer chunk;
+                    while ((chunk = reader.next()) != null) {
+                        throttle(chunk.remaining());
+                        outputStream.write(
+                                chunk.array(),
+                                chunk.arrayOffset() + chunk.position(),
+                                chunk.remaining());
                     }
                 }
-            } finally {
-                readLock.unlock();
             }
 
+            final int sent = notModified ? 0 : blobLen;
+            final BlobServerMetrics metrics = blobServer.getMetrics();
+            metrics.numBytesOutGet.inc(sent);
+            metrics.getJobMetrics(jobId).numBytesOut.inc(sent);
+            metrics.getLatency.update(BlobServerMetrics.microsSince(start));
+
             // on successful transfer, delete transient files
-            int result = inputStream.read();
+            final int result;
+            if (notModified) {
+                metrics.numNotModified.inc();
+                result = RETURN_OKAY;
+            } else {
+                result = inputStream.read();
+            }
             if (result < 0) {
                 throw new EOFException("Premature end of GET request");
             } else if (blobKey instanceof TransientBlobKey && result == RETURN_OKAY) {
@@ -344,6 +613,295 @@ public class BlobServerConnection extends Thread{
     }
 
 
+    /**
+     * Handles an incoming verified GET request from a BLOB client for a range of a permanent BLOB's
+     * chunks.
+     *
+     * <p>The response carries the length of the BLOB and the hashes of all of its chunks of {@link
+     * BlobServerProtocol#TREE_HASH_CHUNK_SIZE} bytes, followed by the requested chunks. The client
+     * verifies each chunk as it arrives and requests the range of corrupted chunks again.
+     *
+     * @param inputStream the input stream to read incoming data from
+     * @param outputStream the output stream to send data back to the client
+     * @throws IOException thrown if an I/O error occurs while reading/writing data from/to the
+     *     respective streams
+     */
+    private void getVerified(InputStream inputStream, OutputStream outputStream)
+            throws IOException {
+        final long start = System.nanoTime();
+        final File blobFile;
+        final JobID jobId;
+        final BlobKey blobKey;
+        final int firstChunk;
+        final int maxChunks;
+
+        try {
+            // read HEADER contents: job ID, key and the range of chunks
+            jobId = readJobId(inputStream, "GET");
+            blobKey = BlobKey.readFromInputStream(inputStream);
+            requestJobId = jobId;
+            firstChunk = readLength(inputStream);
+            maxChunks = readLength(inputStream);
+
+            checkArgument(
+                    blobKey instanceof PermanentBlobKey && jobId != null,
+                    "Verified GETs are only supported for permanent BLOBs");
+            checkArgument(firstChunk >= 0 && maxChunks >= 0, "Invalid range of chunks");
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(
+                        "Received verified GET request for chunks {} to {} of BLOB {}/{} from {}.",
+                        firstChunk,
+                        (long) firstChunk + maxChunks - 1,
+                        jobId,
+                        blobKey,
+                        clientSocket.getInetAddress());
+            }
+
+            blobFile = blobServer.getStorageLocation(jobId, blobKey);
+        } catch (Throwable t) {
+            LOG.error("GET operation from {} failed.", clientSocket.getInetAddress(), t);
+            try {
+                writeErrorToStream(outputStream, t);
+            } catch (IOException e) {
+                // since we are in an exception case, it means that we could not send the error
+                // ignore this
+            }
+            clientSocket.close();
+            return;
+        }
+
+        try {
+            final int blobLen;
+            final byte[][] chunkHashes;
+            final FileChannel blobChannel;
+            try {
+                // open the file under the lock; the (throttled) transfer runs without holding it
+                readLock.lock();
+                try {
+                    blobServer.getFileInternal(jobId, blobKey, blobFile);
+                    if (blobFile.length() > Integer.MAX_VALUE) {
+                        throw new IOException("BLOB size exceeds the maximum size (2 GB).");
+                    }
+                    blobLen = (int) blobFile.length();
+                    chunkHashes = blobServer.getTreeHashes().get(blobFile, blobLen);
+                    checkArgument(firstChunk <= chunkHashes.length, "Invalid range of chunks");
+
+                    blobChannel = FileChannel.open(blobFile.toPath(), StandardOpenOption.READ);
+                } finally {
+                    readLock.unlock();
+                }
+            } catch (Throwable t) {
+                LOG.error(
+                        "GET operation failed for BLOB {}/{} from {}.",
+                        jobId,
+                        blobKey,
+                        clientSocket.getInetAddress(),
+                        t);
+                try {
+                    writeErrorToStream(outputStream, t);
+                } catch (IOException e) {
+                    // since we are in an exception case, it means that we could not send the
+                    // error
+                    // ignore this
+                }
+                clientSocket.close();
+                return;
+            }
+
+            final int sent;
+            try (FileChannel channel = blobChannel) {
+                // from here on, we started sending data, so all we can do is close the
+                // connection when something happens
+                outputStream.write(RETURN_OKAY);
+                writeLength(blobLen, outputStream);
+                writeLength(chunkHashes.length, outputStream);
+                for (byte[] chunkHash : chunkHashes) {
+                    outputStream.write(chunkHash);
+                }
+
+                final long offset = Math.min((long) firstChunk * TREE_HASH_CHUNK_SIZE, blobLen);
+                sent = (int) Math.min((long) maxChunks * TREE_HASH_CHUNK_SIZE, blobLen - offset);
+                final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+                long position = offset;
+                int remaining = sent;
+                while (remaining > 0) {
+                    buf.clear().limit(Math.min(BUFFER_SIZE, remaining));
+                    final int read = channel.read(buf, position);
+                    if (read < 0) {
+                        throw new EOFException(
+                                "Premature end of BLOB file stream for "
+                                        + blobFile.getAbsolutePath());
+                    }
+                    throttle(read);
+                    outputStream.write(buf.array(), 0, read);
+                    position += read;
+                    remaining -= read;
+                }
+            }
+
+            final BlobServerMetrics metrics = blobServer.getMetrics();
+            metrics.numBytesOutGet.inc(sent);
+            metrics.numBytesReadGet.inc(sent);
+            metrics.getJobMetrics(jobId).numBytesOut.inc(sent);
+            metrics.getLatency.update(BlobServerMetrics.microsSince(start));
+        } catch (SocketException e) {
+            // happens when the other side disconnects
+            LOG.debug("Socket connection closed", e);
+        } catch (Throwable t) {
+            LOG.error("GET operation failed", t);
+            clientSocket.close();
+        }
+    }
+
+    /**
+     * Handles an incoming request to the peer tracker from a BLOB cache: either a lookup of the
+     * peers to download a permanent BLOB from, which also registers the cache as downloading it,
+     * or the announcement that the cache holds the BLOB.
+     *
+     * <p>Peers are identified by the address of the requesting cache and the port it serves BLOBs
+     * on.
+     *
+     * @param inputStream the input stream to read incoming data from
+     * @param outputStream the output stream to send data back to the client
+     * @throws IOException thrown if an I/O error occurs while reading/writing data from/to the
+     *     respective streams
+     */
+    private void peers(InputStream inputStream, OutputStream outputStream) throws IOException {
+        try {
+            // read HEADER contents: job ID, key, the peer's state and port
+            final int mode = inputStream.read();
+            if (mode < 0) {
+                throw new EOFException("Premature end of PEERS request");
+            } else if (mode != JOB_RELATED_CONTENT) {
+                throw new IOException("Peers are only tracked for job-related BLOBs.");
+            }
+            byte[] jidBytes = new byte[JobID.SIZE];
+            readFully(inputStream, jidBytes, 0, JobID.SIZE, "JobID");
+            final JobID jobId = JobID.fromByteArray(jidBytes);
+            requestJobId = jobId;
+
+            final BlobKey blobKey = BlobKey.readFromInputStream(inputStream);
+            if (!(blobKey instanceof PermanentBlobKey)) {
+                throw new IOException("Peers are only tracked for permanent BLOBs.");
+            }
+
+            final int state = inputStream.read();
+            if (state < 0) {
+                throw new EOFException("Premature end of PEERS request");
+            }
+            final int port = readLength(inputStream);
+            if (port <= 0 || port > 65535) {
+                throw new IOException("Invalid peer port: " + port + '.');
+            }
+            final InetSocketAddress peer =
+                    new InetSocketAddress(clientSocket.getInetAddress(), port);
+
+            final BlobPeerTracker peerTracker = blobServer.getPeerTracker();
+            final List<InetSocketAddress> peers;
+            if (state == PEER_DOWNLOADING) {
+                peers =
+                        peerTracker.lookup(
+                                jobId, (PermanentBlobKey) blobKey, peer, blobServer.getMaxPeers());
+            } else if (state == PEER_COMPLETE) {
+                peerTracker.complete(jobId, (PermanentBlobKey) blobKey, peer);
+                peers = Collections.emptyList();
+            } else {
+                throw new IOException("Unknown peer state: " + state + '.');
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(
+                        "Received PEERS request for BLOB {}/{} from {} (state {}), suggesting {}.",
+                        jobId,
+                        blobKey,
+                        peer,
+                        state,
+                        peers);
+            }
+
+            outputStream.write(RETURN_OKAY);
+            writeLength(peers.size(), outputStream);
+            for (InetSocketAddress suggested : peers) {
+                final byte[] address = suggested.getAddress().getAddress();
+                writeLength(address.length, outputStream);
+                outputStream.write(address);
+                writeLength(suggested.getPort(), outputStream);
+            }
+        } catch (SocketException e) {
+            // happens when the other side disconnects
+            LOG.debug("Socket connection closed", e);
+        } catch (Throwable t) {
+            LOG.error("PEERS operation from {} failed.", clientSocket.getInetAddress(), t);
+            try {
+                writeErrorToStream(outputStream, t);
+            } catch (IOException e) {
+                // since we are in an exception case, it means that we could not send the error
+                // ignore this
+            }
+            clientSocket.close();
+        }
+    }
+
+    /**
+     * Reads the job ID of a request.
+     *
+     * @param inputStream stream to read from
+     * @param operation name of the request's operation for error messages
+     * @return the job ID or <tt>null</tt> if job-unrelated
+     * @throws IOException thrown if an I/O error occurs or the addressing is invalid
+     */
+    @Nullable
+    private static JobID readJobId(InputStream inputStream, String operation)
+            throws IOException {
+        final int mode = inputStream.read();
+        if (mode < 0) {
+            throw new EOFException("Premature end of " + operation + " request");
+        }
+
+        if (mode == JOB_UNRELATED_CONTENT) {
+            return null;
+        } else if (mode == JOB_RELATED_CONTENT) {
+            byte[] jidBytes = new byte[JobID.SIZE];
+            readFully(inputStream, jidBytes, 0, JobID.SIZE, "JobID");
+            return JobID.fromByteArray(jidBytes);
+        } else {
+            throw new IOException("Unknown type of BLOB addressing.");
+        }
+    }
+
+    /**
+     * Reads the BLOB type of a PUT request.
+     *
+     * @param inputStream stream to read from
+     * @param jobId the job ID of the request or <tt>null</tt> if job-unrelated
+     * @return whether the BLOB is permanent or transient
+     * @throws IOException thrown if an I/O error occurs or the BLOB type is invalid
+     */
+    private static BlobKey.BlobType readPutBlobType(
+            InputStream inputStream, @Nullable JobID jobId) throws IOException {
+        final int read = inputStream.read();
+        if (read < 0) {
+            throw new EOFException("Read an incomplete BLOB type");
+        } else if (read == TRANSIENT_BLOB.ordinal()) {
+            return TRANSIENT_BLOB;
+        } else if (read == PERMANENT_BLOB.ordinal()) {
+            checkArgument(jobId != null, "Invalid BLOB addressing for permanent BLOBs");
+            return PERMANENT_BLOB;
+        } else {
+            throw new IOException("Invalid data received for the BLOB type: " + read);
+        }
+    }
+
+    /** Deletes the given temporary file, if any. */
+    private static void deleteTemporaryFile(@Nullable File file) {
+        if (file != null) {
+            if (!file.delete() && file.exists()) {
+                LOG.warn("Cannot delete BLOB server staging file " + file.getAbsolutePath());
+            }
+        }
+    }
+
     /**
      * Reads a full file from <tt>inputStream</tt> into <tt>incomingFile</tt> returning its
      * checksum.
@@ -355,7 +913,7 @@ public class BlobServerConnection extends Thread{
      * @throws IOException thrown if an I/O error occurs while reading/writing data from/to the
      *     respective streams
      */
-    private static byte[] readFileFully(
+    private byte[] readFileFully(
             final InputStream inputStream, final File incomingFile, final byte[] buf)
             throws IOException {
         MessageDigest md = BlobUtils.createMessageDigest();
@@ -371,6 +929,7 @@ public class BlobServerConnection extends Thread{
                     throw new IOException("Unexpected number of incoming bytes: " + bytesExpected);
                 }
 
+                throttle(bytesExpected);
                 readFully(inputStream, buf, 0, bytesExpected, "buffer");
                 fos.write(buf, 0, bytesExpected);
 
@@ -387,6 +946,161 @@ public class BlobServerConnection extends Thread{
         interrupt();
     }
 
+    /**
+     * Returns the priority of the connection's first request if its header has already been
+     * received. This never blocks.
+     *
+     * <p><strong>This must only be called before the connection has been started.</strong>
+     *
+     * @return the first request's priority or <tt>null</tt> if not known yet
+     */
+    @Nullable
+    BlobRequestPriority peekPriority() {
+        peekRequestHeader();
+        return firstRequestPriority;
+    }
+
+    /**
+     * Returns the job of the connection's first request if its header has already been received.
+     * This never blocks.
+     *
+     * <p><strong>This must only be called before the connection has been started.</strong>
+     *
+     * @return the first request's job or <tt>null</tt> if job-unrelated or not known yet
+     */
+    @Nullable
+    JobID peekJobId() {
+        peekRequestHeader();
+        return firstRequestJobId;
+    }
+
+    /** Parses as much of the first request's header as has already been received. */
+    private void peekRequestHeader() {
+        if (firstRequestHeaderPeeked) {
+            return;
+        }
+
+        try {
+            final PushbackInputStream in = getInputStream();
+            final int available = Math.min(in.available(), MAX_PEEKED_HEADER_LENGTH);
+            // the operation, the priority and the addressing mode
+            if (available < 3) {
+                return;
+            }
+
+            final byte[] header = new byte[available];
+            int read = 0;
+            try {
+                while (read < available) {
+                    final int r = in.read(header, read, available - read);
+                    if (r < 0) {
+                        break;
+                    }
+                    read += r;
+                }
+            } finally {
+                in.unread(header, 0, read);
+            }
+
+            if (read >= 2) {
+                firstRequestPriority = BlobRequestPriority.fromByte(header[1]);
+            }
+            if (read >= 3 && header[2] != JOB_RELATED_CONTENT) {
+                firstRequestHeaderPeeked = true;
+            } else if (read >= MAX_PEEKED_HEADER_LENGTH) {
+                firstRequestJobId = JobID.fromByteArray(Arrays.copyOfRange(header, 3, read));
+                firstRequestHeaderPeeked = true;
+            }
+        } catch (IOException | RuntimeException e) {
+            // the connection will fail once it is served
+            LOG.debug("Failed to peek at the request of {}.", getName(), e);
+            firstRequestPriority = BlobRequestPriority.NORMAL;
+            firstRequestJobId = null;
+            firstRequestHeaderPeeked = true;
+        }
+    }
+
+    private PushbackInputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            inputStream =
+                    new PushbackInputStream(
+                            clientSocket.getInputStream(), MAX_PEEKED_HEADER_LENGTH);
+        }
+        return inputStream;
+    }
+
+    /** Returns the {@link System#nanoTime()} the connection was accepted at. */
+    long getAcceptedNanos() {
+        return acceptedNanos;
+    }
+
+    /**
+     * Rejects the connection without serving it: the client receives {@link
+     * BlobServerProtocol#RETURN_OVERLOADED} in response to its request, regardless of the
+     * request's type.
+     *
+     * @param retryAfterMillis delay (ms) the client should wait before retrying
+     */
+    void rejectOverloaded(int retryAfterMillis) {
+        try {
+            // bound the time an (SSL) handshake may take on the rejecting thread
+            clientSocket.setSoTimeout(REJECTION_TIMEOUT);
+
+            final OutputStream outputStream = clientSocket.getOutputStream();
+            outputStream.write(RETURN_OVERLOADED);
+            writeLength(retryAfterMillis, outputStream);
+            outputStream.flush();
+
+            // send the response before closing: closing with unread request data resets the
+            // connection which may discard the response at the client, and so does request data
+            // arriving after closing, so wait for the client to close its side first
+            if (!(clientSocket instanceof SSLSocket)) {
+                clientSocket.shutdownOutput();
+                drainRequest(clientSocket.getInputStream());
+            }
+        } catch (IOException e) {
+            LOG.debug("Failed to reject connection from {}.", clientSocket.getInetAddress(), e);
+        } finally {
+            closeSilently(clientSocket, LOG);
+        }
+    }
+
+    /**
+     * Reads and discards the request of a rejected connection until the client closes the
+     * connection, up to {@link #MAX_DRAINED_REJECTION_BYTES} bytes.
+     */
+    static void drainRequest(InputStream inputStream) throws IOException {
+        final byte[] buf = new byte[BUFFER_SIZE];
+        long drained = 0L;
+        int read;
+        while (drained < MAX_DRAINED_REJECTION_BYTES && (read = inputStream.read(buf)) >= 0) {
+            drained += read;
+        }
+    }
+
+    /**
+     * Waits until the given number of bytes may be transferred according to the bandwidth limits.
+     *
+     * @param bytes number of bytes about to be sent or received
+     * @throws InterruptedIOException if interrupted while waiting, e.g. due to a shutdown
+     */
+    private void throttle(int bytes) throws InterruptedIOException {
+        try {
+            if (bandwidthLimiter != null) {
+                bandwidthLimiter.acquire(bytes);
+            }
+            if (serverBandwidthScheduler != null) {
+                serverBandwidthScheduler.acquire(requestJobId, bytes);
+            }
+            if (bulkBandwidthLimiter != null && requestPriority == BlobRequestPriority.BULK) {
+                bulkBandwidthLimiter.acquire(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for bandwidth.");
+        }
+    }
+
 
     // --------------------------------------------------------------------------------------------
     //  Utilities
@@ -400,7 +1114,7 @@ public class BlobServerConnection extends Thread{
      * @param t The exception to send.
      * @throws IOException Thrown, if the output stream could not be written to.
      */
-    private static void writeErrorToStream(OutputStream out, Throwable t) throws IOException {
+    static void writeErrorToStream(OutputStream out, Throwable t) throws IOException {
         byte[] bytes = InstantiationUtil.serializeObject(t);
         out.write(RETURN_ERROR);
         writeLength(bytes.length, out);
@@ -0,0 +1,253 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.metrics.Counter;
+import flink.metrics.Gauge;
+import flink.metrics.Histogram;
+import flink.metrics.MetricGroup;
+import flink.runtime.metrics.SlidingWindowHistogram;
+import flink.runtime.metrics.ThreadSafeSimpleCounter;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Metrics of the hot paths of a {@link BlobServer}.
+ *
+ * <p>All latencies and wait times are measured in microseconds.
+ */
+final class BlobServerMetrics {
+
+    /** Number of latest values the histograms are computed over. */
+    private static final int HISTOGRAM_WINDOW_SIZE = 1024;
+
+    /** Number of latest values the per-job histograms are computed over. */
+    private static final int JOB_HISTOGRAM_WINDOW_SIZE = 128;
+
+    /** Bytes received by PUT requests. */
+    final Counter numBytesInPut;
+
+    /** Bytes of chunked PUT requests taken from chunks already stored instead of received. */
+    final Counter numBytesReusedPut;
+
+    /** Bytes sent by GET requests. */
+    final Counter numBytesOutGet;
+
+    /** Bytes read from the local storage by GET requests (shared by concurrent requests). */
+    final Counter numBytesReadGet;
+
+    /** Conditional GET requests answered without sending the BLOB. */
+    final Counter numNotModified;
+
+    /** Bytes copied from the HA blob store. */
+    final Counter numBytesInBlobStore;
+
+    /** Uploads to the HA blob store which finally failed after all retries. */
+    final Counter numFailedBlobStoreReplications;
+
+    /** Latency of PUT requests. */
+    final Histogram putLatency;
+
+    /** Latency of GET requests served over the network. */
+    final Histogram getLatency;
+
+    /** Duration of fetches from the HA blob store (a prefetch of several BLOBs counts as one). */
+    final Histogram blobStoreFetchLatency;
+
+    /** Time accepted connections waited for a free connection slot. */
+    final Histogram connectionWaitTime;
+
+    /** Time accepted connections waited for a free connection slot, per request priority. */
+    final Map<BlobRequestPriority, Histogram> connectionWaitTimePerPriority =
+            new EnumMap<>(BlobRequestPriority.class);
+
+    /** Connections rejected because the server was overloaded. */
+    final Counter numRejectedConnections;
+
+    /** Accumulated time spent waiting for the read lock. */
+    final Counter readLockWaitTime;
+
+    /** Accumulated time spent waiting for the write lock. */
+    final Counter writeLockWaitTime;
+
+    /** Transient BLOBs deleted because their TTL expired. */
+    final Counter numTransientExpiryDeletions;
+
+    /** Metrics per job, keyed by job ID or {@code no_job} for job-unrelated BLOBs. */
+    private final ConcurrentHashMap<String, JobMetrics> jobMetrics = new ConcurrentHashMap<>();
+
+    BlobServerMetrics(MetricGroup metricGroup) {
+        checkNotNull(metricGroup);
+
+        this.numBytesInPut = metricGroup.counter("numBytesInPut", new ThreadSafeSimpleCounter());
+        this.numBytesReusedPut =
+                metricGroup.counter("numBytesReusedPut", new ThreadSafeSimpleCounter());
+        this.numBytesOutGet = metricGroup.counter("numBytesOutGet", new ThreadSafeSimpleCounter());
+        this.numBytesReadGet =
+                metricGroup.counter("numBytesReadGet", new ThreadSafeSimpleCounter());
+        this.numNotModified = metricGroup.counter("numNotModified", new ThreadSafeSimpleCounter());
+        this.numBytesInBlobStore =
+                metricGroup.counter("numBytesInBlobStore", new ThreadSafeSimpleCounter());
+        this.numFailedBlobStoreReplications =
+                metricGroup.counter(
+                        "numFailedBlobStoreReplications", new ThreadSafeSimpleCounter());
+        this.putLatency =
+                metricGroup.histogram(
+                        "putLatency", new SlidingWindowHistogram(HISTOGRAM_WINDOW_SIZE));
+        this.getLatency =
+                metricGroup.histogram(
+                        "getLatency", new SlidingWindowHistogram(HISTOGRAM_WINDOW_SIZE));
+        this.blobStoreFetchLatency =
+                metricGroup.histogram(
+                        "blobStoreFetchLatency", new SlidingWindowHistogram(HISTOGRAM_WINDOW_SIZE));
+        this.connectionWaitTime =
+                metricGroup.histogram(
+                        "connectionWaitTime", new SlidingWindowHistogram(HISTOGRAM_WINDOW_SIZE));
+        for (BlobRequestPriority priority : BlobRequestPriority.values()) {
+            connectionWaitTimePerPriority.put(
+                    priority,
+                    getPriorityGroup(metricGroup, priority)
+                            .histogram(
+                                    "connectionWaitTime",
+                                    new SlidingWindowHistogram(HISTOGRAM_WINDOW_SIZE)));
+        }
+        this.numRejectedConnections =
+                metricGroup.counter("numRejectedConnections", new ThreadSafeSimpleCounter());
+        this.readLockWaitTime =
+                metricGroup.counter("readLockWaitTime", new ThreadSafeSimpleCounter());
+        this.writeLockWaitTime =
+                metricGroup.counter("writeLockWaitTime", new ThreadSafeSimpleCounter());
+        this.numTransientExpiryDeletions =
+                metricGroup.counter("numTransientExpiryDeletions", new ThreadSafeSimpleCounter());
+
+        metricGroup.gauge(
+                "numBytesInPerJob",
+                (Gauge<Map<String, Long>>) () -> collectPerJob(m -> m.numBytesIn.getCount()));
+        metricGroup.gauge(
+                "numBytesOutPerJob",
+                (Gauge<Map<String, Long>>) () -> collectPerJob(m -> m.numBytesOut.getCount()));
+        metricGroup.gauge(
+                "connectionWaitTimeP99PerJob",
+                (Gauge<Map<String, Long>>)
+                        () -> collectPerJob(JobMetrics::getConnectionWaitTimeP99));
+    }
+
+    /**
+     * Returns the metrics of the given job.
+     *
+     * @param jobId the job (or <tt>null</tt> for job-unrelated BLOBs)
+     * @return the job's metrics
+     */
+    JobMetrics getJobMetrics(@Nullable JobID jobId) {
+        return jobMetrics.computeIfAbsent(getJobName(jobId), name -> new JobMetrics());
+    }
+
+    /** Drops the metrics of a job which has been cleaned up. */
+    void removeJob(JobID jobId) {
+        jobMetrics.remove(getJobName(jobId));
+    }
+
+    private static String getJobName(@Nullable JobID jobId) {
+        return jobId == null ? BlobUtils.NO_JOB_DIR_PREFIX : jobId.toString();
+    }
+
+    private Map<String, Long> collectPerJob(ToLongFunction<JobMetrics> metric) {
+        final Map<String, Long> perJob = new HashMap<>();
+        for (Map.Entry<String, JobMetrics> entry : jobMetrics.entrySet()) {
+            perJob.put(entry.getKey(), metric.applyAsLong(entry.getValue()));
+        }
+        return perJob;
+    }
+
+    /**
+     * Returns the group of the metrics of the given request priority, e.g. {@code
+     * priority.critical}.
+     */
+    static MetricGroup getPriorityGroup(MetricGroup metricGroup, BlobRequestPriority priority) {
+        return metricGroup
+                .addGroup("priority")
+                .addGroup(priority.name().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the microseconds passed since the given {@link System#nanoTime()}.
+     *
+     * @param startNanos start of the measured interval
+     * @return elapsed microseconds
+     */
+    static long microsSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Creates a gauge computing the bytes stored per job in the given storage directory, keyed by
+     * job ID (or {@code no_job} for job-unrelated BLOBs).
+     *
+     * <p>The directory is scanned whenever the gauge is read, so the hot paths are not affected.
+     *
+     * @param storageDir local storage directory of the BLOB service
+     * @return gauge of the stored bytes per job
+     */
+    static Gauge<Map<String, Long>> createStorageBytesPerJobGauge(File storageDir) {
+        return () -> {
+            final Map<String, Long> bytesPerJob = new HashMap<>();
+            final File[] jobDirs = storageDir.listFiles();
+            if (jobDirs == null) {
+                return bytesPerJob;
+            }
+
+            for (File jobDir : jobDirs) {
+                final String name = jobDir.getName();
+                final String job;
+                if (name.startsWith(BlobUtils.JOB_DIR_PREFIX)) {
+                    job = name.substring(BlobUtils.JOB_DIR_PREFIX.length());
+                } else if (name.equals(BlobUtils.NO_JOB_DIR_PREFIX)) {
+                    job = name;
+                } else {
+                    // e.g. the incoming directory
+                    continue;
+                }
+
+                long bytes = 0L;
+                final File[] blobs = jobDir.listFiles();
+                if (blobs != null) {
+                    for (File blob : blobs) {
+                        bytes += blob.length();
+                    }
+                }
+                bytesPerJob.put(job, bytes);
+            }
+            return bytesPerJob;
+        };
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /** Metrics of a single job; all values are exposed as maps keyed by job. */
+    static final class JobMetrics {
+
+        /** Bytes received by PUT requests of the job. */
+        final Counter numBytesIn = new ThreadSafeSimpleCounter();
+
+        /** Bytes sent by GET requests of the job. */
+        final Counter numBytesOut = new ThreadSafeSimpleCounter();
+
+        /** Time the job's accepted connections waited for a free connection slot. */
+        final Histogram connectionWaitTime = new SlidingWindowHistogram(JOB_HISTOGRAM_WINDOW_SIZE);
+
+        private JobMetrics() {}
+
+        private long getConnectionWaitTimeP99() {
+            return (long) connectionWaitTime.getStatistics().getQuantile(0.99);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package flink.runtime.blob;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link BlobClient} if the {@link BlobServer} rejected a request because it is
+ * overloaded. The request may be retried after {@link #getRetryAfterMillis()}.
+ */
+public class BlobServerOverloadedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The delay (in milliseconds) the server asked to wait before retrying. */
+    private final int retryAfterMillis;
+
+    public BlobServerOverloadedException(int retryAfterMillis) {
+        super("The BLOB server is overloaded. Retry after " + retryAfterMillis + " ms.");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /** Returns the delay (in milliseconds) the server asked to wait before retrying. */
+    public int getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
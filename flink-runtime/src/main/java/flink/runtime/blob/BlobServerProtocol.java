@@ -36,12 +36,69 @@ public class BlobServerProtocol {
      */
     static final byte GET_OPERATION = 1;
 
+    /**
+     * Internal code to identify a conditional GET operation: the client sends the size and hash of
+     * the copy it holds, and the server only sends the BLOB if they do not match.
+     */
+    static final byte GET_IF_MODIFIED_OPERATION = 4;
+
+    /**
+     * Internal code to identify a chunked PUT operation: the client sends the hashes of the BLOB's
+     * content-defined chunks and only uploads the chunks the server does not hold yet.
+     */
+    static final byte PUT_CHUNKED_OPERATION = 5;
+
+    /**
+     * Internal code to identify a verified GET operation of a range of a permanent BLOB's chunks:
+     * the server sends the hashes of all fixed-size chunks of the BLOB before the requested chunks
+     * so that the client can verify each chunk and re-fetch corrupted ones.
+     */
+    static final byte GET_VERIFIED_OPERATION = 6;
+
+    /** The size in bytes of the chunks of a verified GET operation. */
+    static final int TREE_HASH_CHUNK_SIZE = 1 << 20; // 1 M
+
+    /** Maximum number of chunks of a chunked PUT operation. */
+    static final int MAX_CHUNKS = 1 << 20;
+
+    /**
+     * Internal code to identify a request to the peer tracker of the {@link BlobServer}, i.e. to
+     * look up other caches holding a permanent BLOB or to announce holding it.
+     *
+     * <p>Note: code <tt>2</tt> is left unused since it was the previous <tt>DELETE_OPERATION</tt>.
+     */
+    static final byte PEERS_OPERATION = 3;
+
+    /** Internal code of a peer announcing it is about to download a BLOB (and looking for peers). */
+    static final byte PEER_DOWNLOADING = 0;
+
+    /** Internal code of a peer announcing it holds a BLOB. */
+    static final byte PEER_COMPLETE = 1;
+
     /** Internal code to identify a successful operation. */
     static final byte RETURN_OKAY = 0;
 
     /** Internal code to identify an erroneous operation. */
     static final byte RETURN_ERROR = 1;
 
+    /**
+     * Internal code to identify a request rejected by an overloaded server; it is followed by the
+     * delay in milliseconds the client should wait before retrying.
+     */
+    static final byte RETURN_OVERLOADED = 2;
+
+    /**
+     * Internal code to identify a conditional GET whose BLOB matches the client's copy, i.e. the
+     * BLOB is not sent.
+     */
+    static final byte RETURN_NOT_MODIFIED = 3;
+
+    /**
+     * Internal code to identify a chunked PUT waiting for chunks the server does not hold; it is
+     * followed by the number and indices of these chunks.
+     */
+    static final byte RETURN_CHUNKS_MISSING = 4;
+
     /**
      * Internal code to identify a job-unrelated BLOBs (only for transient BLOBs!).
      *
@@ -6,6 +6,9 @@ import flink.api.common.JobID;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * @Description
@@ -27,6 +30,28 @@ public interface BlobStore  extends BlobView{
      */
     boolean put(File localFile, JobID jobId, BlobKey blobKey) throws IOException;
 
+    /**
+     * Copies several local files of a job to the blob store.
+     *
+     * <p>The default implementation runs {@link #put(File, JobID, BlobKey)} for all files in
+     * parallel on the given executor. The executor must not be the one the blob store itself runs
+     * its transfers on.
+     *
+     * @param jobId ID of the job the blobs belong to (or <tt>null</tt> if job-unrelated)
+     * @param localFiles The file to copy, per blob ID
+     * @param executor Executor to run the single copies on
+     * @param <K> type of the blob IDs
+     * @return future with the IDs of all copied blobs and the failures per blob, completed once
+     *     all copies finished; a failed copy does not affect the others
+     */
+    default <K extends BlobKey> CompletableFuture<BlobBulkResult<K>> putAll(
+            JobID jobId, Map<K, File> localFiles, Executor executor) {
+        return BlobUtils.applyInParallel(
+                localFiles.keySet(),
+                blobKey -> put(localFiles.get(blobKey), jobId, blobKey),
+                executor);
+    }
+
     /**
      * Tries to delete a blob from storage.
      *
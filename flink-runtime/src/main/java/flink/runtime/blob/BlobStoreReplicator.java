@@ -0,0 +1,344 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.flink_core.api.java.tuple.Tuple2;
+import flink.metrics.Counter;
+import flink.util.concurrent.ExecutorThreadFactory;
+import org.slf4j.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static flink.util.Preconditions.checkArgument;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Uploads permanent BLOBs from the local storage of the {@link BlobServer} to the HA {@link
+ * BlobStore} in the background.
+ *
+ * <p>Uploads run on a bounded pool, so a slow remote store neither blocks the blob server's locks
+ * nor gets flooded with concurrent requests. Failed uploads are retried with an exponential
+ * backoff.
+ */
+class BlobStoreReplicator implements Closeable {
+
+    /** The log object used for debugging. */
+    private final Logger log;
+
+    /** Blob store for distributed file storage, e.g. in HA. */
+    private final BlobStore blobStore;
+
+    /** Executor running (and re-scheduling) the uploads. */
+    private final ScheduledThreadPoolExecutor executor;
+
+    /** Number of retries after a failed upload before giving up. */
+    private final int maxRetries;
+
+    /** Delay (ms) before the first retry; doubled for every following retry. */
+    private final long initialRetryDelay;
+
+    /** Upper bound (ms) of the delay between two retries. */
+    private final long maxRetryDelay;
+
+    /** Counts the uploads which finally failed after all retries. */
+    private final Counter numFailedReplications;
+
+    /** Uploads which have not finished yet. */
+    private final ConcurrentHashMap<Tuple2<JobID, BlobKey>, PendingReplication>
+            pendingReplications = new ConcurrentHashMap<>();
+
+    /** First final upload failure per job, until the job's uploads are cancelled. */
+    private final ConcurrentHashMap<JobID, Throwable> finalFailures = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new replicator.
+     *
+     * @param blobStore HA store to upload to
+     * @param poolSize maximum number of concurrent uploads
+     * @param maxRetries number of retries after a failed upload
+     * @param initialRetryDelay delay (ms) before the first retry
+     * @param maxRetryDelay upper bound (ms) of the delay between two retries
+     * @param numFailedReplications counter of the uploads which finally failed
+     * @param log logger for debug information
+     */
+    BlobStoreReplicator(
+            BlobStore blobStore,
+            int poolSize,
+            int maxRetries,
+            long initialRetryDelay,
+            long maxRetryDelay,
+            Counter numFailedReplications,
+            Logger log) {
+        checkArgument(poolSize > 0, "The pool size must be positive.");
+        checkArgument(maxRetries >= 0, "The number of retries must not be negative.");
+        checkArgument(initialRetryDelay >= 0, "The retry delay must not be negative.");
+        checkArgument(
+                maxRetryDelay >= initialRetryDelay,
+                "The maximum retry delay must not be smaller than the initial retry delay.");
+
+        this.blobStore = checkNotNull(blobStore);
+        this.maxRetries = maxRetries;
+        this.initialRetryDelay = initialRetryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+        this.numFailedReplications = checkNotNull(numFailedReplications);
+        this.log = checkNotNull(log);
+        this.executor =
+                new ScheduledThreadPoolExecutor(
+                        poolSize, new ExecutorThreadFactory("blob-server-replicator"));
+    }
+
+    /**
+     * Asynchronously copies the given local file to the blob store.
+     *
+     * @param localFile the file to copy (must not be deleted before the returned future completes)
+     * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
+     * @param blobKey the ID for the file in the blob store
+     * @return future which is completed once the file is stored in the blob store, or completed
+     *     exceptionally if all attempts failed or the upload has been cancelled
+     */
+    CompletableFuture<Void> replicate(File localFile, @Nullable JobID jobId, BlobKey blobKey) {
+        final Tuple2<JobID, BlobKey> replicationKey = Tuple2.of(jobId, blobKey);
+        final PendingReplication pendingReplication =
+                new PendingReplication(localFile, jobId, blobKey, System.currentTimeMillis());
+        pendingReplications.put(replicationKey, pendingReplication);
+        pendingReplication.result.whenComplete(
+                (ignored, throwable) ->
+                        pendingReplications.remove(replicationKey, pendingReplication));
+
+        synchronized (pendingReplication) {
+            scheduleAttempt(pendingReplication, 0, 0L);
+        }
+        return pendingReplication.result;
+    }
+
+    /**
+     * Cancels all pending uploads of the given job, e.g. because the job is cleaned up.
+     *
+     * @param jobId ID of the job
+     * @return future which is completed once no cancelled upload accesses the blob store anymore
+     */
+    CompletableFuture<Void> cancel(JobID jobId) {
+        checkNotNull(jobId);
+        finalFailures.remove(jobId);
+
+        final List<CompletableFuture<Void>> terminations = new ArrayList<>();
+        for (PendingReplication pendingReplication : pendingReplications.values()) {
+            if (jobId.equals(pendingReplication.jobId)) {
+                terminations.add(pendingReplication.cancel());
+            }
+        }
+        return CompletableFuture.allOf(terminations.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Returns a future which is completed once the uploads of the given job pending at the time of
+     * the call have finished. It is completed exceptionally if any upload of the job finally
+     * failed since the job has last been cancelled.
+     *
+     * @param jobId ID of the job
+     * @return future of the job's uploads
+     */
+    CompletableFuture<Void> awaitJob(JobID jobId) {
+        checkNotNull(jobId);
+
+        final List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (PendingReplication pendingReplication : pendingReplications.values()) {
+            if (jobId.equals(pendingReplication.jobId)) {
+                results.add(pendingReplication.result);
+            }
+        }
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+                .handle(
+                        (ignored, throwable) -> {
+                            final Throwable failure =
+                                    throwable != null ? throwable : finalFailures.get(jobId);
+                            if (failure != null) {
+                                throw new CompletionException(
+                                        new IOException(
+                                                "Failed to upload BLOBs of job "
+                                                        + jobId
+                                                        + " to the blob store.",
+                                                failure));
+                            }
+                            return null;
+                        });
+    }
+
+    /** Schedules the given attempt; must be called while holding the replication's lock. */
+    private void scheduleAttempt(PendingReplication pendingReplication, int attempt, long delay) {
+        try {
+            pendingReplication.nextAttempt =
+                    executor.schedule(
+                            () -> runAttempt(pendingReplication, attempt),
+                            delay,
+                            TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pendingReplication.terminated.complete(null);
+            pendingReplication.result.completeExceptionally(
+                    new IOException(
+                            "Could not upload BLOB "
+                                    + pendingReplication.jobId
+                                    + '/'
+                                    + pendingReplication.blobKey
+                                    + " to the blob store: the replicator is shut down.",
+                            e));
+        }
+    }
+
+    private void runAttempt(PendingReplication pendingReplication, int attempt) {
+        final JobID jobId = pendingReplication.jobId;
+        final BlobKey blobKey = pendingReplication.blobKey;
+
+        synchronized (pendingReplication) {
+            if (pendingReplication.cancelled) {
+                pendingReplication.terminated.complete(null);
+                return;
+            }
+            pendingReplication.running = true;
+        }
+
+        Throwable failure = null;
+        try {
+            blobStore.put(pendingReplication.localFile, jobId, blobKey);
+        } catch (Throwable t) {
+            failure = t;
+        }
+
+        synchronized (pendingReplication) {
+            pendingReplication.running = false;
+            if (failure == null) {
+                pendingReplication.terminated.complete(null);
+                pendingReplication.result.complete(null);
+            } else if (pendingReplication.cancelled) {
+                pendingReplication.terminated.complete(null);
+            } else if (attempt < maxRetries && !executor.isShutdown()) {
+                final long delay =
+                        Math.min(maxRetryDelay, initialRetryDelay << Math.min(attempt, 30));
+                log.warn(
+                        "Failed to upload BLOB {}/{} to the blob store (attempt {}). Retrying in {} ms.",
+                        jobId,
+                        blobKey,
+                        attempt + 1,
+                        delay,
+                        failure);
+                scheduleAttempt(pendingReplication, attempt + 1, delay);
+            } else {
+                log.error(
+                        "Failed to upload BLOB {}/{} to the blob store after {} attempts.",
+                        jobId,
+                        blobKey,
+                        attempt + 1,
+                        failure);
+                numFailedReplications.inc();
+                if (jobId != null) {
+                    finalFailures.putIfAbsent(jobId, failure);
+                }
+                pendingReplication.terminated.complete(null);
+                pendingReplication.result.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /** Returns the number of uploads to the blob store which have not finished yet. */
+    int getNumPendingReplications() {
+        return pendingReplications.size();
+    }
+
+    /**
+     * Returns the replication lag, i.e. the time (ms) the oldest unfinished upload has been
+     * waiting for, or <tt>0</tt> if there is none.
+     */
+    long getReplicationLag() {
+        long oldest = Long.MAX_VALUE;
+        for (PendingReplication pendingReplication : pendingReplications.values()) {
+            oldest = Math.min(oldest, pendingReplication.requestTime);
+        }
+        return oldest == Long.MAX_VALUE ? 0L : Math.max(0L, System.currentTimeMillis() - oldest);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+
+        if (!pendingReplications.isEmpty()) {
+            log.warn(
+                    "Stopped the BLOB replicator with {} uploads to the blob store still pending.",
+                    pendingReplications.size());
+
+            // nobody will complete these anymore
+            for (PendingReplication pendingReplication : pendingReplications.values()) {
+                pendingReplication.result.completeExceptionally(
+                        new IOException("The BLOB replicator has been shut down."));
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /** An upload to the blob store which has not finished yet. */
+    private static final class PendingReplication {
+
+        private final File localFile;
+
+        @Nullable private final JobID jobId;
+
+        private final BlobKey blobKey;
+
+        /** Time (ms) the upload was requested. */
+        private final long requestTime;
+
+        /** Future completed with the outcome of the upload. */
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        /** Future completed once no attempt accesses the blob store anymore. */
+        private final CompletableFuture<Void> terminated = new CompletableFuture<>();
+
+        /** The next (or current) attempt. */
+        @GuardedBy("this")
+        private ScheduledFuture<?> nextAttempt;
+
+        /** Whether an attempt is uploading right now. */
+        @GuardedBy("this")
+        private boolean running;
+
+        @GuardedBy("this")
+        private boolean cancelled;
+
+        private PendingReplication(
+                File localFile, @Nullable JobID jobId, BlobKey blobKey, long requestTime) {
+            this.localFile = localFile;
+            this.jobId = jobId;
+            this.blobKey = blobKey;
+            this.requestTime = requestTime;
+        }
+
+        /** Cancels the upload; returns the future of its termination. */
+        private CompletableFuture<Void> cancel() {
+            synchronized (this) {
+                cancelled = true;
+                // an attempt which has not started yet will not run anymore
+                if (!running && nextAttempt != null && nextAttempt.cancel(false)) {
+                    terminated.complete(null);
+                }
+            }
+            result.completeExceptionally(
+                    new CancellationException(
+                            "The upload of BLOB " + jobId + '/' + blobKey + " has been cancelled."));
+            return terminated;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package flink.runtime.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import static flink.runtime.blob.BlobServerProtocol.BUFFER_SIZE;
+import static flink.runtime.blob.BlobServerProtocol.TREE_HASH_CHUNK_SIZE;
+import static flink.util.Preconditions.checkArgument;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Computes and caches the hashes of the fixed-size chunks of the BLOB files at the {@link
+ * BlobServer}, i.e. the leaves of a hash tree over each BLOB. They are sent with verified GET
+ * requests so that clients can verify a BLOB chunk by chunk and re-fetch only corrupted chunks.
+ *
+ * <p>The chunks of a file are hashed in parallel. Since BLOB files never change, the hashes are
+ * cached for the most recently requested files.
+ *
+ * <p>This class is thread-safe.
+ */
+final class BlobTreeHashes {
+
+    /** Executor to hash the chunks with. */
+    private final Executor executor;
+
+    /** Maximum number of files to cache the hashes of. */
+    private final int maxCachedFiles;
+
+    /** Cached chunk hashes per file, in access order (guarded by itself). */
+    private final LinkedHashMap<File, byte[][]> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Creates the tree hashes.
+     *
+     * @param executor executor to hash the chunks with
+     * @param maxCachedFiles maximum number of files to cache the hashes of
+     */
+    BlobTreeHashes(Executor executor, int maxCachedFiles) {
+        checkArgument(maxCachedFiles >= 0, "The cache size must not be negative.");
+        this.executor = checkNotNull(executor);
+        this.maxCachedFiles = maxCachedFiles;
+    }
+
+    /**
+     * Returns the hashes of the chunks of the given BLOB file, computing them if not cached.
+     *
+     * @param file the BLOB file
+     * @param length the length of the file
+     * @return the hash of each chunk, in order
+     * @throws IOException if reading the file failed
+     */
+    byte[][] get(File file, long length) throws IOException {
+        synchronized (cache) {
+            final byte[][] cached = cache.get(file);
+            if (cached != null && cached.length == getNumChunks(length)) {
+                return cached;
+            }
+        }
+
+        final byte[][] hashes = compute(file, length, executor);
+
+        synchronized (cache) {
+            cache.put(file, hashes);
+            final Iterator<byte[][]> iterator = cache.values().iterator();
+            while (cache.size() > maxCachedFiles && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Removes the cached hashes of the files in the given directory, e.g. of a job's BLOBs being
+     * deleted.
+     *
+     * @param dir the directory
+     */
+    void removeDirectory(File dir) {
+        final String prefix = dir.getAbsolutePath() + File.separator;
+        synchronized (cache) {
+            cache.keySet().removeIf(file -> file.getAbsolutePath().startsWith(prefix));
+        }
+    }
+
+    /** Returns the number of files with cached hashes. */
+    int getNumCachedFiles() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of chunks of a BLOB.
+     *
+     * @param length the length of the BLOB
+     * @return the number of chunks, the last one possibly being shorter
+     */
+    static int getNumChunks(long length) {
+        return (int) ((length + TREE_HASH_CHUNK_SIZE - 1) / TREE_HASH_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns the length of a chunk of a BLOB.
+     *
+     * @param length the length of the BLOB
+     * @param index the chunk's index
+     * @return the chunk's length
+     */
+    static int getChunkLength(long length, int index) {
+        return (int) Math.min(TREE_HASH_CHUNK_SIZE, length - (long) index * TREE_HASH_CHUNK_SIZE);
+    }
+
+    /**
+     * Hashes the chunks of the given file in parallel.
+     *
+     * @param file the file
+     * @param length the length of the file
+     * @param executor executor to hash the chunks with
+     * @return the hash of each chunk, in order
+     * @throws IOException if reading the file failed
+     */
+    static byte[][] compute(File file, long length, Executor executor) throws IOException {
+        final byte[][] hashes = new byte[getNumChunks(length)][];
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final CompletableFuture<?>[] futures = new CompletableFuture<?>[hashes.length];
+            for (int i = 0; i < hashes.length; i++) {
+                final int index = i;
+                futures[i] =
+                        CompletableFuture.runAsync(
+                                () -> {
+                                    try {
+                                        hashes[index] = hashChunk(channel, length, index);
+                                    } catch (IOException e) {
+                                        throw new CompletionException(e);
+                                    }
+                                },
+                                executor);
+            }
+            CompletableFuture.allOf(futures).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing " + file + '.');
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to hash " + file + '.', e.getCause());
+        }
+
+        return hashes;
+    }
+
+    /** Hashes a single chunk of a file. */
+    private static byte[] hashChunk(FileChannel channel, long length, int index)
+            throws IOException {
+        final MessageDigest md = BlobUtils.createMessageDigest();
+        final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+        long position = (long) index * TREE_HASH_CHUNK_SIZE;
+        int remaining = getChunkLength(length, index);
+        while (remaining > 0) {
+            buf.clear();
+            buf.limit(Math.min(BUFFER_SIZE, remaining));
+            final int read = channel.read(buf, position);
+            if (read < 0) {
+                throw new IOException("Premature end of BLOB file at position " + position + '.');
+            }
+            md.update(buf.array(), 0, read);
+            position += read;
+            remaining -= read;
+        }
+        return md.digest();
+    }
+}
@@ -4,6 +4,11 @@ import flink.api.common.JobID;
 import flink.configuration.BlobServerOptions;
 import flink.configuration.Configuration;
 import flink.configuration.ConfigurationUtils;
+import flink.core.fs.FileSystem;
+import flink.core.fs.Path;
+import flink.runtime.highavailability.HighAvailabilityServicesUtils;
+import flink.runtime.jobmanager.HighAvailabilityMode;
+import flink.util.ExceptionUtils;
 import flink.util.StringUtils;
 import org.slf4j.Logger;
 
@@ -14,8 +19,19 @@ import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @Description
@@ -88,6 +104,113 @@ public class BlobUtils {
                 "Could not create storage directory for BLOB store in '" + baseDir + "'.");
     }
 
+    /**
+     * Creates a BlobStore based on the parameters set in the configuration.
+     *
+     * @param config configuration to use
+     * @param ioExecutor executor transferring the parts of BLOBs in parallel
+     * @return a (distributed) blob store for high availability
+     * @throws IOException thrown if the (distributed) file storage cannot be created
+     */
+    public static BlobStoreService createBlobStoreFromConfig(
+            Configuration config, Executor ioExecutor) throws IOException {
+        if (HighAvailabilityMode.isHighAvailabilityModeActivated(config)) {
+            return createFileSystemBlobStore(config, ioExecutor);
+        } else {
+            return new VoidBlobStore();
+        }
+    }
+
+    private static BlobStoreService createFileSystemBlobStore(
+            Configuration configuration, Executor ioExecutor) throws IOException {
+        final Path clusterStoragePath =
+                HighAvailabilityServicesUtils.getClusterHighAvailableStoragePath(configuration);
+
+        final FileSystem fileSystem;
+        try {
+            fileSystem = clusterStoragePath.getFileSystem();
+        } catch (Exception e) {
+            throw new IOException(
+                    String.format(
+                            "Could not create FileSystem for highly available storage path (%s)",
+                            clusterStoragePath),
+                    e);
+        }
+
+        long partSize = configuration.getLong(BlobServerOptions.HA_STORE_PART_SIZE);
+        if (partSize <= 0) {
+            partSize = BlobServerOptions.HA_STORE_PART_SIZE.defaultValue();
+        }
+
+        return new FileSystemBlobStore(
+                fileSystem, clusterStoragePath.toUri().toString(), ioExecutor, partSize);
+    }
+
+    /**
+     * Applies the given operation to all given BLOBs in parallel on the given executor.
+     *
+     * <p>The operation is settled per BLOB: if it fails for some BLOBs, the outcome of the others
+     * is still reported.
+     *
+     * @param blobKeys the BLOBs to apply the operation to
+     * @param operation the operation to apply
+     * @param executor executor to run the operations on
+     * @param <K> type of the BLOB keys
+     * @return future with the keys of all BLOBs the operation returned <tt>true</tt> for and the
+     *     failures of the operation per BLOB, completed once the operation finished for all BLOBs
+     */
+    static <K extends BlobKey> CompletableFuture<BlobBulkResult<K>> applyInParallel(
+            Collection<K> blobKeys, BlobOperation<K> operation, Executor executor) {
+        final Set<K> succeeded = ConcurrentHashMap.newKeySet();
+        final Map<K, Throwable> failures = new ConcurrentHashMap<>();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(blobKeys.size());
+        for (K blobKey : blobKeys) {
+            try {
+                futures.add(
+                        CompletableFuture.runAsync(
+                                () -> {
+                                    try {
+                                        if (operation.apply(blobKey)) {
+                                            succeeded.add(blobKey);
+                                        }
+                                    } catch (Throwable t) {
+                                        failures.put(blobKey, t);
+                                    }
+                                },
+                                executor));
+            } catch (RejectedExecutionException e) {
+                failures.put(blobKey, e);
+            }
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> new BlobBulkResult<>(succeeded, failures));
+    }
+
+    /**
+     * Waits for all the given transfers and rethrows the first failure.
+     *
+     * @param transfers the transfers to wait for
+     * @param description description of the whole transfer for error messages
+     * @throws IOException if any of the transfers failed
+     */
+    static void waitForAll(Collection<CompletableFuture<Void>> transfers, String description)
+            throws IOException {
+        try {
+            CompletableFuture.allOf(transfers.toArray(new CompletableFuture<?>[0])).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during the " + description + '.', e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            ExceptionUtils.tryRethrowIOException(cause);
+            throw new IOException("Failed the " + description + '.', cause);
+        }
+    }
+
     static void closeSilently(Socket socket, Logger log) {
         if (socket != null) {
             try {
@@ -342,4 +465,18 @@ public class BlobUtils {
     }
 
 
+
+    /** An operation on a single BLOB, e.g. a copy from or to a {@link BlobStore}. */
+    @FunctionalInterface
+    interface BlobOperation<K extends BlobKey> {
+
+        /**
+         * Applies the operation to the given BLOB.
+         *
+         * @param blobKey the BLOB to apply the operation to
+         * @return whether the operation had an effect, e.g. the BLOB was copied or exists
+         * @throws IOException if the operation failed
+         */
+        boolean apply(K blobKey) throws IOException;
+    }
 }
@@ -5,6 +5,10 @@ import flink.api.common.JobID;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * @Description
@@ -27,4 +31,54 @@ public interface BlobView {
      */
     boolean get(JobID jobId, BlobKey blobKey, File localFile) throws IOException;
 
+    /**
+     * Checks whether a blob exists in the storage.
+     *
+     * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
+     * @param blobKey The blob ID
+     * @return whether the blob exists
+     * @throws IOException If the check fails
+     */
+    boolean exists(JobID jobId, BlobKey blobKey) throws IOException;
+
+    /**
+     * Copies several blobs of a job to local files.
+     *
+     * <p>The default implementation runs {@link #get(JobID, BlobKey, File)} for all blobs in
+     * parallel on the given executor. The executor must not be the one the storage itself runs
+     * its transfers on.
+     *
+     * @param jobId ID of the job the blobs belong to (or <tt>null</tt> if job-unrelated)
+     * @param localFiles The local file to copy to, per blob ID
+     * @param executor Executor to run the single copies on
+     * @param <K> type of the blob IDs
+     * @return future with the IDs of all copied blobs and the failures per blob, completed once
+     *     all copies finished; a failed copy does not affect the others
+     */
+    default <K extends BlobKey> CompletableFuture<BlobBulkResult<K>> getAll(
+            JobID jobId, Map<K, File> localFiles, Executor executor) {
+        return BlobUtils.applyInParallel(
+                localFiles.keySet(),
+                blobKey -> get(jobId, blobKey, localFiles.get(blobKey)),
+                executor);
+    }
+
+    /**
+     * Checks which of the given blobs of a job exist in the storage.
+     *
+     * <p>The default implementation runs {@link #exists(JobID, BlobKey)} for all blobs in
+     * parallel on the given executor.
+     *
+     * @param jobId ID of the job the blobs belong to (or <tt>null</tt> if job-unrelated)
+     * @param blobKeys The blob IDs
+     * @param executor Executor to run the single checks on
+     * @param <K> type of the blob IDs
+     * @return future with the IDs of all existing blobs and the failures per blob, completed
+     *     once all checks finished; a failed check does not affect the others
+     */
+    default <K extends BlobKey> CompletableFuture<BlobBulkResult<K>> exists(
+            JobID jobId, Collection<K> blobKeys, Executor executor) {
+        return BlobUtils.applyInParallel(blobKeys, blobKey -> exists(jobId, blobKey), executor);
+    }
+
 }
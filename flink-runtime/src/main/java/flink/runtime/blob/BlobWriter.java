@@ -13,6 +13,7 @@ import flink.api.common.JobID;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
 
 /** BlobWriter is used to upload data to the BLOB store. */
 public interface BlobWriter {
@@ -42,4 +43,29 @@ public interface BlobWriter {
      */
     PermanentBlobKey putPermanent(JobID jobId, InputStream inputStream) throws IOException;
 
+    /**
+     * Asynchronously uploads the data of the given byte array for the given job to the BLOB
+     * server and makes it a permanent BLOB.
+     *
+     * <p>The caller must not modify the given buffer until the returned future is completed.
+     * Implementations may queue the upload if too many bytes are already being uploaded.
+     *
+     * <p>The default implementation uploads the data synchronously.
+     *
+     * @param jobId the ID of the job the BLOB belongs to
+     * @param value the buffer to upload
+     * @return future of the computed BLOB key identifying the BLOB on the server, completed
+     *     exceptionally if an I/O error occurs while writing it to a local file, or uploading it to
+     *     the HA store
+     */
+    default CompletableFuture<PermanentBlobKey> putPermanentAsync(JobID jobId, byte[] value) {
+        final CompletableFuture<PermanentBlobKey> result = new CompletableFuture<>();
+        try {
+            result.complete(putPermanent(jobId, value));
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        }
+        return result;
+    }
+
 }
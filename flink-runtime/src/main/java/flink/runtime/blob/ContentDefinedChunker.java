@@ -0,0 +1,98 @@
+package flink.runtime.blob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static flink.runtime.blob.BlobServerProtocol.BUFFER_SIZE;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Splits a stream into chunks at content-defined boundaries.
+ *
+ * <p>A boundary is placed where a rolling (gear) hash over the last 64 bytes matches a mask, so
+ * boundaries only depend on the surrounding content: inserting or removing bytes only changes the
+ * chunks around the modification and all other chunks are found again. Chunks are between {@link
+ * #MIN_CHUNK_SIZE} and {@link BlobServerProtocol#BUFFER_SIZE} bytes long, with an average of about
+ * {@link #AVG_CHUNK_SIZE} bytes.
+ *
+ * <p>The boundaries must be stable across versions since they determine which chunks of an upload
+ * are already known to the server.
+ */
+final class ContentDefinedChunker {
+
+    /** Minimum size of a chunk (except for the last one). */
+    static final int MIN_CHUNK_SIZE = 4096;
+
+    /** Average size of a chunk. */
+    static final int AVG_CHUNK_SIZE = 16384;
+
+    /** Maximum size of a chunk, which fits into a single transfer buffer. */
+    static final int MAX_CHUNK_SIZE = BUFFER_SIZE;
+
+    /** A boundary is placed where all of these (high) bits of the rolling hash are zero. */
+    private static final long BOUNDARY_MASK =
+            -1L << (Long.SIZE - Integer.numberOfTrailingZeros(AVG_CHUNK_SIZE));
+
+    /** Random value per byte value, fixed to keep the boundaries stable. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        final Random random = new Random(0x5D3A_B10BL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private ContentDefinedChunker() {}
+
+    /** Receives the chunks of a stream. */
+    interface ChunkConsumer {
+
+        /**
+         * Receives the next chunk. The buffer is only valid during the call.
+         *
+         * @param buf buffer holding the chunk
+         * @param len length of the chunk, starting at the buffer's beginning
+         * @throws IOException if processing the chunk failed
+         */
+        void accept(byte[] buf, int len) throws IOException;
+    }
+
+    /**
+     * Splits the given stream into chunks.
+     *
+     * @param inputStream stream to split (not closed)
+     * @param consumer receives the chunks in order
+     * @throws IOException if reading the stream or processing a chunk failed
+     */
+    static void split(InputStream inputStream, ChunkConsumer consumer) throws IOException {
+        checkNotNull(inputStream);
+        checkNotNull(consumer);
+
+        final byte[] chunk = new byte[MAX_CHUNK_SIZE];
+        final byte[] buf = new byte[BUFFER_SIZE];
+        int len = 0;
+        long hash = 0L;
+
+        int read;
+        while ((read = inputStream.read(buf)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                final byte b = buf[i];
+                chunk[len++] = b;
+                hash = (hash << 1) + GEAR[b & 0xFF];
+
+                if (len == MAX_CHUNK_SIZE
+                        || (len >= MIN_CHUNK_SIZE && (hash & BOUNDARY_MASK) == 0L)) {
+                    consumer.accept(chunk, len);
+                    len = 0;
+                    hash = 0L;
+                }
+            }
+        }
+
+        if (len > 0) {
+            consumer.accept(chunk, len);
+        }
+    }
+}
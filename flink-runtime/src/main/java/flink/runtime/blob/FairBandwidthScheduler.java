@@ -0,0 +1,213 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+
+import javax.annotation.Nullable;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import static flink.util.Preconditions.checkArgument;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Shares a bandwidth limit among jobs according to their weights (start-time fair queuing).
+ *
+ * <p>Each transfer is tagged with a virtual start time: the later of the job's previous finish
+ * time and the current virtual time, i.e. the start time of the last granted transfer. Its finish
+ * time advances by the transferred bytes divided by the job's weight. Waiting transfers are granted
+ * in order of their start times as far as the tokens last; tokens are refilled at the configured
+ * rate into a bucket of up to one second worth of bytes, as in {@link BandwidthLimiter}.
+ *
+ * <p>Hence, while several jobs are transferring, each one receives a share of the bandwidth
+ * proportional to its weight, independent of its number of connections; a job transferring alone
+ * may use all of it. Job-unrelated BLOBs form a class of their own. Unlike round-robin schemes
+ * with per-queue credit, this works for connections requesting one buffer at a time, whose queues
+ * drain after every grant.
+ */
+final class FairBandwidthScheduler {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1L);
+
+    /** Tokens (bytes) added per second. */
+    private final long bytesPerSecond;
+
+    /** Maximum number of tokens the bucket can hold. */
+    private final long capacity;
+
+    /** Returns the weight of a job (<tt>null</tt> for job-unrelated BLOBs). */
+    private final ToIntFunction<JobID> weights;
+
+    /** Waiting transfers by start time (guarded by this). */
+    private final PriorityQueue<Transfer> waiting =
+            new PriorityQueue<>(
+                    Comparator.<Transfer>comparingDouble(t -> t.startTag)
+                            .thenComparingLong(t -> t.sequenceNumber));
+
+    /** Finish time per job; the <tt>null</tt> key is job-unrelated (guarded by this). */
+    private final Map<JobID, JobState> jobs = new HashMap<>();
+
+    /** Start time of the last granted transfer (guarded by this). */
+    private double virtualTime;
+
+    /** Orders transfers with equal start times by arrival (guarded by this). */
+    private long nextSequenceNumber;
+
+    /** Currently available tokens (guarded by this). */
+    private long tokens;
+
+    /** {@link System#nanoTime()} the tokens were last refilled at (guarded by this). */
+    private long lastRefillNanos;
+
+    FairBandwidthScheduler(long bytesPerSecond, ToIntFunction<JobID> weights) {
+        checkArgument(bytesPerSecond > 0, "The bandwidth must be positive.");
+        this.bytesPerSecond = bytesPerSecond;
+        this.capacity = Math.max(bytesPerSecond, BlobServerProtocol.BUFFER_SIZE);
+        this.weights = checkNotNull(weights);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Creates a scheduler for the given bandwidth, or returns <tt>null</tt> if it is unlimited.
+     *
+     * @param bytesPerSecond the bandwidth in bytes per second, a non-positive value for unlimited
+     * @param weights returns the weight of a job (<tt>null</tt> for job-unrelated BLOBs)
+     * @return the scheduler or <tt>null</tt>
+     */
+    @Nullable
+    static FairBandwidthScheduler create(long bytesPerSecond, ToIntFunction<JobID> weights) {
+        return bytesPerSecond > 0 ? new FairBandwidthScheduler(bytesPerSecond, weights) : null;
+    }
+
+    /**
+     * Waits until the given job may transfer the given number of bytes.
+     *
+     * @param jobId job the transfer belongs to (or <tt>null</tt> if job-unrelated)
+     * @param bytes number of bytes about to be transferred, at most {@link
+     *     BlobServerProtocol#BUFFER_SIZE}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized void acquire(@Nullable JobID jobId, int bytes) throws InterruptedException {
+        checkArgument(bytes <= capacity, "Transfers must not exceed the bucket's capacity.");
+
+        JobState job = jobs.get(jobId);
+        if (job == null) {
+            pruneIdleJobs();
+            job = new JobState();
+            jobs.put(jobId, job);
+        }
+
+        final double startTag = Math.max(virtualTime, job.finishTag);
+        job.finishTag = startTag + (double) bytes / Math.max(1, weights.applyAsInt(jobId));
+        job.numWaiting++;
+        final Transfer transfer = new Transfer(job, bytes, startTag, nextSequenceNumber++);
+        waiting.add(transfer);
+
+        try {
+            long waitNanos = schedule(System.nanoTime());
+            while (!transfer.granted) {
+                // waiting transfers are granted by whichever thread schedules next
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNanos, 1L));
+                waitNanos = schedule(System.nanoTime());
+            }
+        } finally {
+            if (!transfer.granted) {
+                waiting.remove(transfer);
+                job.numWaiting--;
+            }
+        }
+    }
+
+    /**
+     * Grants waiting transfers in order of their start times as far as the tokens last.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return nanoseconds until the next transfer may be granted, or 0 if none is waiting
+     */
+    private long schedule(long nowNanos) {
+        refill(nowNanos);
+
+        boolean granted = false;
+        long waitNanos = 0L;
+        while (!waiting.isEmpty()) {
+            final Transfer next = waiting.peek();
+            if (tokens < next.bytes) {
+                waitNanos = (next.bytes - tokens) * NANOS_PER_SECOND / bytesPerSecond;
+                break;
+            }
+
+            waiting.poll();
+            tokens -= next.bytes;
+            virtualTime = next.startTag;
+            next.job.numWaiting--;
+            next.granted = true;
+            granted = true;
+        }
+
+        if (granted) {
+            notifyAll();
+        }
+        return waitNanos;
+    }
+
+    private void refill(long nowNanos) {
+        final long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            // split the elapsed time to avoid overflows after long idle periods
+            final long refill =
+                    elapsed / NANOS_PER_SECOND * bytesPerSecond
+                            + elapsed % NANOS_PER_SECOND * bytesPerSecond / NANOS_PER_SECOND;
+            if (refill > 0) {
+                tokens = Math.min(capacity, tokens + refill);
+                lastRefillNanos = nowNanos;
+            }
+        }
+    }
+
+    /** Forgets jobs whose next transfer would start at the current virtual time anyway. */
+    private void pruneIdleJobs() {
+        final Iterator<JobState> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            final JobState job = iterator.next();
+            if (job.numWaiting == 0 && job.finishTag <= virtualTime) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /** Virtual finish time of a job's last transfer. */
+    private static final class JobState {
+
+        private double finishTag;
+
+        private int numWaiting;
+    }
+
+    /** A transfer waiting to be granted. */
+    private static final class Transfer {
+
+        private final JobState job;
+
+        private final int bytes;
+
+        private final double startTag;
+
+        private final long sequenceNumber;
+
+        private boolean granted;
+
+        private Transfer(JobState job, int bytes, double startTag, long sequenceNumber) {
+            this.job = job;
+            this.bytes = bytes;
+            this.startTag = startTag;
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.core.fs.FSDataInputStream;
+import flink.core.fs.FSDataOutputStream;
+import flink.core.fs.FileStatus;
+import flink.core.fs.FileSystem;
+import flink.core.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static flink.runtime.blob.BlobServerProtocol.BUFFER_SIZE;
+import static flink.util.Preconditions.checkArgument;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Blob store backed by a {@link FileSystem}, e.g. a distributed file system or object store for
+ * highly-available setups.
+ *
+ * <p>Every BLOB is stored as a directory of fixed-size parts (<tt>part-00000</tt>,
+ * <tt>part-00001</tt>, ...) which are uploaded and downloaded in parallel on the given I/O
+ * executor, so a single large BLOB does not have to go through a single stream. Parts are written
+ * into an in-progress directory first which is then renamed to the BLOB's final location, i.e.
+ * readers never observe a partially uploaded BLOB.
+ */
+public class FileSystemBlobStore implements BlobStoreService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileSystemBlobStore.class);
+
+    /** The prefix of all part files of a BLOB. */
+    private static final String PART_FILE_PREFIX = "part-";
+
+    /** The suffix of directories holding a BLOB which is still being uploaded. */
+    private static final String IN_PROGRESS_SUFFIX = ".inprogress-";
+
+    /** The file system in which blobs are stored. */
+    private final FileSystem fileSystem;
+
+    /** The base path of the blob store. */
+    private final String basePath;
+
+    /** Executor transferring the parts of a BLOB in parallel. */
+    private final Executor ioExecutor;
+
+    /** The maximum size of a single part in bytes. */
+    private final long partSize;
+
+    /**
+     * Creates a blob store in the given file system.
+     *
+     * @param fileSystem file system to store the BLOBs in
+     * @param storagePath base path of the blob store inside the file system
+     * @param ioExecutor executor transferring the parts of a BLOB in parallel
+     * @param partSize maximum size of a single part in bytes
+     * @throws IOException if the base directory cannot be created
+     */
+    public FileSystemBlobStore(
+            FileSystem fileSystem, String storagePath, Executor ioExecutor, long partSize)
+            throws IOException {
+        checkArgument(partSize > 0, "The part size must be positive.");
+
+        this.fileSystem = checkNotNull(fileSystem);
+        this.basePath = checkNotNull(storagePath) + "/blob";
+        this.ioExecutor = checkNotNull(ioExecutor);
+        this.partSize = partSize;
+
+        LOG.info("Creating highly available BLOB storage directory at {}", basePath);
+
+        fileSystem.mkdirs(new Path(basePath));
+        LOG.debug("Created highly available BLOB storage directory at {}", basePath);
+    }
+
+    // - Put ------------------------------------------------------------------
+
+    @Override
+    public boolean put(File localFile, JobID jobId, BlobKey blobKey) throws IOException {
+        return put(localFile, BlobUtils.getStorageLocationPath(basePath, jobId, blobKey));
+    }
+
+    private boolean put(File fromFile, String toBlobPath) throws IOException {
+        final Path blobPath = new Path(toBlobPath);
+        final Path inProgressPath = new Path(toBlobPath + IN_PROGRESS_SUFFIX + UUID.randomUUID());
+
+        final long length = fromFile.length();
+        final int numParts = (int) Math.max(1L, (length + partSize - 1) / partSize);
+
+        LOG.debug("Copying from {} to {} in {} parts.", fromFile, toBlobPath, numParts);
+
+        boolean committed = false;
+        try {
+            fileSystem.mkdirs(inProgressPath);
+
+            final List<CompletableFuture<Void>> partUploads = new ArrayList<>(numParts);
+            for (int part = 0; part < numParts; part++) {
+                final long offset = part * partSize;
+                final long partLength = Math.min(partSize, length - offset);
+                final Path partPath = new Path(inProgressPath, getPartFileName(part));
+
+                partUploads.add(
+                        CompletableFuture.runAsync(
+                                () -> {
+                                    try {
+                                        uploadPart(fromFile, offset, partLength, partPath);
+                                    } catch (IOException e) {
+                                        throw new CompletionException(e);
+                                    }
+                                },
+                                ioExecutor));
+            }
+            BlobUtils.waitForAll(partUploads, "upload of " + fromFile + " to " + toBlobPath);
+
+            if (fileSystem.exists(blobPath)) {
+                // another upload of the same BLOB (e.g. a retry) was faster; keys are unique, so
+                // its content is the same
+                LOG.debug("BLOB {} has already been uploaded before.", toBlobPath);
+            } else if (!fileSystem.rename(inProgressPath, blobPath)) {
+                throw new IOException(
+                        "Could not move the uploaded parts of " + fromFile + " to " + toBlobPath);
+            } else {
+                committed = true;
+            }
+        } finally {
+            if (!committed) {
+                try {
+                    fileSystem.delete(inProgressPath, true);
+                } catch (IOException e) {
+                    LOG.warn("Could not delete the in-progress upload {}.", inProgressPath, e);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void uploadPart(File fromFile, long offset, long partLength, Path partPath)
+            throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(fromFile, "r");
+                FSDataOutputStream os =
+                        fileSystem.create(partPath, FileSystem.WriteMode.NO_OVERWRITE)) {
+            raf.seek(offset);
+
+            final byte[] buf = new byte[BUFFER_SIZE];
+            long remaining = partLength;
+            while (remaining > 0) {
+                final int read = raf.read(buf, 0, (int) Math.min(buf.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Premature end of file " + fromFile);
+                }
+                os.write(buf, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    // - Get ------------------------------------------------------------------
+
+    @Override
+    public boolean get(JobID jobId, BlobKey blobKey, File localFile) throws IOException {
+        return get(BlobUtils.getStorageLocationPath(basePath, jobId, blobKey), localFile, blobKey);
+    }
+
+    private boolean get(String fromBlobPath, File toFile, BlobKey blobKey) throws IOException {
+        checkNotNull(fromBlobPath, "Blob path");
+        checkNotNull(toFile, "File");
+        checkNotNull(blobKey, "Blob key");
+
+        final Path blobPath = new Path(fromBlobPath);
+        final FileStatus[] parts = fileSystem.listStatus(blobPath);
+        if (parts == null || parts.length == 0) {
+            throw new FileNotFoundException("No BLOB found at " + fromBlobPath);
+        }
+        Arrays.sort(parts, Comparator.comparing(part -> part.getPath().getName()));
+
+        LOG.debug("Copying from {} to {} in {} parts.", fromBlobPath, toFile, parts.length);
+
+        boolean success = false;
+        try (RandomAccessFile raf = new RandomAccessFile(toFile, "rw")) {
+            final FileChannel channel = raf.getChannel();
+
+            long offset = 0;
+            final List<CompletableFuture<Void>> partDownloads = new ArrayList<>(parts.length);
+            for (FileStatus part : parts) {
+                final long partOffset = offset;
+                partDownloads.add(
+                        CompletableFuture.runAsync(
+                                () -> {
+                                    try {
+                                        downloadPart(part.getPath(), channel, partOffset);
+                                    } catch (IOException e) {
+                                        throw new CompletionException(e);
+                                    }
+                                },
+                                ioExecutor));
+                offset += part.getLen();
+            }
+            raf.setLength(offset);
+
+            BlobUtils.waitForAll(partDownloads, "download of " + fromBlobPath + " to " + toFile);
+            success = true;
+        } finally {
+            if (!success && !toFile.delete() && toFile.exists()) {
+                LOG.warn("Could not delete the partially downloaded file {}.", toFile);
+            }
+        }
+
+        verifyDigest(toFile, blobKey);
+        return true;
+    }
+
+    private void downloadPart(Path partPath, FileChannel channel, long offset)
+            throws IOException {
+        try (FSDataInputStream is = fileSystem.open(partPath)) {
+            final byte[] buf = new byte[BUFFER_SIZE];
+            long position = offset;
+            while (true) {
+                final int read = is.read(buf);
+                if (read < 0) {
+                    break;
+                }
+
+                final ByteBuffer buffer = ByteBuffer.wrap(buf, 0, read);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that the content of the given file matches the hash of the given BLOB key and
+     * deletes the file otherwise.
+     */
+    private static void verifyDigest(File file, BlobKey blobKey) throws IOException {
+        final MessageDigest md = BlobUtils.createMessageDigest();
+        try (InputStream is = new FileInputStream(file)) {
+            final byte[] buf = new byte[BUFFER_SIZE];
+            while (true) {
+                final int read = is.read(buf);
+                if (read < 0) {
+                    break;
+                }
+                md.update(buf, 0, read);
+            }
+        }
+
+        if (!Arrays.equals(md.digest(), blobKey.getHash())) {
+            if (!file.delete() && file.exists()) {
+                LOG.warn("Could not delete the corrupt file {}.", file);
+            }
+            throw new IOException(
+                    "Detected data corruption during transfer of BLOB " + blobKey + '.');
+        }
+    }
+
+    // - Exists ---------------------------------------------------------------
+
+    @Override
+    public boolean exists(JobID jobId, BlobKey blobKey) throws IOException {
+        return fileSystem.exists(
+                new Path(BlobUtils.getStorageLocationPath(basePath, jobId, blobKey)));
+    }
+
+    // - Delete ---------------------------------------------------------------
+
+    @Override
+    public boolean delete(JobID jobId, BlobKey blobKey) {
+        return delete(BlobUtils.getStorageLocationPath(basePath, jobId, blobKey));
+    }
+
+    @Override
+    public boolean deleteAll(JobID jobId) {
+        return delete(BlobUtils.getStorageLocationPath(basePath, jobId));
+    }
+
+    private boolean delete(String blobPath) {
+        try {
+            LOG.debug("Deleting {}.", blobPath);
+
+            Path path = new Path(blobPath);
+
+            boolean result = true;
+            if (fileSystem.exists(path)) {
+                result = fileSystem.delete(path, true);
+            } else {
+                LOG.debug(
+                        "The given path {} is not present anymore. No deletion is required.",
+                        path);
+            }
+
+            // send a call to delete the directory containing the file. This will
+            // fail (and be ignored) when some files still exist.
+            try {
+                fileSystem.delete(path.getParent(), false);
+                fileSystem.delete(new Path(basePath), false);
+            } catch (IOException ignored) {
+            }
+            return result;
+        } catch (Exception e) {
+            LOG.warn("Failed to delete blob at " + blobPath);
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        // nothing to do for the FileSystemBlobStore
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    private static String getPartFileName(int part) {
+        return String.format("%s%05d", PART_FILE_PREFIX, part);
+    }
+}
@@ -0,0 +1,169 @@
+package flink.runtime.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static flink.util.Preconditions.checkNotNull;
+import static flink.util.Preconditions.checkState;
+
+/**
+ * A read-only, reference-counted view on the content of a BLOB which is memory-mapped from the
+ * local storage, i.e. reading it does not copy the BLOB onto the heap.
+ *
+ * <p>The BLOB service pins the underlying file while the buffer is referenced, i.e. the file is
+ * not removed by any cleanup. The buffer starts with a single reference which is given up by
+ * {@link #close()}; additional references can be taken via {@link #retain()}. Once the last
+ * reference has been released, the buffer must not be accessed anymore.
+ *
+ * <p>Note that the mapping itself is only released once the buffer has been garbage collected.
+ */
+public final class MappedBlobBuffer implements AutoCloseable {
+
+    /** The read-only mapped content of the BLOB. */
+    private final ByteBuffer buffer;
+
+    /** Action unpinning the BLOB once the last reference has been released. */
+    private final Runnable releaseAction;
+
+    /** Number of references to this buffer. */
+    private final AtomicInteger referenceCount = new AtomicInteger(1);
+
+    private MappedBlobBuffer(ByteBuffer buffer, Runnable releaseAction) {
+        this.buffer = checkNotNull(buffer);
+        this.releaseAction = checkNotNull(releaseAction);
+    }
+
+    /**
+     * Maps the given file read-only into memory.
+     *
+     * <p><strong>The file must be protected against concurrent deletion by the caller until this
+     * method returns, e.g. via the BLOB service's read lock.</strong>
+     *
+     * @param file the file to map
+     * @param releaseAction action unpinning the file once the last reference has been released
+     * @return the mapped file
+     * @throws IOException if the file cannot be mapped
+     */
+    static MappedBlobBuffer map(File file, Runnable releaseAction) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("BLOB size exceeds the maximum size (2 GB).");
+            }
+
+            // the mapping stays valid after the channel has been closed
+            final ByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asReadOnlyBuffer();
+            return new MappedBlobBuffer(buffer, releaseAction);
+        }
+    }
+
+    /**
+     * Returns a new read-only view on the BLOB's content with an independent position and limit.
+     *
+     * @return the BLOB's content
+     */
+    public ByteBuffer getBuffer() {
+        checkNotReleased();
+        return buffer.duplicate();
+    }
+
+    /**
+     * Returns an input stream reading the BLOB's content straight from the mapping, e.g. for
+     * deserializing it.
+     *
+     * @return input stream reading the BLOB's content
+     */
+    public InputStream getInputStream() {
+        return new ByteBufferInputStream(getBuffer());
+    }
+
+    /** Returns the size of the BLOB in bytes. */
+    public int size() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Takes an additional reference to this buffer which must be given up via {@link #close()}.
+     *
+     * @return this buffer
+     */
+    public MappedBlobBuffer retain() {
+        while (true) {
+            final int references = referenceCount.get();
+            checkState(references > 0, "The BLOB buffer has already been released.");
+            if (referenceCount.compareAndSet(references, references + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /** Returns whether all references to this buffer have been released. */
+    public boolean isReleased() {
+        return referenceCount.get() <= 0;
+    }
+
+    /** Releases one reference to this buffer and unpins the BLOB if it was the last one. */
+    @Override
+    public void close() {
+        final int references = referenceCount.decrementAndGet();
+        if (references == 0) {
+            releaseAction.run();
+        } else if (references < 0) {
+            referenceCount.incrementAndGet();
+            throw new IllegalStateException("The BLOB buffer has already been released.");
+        }
+    }
+
+    private void checkNotReleased() {
+        checkState(!isReleased(), "The BLOB buffer has already been released.");
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /** Input stream reading from a {@link ByteBuffer}. */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            } else if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            final int read = Math.min(len, buffer.remaining());
+            buffer.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            final int skipped = (int) Math.max(0L, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,972 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.configuration.BlobServerOptions;
+import flink.configuration.Configuration;
+import flink.flink_core.api.java.tuple.Tuple2;
+import flink.util.FileUtils;
+import flink.util.ShutdownHookUtil;
+import flink.util.concurrent.ExecutorThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static flink.util.Preconditions.checkArgument;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Provides a cache for permanent BLOB files including a per-job ref-counting and a staged cleanup.
+ *
+ * <p>When requesting BLOBs via {@link #getFile(JobID, PermanentBlobKey)}, the cache will first
+ * attempt to serve the file from its local cache. Only if the local cache does not contain the
+ * desired BLOB, it will try to download it from a distributed HA file system (if available) or the
+ * BLOB server. Concurrent requests for the same BLOB share a single download.
+ *
+ * <p>With {@link BlobServerOptions#PEER_DISTRIBUTION_ENABLED}, the cache serves its BLOBs to other
+ * caches and tries to download BLOBs from the peers suggested by the BLOB server before falling
+ * back to the BLOB server itself.
+ *
+ * <p>If files for a job are not needed any more, they will enter a staged, i.e. deferred, cleanup.
+ * Files may thus still be be accessible upon recovery and do not need to be re-downloaded.
+ */
+public class PermanentBlobCache implements PermanentBlobService {
+
+    /** The log object used for debugging. */
+    private static final Logger LOG = LoggerFactory.getLogger(PermanentBlobCache.class);
+
+    /** Job reference counters with a time-to-live (TTL). */
+    static class RefCount {
+        /** Number of references to a job. */
+        public int references = 0;
+
+        /**
+         * Timestamp in milliseconds when any job data should be cleaned up (no cleanup for
+         * non-positive values).
+         */
+        public long keepUntil = -1;
+    }
+
+    /** Map to store the number of references to a specific job. */
+    private final Map<JobID, RefCount> jobRefCounters = new HashMap<>();
+
+    /** Counter to generate unique names for temporary files. */
+    private final AtomicLong tempFileCounter = new AtomicLong(0);
+
+    /** Root directory for local file storage. */
+    private final File storageDir;
+
+    /** Blob store for distributed file storage, e.g. in HA. */
+    private final BlobView blobView;
+
+    private final AtomicBoolean shutdownRequested = new AtomicBoolean();
+
+    /** Shutdown hook thread to ensure deletion of the local storage directory. */
+    private final Thread shutdownHook;
+
+    /** The number of retries when the transfer fails. */
+    private final int numFetchRetries;
+
+    /** Decides where and when failed transfers from the {@link BlobServer} are retried. */
+    private final BlobClientRetryPolicy retryPolicy;
+
+    /** Configuration for the blob client like ssl parameters required to connect to the server. */
+    private final Configuration blobClientConfig;
+
+    /** Lock guarding concurrent file accesses. */
+    private final ReadWriteLock readWriteLock;
+
+    /** Downloads which are currently in progress, one per BLOB. */
+    private final ConcurrentHashMap<Tuple2<JobID, PermanentBlobKey>, PendingDownload>
+            pendingDownloads = new ConcurrentHashMap<>();
+
+    /** Serves the cached BLOBs to other caches (or <tt>null</tt> if peer distribution is off). */
+    @Nullable private final BlobPeerServer peerServer;
+
+    /** Announces downloaded BLOBs to the peer tracker (or <tt>null</tt> if not serving peers). */
+    @Nullable private final ExecutorService peerAnnouncementExecutor;
+
+    /** Time interval (ms) to run the cleanup task; also used as the default TTL. */
+    private final long cleanupInterval;
+
+    /** Timer task to execute the cleanup at regular intervals. */
+    private final Timer cleanupTimer;
+
+    /** The address of the BLOB server to download from (if any). */
+    @Nullable private volatile InetSocketAddress serverAddress;
+
+    /**
+     * Instantiates a new cache for permanent BLOBs which are also available in an HA store.
+     *
+     * @param blobClientConfig global configuration
+     * @param blobView (distributed) HA blob store file system to retrieve files from first
+     * @param serverAddress address of the {@link BlobServer} to use for fetching files from or
+     *     {@code null} if none yet
+     * @throws IOException thrown if the (local or distributed) file storage cannot be created or is
+     *     not usable
+     */
+    public PermanentBlobCache(
+            final Configuration blobClientConfig,
+            final BlobView blobView,
+            @Nullable final InetSocketAddress serverAddress)
+            throws IOException {
+
+        this.blobClientConfig = checkNotNull(blobClientConfig);
+        this.blobView = checkNotNull(blobView);
+        this.readWriteLock = new ReentrantReadWriteLock();
+
+        // configure and create the storage directory
+        this.storageDir = BlobUtils.initLocalStorageDirectory(blobClientConfig);
+        LOG.info("Created BLOB cache storage directory {}", storageDir);
+
+        // configure the number of fetch retries
+        final int fetchRetries = blobClientConfig.getInteger(BlobServerOptions.FETCH_RETRIES);
+        if (fetchRetries >= 0) {
+            this.numFetchRetries = fetchRetries;
+        } else {
+            LOG.warn(
+                    "Invalid value for {}. System will attempt no retries on failed fetch operations of BLOBs.",
+                    BlobServerOptions.FETCH_RETRIES.key());
+            this.numFetchRetries = 0;
+        }
+        this.retryPolicy = new BlobClientRetryPolicy(blobClientConfig);
+
+        // serve the cached BLOBs to other caches
+        if (blobClientConfig.getBoolean(BlobServerOptions.PEER_DISTRIBUTION_ENABLED)) {
+            this.peerServer = new BlobPeerServer(blobClientConfig, this);
+            this.peerServer.start();
+            this.peerAnnouncementExecutor =
+                    Executors.newSingleThreadExecutor(
+                            new ExecutorThreadFactory("blob-cache-peer-announcement"));
+        } else {
+            this.peerServer = null;
+            this.peerAnnouncementExecutor = null;
+        }
+
+        // Add shutdown hook to delete storage directory
+        shutdownHook = ShutdownHookUtil.addShutdownHook(this, getClass().getSimpleName(), LOG);
+
+        this.serverAddress = serverAddress;
+
+        // Initializing the clean up task
+        this.cleanupTimer = new Timer(true);
+
+        this.cleanupInterval = blobClientConfig.getLong(BlobServerOptions.CLEANUP_INTERVAL) * 1000;
+        this.cleanupTimer.schedule(
+                new PermanentBlobCleanupTask(), cleanupInterval, cleanupInterval);
+    }
+
+    /**
+     * Registers use of job-related BLOBs.
+     *
+     * <p>Using any other method to access BLOBs, e.g. {@link #getFile}, is only valid within calls
+     * to <tt>registerJob(JobID)</tt> and {@link #releaseJob(JobID)}.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @see #releaseJob(JobID)
+     */
+    public void registerJob(JobID jobId) {
+        checkNotNull(jobId);
+
+        synchronized (jobRefCounters) {
+            RefCount ref = jobRefCounters.get(jobId);
+            if (ref == null) {
+                ref = new RefCount();
+                jobRefCounters.put(jobId, ref);
+            } else {
+                // reset cleanup timeout
+                ref.keepUntil = -1;
+            }
+            ++ref.references;
+        }
+    }
+
+    /**
+     * Unregisters use of job-related BLOBs and allow them to be released.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @see #registerJob(JobID)
+     */
+    public void releaseJob(JobID jobId) {
+        checkNotNull(jobId);
+
+        synchronized (jobRefCounters) {
+            RefCount ref = jobRefCounters.get(jobId);
+
+            if (ref == null || ref.references == 0) {
+                LOG.warn(
+                        "improper use of releaseJob() without a matching number of registerJob() calls for jobId "
+                                + jobId);
+                return;
+            }
+
+            --ref.references;
+            if (ref.references == 0) {
+                ref.keepUntil = System.currentTimeMillis() + cleanupInterval;
+            }
+        }
+    }
+
+    public int getNumberOfReferenceHolders(JobID jobId) {
+        checkNotNull(jobId);
+
+        synchronized (jobRefCounters) {
+            RefCount ref = jobRefCounters.get(jobId);
+            if (ref == null) {
+                return 0;
+            } else {
+                return ref.references;
+            }
+        }
+    }
+
+    /**
+     * Returns the path to a local copy of the file associated with the provided job ID and blob
+     * key.
+     *
+     * <p>We will first attempt to serve the BLOB from the local storage. If the BLOB is not in
+     * there, we will try to download it from the HA store, or directly from the {@link BlobServer}.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param key blob key associated with the requested file
+     * @return The path to the file.
+     * @throws java.io.FileNotFoundException if the BLOB does not exist;
+     * @throws IOException if any other error occurs when retrieving the file
+     */
+    @Override
+    public File getFile(JobID jobId, PermanentBlobKey key) throws IOException {
+        checkNotNull(jobId);
+        return getFileInternal(jobId, key);
+    }
+
+    /**
+     * Opens a stream on the BLOB with the provided job ID and blob key without storing it locally.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param key blob key associated with the requested file
+     * @return stream on the BLOB's content which must be closed after use
+     * @throws java.io.FileNotFoundException if the BLOB does not exist;
+     * @throws IOException if any other error occurs when retrieving the file
+     * @see #openStream(JobID, PermanentBlobKey, boolean)
+     */
+    @Override
+    public InputStream openStream(JobID jobId, PermanentBlobKey key) throws IOException {
+        return openStream(jobId, key, false);
+    }
+
+    /**
+     * Opens a stream on the BLOB with the provided job ID and blob key.
+     *
+     * <p>If the BLOB is in the local storage, it is read from there. Otherwise, it is streamed
+     * directly from the {@link BlobServer}, i.e. the first bytes are available before the whole
+     * BLOB has been transferred. With {@code cacheLocally}, the streamed content is also written
+     * to a staging file which is moved into the local storage once the stream has been fully read
+     * and verified; otherwise nothing is written to disk.
+     *
+     * <p>If the address of the {@link BlobServer} is unknown, the BLOB is retrieved via {@link
+     * #getFile(JobID, PermanentBlobKey)}, e.g. from the HA store.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param key blob key associated with the requested file
+     * @param cacheLocally whether to store a streamed BLOB in the local storage
+     * @return stream on the BLOB's content which must be closed after use
+     * @throws java.io.FileNotFoundException if the BLOB does not exist;
+     * @throws IOException if any other error occurs when retrieving the file
+     */
+    public InputStream openStream(JobID jobId, PermanentBlobKey key, boolean cacheLocally)
+            throws IOException {
+        checkNotNull(jobId);
+        checkNotNull(key);
+
+        final File localFile = BlobUtils.getStorageLocation(storageDir, jobId, key);
+        readWriteLock.readLock().lock();
+
+        try {
+            if (localFile.exists()) {
+                // an open file stays readable even if it is deleted concurrently afterwards
+                return new FileInputStream(localFile);
+            }
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+
+        final InetSocketAddress currentServerAddress = serverAddress;
+        if (currentServerAddress == null) {
+            return new FileInputStream(getFileInternal(jobId, key));
+        }
+
+        final InputStream remoteStream =
+                BlobClient.openStreamFromBlobServer(
+                        jobId,
+                        key,
+                        currentServerAddress,
+                        blobClientConfig,
+                        retryPolicy,
+                        numFetchRetries);
+        if (!cacheLocally) {
+            return remoteStream;
+        }
+
+        try {
+            return new CachingInputStream(remoteStream, jobId, key, localFile);
+        } catch (Throwable t) {
+            remoteStream.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Returns the content of the file for the BLOB with the provided job ID the blob key.
+     *
+     * <p>The method will first attempt to serve the BLOB from the local cache. If the BLOB is not
+     * in the cache, the method will try to download it from the HA store, or directly from the
+     * {@link BlobServer}.
+     *
+     * <p>Compared to {@code getFile}, {@code readFile} makes sure that the file is fully read in
+     * the same read lock as the file is accessed. This avoids the scenario that the path is
+     * returned as the file is deleted concurrently by other threads.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey BLOB key associated with the requested file
+     * @return The content of the BLOB.
+     * @throws java.io.FileNotFoundException if the BLOB does not exist;
+     * @throws IOException if any other error occurs when retrieving the file.
+     */
+    @Override
+    public byte[] readFile(JobID jobId, PermanentBlobKey blobKey) throws IOException {
+        checkNotNull(jobId);
+        checkNotNull(blobKey);
+
+        final File localFile = BlobUtils.getStorageLocation(storageDir, jobId, blobKey);
+        readWriteLock.readLock().lock();
+
+        try {
+            if (localFile.exists()) {
+                return Files.readAllBytes(localFile.toPath());
+            }
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+
+        downloadToLocalStorage(jobId, blobKey, localFile);
+
+        readWriteLock.readLock().lock();
+        try {
+            return Files.readAllBytes(localFile.toPath());
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a read-only, memory-mapped view on the content of the BLOB with the provided job ID
+     * and blob key.
+     *
+     * <p>The buffer holds a reference to the job (see {@link #registerJob(JobID)}) until it has
+     * been closed, so the job's BLOBs are not cleaned up while the buffer is in use.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey BLOB key associated with the requested file
+     * @return The content of the BLOB which must be closed after use.
+     * @throws java.io.FileNotFoundException if the BLOB does not exist;
+     * @throws IOException if any other error occurs when retrieving or mapping the file.
+     */
+    @Override
+    public MappedBlobBuffer readBuffer(JobID jobId, PermanentBlobKey blobKey) throws IOException {
+        checkNotNull(jobId);
+        checkNotNull(blobKey);
+
+        // pin the job's BLOBs for the lifetime of the buffer
+        registerJob(jobId);
+
+        boolean success = false;
+        try {
+            final File localFile = getFileInternal(jobId, blobKey);
+
+            final MappedBlobBuffer buffer;
+            readWriteLock.readLock().lock();
+            try {
+                buffer = MappedBlobBuffer.map(localFile, () -> releaseJob(jobId));
+            } finally {
+                readWriteLock.readLock().unlock();
+            }
+
+            success = true;
+            return buffer;
+        } finally {
+            if (!success) {
+                releaseJob(jobId);
+            }
+        }
+    }
+
+    /**
+     * Returns local copy of the file for the BLOB with the given key.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey The key of the desired BLOB.
+     * @return file referring to the local storage location of the BLOB.
+     * @throws IOException Thrown if an I/O error occurs while downloading the BLOBs from the BLOB
+     *     server.
+     */
+    private File getFileInternal(JobID jobId, PermanentBlobKey blobKey) throws IOException {
+        checkArgument(blobKey != null, "BLOB key cannot be null.");
+
+        final File localFile = BlobUtils.getStorageLocation(storageDir, jobId, blobKey);
+        readWriteLock.readLock().lock();
+
+        try {
+            if (localFile.exists()) {
+                return localFile;
+            }
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+
+        downloadToLocalStorage(jobId, blobKey, localFile);
+        return localFile;
+    }
+
+    /**
+     * Downloads the given BLOB to its local storage location, first trying the HA store and then
+     * the {@link BlobServer}.
+     *
+     * <p>Concurrent requests for the same BLOB are coalesced: only the first caller downloads the
+     * BLOB while all others wait for the outcome of this single download.
+     *
+     * <p><strong>Assumes neither the read nor the write lock are held.</strong>
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey The key of the desired BLOB.
+     * @param localFile (local) file where the blob should be stored
+     * @throws IOException Thrown if the download failed.
+     */
+    private void downloadToLocalStorage(JobID jobId, PermanentBlobKey blobKey, File localFile)
+            throws IOException {
+        final Tuple2<JobID, PermanentBlobKey> downloadKey = Tuple2.of(jobId, blobKey);
+        final PendingDownload download = new PendingDownload();
+        final PendingDownload pendingDownload = pendingDownloads.putIfAbsent(downloadKey, download);
+
+        if (pendingDownload != null) {
+            LOG.debug("Waiting for the concurrent download of BLOB {}/{}.", jobId, blobKey);
+            try {
+                pendingDownload.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(
+                        "Interrupted while waiting for the download of BLOB "
+                                + jobId
+                                + '/'
+                                + blobKey
+                                + '.',
+                        e);
+            } catch (ExecutionException e) {
+                throw new IOException(
+                        "Failed to download BLOB " + jobId + '/' + blobKey + '.', e.getCause());
+            }
+            return;
+        }
+
+        // use a temporary file (thread-safe without locking)
+        File incomingFile = null;
+        try {
+            // the previous download may have finished in between our check and our registration
+            if (!localFile.exists()) {
+                incomingFile = createTemporaryFilename();
+                downloadToTempFile(jobId, blobKey, incomingFile, download);
+
+                // now move the temp file to our local cache atomically
+                readWriteLock.writeLock().lock();
+                try {
+                    BlobUtils.moveTempFileToStore(
+                            incomingFile, jobId, blobKey, localFile, LOG, null);
+                } finally {
+                    readWriteLock.writeLock().unlock();
+                }
+                announceToPeerTracker(jobId, blobKey);
+            }
+
+            download.complete(null);
+        } catch (Throwable t) {
+            download.completeExceptionally(t);
+            throw t;
+        } finally {
+            pendingDownloads.remove(downloadKey, download);
+
+            // delete incomingFile from a failed download
+            if (incomingFile != null && !incomingFile.delete() && incomingFile.exists()) {
+                LOG.warn(
+                        "Could not delete the staging file {} for blob key {} and job {}.",
+                        incomingFile,
+                        blobKey,
+                        jobId);
+            }
+        }
+    }
+
+    private void downloadToTempFile(
+            JobID jobId, PermanentBlobKey blobKey, File incomingFile, PendingDownload download)
+            throws IOException {
+        try {
+            if (blobView.get(jobId, blobKey, incomingFile)) {
+                return;
+            }
+        } catch (Exception e) {
+            LOG.info(
+                    "Failed to copy from blob store. Downloading from BLOB server instead.", e);
+        }
+
+        final InetSocketAddress currentServerAddress = serverAddress;
+
+        if (currentServerAddress != null) {
+            if (peerServer != null
+                    && downloadFromPeers(
+                            jobId, blobKey, incomingFile, currentServerAddress, download)) {
+                return;
+            }
+
+            // fallback: download from the BlobServer
+            BlobClient.downloadFromBlobServer(
+                    jobId,
+                    blobKey,
+                    incomingFile,
+                    currentServerAddress,
+                    blobClientConfig,
+                    retryPolicy,
+                    numFetchRetries);
+        } else {
+            throw new FileNotFoundException(
+                    "Cannot download from BlobServer, because the server address is unknown.");
+        }
+    }
+
+    /**
+     * Tries to download the given BLOB from the peers suggested by the {@link BlobServer}'s peer
+     * tracker, which also registers this cache as downloading the BLOB.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey The key of the desired BLOB.
+     * @param incomingFile the staging file to write to
+     * @param serverAddress address of the {@link BlobServer}
+     * @param download the pending download
+     * @return whether a peer served the BLOB
+     */
+    private boolean downloadFromPeers(
+            JobID jobId,
+            PermanentBlobKey blobKey,
+            File incomingFile,
+            InetSocketAddress serverAddress,
+            PendingDownload download) {
+        final List<InetSocketAddress> peers;
+        try (BlobClient client = new BlobClient(serverAddress, blobClientConfig)) {
+            peers = client.lookupPeers(jobId, blobKey, peerServer.getPort());
+        } catch (IOException e) {
+            LOG.info(
+                    "Failed to look up peers for BLOB {}/{}. Downloading from BLOB server instead.",
+                    jobId,
+                    blobKey,
+                    e);
+            return false;
+        }
+
+        download.fromPeers = true;
+        try {
+            for (InetSocketAddress peer : peers) {
+                try {
+                    BlobClient.downloadFromPeer(
+                            jobId, blobKey, incomingFile, peer, blobClientConfig);
+                    LOG.debug("Downloaded BLOB {}/{} from peer {}.", jobId, blobKey, peer);
+                    return true;
+                } catch (IOException e) {
+                    LOG.debug(
+                            "Failed to download BLOB {}/{} from peer {}.",
+                            jobId,
+                            blobKey,
+                            peer,
+                            e);
+                }
+            }
+        } finally {
+            download.fromPeers = false;
+        }
+        return false;
+    }
+
+    /**
+     * Announces to the {@link BlobServer}'s peer tracker (in the background) that this cache holds
+     * the given BLOB.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey The key of the BLOB.
+     */
+    private void announceToPeerTracker(JobID jobId, PermanentBlobKey blobKey) {
+        final InetSocketAddress currentServerAddress = serverAddress;
+        if (peerServer == null || currentServerAddress == null) {
+            return;
+        }
+
+        try {
+            peerAnnouncementExecutor.execute(
+                    () -> {
+                        try (BlobClient client =
+                                new BlobClient(currentServerAddress, blobClientConfig)) {
+                            client.announcePeer(jobId, blobKey, peerServer.getPort());
+                        } catch (IOException e) {
+                            LOG.debug(
+                                    "Failed to announce BLOB {}/{} to the peer tracker.",
+                                    jobId,
+                                    blobKey,
+                                    e);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    /**
+     * Opens a stream on the given BLOB in the local storage to serve it to a peer.
+     *
+     * <p>If the BLOB is currently being downloaded from the HA store or the {@link BlobServer},
+     * this waits for the download to complete. Downloads from other peers are not waited for: each
+     * peer only waits for downloads from upstream, so peers never wait for each other in a cycle.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param blobKey The key of the desired BLOB.
+     * @return stream on the BLOB's content which must be closed after use
+     * @throws FileNotFoundException if the BLOB is not available at this cache
+     * @throws InterruptedException if interrupted while waiting for a pending download
+     */
+    FileInputStream openStreamForPeer(JobID jobId, PermanentBlobKey blobKey)
+            throws IOException, InterruptedException {
+        final PendingDownload pendingDownload = pendingDownloads.get(Tuple2.of(jobId, blobKey));
+        if (pendingDownload != null && !pendingDownload.fromPeers) {
+            try {
+                pendingDownload.get();
+            } catch (ExecutionException e) {
+                throw new FileNotFoundException(
+                        "The download of BLOB " + jobId + '/' + blobKey + " failed at this peer.");
+            }
+        }
+
+        // do not create the job's directory for requests of unknown jobs
+        final File localFile =
+                new File(
+                        BlobUtils.getStorageLocationPath(
+                                storageDir.getAbsolutePath(), jobId, blobKey));
+        readWriteLock.readLock().lock();
+        try {
+            if (localFile.exists()) {
+                // an open file stays readable even if it is deleted concurrently afterwards
+                return new FileInputStream(localFile);
+            }
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+        throw new FileNotFoundException(
+                "BLOB " + jobId + '/' + blobKey + " is not available at this peer.");
+    }
+
+    /** Returns the port this cache serves BLOBs to its peers on, or -1 if it does not. */
+    public int getPeerPort() {
+        return peerServer != null ? peerServer.getPort() : -1;
+    }
+
+    /** A download in progress. */
+    private static final class PendingDownload extends CompletableFuture<Void> {
+
+        /** Whether the download is currently trying to fetch the BLOB from peers. */
+        private volatile boolean fromPeers;
+    }
+
+    /**
+     * Stream which tees the content of a BLOB streamed from the {@link BlobServer} into a staging
+     * file and moves it into the local storage once the BLOB has been fully read.
+     */
+    private final class CachingInputStream extends FilterInputStream {
+
+        private final JobID jobId;
+
+        private final PermanentBlobKey blobKey;
+
+        private final File localFile;
+
+        /** The staging file or <tt>null</tt> if it has been moved or discarded. */
+        @Nullable private File incomingFile;
+
+        /** Stream to the staging file or <tt>null</tt> if closed. */
+        @Nullable private OutputStream incomingStream;
+
+        private CachingInputStream(
+                InputStream in, JobID jobId, PermanentBlobKey blobKey, File localFile)
+                throws IOException {
+            super(in);
+            this.jobId = jobId;
+            this.blobKey = blobKey;
+            this.localFile = localFile;
+            this.incomingFile = createTemporaryFilename();
+            this.incomingStream = new FileOutputStream(incomingFile);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = in.read();
+            if (read >= 0) {
+                write(new byte[] {(byte) read}, 0, 1);
+            } else {
+                complete();
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = in.read(b, off, len);
+            if (read > 0) {
+                write(b, off, read);
+            } else if (read < 0) {
+                complete();
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            // skipped bytes would be missing in the local copy
+            return 0L;
+        }
+
+        private void write(byte[] b, int off, int len) {
+            if (incomingStream != null) {
+                try {
+                    incomingStream.write(b, off, len);
+                } catch (IOException e) {
+                    LOG.warn(
+                            "Failed to write BLOB {}/{} to the local storage; continuing without.",
+                            jobId,
+                            blobKey,
+                            e);
+                    discard();
+                }
+            }
+        }
+
+        /** Moves the staging file into the local storage after the BLOB was fully read. */
+        private void complete() {
+            if (incomingStream == null) {
+                return;
+            }
+
+            try {
+                incomingStream.close();
+                incomingStream = null;
+
+                // the digest has been verified by the BlobInputStream at this point
+                readWriteLock.writeLock().lock();
+                try {
+                    BlobUtils.moveTempFileToStore(
+                            incomingFile, jobId, blobKey, localFile, LOG, null);
+                } finally {
+                    readWriteLock.writeLock().unlock();
+                }
+                incomingFile = null;
+                announceToPeerTracker(jobId, blobKey);
+            } catch (IOException e) {
+                LOG.warn("Failed to store BLOB {}/{} in the local storage.", jobId, blobKey, e);
+            } finally {
+                discard();
+            }
+        }
+
+        /** Closes and deletes the staging file (if still present). */
+        private void discard() {
+            if (incomingStream != null) {
+                try {
+                    incomingStream.close();
+                } catch (IOException ignored) {
+                    // the file is deleted anyway
+                }
+                incomingStream = null;
+            }
+
+            if (incomingFile != null && !incomingFile.delete() && incomingFile.exists()) {
+                LOG.warn(
+                        "Could not delete the staging file {} for blob key {} and job {}.",
+                        incomingFile,
+                        blobKey,
+                        jobId);
+            }
+            incomingFile = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                // an incompletely read BLOB is not stored
+                discard();
+            }
+        }
+    }
+
+    /**
+     * Returns a file handle to the file associated with the given blob key on the blob server.
+     *
+     * @param jobId ID of the job this blob belongs to (or <tt>null</tt> if job-unrelated)
+     * @param key identifying the file
+     * @return file handle to the file
+     * @throws IOException if creating the directory fails
+     */
+    //@VisibleForTesting
+    public File getStorageLocation(JobID jobId, BlobKey key) throws IOException {
+        checkNotNull(jobId);
+        return BlobUtils.getStorageLocation(storageDir, jobId, key);
+    }
+
+    /**
+     * Returns a temporary file inside the BLOB cache's incoming directory.
+     *
+     * @return a temporary file inside the BLOB cache's incoming directory
+     * @throws IOException if creating the directory fails
+     */
+    File createTemporaryFilename() throws IOException {
+        return new File(
+                BlobUtils.getIncomingDirectory(storageDir),
+                String.format("temp-%08d", tempFileCounter.getAndIncrement()));
+    }
+
+    /**
+     * Returns the job reference counters - for testing purposes only!
+     *
+     * @return job reference counters (internal state!)
+     */
+    //@VisibleForTesting
+    Map<JobID, RefCount> getJobRefCounters() {
+        return jobRefCounters;
+    }
+
+    /**
+     * Sets the address of the {@link BlobServer}.
+     *
+     * @param blobServerAddress address of the {@link BlobServer}.
+     */
+    public void setBlobServerAddress(InetSocketAddress blobServerAddress) {
+        serverAddress = checkNotNull(blobServerAddress);
+    }
+
+    public File getStorageDir() {
+        return storageDir;
+    }
+
+    @Override
+    public void close() throws IOException {
+        cleanupTimer.cancel();
+
+        if (shutdownRequested.compareAndSet(false, true)) {
+            LOG.info("Shutting down BLOB cache");
+
+            if (peerServer != null) {
+                peerAnnouncementExecutor.shutdownNow();
+                try {
+                    peerServer.close();
+                } catch (IOException e) {
+                    LOG.warn("Failed to close the BLOB peer server.", e);
+                }
+            }
+
+            // Clean up the storage directory
+            try {
+                FileUtils.deleteDirectory(storageDir);
+            } finally {
+                // Remove shutdown hook to prevent resource leaks
+                ShutdownHookUtil.removeShutdownHook(shutdownHook, getClass().getSimpleName(), LOG);
+            }
+        }
+    }
+
+    /**
+     * Cleanup task which is executed periodically to delete BLOBs whose job has not been referenced
+     * for longer than the TTL.
+     */
+    class PermanentBlobCleanupTask extends TimerTask {
+        /** Cleans up BLOBs which are not referenced anymore. */
+        @Override
+        public void run() {
+            synchronized (jobRefCounters) {
+                Iterator<Map.Entry<JobID, RefCount>> entryIter =
+                        jobRefCounters.entrySet().iterator();
+                final long currentTimeMillis = System.currentTimeMillis();
+
+                while (entryIter.hasNext()) {
+                    Map.Entry<JobID, RefCount> entry = entryIter.next();
+                    RefCount ref = entry.getValue();
+
+                    if (ref.references <= 0
+                            && ref.keepUntil > 0
+                            && currentTimeMillis >= ref.keepUntil) {
+                        JobID jobId = entry.getKey();
+
+                        final File localFile =
+                                new File(
+                                        BlobUtils.getStorageLocationPath(
+                                                storageDir.getAbsolutePath(), jobId));
+
+                        /*
+                         * NOTE: normally it is not required to acquire the write lock to delete the job's
+                         *       storage directory since there should be no one accessing it with the ref
+                         *       counter being 0 - acquire it just in case, to always be on the safe side
+                         */
+                        readWriteLock.writeLock().lock();
+
+                        boolean success = false;
+                        try {
+                            FileUtils.deleteDirectory(localFile);
+                            success = true;
+                        } catch (Throwable t) {
+                            LOG.warn(
+                                    "Failed to locally delete job directory "
+                                            + localFile.getAbsolutePath(),
+                                    t);
+                        } finally {
+                            readWriteLock.writeLock().unlock();
+                        }
+
+                        // let's only remove this directory from cleanup if the cleanup was
+                        // successful
+                        // (does not need the write lock)
+                        if (success) {
+                            entryIter.remove();
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -6,6 +6,8 @@ import flink.util.FileUtils;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 
 /**
  * @Description
@@ -28,6 +30,23 @@ public interface PermanentBlobService extends Closeable {
      */
     File getFile(JobID jobId, PermanentBlobKey key) throws IOException;
 
+    /**
+     * Opens a stream on the file associated with the provided job ID and blob key.
+     *
+     * <p>Compared to {@code getFile}, implementations may stream the content from a remote
+     * location without materializing a local copy first, which cuts the time to the first byte
+     * and saves a full disk write for BLOBs which are only read once.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param key BLOB key associated with the requested file
+     * @return stream on the BLOB's content which must be closed after use
+     * @throws java.io.FileNotFoundException if the BLOB does not exist;
+     * @throws IOException if any other error occurs when retrieving the file
+     */
+    default InputStream openStream(JobID jobId, PermanentBlobKey key) throws IOException {
+        return Files.newInputStream(getFile(jobId, key).toPath());
+    }
+
     /**
      * Returns the content of the file for the BLOB with the provided job ID the blob key.
      *
@@ -48,4 +67,25 @@ public interface PermanentBlobService extends Closeable {
         return FileUtils.readAllBytes(getFile(jobId, key).toPath());
     }
 
+    /**
+     * Returns a read-only, memory-mapped view on the content of the BLOB with the provided job ID
+     * and blob key.
+     *
+     * <p>Compared to {@code readFile}, the content is not copied onto the heap, so large BLOBs,
+     * e.g. serialized job information, can be deserialized straight from the mapping via {@link
+     * MappedBlobBuffer#getInputStream()}. The file is pinned, i.e. not cleaned up, until the
+     * returned buffer has been closed.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param key BLOB key associated with the requested file
+     * @return The content of the BLOB which must be closed after use.
+     * @throws java.io.FileNotFoundException if the BLOB does not exist;
+     * @throws IOException if any other error occurs when retrieving or mapping the file.
+     */
+    default MappedBlobBuffer readBuffer(JobID jobId, PermanentBlobKey key) throws IOException {
+        // The default implementation doesn't pin the file, i.e. it may be deleted concurrently
+        // (which leaves an existing mapping intact on POSIX systems).
+        return MappedBlobBuffer.map(getFile(jobId, key), () -> {});
+    }
+
 }
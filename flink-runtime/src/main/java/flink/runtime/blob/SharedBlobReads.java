@@ -0,0 +1,300 @@
+package flink.runtime.blob;
+
+import flink.metrics.Counter;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static flink.runtime.blob.BlobServerProtocol.BUFFER_SIZE;
+import static flink.util.Preconditions.checkArgument;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Shares the reads of BLOB files among concurrent GET requests for the same BLOB.
+ *
+ * <p>Requests starting while another one is at the beginning of the same file join its shared
+ * read: the request furthest ahead reads the next chunk from disk into a window of the most recent
+ * chunks, from which all requests send. Chunks are immutable and stay alive while any request
+ * still sends them, so the number of disk reads and the memory used do not grow with the number of
+ * requests. A request falling behind the window continues with a reader of its own instead of
+ * holding back the others; a request arriving after the window moved on starts a new shared read.
+ *
+ * <p>Every reader opens the file right away and reads through its own channel only, so the file
+ * may be deleted while it is still being sent.
+ *
+ * <p>This class is thread-safe.
+ */
+final class SharedBlobReads {
+
+    /** The current shared read per file, i.e. the one new requests may join. */
+    private final ConcurrentHashMap<File, SharedRead> reads = new ConcurrentHashMap<>();
+
+    /** Number of chunks a shared read keeps, 0 to disable sharing. */
+    private final int windowChunks;
+
+    /** Counts the bytes read from disk. */
+    private final Counter numBytesRead;
+
+    /**
+     * Creates the shared reads with the given window.
+     *
+     * @param windowBytes number of bytes each shared read keeps in memory (rounded up to full
+     *     chunks), 0 to disable sharing
+     * @param numBytesRead counts the bytes read from disk
+     */
+    SharedBlobReads(long windowBytes, Counter numBytesRead) {
+        checkArgument(windowBytes >= 0, "The window must not be negative.");
+        this.windowChunks =
+                (int) Math.min(Integer.MAX_VALUE, (windowBytes + BUFFER_SIZE - 1) / BUFFER_SIZE);
+        this.numBytesRead = checkNotNull(numBytesRead);
+    }
+
+    /**
+     * Opens a reader on the given BLOB file, joining a concurrent read of the same file if
+     * possible.
+     *
+     * @param file the BLOB file
+     * @param length the length of the file
+     * @return reader on the file's content which must be closed after use
+     * @throws IOException if the file could not be opened
+     */
+    Reader open(File file, long length) throws IOException {
+        checkNotNull(file);
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        if (windowChunks == 0) {
+            return new Reader(file, length, channel, null);
+        }
+
+        while (true) {
+            final SharedRead current = reads.get(file);
+            if (current != null && current.tryJoin(length)) {
+                return new Reader(file, length, channel, current);
+            }
+
+            final SharedRead created = new SharedRead(file, length);
+            final boolean registered =
+                    current == null
+                            ? reads.putIfAbsent(file, created) == null
+                            : reads.replace(file, current, created);
+            if (registered) {
+                return new Reader(file, length, channel, created);
+            }
+        }
+    }
+
+    /** Returns the number of files with a shared read new requests may join. */
+    int getNumSharedReads() {
+        return reads.size();
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /** A read of a file shared by several requests. */
+    private final class SharedRead {
+
+        private final File file;
+
+        private final long length;
+
+        /** The most recent chunks, indexed by chunk number modulo the window (guarded by this). */
+        private final byte[][] window;
+
+        /** Number of the oldest chunk in the window (guarded by this). */
+        private int firstChunk;
+
+        /** Number of the next chunk to read from disk (guarded by this). */
+        private int nextChunk;
+
+        /** Whether a request is currently reading the next chunk (guarded by this). */
+        private boolean loading;
+
+        /** Number of requests using this read (guarded by this). */
+        private int numReaders = 1;
+
+        private SharedRead(File file, long length) {
+            this.file = file;
+            this.length = length;
+            this.window = new byte[windowChunks][];
+        }
+
+        /** Joins this read if it did not move past the first chunk yet. */
+        synchronized boolean tryJoin(long length) {
+            if (numReaders == 0 || firstChunk > 0 || this.length != length) {
+                return false;
+            }
+            numReaders++;
+            return true;
+        }
+
+        /**
+         * Returns the given chunk, reading it from disk if no other request did so yet.
+         *
+         * @param index number of the chunk, at most the number of the next chunk to read
+         * @param channel the requesting reader's channel to read the chunk with
+         * @return the chunk or <tt>null</tt> if it was evicted from the window already
+         */
+        @Nullable
+        byte[] getChunk(int index, FileChannel channel) throws IOException {
+            synchronized (this) {
+                while (true) {
+                    if (index < firstChunk) {
+                        return null;
+                    } else if (index < nextChunk) {
+                        return window[index % window.length];
+                    } else if (!loading) {
+                        loading = true;
+                        break;
+                    }
+
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException(
+                                "Interrupted while waiting for a shared read of " + file + '.');
+                    }
+                }
+            }
+
+            byte[] chunk = null;
+            try {
+                chunk = load(index, channel);
+                return chunk;
+            } finally {
+                synchronized (this) {
+                    loading = false;
+                    if (chunk != null) {
+                        if (nextChunk - firstChunk == window.length) {
+                            // slower requests continue on their own
+                            window[firstChunk % window.length] = null;
+                            firstChunk++;
+                        }
+                        window[index % window.length] = chunk;
+                        nextChunk++;
+                    }
+                    notifyAll();
+                }
+            }
+        }
+
+        /** Reads the given chunk from disk (only while <tt>loading</tt>). */
+        private byte[] load(int index, FileChannel channel) throws IOException {
+            final long position = (long) index * BUFFER_SIZE;
+            final ByteBuffer chunk =
+                    ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, length - position));
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk, position + chunk.position()) < 0) {
+                    throw new EOFException(
+                            "Premature end of BLOB file stream for " + file.getAbsolutePath());
+                }
+            }
+            numBytesRead.inc(chunk.capacity());
+            return chunk.array();
+        }
+
+        /** Leaves this read, closing it once the last request left. */
+        void release() {
+            synchronized (this) {
+                if (--numReaders > 0) {
+                    return;
+                }
+                for (int i = 0; i < window.length; i++) {
+                    window[i] = null;
+                }
+            }
+
+            reads.remove(file, this);
+        }
+    }
+
+    /** Reads a BLOB file chunk by chunk, from a shared read as long as it keeps up. */
+    final class Reader implements Closeable {
+
+        private final File file;
+
+        private final long length;
+
+        /** Channel on the file, opened with the reader. */
+        private final FileChannel channel;
+
+        /** The shared read or <tt>null</tt> if reading on its own. */
+        @Nullable private SharedRead sharedRead;
+
+        /** Buffer for reading on its own. */
+        @Nullable private ByteBuffer ownBuffer;
+
+        /** Number of bytes returned so far. */
+        private long position;
+
+        private Reader(
+                File file, long length, FileChannel channel, @Nullable SharedRead sharedRead) {
+            this.file = file;
+            this.length = length;
+            this.channel = channel;
+            this.sharedRead = sharedRead;
+        }
+
+        /**
+         * Returns the next chunk of the file, at most {@link BlobServerProtocol#BUFFER_SIZE} bytes.
+         * The returned buffer must not be modified and is only valid until the next call.
+         *
+         * @return the next chunk or <tt>null</tt> if the whole file has been read
+         * @throws IOException if reading the file failed
+         */
+        @Nullable
+        ByteBuffer next() throws IOException {
+            if (position >= length) {
+                return null;
+            }
+
+            if (sharedRead != null) {
+                final byte[] chunk =
+                        sharedRead.getChunk((int) (position / BUFFER_SIZE), channel);
+                if (chunk != null) {
+                    position += chunk.length;
+                    return ByteBuffer.wrap(chunk);
+                }
+
+                // fell behind the others
+                sharedRead.release();
+                sharedRead = null;
+            }
+
+            if (ownBuffer == null) {
+                ownBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            }
+            ownBuffer.clear().limit((int) Math.min(BUFFER_SIZE, length - position));
+            final int read = channel.read(ownBuffer, position);
+            if (read < 0) {
+                throw new EOFException(
+                        "Premature end of BLOB file stream for " + file.getAbsolutePath());
+            }
+            numBytesRead.inc(read);
+            position += read;
+            ownBuffer.flip();
+            return ownBuffer;
+        }
+
+        /** Returns whether this reader still shares its reads with others. */
+        boolean isShared() {
+            return sharedRead != null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (sharedRead != null) {
+                sharedRead.release();
+                sharedRead = null;
+            }
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package flink.runtime.blob;
+
+import flink.metrics.Counter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * {@link ReadWriteLock} which accumulates the time (in microseconds) threads spend waiting in
+ * {@link Lock#lock()} of the wrapped lock.
+ *
+ * <p>The acquisition is not attempted via {@link Lock#tryLock()} first since that would let readers
+ * barge in front of queued writers.
+ */
+final class TimedReadWriteLock implements ReadWriteLock {
+
+    private final Lock readLock;
+
+    private final Lock writeLock;
+
+    TimedReadWriteLock(ReadWriteLock lock, Counter readLockWaitTime, Counter writeLockWaitTime) {
+        checkNotNull(lock);
+        this.readLock = new TimedLock(lock.readLock(), readLockWaitTime);
+        this.writeLock = new TimedLock(lock.writeLock(), writeLockWaitTime);
+    }
+
+    @Override
+    public Lock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    private static final class TimedLock implements Lock {
+
+        private final Lock lock;
+
+        private final Counter waitTime;
+
+        private TimedLock(Lock lock, Counter waitTime) {
+            this.lock = checkNotNull(lock);
+            this.waitTime = checkNotNull(waitTime);
+        }
+
+        @Override
+        public void lock() {
+            final long start = System.nanoTime();
+            lock.lock();
+            recordWaitTime(start);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            final long start = System.nanoTime();
+            lock.lockInterruptibly();
+            recordWaitTime(start);
+        }
+
+        private void recordWaitTime(long startNanos) {
+            final long waited = BlobServerMetrics.microsSince(startNanos);
+            if (waited > 0) {
+                waitTime.inc(waited);
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            return lock.tryLock();
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return lock.tryLock(time, unit);
+        }
+
+        @Override
+        public void unlock() {
+            lock.unlock();
+        }
+
+        @Override
+        public Condition newCondition() {
+            return lock.newCondition();
+        }
+    }
+}
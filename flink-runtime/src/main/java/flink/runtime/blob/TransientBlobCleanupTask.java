@@ -3,9 +3,14 @@ package flink.runtime.blob;
 
 import flink.api.common.JobID;
 import flink.flink_core.api.java.tuple.Tuple2;
+import flink.metrics.Counter;
 import org.slf4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
@@ -34,6 +39,10 @@ public class TransientBlobCleanupTask extends TimerTask {
 
     /** Local storage directory to work on. */
     private File storageDir;
+
+    /** Counter of the BLOBs deleted because their TTL expired. */
+    private final Counter numExpiryDeletions;
+
     /**
      * Creates a new cleanup timer task working with the given parameters from {@link BlobServer}
      * and {@link TransientBlobCache}.
@@ -41,22 +50,65 @@ public class TransientBlobCleanupTask extends TimerTask {
      * @param blobExpiryTimes map to store the TTL of each element stored in the local storage
      * @param writeLock lock to acquire before changing file contents
      * @param storageDir local storage directory to work on
+     * @param numExpiryDeletions counter of the BLOBs deleted because their TTL expired
      * @param log logger instance for debugging
      */
     TransientBlobCleanupTask(
             ConcurrentMap<Tuple2<JobID, TransientBlobKey>, Long> blobExpiryTimes,
             Lock writeLock,
             File storageDir,
+            Counter numExpiryDeletions,
             Logger log) {
         this.blobExpiryTimes = checkNotNull(blobExpiryTimes);
         this.writeLock = checkNotNull(writeLock);
         this.storageDir = checkNotNull(storageDir);
+        this.numExpiryDeletions = checkNotNull(numExpiryDeletions);
         this.log = checkNotNull(log);
     }
 
-
+    /** Cleans up transient BLOBs whose TTL is up, tolerating that files do not exist (anymore). */
     @Override
     public void run() {
+        // let's cache the current time - we do not operate on a millisecond precision anyway
+        final long currentTimeMillis = System.currentTimeMillis();
+        // iterate through all entries and remove those where the current time is past their expiry
+        Set<Map.Entry<Tuple2<JobID, TransientBlobKey>, Long>> entries =
+                new HashSet<>(blobExpiryTimes.entrySet());
+        for (Map.Entry<Tuple2<JobID, TransientBlobKey>, Long> entry : entries) {
+            if (currentTimeMillis >= entry.getValue()) {
+                JobID jobId = entry.getKey().f0;
+                TransientBlobKey blobKey = entry.getKey().f1;
+
+                final File localFile;
+                try {
+                    localFile = BlobUtils.getStorageLocation(storageDir, jobId, blobKey);
+                } catch (IOException e) {
+                    log.warn("Failed to locate the BLOB " + jobId + '/' + blobKey + '.', e);
+                    continue;
+                }
+
+                // deleting the file or changing blobExpiryTimes' contents needs to be protected by
+                // the lock
+                writeLock.lock();
 
+                try {
+                    if (localFile.delete()) {
+                        numExpiryDeletions.inc();
+                        blobExpiryTimes.remove(entry.getKey());
+                    } else if (localFile.exists()) {
+                        log.warn(
+                                "Failed to locally delete BLOB "
+                                        + blobKey
+                                        + " at "
+                                        + localFile.getAbsolutePath());
+                    } else {
+                        // this needs to happen inside the lock
+                        blobExpiryTimes.remove(entry.getKey());
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        }
     }
 }
@@ -5,6 +5,7 @@ import flink.api.common.JobID;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 
 /**
  * @Description
@@ -43,6 +44,37 @@ public interface TransientBlobService extends AutoCloseable{
      */
     File getFile(JobID jobId, TransientBlobKey key) throws IOException;
 
+    /**
+     * Opens a stream on the (job-unrelated) file associated with the provided blob key.
+     *
+     * <p>Compared to {@code getFile}, implementations may serve the content without materializing
+     * a local copy first, which saves a full disk write for BLOBs which are only read once.
+     *
+     * @param key blob key associated with the requested file
+     * @return stream on the BLOB's content which must be closed after use
+     * @throws java.io.FileNotFoundException when the path does not exist;
+     * @throws IOException if any other error occurs when retrieving the file
+     */
+    default InputStream openStream(TransientBlobKey key) throws IOException {
+        return Files.newInputStream(getFile(key).toPath());
+    }
+
+    /**
+     * Opens a stream on the file associated with the provided job ID and blob key.
+     *
+     * <p>Compared to {@code getFile}, implementations may serve the content without materializing
+     * a local copy first, which saves a full disk write for BLOBs which are only read once.
+     *
+     * @param jobId ID of the job this blob belongs to
+     * @param key blob key associated with the requested file
+     * @return stream on the BLOB's content which must be closed after use
+     * @throws java.io.FileNotFoundException when the path does not exist;
+     * @throws IOException if any other error occurs when retrieving the file
+     */
+    default InputStream openStream(JobID jobId, TransientBlobKey key) throws IOException {
+        return Files.newInputStream(getFile(jobId, key).toPath());
+    }
+
     // --------------------------------------------------------------------------------------------
     //  PUT
     // --------------------------------------------------------------------------------------------
@@ -1,5 +1,10 @@
 package flink.runtime.blob;
 
+import flink.api.common.JobID;
+
+import java.io.File;
+import java.io.IOException;
+
 /**
  * @Description
  * @Author weiyu
@@ -7,7 +12,34 @@ package flink.runtime.blob;
  * @Since 1.0
  * @Date 12/22/2022
  */
+/** A blob store doing nothing. */
 public class VoidBlobStore implements BlobStoreService {
+
+    @Override
+    public boolean put(File localFile, JobID jobId, BlobKey blobKey) throws IOException {
+        return false;
+    }
+
+    @Override
+    public boolean get(JobID jobId, BlobKey blobKey, File localFile) throws IOException {
+        return false;
+    }
+
+    @Override
+    public boolean exists(JobID jobId, BlobKey blobKey) throws IOException {
+        return false;
+    }
+
+    @Override
+    public boolean delete(JobID jobId, BlobKey blobKey) {
+        return true;
+    }
+
+    @Override
+    public boolean deleteAll(JobID jobId) {
+        return true;
+    }
+
     @Override
     public void close() throws Exception {
 
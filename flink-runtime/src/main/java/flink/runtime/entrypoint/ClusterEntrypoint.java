@@ -4,9 +4,11 @@ package flink.runtime.entrypoint;
 import flink.configuration.Configuration;
 import flink.configuration.IllegalConfigurationException;
 import flink.configuration.JobManagerOptions;
+import flink.metrics.MetricGroup;
 import flink.runtime.blob.BlobServer;
 import flink.runtime.highavailability.HighAvailabilityServices;
 import flink.runtime.highavailability.HighAvailabilityServicesUtils;
+import flink.runtime.metrics.groups.LocalMetricGroup;
 import flink.runtime.rpc.*;
 import flink.util.concurrent.ExecutorThreadFactory;
 import org.apache.commons.cli.*;
@@ -54,6 +56,8 @@ public class ClusterEntrypoint implements FatalErrorHandler {
 
     private BlobServer blobServer;
 
+    private MetricGroup metricGroup;
+
 
     public ClusterEntrypoint(Configuration configuration) {
         this.configuration = configuration;
@@ -302,7 +306,13 @@ public class ClusterEntrypoint implements FatalErrorHandler {
 
         // TODO 负责处理 大对象的存储工作,例如jar包、日志? 后续补充BlobServer的说明
         // BlobServer中分两种对象存储,对应 两种类型的 BlobType
-        blobServer = new BlobServer(configuration, haServices.createBlobStore());
+        metricGroup = createMetricGroup(configuration);
+
+        blobServer =
+                new BlobServer(
+                        configuration,
+                        haServices.createBlobStore(),
+                        metricGroup.addGroup("blob").addGroup("server"));
         blobServer.start();
 
 
@@ -312,6 +322,14 @@ public class ClusterEntrypoint implements FatalErrorHandler {
         return String.valueOf(configuration.getInteger(JobManagerOptions.PORT));
     }
 
+    /**
+     * Creates the root group of the cluster's metrics. By default, the metrics are kept in memory
+     * and can be scraped locally; subclasses may plug in another registry.
+     */
+    protected MetricGroup createMetricGroup(Configuration configuration) {
+        return new LocalMetricGroup();
+    }
+
     protected HighAvailabilityServices createHaServices(
             Configuration configuration, Executor executor, RpcSystemUtils rpcSystemUtils)
             throws Exception {
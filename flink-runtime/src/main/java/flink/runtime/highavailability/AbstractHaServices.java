@@ -0,0 +1,43 @@
+package flink.runtime.highavailability;
+
+import flink.configuration.Configuration;
+import flink.runtime.blob.BlobStore;
+import flink.runtime.blob.BlobStoreService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * Abstract high availability services which store the BLOBs in a highly-available {@link
+ * BlobStoreService}, e.g. a distributed file system.
+ */
+public abstract class AbstractHaServices implements HighAvailabilityServices {
+
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /** The executor to run external IO operations on. */
+    protected final Executor ioExecutor;
+
+    /** The runtime configuration. */
+    protected final Configuration configuration;
+
+    /** Store for arbitrary blobs. */
+    private final BlobStoreService blobStoreService;
+
+    protected AbstractHaServices(
+            Configuration config, Executor ioExecutor, BlobStoreService blobStoreService) {
+
+        this.configuration = checkNotNull(config);
+        this.ioExecutor = checkNotNull(ioExecutor);
+        this.blobStoreService = checkNotNull(blobStoreService);
+    }
+
+    @Override
+    public BlobStore createBlobStore() throws IOException {
+        return blobStoreService;
+    }
+}
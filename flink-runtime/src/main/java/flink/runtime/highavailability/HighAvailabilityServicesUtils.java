@@ -1,13 +1,19 @@
 package flink.runtime.highavailability;
 
 import flink.configuration.Configuration;
+import flink.configuration.HighAvailabilityOptions;
+import flink.configuration.IllegalConfigurationException;
 import flink.configuration.JobManagerOptions;
 import flink.configuration.RestOptions;
 import flink.configuration.SecurityOptions;
+import flink.core.fs.Path;
 import flink.flink_core.api.java.tuple.Tuple2;
 
+import flink.runtime.blob.BlobStoreService;
+import flink.runtime.blob.BlobUtils;
 import flink.runtime.dispatcher.Dispatcher;
 import flink.runtime.highavailability.nonha.StandaloneHaServices;
+import flink.runtime.highavailability.zookeeper.ZooKeeperHaServices;
 import flink.runtime.jobmanager.HighAvailabilityMode;
 import flink.runtime.resourcemanager.ResourceManager;
 import flink.runtime.rpc.AddressResolution;
@@ -21,6 +27,7 @@ import java.net.UnknownHostException;
 import java.util.concurrent.Executor;
 
 import static flink.util.Preconditions.checkNotNull;
+import static flink.util.StringUtils.isNullOrWhitespaceOnly;
 
 
 /**
@@ -67,15 +74,10 @@ public class HighAvailabilityServicesUtils {
                 return new StandaloneHaServices(
                         resourceManagerRpcUrl, dispatcherRpcUrl, webMonitorAddress);
             case ZOOKEEPER:
-                /*BlobStoreService blobStoreService =
-                        BlobUtils.createBlobStoreFromConfig(configuration);
-
-                return new ZooKeeperHaServices(
-                        ZooKeeperUtils.startCuratorFramework(configuration, fatalErrorHandler),
-                        executor,
-                        configuration,
-                        blobStoreService);*/
-                return null;
+                BlobStoreService blobStoreService =
+                        BlobUtils.createBlobStoreFromConfig(configuration, executor);
+
+                return new ZooKeeperHaServices(executor, configuration, blobStoreService);
 
             case FACTORY_CLASS:
                 //return createCustomHAServices(configuration, executor);
@@ -120,6 +122,49 @@ public class HighAvailabilityServicesUtils {
     }
 
 
+    /**
+     * Gets the cluster high available storage path from the provided configuration.
+     *
+     * <p>The format is {@code HA_STORAGE_PATH/HA_CLUSTER_ID}.
+     *
+     * @param configuration containing the configuration values
+     * @return Path under which all highly available cluster artifacts are being stored
+     */
+    public static Path getClusterHighAvailableStoragePath(Configuration configuration) {
+        final String storagePath = configuration.getValue(HighAvailabilityOptions.HA_STORAGE_PATH);
+
+        if (isNullOrWhitespaceOnly(storagePath)) {
+            throw new IllegalConfigurationException(
+                    "Configuration is missing the mandatory parameter: "
+                            + HighAvailabilityOptions.HA_STORAGE_PATH);
+        }
+
+        final Path path;
+        try {
+            path = new Path(storagePath);
+        } catch (Exception e) {
+            throw new IllegalConfigurationException(
+                    "Invalid path for highly available storage ("
+                            + HighAvailabilityOptions.HA_STORAGE_PATH.key()
+                            + ')');
+        }
+
+        final String clusterId = configuration.getValue(HighAvailabilityOptions.HA_CLUSTER_ID);
+
+        final Path clusterStoragePath;
+
+        try {
+            clusterStoragePath = new Path(path, clusterId);
+        } catch (Exception e) {
+            throw new IllegalConfigurationException(
+                    String.format(
+                            "Cannot create cluster high available storage path '%s/%s'. This indicates that an invalid cluster id (%s) has been specified.",
+                            storagePath, clusterId, HighAvailabilityOptions.HA_CLUSTER_ID.key()));
+        }
+        return clusterStoragePath;
+    }
+
+
     /**
      * Get address of web monitor from configuration.
      *
@@ -0,0 +1,22 @@
+package flink.runtime.highavailability.zookeeper;
+
+import flink.configuration.Configuration;
+import flink.runtime.blob.BlobStoreService;
+import flink.runtime.highavailability.AbstractHaServices;
+
+import java.util.concurrent.Executor;
+
+/**
+ * High availability services for ZooKeeper based setups.
+ *
+ * <p>The BLOBs are stored in the {@link BlobStoreService} under the cluster's HA storage path
+ * (<tt>high-availability.storageDir</tt>).
+ */
+// TODO 省略 leader选举以及leader地址获取的相关服务, 需要curator客户端, 后续补充
+public class ZooKeeperHaServices extends AbstractHaServices {
+
+    public ZooKeeperHaServices(
+            Executor executor, Configuration configuration, BlobStoreService blobStoreService) {
+        super(configuration, executor, blobStoreService);
+    }
+}
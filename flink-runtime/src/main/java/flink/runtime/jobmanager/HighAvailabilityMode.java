@@ -57,4 +57,15 @@ public enum HighAvailabilityMode {
             }
         }
     }
+
+    /**
+     * Returns true if the defined recovery mode supports high availability.
+     *
+     * @param configuration Configuration which contains the recovery mode
+     * @return true if high availability is supported by the recovery mode, otherwise false
+     */
+    public static boolean isHighAvailabilityModeActivated(Configuration configuration) {
+        HighAvailabilityMode mode = fromConfig(configuration);
+        return mode.haActive;
+    }
 }
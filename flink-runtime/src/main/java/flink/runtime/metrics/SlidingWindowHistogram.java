@@ -0,0 +1,123 @@
+package flink.runtime.metrics;
+
+import flink.metrics.Histogram;
+import flink.metrics.HistogramStatistics;
+
+import java.util.Arrays;
+
+import static flink.util.Preconditions.checkArgument;
+
+/**
+ * Thread-safe {@link Histogram} over the last {@code windowSize} recorded values.
+ *
+ * <p>Recording a value only stores it into a ring buffer; sorting and aggregating happens when the
+ * statistics are requested, i.e. when the metrics are scraped.
+ */
+public class SlidingWindowHistogram implements Histogram {
+
+    /** Ring buffer of the latest values (guarded by this). */
+    private final long[] window;
+
+    /** Total number of recorded values (guarded by this). */
+    private long count;
+
+    public SlidingWindowHistogram(int windowSize) {
+        checkArgument(windowSize > 0, "The window size must be positive.");
+        this.window = new long[windowSize];
+    }
+
+    @Override
+    public synchronized void update(long value) {
+        window[(int) (count % window.length)] = value;
+        count++;
+    }
+
+    @Override
+    public synchronized long getCount() {
+        return count;
+    }
+
+    @Override
+    public HistogramStatistics getStatistics() {
+        final long[] values;
+        synchronized (this) {
+            values = Arrays.copyOf(window, (int) Math.min(count, window.length));
+        }
+        return new SortedStatistics(values);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /** Statistics on a sorted snapshot of the window. */
+    private static final class SortedStatistics extends HistogramStatistics {
+
+        private final long[] values;
+
+        private SortedStatistics(long[] values) {
+            Arrays.sort(values);
+            this.values = values;
+        }
+
+        @Override
+        public double getQuantile(double quantile) {
+            checkArgument(quantile >= 0.0 && quantile <= 1.0, "Quantile must be in [0, 1].");
+            if (values.length == 0) {
+                return 0.0;
+            }
+
+            // linear interpolation between the closest ranks
+            final double pos = quantile * (values.length - 1);
+            final int lower = (int) Math.floor(pos);
+            final int upper = (int) Math.ceil(pos);
+            return values[lower] + (pos - lower) * (values[upper] - values[lower]);
+        }
+
+        @Override
+        public long[] getValues() {
+            return Arrays.copyOf(values, values.length);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public double getMean() {
+            if (values.length == 0) {
+                return 0.0;
+            }
+
+            double sum = 0.0;
+            for (long value : values) {
+                sum += value;
+            }
+            return sum / values.length;
+        }
+
+        @Override
+        public double getStdDev() {
+            if (values.length < 2) {
+                return 0.0;
+            }
+
+            final double mean = getMean();
+            double sum = 0.0;
+            for (long value : values) {
+                final double diff = value - mean;
+                sum += diff * diff;
+            }
+            return Math.sqrt(sum / (values.length - 1));
+        }
+
+        @Override
+        public long getMax() {
+            return values.length == 0 ? 0L : values[values.length - 1];
+        }
+
+        @Override
+        public long getMin() {
+            return values.length == 0 ? 0L : values[0];
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package flink.runtime.metrics;
+
+import flink.metrics.Counter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** A simple low-overhead {@link Counter} that is thread-safe. */
+public class ThreadSafeSimpleCounter implements Counter {
+
+    /** the current count. */
+    private final LongAdder longAdder = new LongAdder();
+
+    /** Increment the current count by 1. */
+    @Override
+    public void inc() {
+        longAdder.increment();
+    }
+
+    /**
+     * Increment the current count by the given value.
+     *
+     * @param n value to increment the current count by
+     */
+    @Override
+    public void inc(long n) {
+        longAdder.add(n);
+    }
+
+    /** Decrement the current count by 1. */
+    @Override
+    public void dec() {
+        longAdder.decrement();
+    }
+
+    /**
+     * Decrement the current count by the given value.
+     *
+     * @param n value to decrement the current count by
+     */
+    @Override
+    public void dec(long n) {
+        longAdder.add(-n);
+    }
+
+    /**
+     * Returns the current count.
+     *
+     * @return current count
+     */
+    @Override
+    public long getCount() {
+        return longAdder.longValue();
+    }
+}
@@ -0,0 +1,142 @@
+package flink.runtime.metrics.groups;
+
+import flink.metrics.Counter;
+import flink.metrics.Gauge;
+import flink.metrics.Histogram;
+import flink.metrics.HistogramStatistics;
+import flink.metrics.Metric;
+import flink.metrics.MetricGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static flink.util.Preconditions.checkArgument;
+import static flink.util.Preconditions.checkNotNull;
+
+/**
+ * {@link MetricGroup} which keeps all metrics of its hierarchy in memory so that they can be
+ * scraped locally, e.g. by a REST handler, a log dump or tests.
+ *
+ * <p>Metrics are identified by the names of their groups and their own name, joined by {@code
+ * '.'}, e.g. {@code blob.server.numActiveConnections}. Registering a metric under an identifier
+ * which is already taken is ignored with a warning, i.e. the first metric wins.
+ */
+public class LocalMetricGroup implements MetricGroup {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LocalMetricGroup.class);
+
+    private static final char SEPARATOR = '.';
+
+    /** All metrics of the hierarchy, shared by the root group and all its subgroups. */
+    private final ConcurrentMap<String, Metric> metrics;
+
+    /** Identifier prefix of this group, empty for the root group. */
+    private final String scope;
+
+    /** Creates a new root group. */
+    public LocalMetricGroup() {
+        this(new ConcurrentHashMap<>(), "");
+    }
+
+    private LocalMetricGroup(ConcurrentMap<String, Metric> metrics, String scope) {
+        this.metrics = metrics;
+        this.scope = scope;
+    }
+
+    @Override
+    public <C extends Counter> C counter(String name, C counter) {
+        addMetric(name, counter);
+        return counter;
+    }
+
+    @Override
+    public <T, G extends Gauge<T>> G gauge(String name, G gauge) {
+        addMetric(name, gauge);
+        return gauge;
+    }
+
+    @Override
+    public <H extends Histogram> H histogram(String name, H histogram) {
+        addMetric(name, histogram);
+        return histogram;
+    }
+
+    @Override
+    public MetricGroup addGroup(String name) {
+        return new LocalMetricGroup(metrics, getMetricIdentifier(name));
+    }
+
+    /**
+     * Returns the fully qualified identifier of a metric with the given name in this group.
+     *
+     * @param name name of the metric
+     * @return identifier of the metric
+     */
+    public String getMetricIdentifier(String name) {
+        checkArgument(!checkNotNull(name).isEmpty(), "The name must not be empty.");
+        return scope.isEmpty() ? name : scope + SEPARATOR + name;
+    }
+
+    /**
+     * Returns all metrics of the whole hierarchy, sorted by their identifiers.
+     *
+     * @return snapshot of the registered metrics
+     */
+    public SortedMap<String, Metric> getMetrics() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(metrics));
+    }
+
+    /**
+     * Returns the metric with the given identifier, e.g. {@code blob.server.numActiveConnections}.
+     *
+     * @param identifier fully qualified identifier of the metric
+     * @return the metric or <tt>null</tt> if there is none
+     */
+    public Metric getMetric(String identifier) {
+        return metrics.get(identifier);
+    }
+
+    private void addMetric(String name, Metric metric) {
+        checkNotNull(metric);
+        final String identifier = getMetricIdentifier(name);
+        if (metrics.putIfAbsent(identifier, metric) != null) {
+            LOG.warn(
+                    "Name collision: Group already contains a Metric with the name '{}'. "
+                            + "Metric will not be reported.",
+                    identifier);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Metric> entry : getMetrics().entrySet()) {
+            builder.append(entry.getKey()).append(": ");
+            final Metric metric = entry.getValue();
+            if (metric instanceof Counter) {
+                builder.append(((Counter) metric).getCount());
+            } else if (metric instanceof Gauge) {
+                builder.append(((Gauge<?>) metric).getValue());
+            } else if (metric instanceof Histogram) {
+                final Histogram histogram = (Histogram) metric;
+                final HistogramStatistics statistics = histogram.getStatistics();
+                builder.append("count=")
+                        .append(histogram.getCount())
+                        .append(", p50=")
+                        .append(statistics.getQuantile(0.5))
+                        .append(", p99=")
+                        .append(statistics.getQuantile(0.99))
+                        .append(", max=")
+                        .append(statistics.getMax());
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
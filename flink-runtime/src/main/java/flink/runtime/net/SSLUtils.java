@@ -73,6 +73,20 @@ public class SSLUtils {
         return new ConfiguringSSLServerSocketFactory(factory, protocols, cipherSuites);
     }
 
+    /**
+     * Creates a Netty SSL context for client connections from the given configuration, e.g. for
+     * non-blocking clients. SSL client connections are always part of internal communication.
+     */
+    public static SslContext createInternalNettyClientSSLContext(Configuration config)
+            throws Exception {
+        SslContext sslContext = createInternalNettySSLContext(config, true, JDK);
+        if (sslContext == null) {
+            throw new IllegalConfigurationException("SSL is not enabled");
+        }
+
+        return sslContext;
+    }
+
     private static String[] getEnabledProtocols(final Configuration config) {
         checkNotNull(config, "config must not be null");
         return config.getString(SecurityOptions.SSL_PROTOCOL).split(",");
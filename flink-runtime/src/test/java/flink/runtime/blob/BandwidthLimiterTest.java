@@ -0,0 +1,39 @@
+package flink.runtime.blob;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/** Tests for the {@link BandwidthLimiter}. */
+public class BandwidthLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1L);
+
+    /** A burst of up to one second worth of bytes passes, afterwards the rate applies. */
+    @Test
+    public void testReservations() {
+        final BandwidthLimiter limiter = new BandwidthLimiter(1_000_000L);
+        final long start = System.nanoTime();
+
+        assertEquals(0L, limiter.reserve(1_000_000, start));
+
+        // reservations queue up behind each other
+        assertEquals(SECOND / 2, limiter.reserve(500_000, start));
+        assertEquals(SECOND, limiter.reserve(500_000, start));
+
+        // half a second later, half of the debt has been paid off
+        assertEquals(SECOND / 2, limiter.reserve(0, start + SECOND / 2));
+
+        // idle time does not accumulate more than one second worth of tokens
+        assertEquals(0L, limiter.reserve(1_000_000, start + 10 * SECOND));
+        assertEquals(SECOND / 1000, limiter.reserve(1_000, start + 10 * SECOND));
+    }
+
+    @Test
+    public void testUnlimited() {
+        assertNull(BandwidthLimiter.create(0L));
+    }
+}
@@ -0,0 +1,171 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.configuration.BlobServerOptions;
+import flink.configuration.Configuration;
+import flink.util.TestLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for the {@link BlobClientRetryPolicy}. */
+public class BlobClientRetryPolicyTest extends TestLogger {
+
+    private static final InetSocketAddress PRIMARY = InetSocketAddress.createUnresolved("a", 1);
+
+    private static final InetSocketAddress FAILOVER = InetSocketAddress.createUnresolved("b", 2);
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** Retries wait up to an exponentially growing, capped backoff or what an overload asks. */
+    @Test
+    public void testRetryDelay() {
+        final Configuration config = new Configuration();
+        config.setLong(BlobServerOptions.RETRY_INITIAL_BACKOFF, 100L);
+        config.setLong(BlobServerOptions.RETRY_MAX_BACKOFF, 1_000L);
+        final BlobClientRetryPolicy policy = new BlobClientRetryPolicy(config);
+
+        final IOException failure = new IOException("test");
+        for (int attempt = 0; attempt < 64; attempt++) {
+            final long delay = policy.getRetryDelay(attempt, failure);
+            assertTrue(delay >= 0L);
+            assertTrue(delay <= Math.min(1_000L, 100L << Math.min(attempt, 30)));
+        }
+
+        final IOException overload =
+                new IOException("overloaded", new BlobServerOverloadedException(2_000));
+        final long delay = policy.getRetryDelay(0, overload);
+        assertTrue(delay >= 2_000L && delay <= 3_000L);
+    }
+
+    /** Retries rotate through the candidates and skip addresses failing too often. */
+    @Test
+    public void testFailoverAndCircuitBreaker() {
+        final Configuration config = new Configuration();
+        config.setString(BlobServerOptions.FAILOVER_ADDRESSES, " b:2, ");
+        config.setInteger(BlobServerOptions.CIRCUIT_BREAKER_FAILURE_THRESHOLD, 2);
+        config.setLong(BlobServerOptions.CIRCUIT_BREAKER_OPEN_DURATION, 60_000L);
+        final BlobClientRetryPolicy policy = new BlobClientRetryPolicy(config);
+
+        assertEquals(PRIMARY, policy.selectAddress(PRIMARY, 0));
+        assertEquals(FAILOVER, policy.selectAddress(PRIMARY, 1));
+        assertEquals(PRIMARY, policy.selectAddress(PRIMARY, 2));
+
+        // overloads do not count as failures
+        policy.recordFailure(PRIMARY, new BlobServerOverloadedException(10));
+        policy.recordFailure(PRIMARY, new BlobServerOverloadedException(10));
+        assertEquals(PRIMARY, policy.selectAddress(PRIMARY, 0));
+
+        policy.recordFailure(PRIMARY, new IOException("test"));
+        assertEquals(PRIMARY, policy.selectAddress(PRIMARY, 0));
+        policy.recordFailure(PRIMARY, new IOException("test"));
+        assertEquals(FAILOVER, policy.selectAddress(PRIMARY, 0));
+        assertEquals(FAILOVER, policy.selectAddress(PRIMARY, 2));
+
+        // with all circuit breakers open, the one closing first is probed
+        policy.recordFailure(FAILOVER, new IOException("test"));
+        policy.recordFailure(FAILOVER, new IOException("test"));
+        assertEquals(PRIMARY, policy.selectAddress(PRIMARY, 0));
+
+        policy.recordSuccess(PRIMARY);
+        assertEquals(PRIMARY, policy.selectAddress(PRIMARY, 0));
+    }
+
+    /**
+     * Once the open duration passed, a single request probes the address while further requests
+     * keep skipping it until the probe reported back.
+     */
+    @Test
+    public void testHalfOpenCircuitBreakerAdmitsSingleProbe() throws Exception {
+        final Configuration config = new Configuration();
+        config.setString(BlobServerOptions.FAILOVER_ADDRESSES, "b:2");
+        config.setInteger(BlobServerOptions.CIRCUIT_BREAKER_FAILURE_THRESHOLD, 1);
+        config.setLong(BlobServerOptions.CIRCUIT_BREAKER_OPEN_DURATION, 500L);
+        final BlobClientRetryPolicy policy = new BlobClientRetryPolicy(config);
+
+        policy.recordFailure(PRIMARY, new IOException("test"));
+        assertEquals(FAILOVER, policy.selectAddress(PRIMARY, 0));
+        Thread.sleep(600L);
+
+        // the probe fails and re-opens the circuit breaker
+        assertEquals(PRIMARY, policy.selectAddress(PRIMARY, 0));
+        assertEquals(FAILOVER, policy.selectAddress(PRIMARY, 0));
+        policy.recordFailure(PRIMARY, new IOException("test"));
+        assertEquals(FAILOVER, policy.selectAddress(PRIMARY, 0));
+        Thread.sleep(600L);
+
+        // the probe succeeds and closes the circuit breaker
+        assertEquals(PRIMARY, policy.selectAddress(PRIMARY, 0));
+        assertEquals(FAILOVER, policy.selectAddress(PRIMARY, 0));
+        policy.recordSuccess(PRIMARY);
+        assertEquals(PRIMARY, policy.selectAddress(PRIMARY, 0));
+        assertEquals(PRIMARY, policy.selectAddress(PRIMARY, 0));
+    }
+
+    /** Resolved and unresolved addresses of the same host and port are the same candidate. */
+    @Test
+    public void testAddressesComparedByHostAndPort() {
+        final InetSocketAddress resolved = new InetSocketAddress("localhost", 1);
+        final Configuration config = new Configuration();
+        config.setString(BlobServerOptions.FAILOVER_ADDRESSES, "localhost:1, b:2");
+        config.setInteger(BlobServerOptions.CIRCUIT_BREAKER_FAILURE_THRESHOLD, 1);
+        config.setLong(BlobServerOptions.CIRCUIT_BREAKER_OPEN_DURATION, 60_000L);
+        final BlobClientRetryPolicy policy = new BlobClientRetryPolicy(config);
+
+        // the failover address duplicating the server's is skipped
+        assertEquals(resolved, policy.selectAddress(resolved, 0));
+        assertEquals(FAILOVER, policy.selectAddress(resolved, 1));
+        assertEquals(resolved, policy.selectAddress(resolved, 2));
+
+        // failures of either form count for both
+        policy.recordFailure(InetSocketAddress.createUnresolved("localhost", 1), new IOException());
+        assertEquals(FAILOVER, policy.selectAddress(resolved, 0));
+    }
+
+    /** A download fails over from an unreachable server to a further address. */
+    @Test
+    public void testDownloadFailsOver() throws Exception {
+        final byte[] data = new byte[2000];
+        new Random().nextBytes(data);
+
+        final int unusedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            unusedPort = socket.getLocalPort();
+        }
+
+        final Configuration config = new Configuration();
+        config.setString(
+                BlobServerOptions.STORAGE_DIRECTORY, temporaryFolder.newFolder().getAbsolutePath());
+        config.setLong(BlobServerOptions.RETRY_INITIAL_BACKOFF, 10L);
+
+        try (BlobServer server = new BlobServer(config, new VoidBlobStore())) {
+            server.start();
+            final JobID jobId = new JobID();
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+
+            config.setString(
+                    BlobServerOptions.FAILOVER_ADDRESSES, "localhost:" + server.getPort());
+            final File localFile = new File(temporaryFolder.newFolder(), "local");
+            BlobClient.downloadFromBlobServer(
+                    jobId,
+                    blobKey,
+                    localFile,
+                    new InetSocketAddress("localhost", unusedPort),
+                    config,
+                    new BlobClientRetryPolicy(config),
+                    1);
+            assertArrayEquals(data, Files.readAllBytes(localFile.toPath()));
+        }
+    }
+}
@@ -1,11 +1,49 @@
 package flink.runtime.blob;
 
 import flink.api.common.JobID;
+import flink.configuration.BlobServerOptions;
+import flink.configuration.Configuration;
+import flink.metrics.Counter;
 import flink.util.TestLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static flink.runtime.blob.BlobKey.BlobType.PERMANENT_BLOB;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @Description
@@ -26,6 +64,73 @@ import java.io.IOException;
  */
 public class BlobServerGetTest extends TestLogger {
 
+    private final Random rnd = new Random();
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Configuration createConfig() throws IOException {
+        final Configuration config = new Configuration();
+        config.setString(
+                BlobServerOptions.STORAGE_DIRECTORY, temporaryFolder.newFolder().getAbsolutePath());
+        return config;
+    }
+
+    /** Creates and starts a blob server without an HA blob store. */
+    static BlobServer startServer(Configuration config) throws IOException {
+        return startServer(config, new VoidBlobStore());
+    }
+
+    /** Creates and starts a blob server backed by the given HA blob store. */
+    static BlobServer startServer(Configuration config, BlobStore blobStore) throws IOException {
+        final BlobServer server = new BlobServer(config, blobStore);
+        server.start();
+        return server;
+    }
+
+    /** The local cleanup of a job is deferred while one of its BLOBs is read via a buffer. */
+    @Test
+    public void testReadBufferDefersJobCleanup() throws IOException {
+        final JobID jobId = new JobID();
+        final byte[] data = new byte[2000];
+        rnd.nextBytes(data);
+
+        try (BlobServer server = startServer(createConfig())) {
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+            final File file = server.getStorageLocation(jobId, blobKey);
+
+            final MappedBlobBuffer buffer1 = server.readBuffer(jobId, blobKey);
+            final MappedBlobBuffer buffer2 = server.readBuffer(jobId, blobKey);
+            assertEquals(data.length, buffer1.size());
+
+            final ByteBuffer content = buffer1.getBuffer();
+            final byte[] read = new byte[content.remaining()];
+            content.get(read);
+            assertArrayEquals(data, read);
+
+            assertTrue(server.cleanupJob(jobId, true));
+            assertTrue(file.exists());
+
+            buffer1.close();
+            assertTrue(file.exists());
+
+            buffer2.close();
+            assertFalse(file.exists());
+        }
+    }
+
+    /**
+     * Waits until the given counter reached the given count: the server updates its metrics after
+     * sending the response, i.e. possibly after the client already received it.
+     */
+    static void waitForCount(Counter counter, long count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (counter.getCount() < count) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("Expected a count of " + count + " but got " + counter.getCount() + '.');
+            }
+            Thread.sleep(10L);
+        }
+    }
 
     /**
      * Retrieves the given blob.
@@ -47,4 +152,802 @@ public class BlobServerGetTest extends TestLogger {
         }
     }
 
+
+    /**
+     * Connections beyond the concurrent ones wait in order of arrival; once the queue is full,
+     * requests are rejected with the configured retry-after hint.
+     */
+    @Test
+    public void testOverloadedServerQueuesAndRejectsRequests() throws Exception {
+        final byte[] data = new byte[2000];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+        config.setInteger(BlobServerOptions.FETCH_CONCURRENT, 1);
+        config.setInteger(BlobServerOptions.FETCH_QUEUE_CAPACITY, 1);
+        config.setInteger(BlobServerOptions.OVERLOAD_RETRY_AFTER, 123);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (BlobServer server = startServer(config)) {
+            final InetSocketAddress serverAddress =
+                    new InetSocketAddress("localhost", server.getPort());
+            final JobID jobId = new JobID();
+            final BlobKey blobKey = server.putPermanent(jobId, data);
+            final BlobKey transientKey = server.putTransient(jobId, data);
+
+            // an idle connection occupies the only slot
+            final BlobClient idleClient = new BlobClient(serverAddress, config);
+            while (server.getNumActiveConnections() < 1) {
+                Thread.sleep(10L);
+            }
+
+            // the next one waits for the slot
+            final Future<byte[]> queued =
+                    executor.submit(
+                            () -> {
+                                try (BlobClient client = new BlobClient(serverAddress, config)) {
+                                    final byte[] read = new byte[data.length];
+                                    BlobUtils.readFully(
+                                            client.getInternal(jobId, transientKey),
+                                            read,
+                                            0,
+                                            read.length,
+                                            "BLOB");
+                                    return read;
+                                }
+                            });
+            while (server.getNumQueuedConnections() < 1) {
+                Thread.sleep(10L);
+            }
+
+            // and any further one is rejected
+            try (BlobClient client = new BlobClient(serverAddress, config)) {
+                client.getInternal(jobId, blobKey);
+                fail("Expected the request to be rejected.");
+            } catch (BlobServerOverloadedException e) {
+                assertEquals(123, e.getRetryAfterMillis());
+            }
+            assertEquals(1L, server.getMetrics().numRejectedConnections.getCount());
+
+            idleClient.close();
+            assertArrayEquals(data, queued.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** A throttled GET does not hold the server's lock while it sends, so PUTs are not stalled. */
+    @Test
+    public void testThrottledGetDoesNotBlockPuts() throws Exception {
+        final byte[] data = new byte[128 * 1024];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+        config.setLong(BlobServerOptions.BANDWIDTH_PER_CONNECTION, 32 * 1024L);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (BlobServer server = startServer(config)) {
+            final JobID jobId = new JobID();
+            final BlobKey blobKey = server.putPermanent(jobId, data);
+
+            final Future<byte[]> request =
+                    executor.submit(
+                            () -> {
+                                final File localFile =
+                                        new File(temporaryFolder.newFolder(), "local");
+                                try (BlobClient client =
+                                        new BlobClient(
+                                                new InetSocketAddress(
+                                                        "localhost", server.getPort()),
+                                                config)) {
+                                    assertTrue(client.getIfModified(jobId, blobKey, localFile));
+                                }
+                                return Files.readAllBytes(localFile.toPath());
+                            });
+            while (server.getNumActiveConnections() < 1) {
+                Thread.sleep(10L);
+            }
+            Thread.sleep(200L);
+
+            CompletableFuture.supplyAsync(() -> putPermanent(server, jobId, new byte[] {1, 2}))
+                    .get(2L, TimeUnit.SECONDS);
+            assertFalse(request.isDone());
+
+            assertArrayEquals(data, request.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static PermanentBlobKey putPermanent(BlobServer server, JobID jobId, byte[] data) {
+        try {
+            return server.putPermanent(jobId, data);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /** A conditional GET only sends the BLOB if the client's copy does not match. */
+    @Test
+    public void testConditionalGet() throws Exception {
+        final byte[] data = new byte[2000];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+
+        try (BlobServer server = startServer(config)) {
+            final InetSocketAddress serverAddress =
+                    new InetSocketAddress("localhost", server.getPort());
+            final JobID jobId = new JobID();
+            final BlobKey blobKey = server.putPermanent(jobId, data);
+
+            // missing copy
+            final File localFile = new File(temporaryFolder.newFolder(), "local");
+            try (BlobClient client = new BlobClient(serverAddress, config)) {
+                assertTrue(client.getIfModified(jobId, blobKey, localFile));
+            }
+            assertArrayEquals(data, Files.readAllBytes(localFile.toPath()));
+            waitForCount(server.getMetrics().numBytesOutGet, data.length);
+
+            // matching copy
+            try (BlobClient client = new BlobClient(serverAddress, config)) {
+                assertFalse(client.getIfModified(jobId, blobKey, localFile));
+            }
+            waitForCount(server.getMetrics().numNotModified, 1L);
+            assertEquals(data.length, server.getMetrics().numBytesOutGet.getCount());
+
+            // corrupted copy
+            final byte[] corrupted = data.clone();
+            corrupted[0]++;
+            Files.write(localFile.toPath(), corrupted);
+            try (BlobClient client = new BlobClient(serverAddress, config)) {
+                assertTrue(client.getIfModified(jobId, blobKey, localFile));
+            }
+            assertArrayEquals(data, Files.readAllBytes(localFile.toPath()));
+            waitForCount(server.getMetrics().numBytesOutGet, 2L * data.length);
+            assertEquals(1L, server.getMetrics().numNotModified.getCount());
+        }
+    }
+
+    /** BLOBs are transferred from the connection's channel to files and verified nonetheless. */
+    @Test
+    public void testZeroCopyReceive() throws Exception {
+        final byte[] data = new byte[3 * BlobServerProtocol.BUFFER_SIZE + 1234];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+        config.setBoolean(BlobServerOptions.ZERO_COPY_RECEIVE_ENABLED, true);
+
+        try (BlobServer server = startServer(config)) {
+            final InetSocketAddress serverAddress =
+                    new InetSocketAddress("localhost", server.getPort());
+            final JobID jobId = new JobID();
+            final BlobKey permanentKey = server.putPermanent(jobId, data);
+            final BlobKey transientKey = server.putTransient(jobId, data);
+
+            final File permanentFile = new File(temporaryFolder.newFolder(), "permanent");
+            final File transientFile = new File(temporaryFolder.newFolder(), "transient");
+            try (BlobClient client = new BlobClient(serverAddress, config)) {
+                assertTrue(client.getIfModified(jobId, permanentKey, permanentFile));
+                assertTrue(client.getIfModified(jobId, transientKey, transientFile));
+            }
+            assertArrayEquals(data, Files.readAllBytes(permanentFile.toPath()));
+            assertArrayEquals(data, Files.readAllBytes(transientFile.toPath()));
+
+            // the successful transfer has been acknowledged
+            final File serverTransientFile = server.getStorageLocation(jobId, transientKey);
+            while (serverTransientFile.exists()) {
+                Thread.sleep(10L);
+            }
+        }
+    }
+
+    /** A zero-copy receive fails after the socket timeout if the server stops sending mid-BLOB. */
+    @Test
+    public void testZeroCopyReceiveTimesOut() throws Exception {
+        final Configuration config = createConfig();
+        config.setBoolean(BlobServerOptions.ZERO_COPY_RECEIVE_ENABLED, true);
+        config.setInteger(BlobServerOptions.SO_TIMEOUT, 200);
+
+        final CountDownLatch stalled = new CountDownLatch(1);
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            // a server announcing a BLOB, but only sending its first bytes
+            final CompletableFuture<Void> server =
+                    CompletableFuture.runAsync(
+                            () -> {
+                                try (Socket socket = serverSocket.accept()) {
+                                    final OutputStream os = socket.getOutputStream();
+                                    os.write(BlobServerProtocol.RETURN_OKAY);
+                                    BlobUtils.writeLength(1000, os);
+                                    os.write(new byte[100]);
+                                    os.flush();
+                                    stalled.await();
+                                } catch (Exception e) {
+                                    throw new CompletionException(e);
+                                }
+                            });
+
+            final File localFile = new File(temporaryFolder.newFolder(), "local");
+            try (BlobClient client =
+                    new BlobClient(
+                            new InetSocketAddress("localhost", serverSocket.getLocalPort()),
+                            config)) {
+                final CompletableFuture<Boolean> download =
+                        CompletableFuture.supplyAsync(
+                                () -> {
+                                    try {
+                                        return client.getIfModified(
+                                                new JobID(), new PermanentBlobKey(), localFile);
+                                    } catch (IOException e) {
+                                        throw new CompletionException(e);
+                                    }
+                                });
+                try {
+                    download.get(10L, TimeUnit.SECONDS);
+                    fail("Expected the download to time out.");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof SocketTimeoutException);
+                }
+            } finally {
+                stalled.countDown();
+            }
+            server.get();
+        }
+    }
+
+    /** A single-threaded asynchronous client serves many concurrent transfers. */
+    @Test
+    public void testAsyncClient() throws Exception {
+        final byte[] data = new byte[3 * BlobServerProtocol.BUFFER_SIZE + 1234];
+        rnd.nextBytes(data);
+        final File uploadFile = temporaryFolder.newFile();
+        Files.write(uploadFile.toPath(), data);
+
+        final Configuration config = createConfig();
+        config.setInteger(BlobServerOptions.FETCH_CONCURRENT, 4);
+
+        try (BlobServer server = startServer(config)) {
+            final InetSocketAddress serverAddress =
+                    new InetSocketAddress("localhost", server.getPort());
+            try (AsyncBlobClient client = new AsyncBlobClient(serverAddress, config)) {
+                final JobID jobId = new JobID();
+                final BlobKey blobKey =
+                        client.putAsync(jobId, uploadFile.toPath(), PERMANENT_BLOB).get();
+                final File storedFile = server.getStorageLocation(jobId, blobKey);
+                assertArrayEquals(data, Files.readAllBytes(storedFile.toPath()));
+
+                final File downloadDir = temporaryFolder.newFolder();
+                final List<CompletableFuture<File>> downloads = new ArrayList<>();
+                for (int i = 0; i < 20; i++) {
+                    downloads.add(
+                            client.getAsync(
+                                    jobId, blobKey, new File(downloadDir, "blob-" + i).toPath()));
+                }
+                for (CompletableFuture<File> download : downloads) {
+                    assertArrayEquals(data, Files.readAllBytes(download.get().toPath()));
+                }
+
+                // a missing BLOB
+                try {
+                    client.getAsync(
+                                    jobId,
+                                    new PermanentBlobKey(),
+                                    new File(downloadDir, "missing").toPath())
+                            .get();
+                    fail("Expected the BLOB to be missing.");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+                assertFalse(new File(downloadDir, "missing").exists());
+
+                // idle connections occupy all slots
+                while (server.getNumActiveConnections() > 0) {
+                    Thread.sleep(10L);
+                }
+                final List<BlobClient> idleClients = new ArrayList<>();
+                try {
+                    for (int i = 0; i < 4; i++) {
+                        idleClients.add(new BlobClient(serverAddress, config));
+                    }
+                    while (server.getNumActiveConnections() < 4) {
+                        Thread.sleep(10L);
+                    }
+
+                    try {
+                        client.getAsync(
+                                        jobId,
+                                        blobKey,
+                                        new File(downloadDir, "late").toPath(),
+                                        Duration.ofMillis(100L))
+                                .get();
+                        fail("Expected the request to time out.");
+                    } catch (ExecutionException e) {
+                        assertTrue(e.getCause() instanceof TimeoutException);
+                    }
+                } finally {
+                    for (BlobClient idleClient : idleClients) {
+                        idleClient.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /** Requests of a closed asynchronous client fail via their futures instead of throwing. */
+    @Test
+    public void testClosedAsyncClientFailsRequests() throws Exception {
+        final Configuration config = createConfig();
+        final File file = temporaryFolder.newFile();
+
+        final AsyncBlobClient client =
+                new AsyncBlobClient(new InetSocketAddress("localhost", 1), config);
+        client.close();
+
+        try {
+            client.getAsync(new JobID(), new PermanentBlobKey(), file.toPath()).get();
+            fail("Expected the closed client to fail the request.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            client.putAsync(new JobID(), file.toPath(), PERMANENT_BLOB).get();
+            fail("Expected the closed client to fail the request.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    /** A verified GET checks each chunk and only fetches corrupted chunks again. */
+    @Test
+    public void testVerifiedGet() throws Exception {
+        final byte[] data = new byte[3 * BlobServerProtocol.TREE_HASH_CHUNK_SIZE + 1234];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+
+        try (BlobServer server = startServer(config)) {
+            final InetSocketAddress serverAddress =
+                    new InetSocketAddress("localhost", server.getPort());
+            final JobID jobId = new JobID();
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+
+            final File localFile = new File(temporaryFolder.newFolder(), "local");
+            try (BlobClient client = new BlobClient(serverAddress, config)) {
+                client.getVerified(jobId, blobKey, localFile);
+            }
+            assertArrayEquals(data, Files.readAllBytes(localFile.toPath()));
+            waitForCount(server.getMetrics().numBytesOutGet, data.length);
+            assertEquals(1, server.getTreeHashes().getNumCachedFiles());
+
+            // corrupt the second chunk at the server after its hash has been cached
+            final File blobFile = server.getStorageLocation(jobId, blobKey);
+            final byte[] corrupted = data.clone();
+            corrupted[BlobServerProtocol.TREE_HASH_CHUNK_SIZE + 42]++;
+            Files.write(blobFile.toPath(), corrupted);
+
+            try (BlobClient client = new BlobClient(serverAddress, config)) {
+                client.getVerified(jobId, blobKey, new File(temporaryFolder.newFolder(), "local"));
+                fail("Expected the corrupted chunk to be detected.");
+            } catch (IOException e) {
+                // expected
+            }
+            // only the corrupted chunk has been fetched again
+            final long expectedBytesOut =
+                    2L * data.length
+                            + BlobClient.MAX_CHUNK_REFETCHES
+                                    * BlobServerProtocol.TREE_HASH_CHUNK_SIZE;
+            waitForCount(server.getMetrics().numBytesOutGet, expectedBytesOut);
+            assertEquals(expectedBytesOut, server.getMetrics().numBytesOutGet.getCount());
+
+            // deleting the job forgets the hashes
+            assertTrue(server.cleanupJob(jobId, true));
+            assertEquals(0, server.getTreeHashes().getNumCachedFiles());
+        }
+    }
+
+    /** A large BLOB is downloaded in stripes over several connections. */
+    @Test
+    public void testStripedGet() throws Exception {
+        final byte[] data = new byte[7 * BlobServerProtocol.TREE_HASH_CHUNK_SIZE + 1234];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+        config.setInteger(BlobServerOptions.DOWNLOAD_NUM_STRIPES, 3);
+        config.setLong(
+                BlobServerOptions.DOWNLOAD_MIN_STRIPE_SIZE,
+                (long) BlobServerProtocol.TREE_HASH_CHUNK_SIZE);
+
+        try (BlobServer server = startServer(config)) {
+            final JobID jobId = new JobID();
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+
+            final File localFile = new File(temporaryFolder.newFolder(), "local");
+            try (BlobClient client =
+                    new BlobClient(new InetSocketAddress("localhost", server.getPort()), config)) {
+                client.getVerified(jobId, blobKey, localFile);
+            }
+            assertArrayEquals(data, Files.readAllBytes(localFile.toPath()));
+
+            // every byte has been sent exactly once across the stripes
+            waitForCount(server.getMetrics().numBytesOutGet, data.length);
+            assertEquals(data.length, server.getMetrics().numBytesOutGet.getCount());
+        }
+    }
+
+    /**
+     * Stripes whose connection is rejected by the overloaded server are fetched over the client's
+     * own connection instead of failing the download.
+     */
+    @Test
+    public void testStripedGetFallsBackToOwnConnection() throws Exception {
+        final byte[] data = new byte[7 * BlobServerProtocol.TREE_HASH_CHUNK_SIZE + 1234];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+        config.setInteger(BlobServerOptions.FETCH_CONCURRENT, 1);
+        config.setInteger(BlobServerOptions.FETCH_QUEUE_CAPACITY, 0);
+        config.setInteger(BlobServerOptions.DOWNLOAD_NUM_STRIPES, 3);
+        config.setLong(
+                BlobServerOptions.DOWNLOAD_MIN_STRIPE_SIZE,
+                (long) BlobServerProtocol.TREE_HASH_CHUNK_SIZE);
+
+        try (BlobServer server = startServer(config)) {
+            final JobID jobId = new JobID();
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+
+            // the client's own connection takes the only slot, so other connections are rejected
+            final File localFile = new File(temporaryFolder.newFolder(), "local");
+            try (BlobClient client =
+                    new BlobClient(new InetSocketAddress("localhost", server.getPort()), config)) {
+                client.getVerified(jobId, blobKey, localFile);
+            }
+            assertArrayEquals(data, Files.readAllBytes(localFile.toPath()));
+
+            waitForCount(server.getMetrics().numBytesOutGet, data.length);
+            assertEquals(data.length, server.getMetrics().numBytesOutGet.getCount());
+        }
+    }
+
+    /**
+     * Concurrent GETs of a BLOB missing locally share a single download from the HA store. A
+     * failed download reaches all of them and is not reused by later requests.
+     */
+    @Test
+    public void testConcurrentGetsShareBlobStoreDownload() throws Exception {
+        final byte[] data = new byte[2000];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (BlobServer server = startServer(config, blobStore)) {
+            final InetSocketAddress serverAddress =
+                    new InetSocketAddress("localhost", server.getPort());
+            final JobID jobId = new JobID();
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+            final File localFile = server.getStorageLocation(jobId, blobKey);
+
+            final Callable<Void> get =
+                    () -> {
+                        try (BlobClient client = new BlobClient(serverAddress, config)) {
+                            BlobClientTest.validateGetAndClose(
+                                    client.getInternal(jobId, blobKey), data);
+                        }
+                        return null;
+                    };
+
+            // a failed download
+            assertTrue(localFile.delete());
+            blobStore.setGetFailure(new IOException("test"));
+            CountDownLatch latch = blobStore.blockGets();
+            List<Future<Void>> requests = submitAndAwaitConnections(executor, get, server);
+            latch.countDown();
+            for (Future<Void> request : requests) {
+                try {
+                    request.get();
+                    fail("Expected the download from the blob store to fail.");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+
+            // the next request starts a new download
+            final int numFailedGets = blobStore.getNumGets();
+            blobStore.setGetFailure(null);
+            latch = blobStore.blockGets();
+            requests = submitAndAwaitConnections(executor, get, server);
+            latch.countDown();
+            for (Future<Void> request : requests) {
+                request.get();
+            }
+            assertEquals(numFailedGets + 1, blobStore.getNumGets());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Submits the given request four times and waits until the server accepted all connections.
+     */
+    private static List<Future<Void>> submitAndAwaitConnections(
+            ExecutorService executor, Callable<Void> request, BlobServer server)
+            throws InterruptedException {
+        final List<Future<Void>> requests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            requests.add(executor.submit(request));
+        }
+        while (server.getNumActiveConnections() < 4) {
+            Thread.sleep(10L);
+        }
+        return requests;
+    }
+
+    /**
+     * Prefetching copies a job's BLOBs from the HA store; GETs of a BLOB being prefetched wait for
+     * that download instead of starting their own.
+     */
+    @Test
+    public void testPrefetchJob() throws Exception {
+        final byte[] data = new byte[2000];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (BlobServer server = startServer(config, blobStore)) {
+            final JobID jobId = new JobID();
+            final List<PermanentBlobKey> blobKeys = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+                assertTrue(server.getStorageLocation(jobId, blobKey).delete());
+                blobKeys.add(blobKey);
+            }
+
+            final CountDownLatch latch = blobStore.blockGets();
+            final CompletableFuture<Void> prefetch = server.prefetchJob(jobId, blobKeys);
+            final Future<?> request =
+                    executor.submit(
+                            () -> {
+                                try (BlobClient client =
+                                        new BlobClient(
+                                                new InetSocketAddress(
+                                                        "localhost", server.getPort()),
+                                                config)) {
+                                    BlobClientTest.validateGetAndClose(
+                                            client.getInternal(jobId, blobKeys.get(0)), data);
+                                }
+                                return null;
+                            });
+            try {
+                request.get(100L, TimeUnit.MILLISECONDS);
+                fail("Expected the GET to wait for the prefetch.");
+            } catch (TimeoutException e) {
+                // expected
+            }
+
+            latch.countDown();
+            prefetch.get();
+            request.get();
+            for (PermanentBlobKey blobKey : blobKeys) {
+                assertTrue(server.getStorageLocation(jobId, blobKey).exists());
+            }
+            assertEquals(blobKeys.size(), blobStore.getNumGets());
+
+            // nothing left to prefetch
+            server.prefetchJob(jobId, blobKeys).get();
+            assertEquals(blobKeys.size(), blobStore.getNumGets());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** A prefetch failing to start does not leave GETs waiting for its downloads. */
+    @Test
+    public void testFailedPrefetchReleasesGets() throws Exception {
+        final byte[] data = new byte[2000];
+        rnd.nextBytes(data);
+
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        try (BlobServer server = startServer(createConfig(), blobStore)) {
+            final JobID jobId = new JobID();
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+            assertTrue(server.getStorageLocation(jobId, blobKey).delete());
+
+            blobStore.setGetAllFailure(new RejectedExecutionException("test"));
+            try {
+                server.prefetchJob(jobId, Collections.singleton(blobKey)).get();
+                fail("Expected the prefetch to fail.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+
+            // the GET downloads the BLOB itself
+            assertArrayEquals(
+                    data,
+                    Files.readAllBytes(
+                            CompletableFuture.supplyAsync(() -> getFile(server, jobId, blobKey))
+                                    .get(10L, TimeUnit.SECONDS)
+                                    .toPath()));
+        }
+    }
+
+    /**
+     * A BLOB which cannot be copied from the HA store only fails its own download; the other BLOBs
+     * of the prefetch and the GETs waiting for them succeed.
+     */
+    @Test
+    public void testPrefetchSettlesEachBlob() throws Exception {
+        final byte[] data = new byte[2000];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (BlobServer server = startServer(config, blobStore)) {
+            final JobID jobId = new JobID();
+            final List<PermanentBlobKey> blobKeys = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+                assertTrue(server.getStorageLocation(jobId, blobKey).delete());
+                blobKeys.add(blobKey);
+            }
+            final PermanentBlobKey brokenKey = blobKeys.get(3);
+            blobStore.setGetFailure(brokenKey, new FileNotFoundException("test"));
+
+            final CountDownLatch latch = blobStore.blockGets();
+            final CompletableFuture<Void> prefetch = server.prefetchJob(jobId, blobKeys);
+            final Future<?> request =
+                    executor.submit(
+                            () -> {
+                                try (BlobClient client =
+                                        new BlobClient(
+                                                new InetSocketAddress(
+                                                        "localhost", server.getPort()),
+                                                config)) {
+                                    BlobClientTest.validateGetAndClose(
+                                            client.getInternal(jobId, blobKeys.get(0)), data);
+                                }
+                                return null;
+                            });
+            try {
+                request.get(100L, TimeUnit.MILLISECONDS);
+                fail("Expected the GET to wait for the prefetch.");
+            } catch (TimeoutException e) {
+                // expected
+            }
+
+            latch.countDown();
+            try {
+                prefetch.get();
+                fail("Expected the prefetch to fail.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+
+            // the coalesced GET has been served from the prefetched BLOB
+            request.get();
+            assertEquals(blobKeys.size(), blobStore.getNumGets());
+            for (PermanentBlobKey blobKey : blobKeys) {
+                assertEquals(
+                        blobKey != brokenKey,
+                        server.getStorageLocation(jobId, blobKey).exists());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static File getFile(BlobServer server, JobID jobId, PermanentBlobKey blobKey) {
+        try {
+            return server.getFile(jobId, blobKey);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /** Prefetching a job re-uploads those of its BLOBs which went missing in the HA store. */
+    @Test
+    public void testPrefetchRepairsBlobStore() throws Exception {
+        final byte[] data = new byte[2000];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+        config.setString(BlobServerOptions.HA_REPLICATION_MODE.key(), "LOCAL");
+
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        try (BlobServer server = startServer(config, blobStore)) {
+            final JobID jobId = new JobID();
+            final PermanentBlobKey blobKey1 = server.putPermanent(jobId, data);
+            final PermanentBlobKey blobKey2 = server.putPermanent(jobId, data);
+            while (server.getNumPendingBlobStoreReplications() > 0) {
+                Thread.sleep(10L);
+            }
+            assertEquals(2, blobStore.getNumPuts());
+
+            assertTrue(blobStore.delete(jobId, blobKey2));
+            server.prefetchJob(jobId, Arrays.asList(blobKey1, blobKey2)).get();
+
+            // only the missing BLOB has been uploaded again
+            assertTrue(blobStore.exists(jobId, blobKey2));
+            assertEquals(3, blobStore.getNumPuts());
+            assertEquals(0, blobStore.getNumGets());
+        }
+    }
+
+    /** Waiting connections are served by priority unless they waited too long. */
+    @Test
+    public void testQueuedRequestsAreServedByPriority() throws Exception {
+        assertEquals(
+                Arrays.asList(BlobRequestPriority.CRITICAL, BlobRequestPriority.BULK),
+                getOrderOfQueuedRequests(5_000L));
+
+        // without protection from starvation, i.e. in order of arrival
+        assertEquals(
+                Arrays.asList(BlobRequestPriority.BULK, BlobRequestPriority.CRITICAL),
+                getOrderOfQueuedRequests(0L));
+    }
+
+    /**
+     * Queues a bulk request and then a critical request behind an idle connection occupying the
+     * only slot, and returns the order they are served in.
+     */
+    private List<BlobRequestPriority> getOrderOfQueuedRequests(long priorityMaxWait)
+            throws Exception {
+        final byte[] data = new byte[2000];
+        rnd.nextBytes(data);
+
+        final Configuration config = createConfig();
+        config.setInteger(BlobServerOptions.FETCH_CONCURRENT, 1);
+        config.setLong(BlobServerOptions.PRIORITY_MAX_WAIT, priorityMaxWait);
+
+        final List<BlobRequestPriority> served = Collections.synchronizedList(new ArrayList<>());
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (BlobServer server = startServer(config)) {
+            final InetSocketAddress serverAddress =
+                    new InetSocketAddress("localhost", server.getPort());
+            final JobID jobId = new JobID();
+            final BlobKey permanentKey = server.putPermanent(jobId, data);
+            final BlobKey transientKey = server.putTransient(jobId, data);
+
+            final BlobClient idleClient = new BlobClient(serverAddress, config);
+            while (server.getNumActiveConnections() < 1) {
+                Thread.sleep(10L);
+            }
+
+            final List<Future<?>> requests = new ArrayList<>();
+            for (BlobKey blobKey : Arrays.asList(transientKey, permanentKey)) {
+                requests.add(
+                        executor.submit(
+                                () -> {
+                                    try (BlobClient client =
+                                            new BlobClient(serverAddress, config)) {
+                                        BlobClientTest.validateGetAndClose(
+                                                client.getInternal(jobId, blobKey), data);
+                                        // recorded before the slot is given up
+                                        served.add(
+                                                blobKey == permanentKey
+                                                        ? BlobRequestPriority.CRITICAL
+                                                        : BlobRequestPriority.BULK);
+                                    }
+                                    return null;
+                                }));
+                // wait until the request header arrived
+                final BlobRequestPriority priority =
+                        blobKey == permanentKey
+                                ? BlobRequestPriority.CRITICAL
+                                : BlobRequestPriority.BULK;
+                while (server.getNumQueuedConnections(priority) < 1) {
+                    Thread.sleep(10L);
+                }
+            }
+
+            idleClient.close();
+            for (Future<?> request : requests) {
+                request.get();
+            }
+            return served;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
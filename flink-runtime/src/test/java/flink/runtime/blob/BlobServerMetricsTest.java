@@ -0,0 +1,141 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.configuration.BlobServerOptions;
+import flink.configuration.Configuration;
+import flink.metrics.Counter;
+import flink.metrics.Gauge;
+import flink.metrics.Histogram;
+import flink.runtime.metrics.groups.LocalMetricGroup;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Tests for the metrics of the {@link BlobServer}. */
+public class BlobServerMetricsTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlobServerMetricsTest.class);
+
+    private final Random rnd = new Random();
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPutAndGetMetrics() throws Exception {
+        final JobID jobId = new JobID();
+        final byte[] data = new byte[3000];
+        rnd.nextBytes(data);
+
+        final Configuration config = new Configuration();
+        config.setString(
+                BlobServerOptions.STORAGE_DIRECTORY, temporaryFolder.newFolder().getAbsolutePath());
+
+        final LocalMetricGroup metricGroup = new LocalMetricGroup();
+        try (BlobServer server =
+                new BlobServer(config, new VoidBlobStore(), metricGroup.addGroup("blob"))) {
+            server.start();
+
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+            server.putTransient(data);
+            assertEquals(2L * data.length, getCounter(metricGroup, "blob.numBytesInPut"));
+            assertEquals(2L, getHistogram(metricGroup, "blob.putLatency").getCount());
+
+            BlobClient.downloadFromBlobServer(
+                    jobId,
+                    blobKey,
+                    temporaryFolder.newFile(),
+                    new InetSocketAddress("localhost", server.getPort()),
+                    config,
+                    new BlobClientRetryPolicy(config),
+                    0);
+            // the server updates the latency last, after sending the response
+            waitForCount(getHistogram(metricGroup, "blob.getLatency"), 1L);
+            assertEquals(data.length, getCounter(metricGroup, "blob.numBytesOutGet"));
+            assertEquals(1L, getHistogram(metricGroup, "blob.getLatency").getCount());
+            assertEquals(1L, getHistogram(metricGroup, "blob.connectionWaitTime").getCount());
+
+            final Map<?, ?> storageBytesPerJob =
+                    (Map<?, ?>) getGauge(metricGroup, "blob.storageBytesPerJob").getValue();
+            assertEquals((long) data.length, storageBytesPerJob.get(jobId.toString()));
+            assertEquals((long) data.length, storageBytesPerJob.get(BlobUtils.NO_JOB_DIR_PREFIX));
+
+            assertEquals(
+                    0, getGauge(metricGroup, "blob.numPendingBlobStoreReplications").getValue());
+        }
+    }
+
+    @Test
+    public void testTransientExpiryDeletions() throws Exception {
+        final Configuration config = new Configuration();
+        config.setString(
+                BlobServerOptions.STORAGE_DIRECTORY, temporaryFolder.newFolder().getAbsolutePath());
+        // the timer does not interfere as we trigger the cleanup manually
+        config.setLong(BlobServerOptions.CLEANUP_INTERVAL, 3600L);
+
+        final LocalMetricGroup metricGroup = new LocalMetricGroup();
+        try (BlobServer server = new BlobServer(config, new VoidBlobStore(), metricGroup)) {
+            final byte[] data = new byte[100];
+            rnd.nextBytes(data);
+            final TransientBlobKey blobKey = server.putTransient(data);
+            final File file = server.getStorageLocation(null, blobKey);
+
+            final BlobServerMetrics metrics = server.getMetrics();
+            new TransientBlobCleanupTask(
+                            server.getBlobExpiryTimes(),
+                            server.getReadWriteLock().writeLock(),
+                            server.getStorageDir(),
+                            metrics.numTransientExpiryDeletions,
+                            LOG)
+                    .run();
+            assertTrue(file.exists());
+            assertEquals(0L, getCounter(metricGroup, "numTransientExpiryDeletions"));
+
+            server.getBlobExpiryTimes().replaceAll((key, expiry) -> 0L);
+            new TransientBlobCleanupTask(
+                            server.getBlobExpiryTimes(),
+                            server.getReadWriteLock().writeLock(),
+                            server.getStorageDir(),
+                            metrics.numTransientExpiryDeletions,
+                            LOG)
+                    .run();
+            assertFalse(file.exists());
+            assertEquals(1L, getCounter(metricGroup, "numTransientExpiryDeletions"));
+        }
+    }
+
+    private static long getCounter(LocalMetricGroup metricGroup, String identifier) {
+        return ((Counter) metricGroup.getMetric(identifier)).getCount();
+    }
+
+    private static Histogram getHistogram(LocalMetricGroup metricGroup, String identifier) {
+        return (Histogram) metricGroup.getMetric(identifier);
+    }
+
+    private static void waitForCount(Histogram histogram, long count)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (histogram.getCount() < count) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("Expected a count of " + count + " but got " + histogram.getCount() + '.');
+            }
+            Thread.sleep(10L);
+        }
+    }
+
+    private static Gauge<?> getGauge(LocalMetricGroup metricGroup, String identifier) {
+        return (Gauge<?>) metricGroup.getMetric(identifier);
+    }
+}
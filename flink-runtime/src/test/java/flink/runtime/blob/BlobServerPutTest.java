@@ -11,23 +11,36 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static flink.runtime.blob.BlobClientTest.validateGetAndClose;
 import static flink.runtime.blob.BlobKey.BlobType.PERMANENT_BLOB;
 import static flink.runtime.blob.BlobKey.BlobType.TRANSIENT_BLOB;
 import static flink.runtime.blob.BlobKeyTest.verifyKeyDifferentHashEquals;
 import static flink.runtime.blob.BlobServerGetTest.get;
+import static flink.runtime.blob.BlobServerGetTest.startServer;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @Description
@@ -42,6 +55,14 @@ public class BlobServerPutTest {
 
     @Rule
     public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Configuration createConfig() throws IOException {
+        final Configuration config = new Configuration();
+        config.setString(
+                BlobServerOptions.STORAGE_DIRECTORY, temporaryFolder.newFolder().getAbsolutePath());
+        return config;
+    }
+
     /**
      * Uploads two byte arrays for different jobs into the server via the {@link BlobServer}. File
      * transfers should be successful.
@@ -54,14 +75,7 @@ public class BlobServerPutTest {
             @Nullable JobID jobId1, @Nullable JobID jobId2, BlobKey.BlobType blobType)
             throws IOException {
 
-        final Configuration config = new Configuration();
-        config.setString(
-                BlobServerOptions.STORAGE_DIRECTORY, temporaryFolder.newFolder().getAbsolutePath());
-
-        try (BlobServer server = new BlobServer(config, new VoidBlobStore())) {
-
-            server.start();
-
+        try (BlobServer server = startServer(createConfig())) {
             byte[] data = new byte[2000000];
             rnd.nextBytes(data);
             byte[] data2 = Arrays.copyOfRange(data, 10, 54);
@@ -110,6 +124,395 @@ public class BlobServerPutTest {
         testPutBufferSuccessfulGet(null, null, TRANSIENT_BLOB);
     }
 
+    @Test
+    public void testPutBufferSuccessfulGet2() throws IOException {
+        testPutBufferSuccessfulGet(null, new JobID(), TRANSIENT_BLOB);
+    }
+
+    @Test
+    public void testPutBufferSuccessfulGet3() throws IOException {
+        testPutBufferSuccessfulGet(new JobID(), new JobID(), TRANSIENT_BLOB);
+    }
+
+    @Test
+    public void testPutBufferSuccessfulGet4() throws IOException {
+        testPutBufferSuccessfulGet(new JobID(), null, TRANSIENT_BLOB);
+    }
+
+    @Test
+    public void testPutBufferSuccessfulGetHa() throws IOException {
+        testPutBufferSuccessfulGet(new JobID(), new JobID(), PERMANENT_BLOB);
+    }
+
+    /**
+     * Uploads more data via {@link BlobServer#putPermanentAsync(JobID, byte[])} than the configured
+     * in-flight limit allows at once and verifies that no more uploads than fit into the limit run
+     * at the same time and that all uploads complete.
+     */
+    @Test
+    public void testPutBufferAsyncBoundsBytesInFlight() throws Exception {
+        final Configuration config = createConfig();
+        config.setInteger(BlobServerOptions.ASYNC_WRITE_POOL_SIZE, 4);
+        config.setInteger(BlobServerOptions.HA_REPLICATION_POOL_SIZE, 4);
+        config.setLong(BlobServerOptions.ASYNC_WRITE_MAX_IN_FLIGHT_BYTES, 5000L);
+
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        final CountDownLatch latch = blobStore.blockPuts();
+        try (BlobServer server = startServer(config, blobStore)) {
+            final JobID jobId = new JobID();
+            final List<byte[]> data = new ArrayList<>();
+            final List<CompletableFuture<PermanentBlobKey>> keyFutures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                byte[] buffer = new byte[2000];
+                rnd.nextBytes(buffer);
+                data.add(buffer);
+                keyFutures.add(server.putPermanentAsync(jobId, buffer));
+            }
+
+            // only two uploads fit into the limit, although the writer pool could run four
+            while (blobStore.getNumPuts() < 2) {
+                Thread.sleep(10L);
+            }
+            Thread.sleep(100L);
+            assertEquals(2, blobStore.getNumPuts());
+
+            latch.countDown();
+            for (int i = 0; i < keyFutures.size(); i++) {
+                verifyContents(server, jobId, keyFutures.get(i).get(), data.get(i));
+            }
+            assertEquals(keyFutures.size(), blobStore.getNumPuts());
+        }
+    }
+
+    /**
+     * Asynchronous uploads beyond the in-flight limit are queued without blocking the caller, and
+     * closing the server fails all uploads which have not completed.
+     */
+    @Test
+    public void testPutBufferAsyncQueuesAndFailsOnClose() throws Exception {
+        final Configuration config = createConfig();
+        config.setInteger(BlobServerOptions.ASYNC_WRITE_POOL_SIZE, 1);
+        config.setLong(BlobServerOptions.ASYNC_WRITE_MAX_IN_FLIGHT_BYTES, 3000L);
+
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        final CountDownLatch latch = blobStore.blockPuts();
+        final List<CompletableFuture<PermanentBlobKey>> keyFutures = new ArrayList<>();
+        final BlobServer server = startServer(config, blobStore);
+        try {
+            // the first upload is held back by the blob store, all others wait for it
+            final JobID jobId = new JobID();
+            for (int i = 0; i < 10; i++) {
+                keyFutures.add(server.putPermanentAsync(jobId, new byte[2000]));
+            }
+            while (blobStore.getNumPuts() < 1) {
+                Thread.sleep(10L);
+            }
+            for (CompletableFuture<PermanentBlobKey> keyFuture : keyFutures) {
+                assertFalse(keyFuture.isDone());
+            }
+        } finally {
+            server.close();
+            latch.countDown();
+        }
+
+        for (CompletableFuture<PermanentBlobKey> keyFuture : keyFutures) {
+            try {
+                keyFuture.get();
+                fail("Expected the upload to fail.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+
+        try {
+            server.putPermanentAsync(new JobID(), new byte[10]).get();
+            fail("Expected the closed server to reject the upload.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    /** In HA mode, permanent uploads are only acknowledged once they are in the HA blob store. */
+    @Test
+    public void testPutPermanentWaitsForBlobStoreInHaMode() throws Exception {
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        final CountDownLatch latch = blobStore.blockPuts();
+
+        try (BlobServer server = startServer(createConfig(), blobStore)) {
+            final JobID jobId = new JobID();
+            final CompletableFuture<PermanentBlobKey> keyFuture =
+                    CompletableFuture.supplyAsync(() -> putPermanent(server, jobId, new byte[100]));
+            while (blobStore.getNumPuts() < 1) {
+                Thread.sleep(10L);
+            }
+            try {
+                keyFuture.get(100L, TimeUnit.MILLISECONDS);
+                fail("Expected the upload to wait for the blob store.");
+            } catch (TimeoutException ignored) {
+                // expected
+            }
+
+            latch.countDown();
+            final PermanentBlobKey key = keyFuture.get();
+            assertTrue(blobStore.exists(jobId, key));
+            assertEquals(0, server.getNumPendingBlobStoreReplications());
+        }
+    }
+
+    private static PermanentBlobKey putPermanent(BlobServer server, JobID jobId, byte[] data) {
+        try {
+            return server.putPermanent(jobId, data);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * In LOCAL mode, permanent uploads are acknowledged right away and {@link
+     * BlobServer#awaitBlobStoreReplications(JobID)} tracks their upload to the HA blob store.
+     */
+    @Test
+    public void testPutPermanentReplicatesAsyncInLocalMode() throws Exception {
+        final Configuration config = createConfig();
+        config.setString(BlobServerOptions.HA_REPLICATION_MODE.key(), "LOCAL");
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        final CountDownLatch latch = blobStore.blockPuts();
+
+        try (BlobServer server = startServer(config, blobStore)) {
+            final JobID jobId = new JobID();
+            final byte[] data = new byte[100];
+            rnd.nextBytes(data);
+            final PermanentBlobKey key = server.putPermanent(jobId, data);
+            verifyContents(server, jobId, key, data);
+
+            final CompletableFuture<Void> replications = server.awaitBlobStoreReplications(jobId);
+            assertFalse(replications.isDone());
+            assertEquals(1, server.getNumPendingBlobStoreReplications());
+
+            latch.countDown();
+            replications.get();
+            assertTrue(blobStore.exists(jobId, key));
+            assertEquals(0L, server.getMetrics().numFailedBlobStoreReplications.getCount());
+        }
+    }
+
+    /**
+     * In LOCAL mode, an upload which finally failed after its retries is surfaced via {@link
+     * BlobServer#awaitBlobStoreReplications(JobID)} and the metrics.
+     */
+    @Test
+    public void testFailedBlobStoreReplicationInLocalMode() throws Exception {
+        final Configuration config = createConfig();
+        config.setString(BlobServerOptions.HA_REPLICATION_MODE.key(), "LOCAL");
+        config.setInteger(BlobServerOptions.HA_REPLICATION_MAX_RETRIES, 2);
+        config.setLong(BlobServerOptions.HA_REPLICATION_RETRY_DELAY, 1L);
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        blobStore.setPutFailure(new IOException("Test exception."));
+
+        try (BlobServer server = startServer(config, blobStore)) {
+            final JobID jobId = new JobID();
+            final byte[] data = new byte[100];
+            server.putPermanent(jobId, data);
+
+            try {
+                server.awaitBlobStoreReplications(jobId).get();
+                fail("Expected the replication to fail.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertEquals(3, blobStore.getNumPuts());
+            assertEquals(1L, server.getMetrics().numFailedBlobStoreReplications.getCount());
+
+            // the failure sticks until the job is cleaned up
+            try {
+                server.awaitBlobStoreReplications(jobId).get();
+                fail("Expected the replication to fail.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertTrue(server.cleanupJob(jobId, true));
+            server.awaitBlobStoreReplications(jobId).get();
+        }
+    }
+
+    /**
+     * In HA mode, a failed upload to the HA blob store fails the PUT and removes the local file.
+     */
+    @Test
+    public void testFailedBlobStoreReplicationInHaMode() throws Exception {
+        final Configuration config = createConfig();
+        config.setInteger(BlobServerOptions.HA_REPLICATION_MAX_RETRIES, 0);
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        blobStore.setPutFailure(new IOException("Test exception."));
+
+        try (BlobServer server = startServer(config, blobStore)) {
+            final JobID jobId = new JobID();
+            try {
+                server.putPermanent(jobId, new byte[100]);
+                fail("Expected the upload to fail.");
+            } catch (IOException expected) {
+                // expected
+            }
+
+            final File[] localFiles =
+                    new File(
+                                    BlobUtils.getStorageLocationPath(
+                                            server.getStorageDir().getAbsolutePath(), jobId))
+                            .listFiles();
+            assertTrue(localFiles == null || localFiles.length == 0);
+            assertEquals(1L, server.getMetrics().numFailedBlobStoreReplications.getCount());
+        }
+    }
+
+    /**
+     * Cleaning up a job cancels its pending uploads to the HA blob store and waits for the running
+     * ones, so that no late upload re-creates the job's files in the HA blob store.
+     */
+    @Test
+    public void testCleanupJobCancelsBlobStoreReplications() throws Exception {
+        final Configuration config = createConfig();
+        config.setString(BlobServerOptions.HA_REPLICATION_MODE.key(), "LOCAL");
+        config.setInteger(BlobServerOptions.HA_REPLICATION_POOL_SIZE, 1);
+        final TestingBlobStore blobStore = new TestingBlobStore();
+        final CountDownLatch latch = blobStore.blockPuts();
+
+        try (BlobServer server = startServer(config, blobStore)) {
+            // the first upload is held back by the blob store, the second one waits for it
+            final JobID jobId = new JobID();
+            final PermanentBlobKey key1 = server.putPermanent(jobId, new byte[100]);
+            final PermanentBlobKey key2 = server.putPermanent(jobId, new byte[200]);
+            while (blobStore.getNumPuts() < 1) {
+                Thread.sleep(10L);
+            }
+
+            final CompletableFuture<Boolean> cleanup =
+                    CompletableFuture.supplyAsync(() -> server.cleanupJob(jobId, true));
+            try {
+                cleanup.get(100L, TimeUnit.MILLISECONDS);
+                fail("Expected the cleanup to wait for the running upload.");
+            } catch (TimeoutException ignored) {
+                // expected
+            }
+
+            latch.countDown();
+            assertTrue(cleanup.get());
+            assertFalse(blobStore.exists(jobId, key1));
+            assertFalse(blobStore.exists(jobId, key2));
+            assertEquals(1, blobStore.getNumPuts());
+            assertEquals(0, server.getNumPendingBlobStoreReplications());
+            assertEquals(0L, server.getMetrics().numFailedBlobStoreReplications.getCount());
+        }
+    }
+
+    /**
+     * Uploads a file in chunks, then a slightly changed version of it, of which only the chunks
+     * around the change are sent.
+     */
+    @Test
+    public void testPutChunkedOnlySendsChangedChunks() throws IOException {
+        final Configuration config = createConfig();
+        config.setBoolean(BlobServerOptions.CHUNKED_UPLOAD_ENABLED, true);
+
+        try (BlobServer server = startServer(config)) {
+            final InetSocketAddress serverAddress =
+                    new InetSocketAddress("localhost", server.getPort());
+            final BlobServerMetrics metrics = server.getMetrics();
+
+            final byte[] data = new byte[2000000];
+            rnd.nextBytes(data);
+            final File file = temporaryFolder.newFile();
+            Files.write(file.toPath(), data);
+
+            final JobID jobId1 = new JobID();
+            final PermanentBlobKey key1;
+            try (BlobClient client = new BlobClient(serverAddress, config)) {
+                key1 = client.uploadFile(jobId1, new Path(file.getAbsolutePath()));
+            }
+            verifyContents(server, jobId1, key1, data);
+            assertEquals(data.length, metrics.numBytesInPut.getCount());
+            assertEquals(0L, metrics.numBytesReusedPut.getCount());
+
+            // insert a few bytes in the middle
+            final byte[] data2 = new byte[data.length + 10];
+            System.arraycopy(data, 0, data2, 0, 1000000);
+            System.arraycopy(data, 1000000, data2, 1000010, data.length - 1000000);
+            Files.write(file.toPath(), data2);
+
+            final JobID jobId2 = new JobID();
+            final PermanentBlobKey key2;
+            try (BlobClient client = new BlobClient(serverAddress, config)) {
+                key2 = client.uploadFile(jobId2, new Path(file.getAbsolutePath()));
+            }
+            verifyContents(server, jobId2, key2, data2);
+            final long sent = metrics.numBytesInPut.getCount() - data.length;
+            assertTrue(sent <= 3 * ContentDefinedChunker.MAX_CHUNK_SIZE);
+            assertEquals(data2.length, sent + metrics.numBytesReusedPut.getCount());
+
+            // deleting a job forgets its chunks
+            final int numChunks = server.getChunkIndex().getNumChunks();
+            assertTrue(server.cleanupJob(jobId2, true));
+            assertTrue(server.getChunkIndex().getNumChunks() < numChunks);
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    @Test
+    public void testPutStreamSuccessfulGet1() throws IOException {
+        testPutStreamSuccessfulGet(null, null, TRANSIENT_BLOB);
+    }
+
+    @Test
+    public void testPutStreamSuccessfulGet2() throws IOException {
+        testPutStreamSuccessfulGet(new JobID(), new JobID(), TRANSIENT_BLOB);
+    }
+
+    @Test
+    public void testPutStreamSuccessfulGetHa() throws IOException {
+        testPutStreamSuccessfulGet(new JobID(), new JobID(), PERMANENT_BLOB);
+    }
+
+    /**
+     * Uploads two file streams for different jobs into the server via the {@link BlobServer}.
+     * File transfers should be successful.
+     *
+     * @param jobId1 first job id
+     * @param jobId2 second job id
+     * @param blobType whether the BLOB should become permanent or transient
+     */
+    private void testPutStreamSuccessfulGet(
+            @Nullable JobID jobId1, @Nullable JobID jobId2, BlobKey.BlobType blobType)
+            throws IOException {
+
+        try (BlobServer server = startServer(createConfig())) {
+            byte[] data = new byte[2000000];
+            rnd.nextBytes(data);
+            byte[] data2 = Arrays.copyOfRange(data, 10, 54);
+
+            // put data for jobId1 and verify
+            BlobKey key1a = put(server, jobId1, new ByteArrayInputStream(data), blobType);
+            assertNotNull(key1a);
+            // second upload of same data should yield a different BlobKey
+            BlobKey key1a2 = put(server, jobId1, new ByteArrayInputStream(data), blobType);
+            assertNotNull(key1a2);
+            verifyKeyDifferentHashEquals(key1a, key1a2);
+
+            BlobKey key1b = put(server, jobId1, new ByteArrayInputStream(data2), blobType);
+            assertNotNull(key1b);
+
+            // now put data for jobId2 and verify that both are ok
+            BlobKey key2a = put(server, jobId2, new ByteArrayInputStream(data), blobType);
+            assertNotNull(key2a);
+            verifyKeyDifferentHashEquals(key1a, key2a);
+
+            // verify the accessibility and the BLOB contents
+            verifyContents(server, jobId1, key1a, data);
+            verifyContents(server, jobId1, key1a2, data);
+            verifyContents(server, jobId1, key1b, data2);
+            verifyContents(server, jobId2, key2a, data);
+        }
+    }
+
 
 
     /**
@@ -154,6 +557,27 @@ public class BlobServerPutTest {
 
 
 
+    /**
+     * Helper to choose the right {@link BlobServer#putTransient} method.
+     *
+     * @param blobType whether the BLOB should become permanent or transient
+     * @return blob key for the uploaded data
+     */
+    static BlobKey put(
+            BlobService service,
+            @Nullable JobID jobId,
+            InputStream data,
+            BlobKey.BlobType blobType)
+            throws IOException {
+        if (blobType == PERMANENT_BLOB) {
+            return ((BlobServer) service).putPermanent(jobId, data);
+        } else if (jobId == null) {
+            return service.getTransientBlobService().putTransient(data);
+        } else {
+            return service.getTransientBlobService().putTransient(jobId, data);
+        }
+    }
+
     /**
      * GET the data stored at the two keys and check that it is equal to <tt>data</tt>.
      *
@@ -0,0 +1,77 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+/** Tests for the {@link FairBandwidthScheduler}. */
+public class FairBandwidthSchedulerTest {
+
+    private static final int CHUNK = BlobServerProtocol.BUFFER_SIZE;
+
+    /** Jobs share the bandwidth by weight, regardless of their number of connections. */
+    @Test
+    public void testSharesByWeight() throws Exception {
+        final JobID manyConnections = new JobID();
+        final JobID heavyWeight = new JobID();
+        final long bytesPerSecond = 64L * CHUNK;
+        final FairBandwidthScheduler scheduler =
+                new FairBandwidthScheduler(bytesPerSecond, jobId -> jobId == heavyWeight ? 3 : 1);
+
+        // use up the initial burst
+        for (long drained = 0L; drained < bytesPerSecond; drained += CHUNK) {
+            scheduler.acquire(null, CHUNK);
+        }
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong manyConnectionsBytes = new AtomicLong();
+        final AtomicLong heavyWeightBytes = new AtomicLong();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(
+                    createTransferThread(
+                            scheduler, manyConnections, manyConnectionsBytes, running));
+        }
+        threads.add(createTransferThread(scheduler, heavyWeight, heavyWeightBytes, running));
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(2000L);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        final double ratio = (double) heavyWeightBytes.get() / manyConnectionsBytes.get();
+        assertTrue("Unexpected ratio " + ratio, ratio > 2.0 && ratio < 4.5);
+
+        // and the limit holds (plus the transfers granted while stopping)
+        final long total = heavyWeightBytes.get() + manyConnectionsBytes.get();
+        assertTrue("Transferred " + total + " bytes", total <= 2 * bytesPerSecond + 5 * CHUNK);
+    }
+
+    private static Thread createTransferThread(
+            FairBandwidthScheduler scheduler,
+            JobID jobId,
+            AtomicLong transferred,
+            AtomicBoolean running) {
+        return new Thread(
+                () -> {
+                    try {
+                        while (running.get()) {
+                            scheduler.acquire(jobId, CHUNK);
+                            transferred.addAndGet(CHUNK);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+    }
+}
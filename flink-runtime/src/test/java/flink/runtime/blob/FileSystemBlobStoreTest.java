@@ -0,0 +1,268 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.configuration.BlobServerOptions;
+import flink.configuration.Configuration;
+import flink.core.fs.LocalFileSystem;
+import flink.core.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static flink.runtime.blob.BlobKey.BlobType.PERMANENT_BLOB;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Tests for the {@link FileSystemBlobStore} against the {@link LocalFileSystem}. */
+public class FileSystemBlobStoreTest {
+
+    private static final long PART_SIZE = 1000L;
+
+    private final Random rnd = new Random();
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ExecutorService ioExecutor;
+
+    /** Executor for the bulk operations; must differ from the store's own executor. */
+    private ExecutorService bulkExecutor;
+
+    private String storagePath;
+
+    private FileSystemBlobStore blobStore;
+
+    @Before
+    public void setup() throws IOException {
+        ioExecutor = Executors.newFixedThreadPool(4);
+        bulkExecutor = Executors.newFixedThreadPool(4);
+        storagePath = temporaryFolder.newFolder().getAbsolutePath();
+        blobStore =
+                new FileSystemBlobStore(
+                        LocalFileSystem.getSharedInstance(), storagePath, ioExecutor, PART_SIZE);
+    }
+
+    @After
+    public void teardown() {
+        blobStore.close();
+        ioExecutor.shutdownNow();
+        bulkExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testPutAndGetMultipleParts() throws IOException {
+        // not a multiple of the part size, i.e. the last part is shorter
+        testPutAndGet(new byte[(int) (PART_SIZE * 5 + 17)]);
+    }
+
+    @Test
+    public void testPutAndGetSinglePart() throws IOException {
+        testPutAndGet(new byte[(int) (PART_SIZE / 2)]);
+    }
+
+    @Test
+    public void testPutAndGetEmpty() throws IOException {
+        testPutAndGet(new byte[0]);
+    }
+
+    private void testPutAndGet(byte[] data) throws IOException {
+        rnd.nextBytes(data);
+        final JobID jobId = new JobID();
+        final BlobKey blobKey = createKey(data);
+
+        final File localFile = temporaryFolder.newFile();
+        Files.write(localFile.toPath(), data);
+
+        assertTrue(blobStore.put(localFile, jobId, blobKey));
+
+        final File blobPath =
+                new File(BlobUtils.getStorageLocationPath(storagePath + "/blob", jobId, blobKey));
+        final int numParts = (int) Math.max(1L, (data.length + PART_SIZE - 1) / PART_SIZE);
+        assertEquals(numParts, blobPath.list().length);
+
+        // uploading the same BLOB again is a no-op
+        assertTrue(blobStore.put(localFile, jobId, blobKey));
+        assertEquals(numParts, blobPath.list().length);
+
+        final File targetFile = new File(temporaryFolder.getRoot(), "target");
+        assertTrue(blobStore.get(jobId, blobKey, targetFile));
+        assertArrayEquals(data, Files.readAllBytes(targetFile.toPath()));
+    }
+
+    @Test
+    public void testGetDetectsCorruption() throws IOException {
+        final byte[] data = new byte[(int) (PART_SIZE * 3)];
+        rnd.nextBytes(data);
+        final JobID jobId = new JobID();
+        final BlobKey blobKey = createKey(data);
+
+        final File localFile = temporaryFolder.newFile();
+        Files.write(localFile.toPath(), data);
+        assertTrue(blobStore.put(localFile, jobId, blobKey));
+
+        // corrupt the second part
+        final File blobPath =
+                new File(BlobUtils.getStorageLocationPath(storagePath + "/blob", jobId, blobKey));
+        final File part = new File(blobPath, "part-00001");
+        final byte[] partData = Files.readAllBytes(part.toPath());
+        partData[0] ^= 1;
+        Files.write(part.toPath(), partData);
+
+        final File targetFile = new File(temporaryFolder.getRoot(), "target");
+        try {
+            blobStore.get(jobId, blobKey, targetFile);
+            fail("Expected an IOException due to the corrupt part.");
+        } catch (IOException expected) {
+            // expected
+        }
+        assertFalse(targetFile.exists());
+    }
+
+    @Test
+    public void testDelete() throws IOException {
+        final byte[] data = new byte[(int) (PART_SIZE * 2)];
+        rnd.nextBytes(data);
+        final JobID jobId = new JobID();
+        final BlobKey blobKey1 = createKey(data);
+        final BlobKey blobKey2 = createKey(data);
+
+        final File localFile = temporaryFolder.newFile();
+        Files.write(localFile.toPath(), data);
+        assertTrue(blobStore.put(localFile, jobId, blobKey1));
+        assertTrue(blobStore.put(localFile, jobId, blobKey2));
+
+        assertTrue(blobStore.delete(jobId, blobKey1));
+        assertFalse(
+                new File(BlobUtils.getStorageLocationPath(storagePath + "/blob", jobId, blobKey1))
+                        .exists());
+        assertTrue(
+                new File(BlobUtils.getStorageLocationPath(storagePath + "/blob", jobId, blobKey2))
+                        .exists());
+
+        // deleting again is fine
+        assertTrue(blobStore.delete(jobId, blobKey1));
+
+        assertTrue(blobStore.deleteAll(jobId));
+        assertFalse(
+                new File(BlobUtils.getStorageLocationPath(storagePath + "/blob", jobId)).exists());
+        assertFalse(LocalFileSystem.getSharedInstance().exists(new Path(storagePath, "blob")));
+    }
+
+    @Test
+    public void testBulkOperations() throws Exception {
+        final JobID jobId = new JobID();
+        final Map<BlobKey, File> localFiles = new HashMap<>();
+        final Map<BlobKey, byte[]> contents = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            final byte[] data = new byte[(int) (PART_SIZE * (i % 3) + i)];
+            rnd.nextBytes(data);
+            final BlobKey blobKey = createKey(data);
+
+            final File localFile = temporaryFolder.newFile();
+            Files.write(localFile.toPath(), data);
+            localFiles.put(blobKey, localFile);
+            contents.put(blobKey, data);
+        }
+        final BlobKey missingKey = createKey(new byte[] {1, 2, 3});
+
+        final BlobBulkResult<BlobKey> uploaded =
+                blobStore.putAll(jobId, localFiles, bulkExecutor).get();
+        assertEquals(localFiles.keySet(), uploaded.getSucceeded());
+        assertTrue(uploaded.getFailures().isEmpty());
+
+        final List<BlobKey> allKeys = new ArrayList<>(localFiles.keySet());
+        allKeys.add(missingKey);
+        assertEquals(
+                localFiles.keySet(),
+                blobStore.exists(jobId, allKeys, bulkExecutor).get().getSucceeded());
+
+        final Map<BlobKey, File> targetFiles = new HashMap<>();
+        for (BlobKey blobKey : localFiles.keySet()) {
+            targetFiles.put(blobKey, new File(temporaryFolder.newFolder(), "target"));
+        }
+        assertEquals(
+                localFiles.keySet(),
+                blobStore.getAll(jobId, targetFiles, bulkExecutor).get().getSucceeded());
+        for (Map.Entry<BlobKey, File> targetFile : targetFiles.entrySet()) {
+            assertArrayEquals(
+                    contents.get(targetFile.getKey()),
+                    Files.readAllBytes(targetFile.getValue().toPath()));
+        }
+
+        // a missing BLOB only fails its own retrieval
+        targetFiles.put(missingKey, new File(temporaryFolder.newFolder(), "target"));
+        final BlobBulkResult<BlobKey> copied =
+                blobStore.getAll(jobId, targetFiles, bulkExecutor).get();
+        assertEquals(localFiles.keySet(), copied.getSucceeded());
+        assertEquals(Collections.singleton(missingKey), copied.getFailures().keySet());
+        assertTrue(copied.getFailures().get(missingKey) instanceof IOException);
+        try {
+            copied.throwIfFailed("copy the BLOBs");
+            fail("Expected the failed retrieval to be rethrown.");
+        } catch (IOException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testBlobServerRecoveryAndCleanup() throws Exception {
+        final JobID jobId = new JobID();
+        final List<PermanentBlobKey> blobKeys = new ArrayList<>();
+        final List<byte[]> contents = new ArrayList<>();
+
+        final Configuration config = new Configuration();
+        config.setString(
+                BlobServerOptions.STORAGE_DIRECTORY, temporaryFolder.newFolder().getAbsolutePath());
+
+        try (BlobServer server = new BlobServer(config, blobStore)) {
+            server.start();
+
+            for (int i = 0; i < 5; i++) {
+                final byte[] data = new byte[(int) (PART_SIZE * 2 + i)];
+                rnd.nextBytes(data);
+                blobKeys.add(server.putPermanent(jobId, data));
+                contents.add(data);
+            }
+        }
+
+        config.setString(
+                BlobServerOptions.STORAGE_DIRECTORY, temporaryFolder.newFolder().getAbsolutePath());
+
+        try (BlobServer server = new BlobServer(config, blobStore)) {
+            server.start();
+
+            server.prefetchJob(jobId, blobKeys).get();
+            for (int i = 0; i < blobKeys.size(); i++) {
+                final File localFile = server.getStorageLocation(jobId, blobKeys.get(i));
+                assertTrue(localFile.exists());
+                assertArrayEquals(contents.get(i), Files.readAllBytes(localFile.toPath()));
+            }
+
+            assertTrue(server.cleanupJob(jobId, true));
+            for (PermanentBlobKey blobKey : blobKeys) {
+                assertFalse(server.getStorageLocation(jobId, blobKey).exists());
+                assertFalse(blobStore.exists(jobId, blobKey));
+            }
+        }
+    }
+
+    private static BlobKey createKey(byte[] data) {
+        return BlobKey.createKey(PERMANENT_BLOB, BlobUtils.createMessageDigest().digest(data));
+    }
+}
@@ -0,0 +1,354 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.configuration.BlobServerOptions;
+import flink.configuration.Configuration;
+import flink.metrics.Counter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static flink.runtime.blob.BlobServerProtocol.BUFFER_SIZE;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_ERROR;
+import static flink.runtime.blob.BlobServerProtocol.RETURN_OVERLOADED;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for the {@link PermanentBlobCache}. */
+public class PermanentBlobCacheTest {
+
+    private final Random rnd = new Random();
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Configuration createConfig() throws IOException {
+        final Configuration config = new Configuration();
+        config.setString(
+                BlobServerOptions.STORAGE_DIRECTORY, temporaryFolder.newFolder().getAbsolutePath());
+        return config;
+    }
+
+    /** Concurrent requests for the same BLOB download it from the server only once. */
+    @Test
+    public void testConcurrentGetsDownloadOnce() throws Exception {
+        final JobID jobId = new JobID();
+        final byte[] data = new byte[2000000];
+        rnd.nextBytes(data);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (BlobServer server = new BlobServer(createConfig(), new VoidBlobStore())) {
+            server.start();
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+
+            final CountingBlobView blobView = new CountingBlobView();
+            try (PermanentBlobCache cache =
+                    new PermanentBlobCache(
+                            createConfig(),
+                            blobView,
+                            new InetSocketAddress("localhost", server.getPort()))) {
+                cache.registerJob(jobId);
+
+                final List<Future<File>> files = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    files.add(executor.submit(() -> cache.getFile(jobId, blobKey)));
+                }
+                for (Future<File> file : files) {
+                    assertArrayEquals(data, Files.readAllBytes(file.get().toPath()));
+                }
+
+                // only a single download happened (each download asks the HA store first)
+                assertEquals(1, blobView.numGets.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** BLOBs of a released job survive until the TTL passed and are reused on re-registration. */
+    @Test
+    public void testReleaseAfterTtl() throws Exception {
+        final JobID jobId = new JobID();
+        final byte[] data = new byte[1000];
+        rnd.nextBytes(data);
+
+        final Configuration cacheConfig = createConfig();
+        cacheConfig.setLong(BlobServerOptions.CLEANUP_INTERVAL, 1L);
+
+        try (BlobServer server = new BlobServer(createConfig(), new VoidBlobStore())) {
+            server.start();
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+
+            final CountingBlobView blobView = new CountingBlobView();
+            try (PermanentBlobCache cache =
+                    new PermanentBlobCache(
+                            cacheConfig,
+                            blobView,
+                            new InetSocketAddress("localhost", server.getPort()))) {
+
+                final PermanentBlobCache.PermanentBlobCleanupTask cleanupTask =
+                        cache.new PermanentBlobCleanupTask();
+
+                cache.registerJob(jobId);
+                cache.registerJob(jobId);
+                assertEquals(2, cache.getNumberOfReferenceHolders(jobId));
+                final File file = cache.getFile(jobId, blobKey);
+
+                // still referenced
+                cache.releaseJob(jobId);
+                assertEquals(-1, cache.getJobRefCounters().get(jobId).keepUntil);
+
+                // not referenced anymore, but the TTL has not passed yet
+                cache.releaseJob(jobId);
+                assertTrue(cache.getJobRefCounters().get(jobId).keepUntil > 0);
+                cleanupTask.run();
+                assertTrue(file.exists());
+
+                // a restarted task re-uses the local copy
+                cache.registerJob(jobId);
+                assertEquals(-1, cache.getJobRefCounters().get(jobId).keepUntil);
+                assertEquals(file, cache.getFile(jobId, blobKey));
+                assertEquals(1, blobView.numGets.get());
+
+                cache.releaseJob(jobId);
+                Thread.sleep(1100L);
+                cleanupTask.run();
+                assertFalse(file.exists());
+                assertFalse(cache.getJobRefCounters().containsKey(jobId));
+            }
+        }
+    }
+
+    /** A mapped buffer keeps the job referenced, i.e. its BLOBs survive the TTL while in use. */
+    @Test
+    public void testReadBufferPinsJob() throws Exception {
+        final JobID jobId = new JobID();
+        final byte[] data = new byte[1000];
+        rnd.nextBytes(data);
+
+        final Configuration cacheConfig = createConfig();
+        cacheConfig.setLong(BlobServerOptions.CLEANUP_INTERVAL, 1L);
+
+        try (BlobServer server = new BlobServer(createConfig(), new VoidBlobStore())) {
+            server.start();
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+
+            try (PermanentBlobCache cache =
+                    new PermanentBlobCache(
+                            cacheConfig,
+                            new CountingBlobView(),
+                            new InetSocketAddress("localhost", server.getPort()))) {
+
+                final PermanentBlobCache.PermanentBlobCleanupTask cleanupTask =
+                        cache.new PermanentBlobCleanupTask();
+
+                cache.registerJob(jobId);
+                final MappedBlobBuffer buffer = cache.readBuffer(jobId, blobKey);
+                assertEquals(2, cache.getNumberOfReferenceHolders(jobId));
+
+                final byte[] read = new byte[data.length];
+                assertEquals(data.length, buffer.getInputStream().read(read));
+                assertArrayEquals(data, read);
+
+                // the task finished, but the buffer is still in use
+                cache.releaseJob(jobId);
+                Thread.sleep(1100L);
+                cleanupTask.run();
+                final File file = cache.getStorageLocation(jobId, blobKey);
+                assertTrue(file.exists());
+
+                buffer.close();
+                assertTrue(buffer.isReleased());
+                assertEquals(0, cache.getNumberOfReferenceHolders(jobId));
+                Thread.sleep(1100L);
+                cleanupTask.run();
+                assertFalse(file.exists());
+            }
+        }
+    }
+
+    /** Streamed BLOBs are only stored locally if requested and after being read completely. */
+    @Test
+    public void testOpenStream() throws Exception {
+        final JobID jobId = new JobID();
+        final byte[] data = new byte[200000];
+        rnd.nextBytes(data);
+
+        try (BlobServer server = new BlobServer(createConfig(), new VoidBlobStore())) {
+            server.start();
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+
+            final CountingBlobView blobView = new CountingBlobView();
+            try (PermanentBlobCache cache =
+                    new PermanentBlobCache(
+                            createConfig(),
+                            blobView,
+                            new InetSocketAddress("localhost", server.getPort()))) {
+                final File file = cache.getStorageLocation(jobId, blobKey);
+
+                // plain streaming does not touch the local storage
+                try (InputStream is = cache.openStream(jobId, blobKey)) {
+                    assertArrayEquals(data, readFully(is));
+                }
+                assertFalse(file.exists());
+
+                // an incompletely read BLOB is not cached
+                try (InputStream is = cache.openStream(jobId, blobKey, true)) {
+                    assertEquals(1000, is.read(new byte[1000]));
+                }
+                assertFalse(file.exists());
+
+                try (InputStream is = cache.openStream(jobId, blobKey, true)) {
+                    assertArrayEquals(data, readFully(is));
+                }
+                assertTrue(file.exists());
+                assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+
+                // served from the local storage now
+                server.cleanupJob(jobId, true);
+                try (InputStream is = cache.openStream(jobId, blobKey)) {
+                    assertArrayEquals(data, readFully(is));
+                }
+                assertEquals(0, blobView.numGets.get());
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buf = new byte[4096];
+        int read;
+        while ((read = is.read(buf)) >= 0) {
+            bytes.write(buf, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Caches download BLOBs from their peers, and from the server if no peer serves data matching
+     * the BLOB key.
+     */
+    @Test
+    public void testPeerDistribution() throws Exception {
+        final JobID jobId = new JobID();
+        final byte[] data = new byte[2000000];
+        rnd.nextBytes(data);
+
+        try (BlobServer server = new BlobServer(createConfig(), new VoidBlobStore())) {
+            server.start();
+            final PermanentBlobKey blobKey = server.putPermanent(jobId, data);
+            final InetSocketAddress serverAddress =
+                    new InetSocketAddress("localhost", server.getPort());
+            final Counter bytesOut = server.getMetrics().numBytesOutGet;
+
+            try (PermanentBlobCache seed =
+                            new PermanentBlobCache(
+                                    createPeerConfig(), new CountingBlobView(), serverAddress);
+                    PermanentBlobCache peer =
+                            new PermanentBlobCache(
+                                    createPeerConfig(), new CountingBlobView(), serverAddress);
+                    PermanentBlobCache latecomer =
+                            new PermanentBlobCache(
+                                    createPeerConfig(), new CountingBlobView(), serverAddress)) {
+                assertTrue(seed.getPeerPort() > 0);
+
+                // the first cache has no peers yet
+                assertArrayEquals(data, readFile(seed.getFile(jobId, blobKey)));
+                assertEquals(data.length, bytesOut.getCount());
+
+                // the second one downloads from the first
+                assertArrayEquals(data, readFile(peer.getFile(jobId, blobKey)));
+                assertEquals(data.length, bytesOut.getCount());
+                assertEquals(2, server.getPeerTracker().getNumPeers(jobId, blobKey));
+
+                // corrupted peers are detected via the BLOB key
+                final byte[] corrupted = new byte[data.length];
+                rnd.nextBytes(corrupted);
+                Files.write(seed.getStorageLocation(jobId, blobKey).toPath(), corrupted);
+                Files.write(peer.getStorageLocation(jobId, blobKey).toPath(), corrupted);
+
+                assertArrayEquals(data, readFile(latecomer.getFile(jobId, blobKey)));
+                assertEquals(2L * data.length, bytesOut.getCount());
+            }
+        }
+    }
+
+    /**
+     * Connections beyond the peer server's limit are rejected as overloaded, and stalled
+     * connections are failed after the socket timeout instead of holding their slot forever.
+     */
+    @Test
+    public void testPeerServerRejectsAndTimesOutConnections() throws Exception {
+        final Configuration config = createPeerConfig();
+        config.setInteger(BlobServerOptions.PEER_DISTRIBUTION_CONCURRENT, 1);
+        config.setInteger(BlobServerOptions.SO_TIMEOUT, 200);
+
+        try (PermanentBlobCache cache =
+                        new PermanentBlobCache(
+                                config,
+                                new CountingBlobView(),
+                                new InetSocketAddress("localhost", 1));
+                Socket stalled = new Socket("localhost", cache.getPeerPort());
+                Socket rejected = new Socket("localhost", cache.getPeerPort())) {
+            stalled.setSoTimeout(10_000);
+            rejected.setSoTimeout(10_000);
+
+            // the first connection takes the only slot without ever sending its request while the
+            // rejected one's request, arriving after the rejection, does not reset the connection
+            // before the response is read
+            Thread.sleep(200L);
+            for (int i = 0; i < 2; i++) {
+                rejected.getOutputStream().write(new byte[BUFFER_SIZE]);
+                Thread.sleep(200L);
+            }
+            final InputStream rejectedInput = rejected.getInputStream();
+            assertEquals(RETURN_OVERLOADED, rejectedInput.read());
+            assertEquals(0, BlobUtils.readLength(rejectedInput));
+            assertEquals(-1, rejectedInput.read());
+            assertEquals(RETURN_ERROR, stalled.getInputStream().read());
+        }
+    }
+
+    private Configuration createPeerConfig() throws IOException {
+        final Configuration config = createConfig();
+        config.setBoolean(BlobServerOptions.PEER_DISTRIBUTION_ENABLED, true);
+        return config;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        return Files.readAllBytes(file.toPath());
+    }
+
+    /** {@link BlobView} which never has the BLOB but counts the requests. */
+    private static final class CountingBlobView implements BlobView {
+
+        private final AtomicInteger numGets = new AtomicInteger();
+
+        @Override
+        public boolean get(JobID jobId, BlobKey blobKey, File localFile) {
+            numGets.incrementAndGet();
+            return false;
+        }
+
+        @Override
+        public boolean exists(JobID jobId, BlobKey blobKey) {
+            return false;
+        }
+    }
+}
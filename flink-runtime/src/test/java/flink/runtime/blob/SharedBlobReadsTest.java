@@ -0,0 +1,90 @@
+package flink.runtime.blob;
+
+import flink.metrics.Counter;
+import flink.runtime.metrics.ThreadSafeSimpleCounter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static flink.runtime.blob.BlobServerProtocol.BUFFER_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for the {@link SharedBlobReads}. */
+public class SharedBlobReadsTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** Concurrent readers read the file from disk once; stragglers continue on their own. */
+    @Test
+    public void testSharedReads() throws Exception {
+        final byte[] data = new byte[10 * BUFFER_SIZE + 123];
+        new Random().nextBytes(data);
+        final File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), data);
+
+        final Counter bytesRead = new ThreadSafeSimpleCounter();
+        final SharedBlobReads sharedReads = new SharedBlobReads(2L * BUFFER_SIZE, bytesRead);
+
+        try (SharedBlobReads.Reader first = sharedReads.open(file, data.length);
+                SharedBlobReads.Reader second = sharedReads.open(file, data.length);
+                SharedBlobReads.Reader straggler = sharedReads.open(file, data.length)) {
+            final ByteArrayOutputStream firstData = new ByteArrayOutputStream();
+            final ByteArrayOutputStream secondData = new ByteArrayOutputStream();
+            final ByteArrayOutputStream stragglerData = new ByteArrayOutputStream();
+
+            // the straggler only keeps up for the first chunk
+            append(stragglerData, straggler.next());
+            ByteBuffer chunk;
+            while ((chunk = first.next()) != null) {
+                append(firstData, chunk);
+                append(secondData, second.next());
+            }
+            assertNull(second.next());
+            assertArrayEquals(data, firstData.toByteArray());
+            assertArrayEquals(data, secondData.toByteArray());
+            assertEquals(data.length, bytesRead.getCount());
+
+            // a request arriving now starts a new shared read
+            assertEquals(1, sharedReads.getNumSharedReads());
+            try (SharedBlobReads.Reader latecomer = sharedReads.open(file, data.length)) {
+                assertArrayEquals(data, readFully(latecomer));
+            }
+            assertEquals(2L * data.length, bytesRead.getCount());
+
+            assertTrue(straggler.isShared());
+            while ((chunk = straggler.next()) != null) {
+                append(stragglerData, chunk);
+            }
+            assertFalse(straggler.isShared());
+            assertArrayEquals(data, stragglerData.toByteArray());
+            assertEquals(3L * data.length - BUFFER_SIZE, bytesRead.getCount());
+        }
+
+        // closed reads are forgotten
+        assertEquals(0, sharedReads.getNumSharedReads());
+    }
+
+    private static byte[] readFully(SharedBlobReads.Reader reader) throws IOException {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteBuffer chunk;
+        while ((chunk = reader.next()) != null) {
+            append(data, chunk);
+        }
+        return data.toByteArray();
+    }
+
+    private static void append(ByteArrayOutputStream data, ByteBuffer chunk) {
+        data.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+    }
+}
@@ -0,0 +1,161 @@
+package flink.runtime.blob;
+
+import flink.api.common.JobID;
+import flink.flink_core.api.java.tuple.Tuple2;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory {@link BlobStore} for tests which counts its transfers and can hold back or fail them.
+ */
+class TestingBlobStore implements BlobStore {
+
+    private final Map<Tuple2<JobID, BlobKey>, byte[]> blobs = new ConcurrentHashMap<>();
+
+    private final AtomicInteger numGets = new AtomicInteger();
+
+    private final AtomicInteger numPuts = new AtomicInteger();
+
+    /** Latch downloads wait for before they run (<tt>null</tt> to run right away). */
+    @Nullable private volatile CountDownLatch getLatch;
+
+    /** Latch uploads wait for before they run (<tt>null</tt> to run right away). */
+    @Nullable private volatile CountDownLatch putLatch;
+
+    /** Failure downloads throw (<tt>null</tt> to succeed). */
+    @Nullable private volatile IOException getFailure;
+
+    /** Failures downloads of single BLOBs throw, e.g. because the BLOB is corrupt. */
+    private final Map<BlobKey, IOException> blobGetFailures = new ConcurrentHashMap<>();
+
+    /** Failure uploads throw (<tt>null</tt> to succeed). */
+    @Nullable private volatile IOException putFailure;
+
+    /** Failure bulk downloads throw right away instead of completing their future. */
+    @Nullable private volatile RuntimeException getAllFailure;
+
+    @Override
+    public boolean put(File localFile, JobID jobId, BlobKey blobKey) throws IOException {
+        numPuts.incrementAndGet();
+        await(putLatch);
+        final IOException failure = putFailure;
+        if (failure != null) {
+            throw failure;
+        }
+        blobs.put(Tuple2.of(jobId, blobKey), Files.readAllBytes(localFile.toPath()));
+        return true;
+    }
+
+    @Override
+    public boolean get(JobID jobId, BlobKey blobKey, File localFile) throws IOException {
+        numGets.incrementAndGet();
+        await(getLatch);
+        final IOException failure = getFailure;
+        if (failure != null) {
+            throw failure;
+        }
+        final IOException blobFailure = blobGetFailures.get(blobKey);
+        if (blobFailure != null) {
+            throw blobFailure;
+        }
+        final byte[] data = blobs.get(Tuple2.of(jobId, blobKey));
+        if (data == null) {
+            return false;
+        }
+        Files.write(localFile.toPath(), data);
+        return true;
+    }
+
+    @Override
+    public <K extends BlobKey> CompletableFuture<BlobBulkResult<K>> getAll(
+            JobID jobId, Map<K, File> localFiles, Executor executor) {
+        final RuntimeException failure = getAllFailure;
+        if (failure != null) {
+            throw failure;
+        }
+        return BlobStore.super.getAll(jobId, localFiles, executor);
+    }
+
+    @Override
+    public boolean exists(JobID jobId, BlobKey blobKey) {
+        return blobs.containsKey(Tuple2.of(jobId, blobKey));
+    }
+
+    @Override
+    public boolean delete(JobID jobId, BlobKey blobKey) {
+        return blobs.remove(Tuple2.of(jobId, blobKey)) != null;
+    }
+
+    @Override
+    public boolean deleteAll(JobID jobId) {
+        blobs.keySet().removeIf(key -> jobId.equals(key.f0));
+        return true;
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    /** Stores a BLOB directly, e.g. as if uploaded by a previous blob server. */
+    void putBlob(@Nullable JobID jobId, BlobKey blobKey, byte[] data) {
+        blobs.put(Tuple2.of(jobId, blobKey), data.clone());
+    }
+
+    int getNumGets() {
+        return numGets.get();
+    }
+
+    int getNumPuts() {
+        return numPuts.get();
+    }
+
+    /** Holds back all downloads until the returned latch is counted down. */
+    CountDownLatch blockGets() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        getLatch = latch;
+        return latch;
+    }
+
+    /** Holds back all uploads until the returned latch is counted down. */
+    CountDownLatch blockPuts() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        putLatch = latch;
+        return latch;
+    }
+
+    void setGetFailure(@Nullable IOException failure) {
+        getFailure = failure;
+    }
+
+    /** Lets all downloads of the given BLOB fail with the given exception. */
+    void setGetFailure(BlobKey blobKey, IOException failure) {
+        blobGetFailures.put(blobKey, failure);
+    }
+
+    void setPutFailure(@Nullable IOException failure) {
+        putFailure = failure;
+    }
+
+    void setGetAllFailure(@Nullable RuntimeException failure) {
+        getAllFailure = failure;
+    }
+
+    private static void await(@Nullable CountDownLatch latch) throws InterruptedIOException {
+        if (latch != null) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while being held back.");
+            }
+        }
+    }
+}